@@ -54,6 +54,14 @@ public abstract class SMTPByteArrayMessage implements SMTPMessage{
         return _8bitIn;
     }
     
+    /**
+     * Return the length of the bigger <code>byte</code> array
+     */
+    @Override
+    public long getSize() {
+        return Math.max(get7BitAsByteArray().length, get8BitAsByteArray().length);
+    }
+    
     /**
      * Return the <code>byte</code> array which should be used for the 7Bit message input.
      * 
@@ -56,4 +56,15 @@ public interface SMTPMessage {
      */
     InputStream get8Bit() throws IOException;
     
+    /**
+     * Return the size of the message in bytes or <code>-1</code> if the size is not known. If the 7bit and 8bit content differ in size the 
+     * bigger one should be returned.
+     * <br/>
+     * <br/>
+     * The size is used for the <code>SIZE</code> extension, so the SMTP-Server can reject a too big message before it was transfered.
+     * 
+     * @return size
+     */
+    long getSize();
+    
 }
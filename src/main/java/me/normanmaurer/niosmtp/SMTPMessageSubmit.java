@@ -36,5 +36,13 @@ public interface SMTPMessageSubmit {
      * @return message
      */
     SMTPMessage getMessage();
+    
+    /**
+     * Return <code>true</code> if the {@link SMTPMessage} should get sent via <code>BDAT</code> as stated in RFC 3030. In this case the {@link SMTPMessage}
+     * is sent as one <code>BDAT LAST</code> chunk without any dot-stuffing. Otherwise it is sent as the content of the <code>DATA</code> command.
+     * 
+     * @return chunking
+     */
+    boolean isChunking();
 
 }
@@ -32,8 +32,14 @@ public interface SMTPRequest {
     public final static String AUTH_COMMAND = "AUTH";
     public final static String AUTH_PLAIN_ARGUMENT = "PLAIN";
     public final static String AUTH_LOGIN_ARGUMENT = "LOGIN";
+    public final static String AUTH_XOAUTH2_ARGUMENT = "XOAUTH2";
+    public final static String AUTH_OAUTHBEARER_ARGUMENT = "OAUTHBEARER";
     public final static String DATA_COMMAND = "DATA";
     public final static String QUIT_COMMAND = "QUIT";
+    public final static String RSET_COMMAND = "RSET";
+    public final static String NOOP_COMMAND = "NOOP";
+    public final static String BDAT_COMMAND = "BDAT";
+    public final static String BDAT_LAST_ARGUMENT = "LAST";
 
     /**
      * Return the command 
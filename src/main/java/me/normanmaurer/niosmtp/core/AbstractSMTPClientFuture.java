@@ -16,9 +16,7 @@
 */
 package me.normanmaurer.niosmtp.core;
 
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -31,63 +29,87 @@ import me.normanmaurer.niosmtp.transport.SMTPClientSession;
  * 
  * Abstract base class for {@link SMTPClientFuture} implementations 
  * 
+ * The {@link SMTPClientFutureListener}'s are kept in a lock-free stack, so adding and notifying them never needs to acquire a monitor.
+ * 
  * @author Norman Maurer
  *
  * @param <E>
  */
 public abstract class AbstractSMTPClientFuture<E> implements SMTPClientFuture<E>{
 
-    private List<SMTPClientFutureListener<E>> listeners;
+    /**
+     * Marker which is set once the {@link SMTPClientFutureListener}'s were notified
+     */
+    private static final ListenerNode NOTIFIED = new ListenerNode(null, null);
+    
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<AbstractSMTPClientFuture, ListenerNode> LISTENERS_UPDATER = AtomicReferenceFieldUpdater.newUpdater(AbstractSMTPClientFuture.class, ListenerNode.class, "listeners");
+    
+    private volatile ListenerNode listeners;
     private volatile SMTPClientSession session;
     private static final Logger LOGGER = LoggerFactory.getLogger(AbstractSMTPClientFuture.class);
     
     /**
-     * Notify all registered {@link SMTPClientFutureListener}'s
+     * Notify all registered {@link SMTPClientFutureListener}'s. Only the first call will notify them.
      */
+    @SuppressWarnings("unchecked")
     protected final void notifyListeners() {
-        Iterator<SMTPClientFutureListener<E>> it = null;
-        synchronized (this) {
-            if (listeners != null) {
-                // notify the listeners
-                it  = listeners.iterator();
-
-                listeners = null;
-            }
+        ListenerNode head = LISTENERS_UPDATER.getAndSet(this, NOTIFIED);
+        if (head == NOTIFIED) {
+            return;
         }
-        if (it != null) {
-            while(it.hasNext()) {
-                SMTPClientFutureListener<E> listener = null;
-                try {
-                    listener = it.next();
-                    listener.operationComplete(this);
-                } catch (Throwable e) {
-                    LOGGER.warn("Exception thrown while executing " + SMTPClientFutureListener.class.getName() + " " + listener, e);
-                }
+        
+        // reverse the stack so the SMTPClientFutureListener's are notified in the order in which they were added
+        ListenerNode reversed = null;
+        while (head != null) {
+            ListenerNode next = head.next;
+            head.next = reversed;
+            reversed = head;
+            head = next;
+        }
+        while (reversed != null) {
+            SMTPClientFutureListener<E> listener = (SMTPClientFutureListener<E>) reversed.listener;
+            if (listener != null) {
+                notifyListener(listener);
             }
+            reversed = reversed.next;
+        }
+    }
+    
+    private void notifyListener(SMTPClientFutureListener<E> listener) {
+        try {
+            listener.operationComplete(this);
+        } catch (Throwable e) {
+            LOGGER.warn("Exception thrown while executing " + SMTPClientFutureListener.class.getName() + " " + listener, e);
         }
     }
 
     @Override
-    public final synchronized void addListener(SMTPClientFutureListener<E> listener) {
-
-        if (isDone()) {
-            listener.operationComplete(this);
-        } else {
-            if (listeners == null) {
-                listeners = new ArrayList<SMTPClientFutureListener<E>>();
+    public final void addListener(SMTPClientFutureListener<E> listener) {
+        if (!isDone()) {
+            for (;;) {
+                ListenerNode head = listeners;
+                if (head == NOTIFIED) {
+                    break;
+                }
+                if (LISTENERS_UPDATER.compareAndSet(this, head, new ListenerNode(listener, head))) {
+                    return;
+                }
             }
-            listeners.add(listener);
-
         }
+        listener.operationComplete(this);
     }
 
     @Override
-    public final synchronized void removeListener(SMTPClientFutureListener<E> listener) {
-        if (!isDone()) {
-            if (listeners != null) {
-                listeners.remove(listener);
+    public final void removeListener(SMTPClientFutureListener<E> listener) {
+        ListenerNode node = listeners;
+        while (node != null && node != NOTIFIED) {
+            Object l = node.listener;
+            // the node is only unlinked logically, as it may be notified concurrently
+            if (l != null && l.equals(listener) && ListenerNode.LISTENER_UPDATER.compareAndSet(node, l, null)) {
+                return;
             }
-            
+            node = node.next;
         }
     }
     
@@ -106,4 +128,15 @@ public abstract class AbstractSMTPClientFuture<E> implements SMTPClientFuture<E>
         this.session = session;
     }
 
+    private static final class ListenerNode {
+        private static final AtomicReferenceFieldUpdater<ListenerNode, Object> LISTENER_UPDATER = AtomicReferenceFieldUpdater.newUpdater(ListenerNode.class, Object.class, "listener");
+        
+        private volatile Object listener;
+        private ListenerNode next;
+        
+        ListenerNode(Object listener, ListenerNode next) {
+            this.listener = listener;
+            this.next = next;
+        }
+    }
 }
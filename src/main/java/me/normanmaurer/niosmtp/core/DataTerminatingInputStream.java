@@ -18,139 +18,209 @@ package me.normanmaurer.niosmtp.core;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.PushbackInputStream;
 
 
 /**
  * {@link InputStream} which takes care of correctly terminating the DATA command. This is done by append a CRLF.CRLF to wrapped
  * {@link InputStream} if needed.
  * 
- * This {@link InputStream} also does the dot-stuffing as stated in the SMTP-spec
+ * This {@link InputStream} also does the dot-stuffing as stated in the SMTP-spec and optional converts bare LF to CRLF.
+ * 
+ * The wrapped {@link InputStream} is read in bulk and the transformation is done in one pass over an internal buffer, so it is
+ * best to read from this {@link InputStream} via {@link #read(byte[], int, int)}.
  * 
  * @author Norman Maurer
  *
  */
 public class DataTerminatingInputStream extends InputStream {
 
-    private int last;
-    private byte[] extraData;
-    private int pos = 0;
-    boolean startLine = true;
-    private boolean endOfStream = false;
-    private final PushbackInputStream in;
-    private boolean empty = true;
+    private final static int DEFAULT_BUFFER_SIZE = 8192;
     private final static byte CR = '\r';
     private final static byte LF = '\n';
     private final static byte DOT = '.';
     private final static byte[] DOT_CRLF = new byte[] {DOT, CR, LF};
     private final static byte[] CRLF_DOT_CRLF = new byte[] {CR, LF, DOT, CR, LF};
     private final static byte[] LF_DOT_CRLF = new byte[] {LF, DOT, CR, LF};
+    private final static byte[] LF_ONLY = new byte[] {LF};
+    
+    private final InputStream in;
+    private final boolean normalizeLineEndings;
+    private final byte[] buffer;
+    private int bufferPos;
+    private int bufferLimit;
+    
+    // bytes which needs to get written before the next byte of the buffer
+    private byte[] pending;
+    private int pendingPos;
     
+    private final byte[] single = new byte[1];
+    
+    // the last byte which was read from the wrapped InputStream or -1 if nothing was read yet
+    private int last = -1;
+    private boolean startLine = true;
+    private boolean endOfStream = false;
     
     public DataTerminatingInputStream(InputStream in) {
-        this.in = new PushbackInputStream(in, 2);
-        startLine = true;
-
+        this(in, false);
+    }
+    
+    /**
+     * Create a new {@link DataTerminatingInputStream}
+     * 
+     * @param in
+     * @param normalizeLineEndings if <code>true</code> every bare LF will be converted to CRLF
+     */
+    public DataTerminatingInputStream(InputStream in, boolean normalizeLineEndings) {
+        this.in = in;
+        this.normalizeLineEndings = normalizeLineEndings;
+        this.buffer = new byte[DEFAULT_BUFFER_SIZE];
     }
 
     @Override
     public int read() throws IOException {
-        int i = in.read();
-        if (empty && i != -1) {
-            empty = false;
+        int read = read(single, 0, 1);
+        if (read == -1) {
+            return -1;
+        }
+        return single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (b == null) {
+            throw new NullPointerException();
+        } else if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        } else if (len == 0) {
+            return 0;
         }
         
-        if (startLine && endOfStream == false) {
-            startLine = false;
-            if (i == DOT) {
-                in.unread(i);
-                return DOT;
+        int start = off;
+        int end = off + len;
+        while (off < end) {
+            if (pending != null) {
+                int length = Math.min(pending.length - pendingPos, end - off);
+                System.arraycopy(pending, pendingPos, b, off, length);
+                off += length;
+                pendingPos += length;
+                if (pendingPos == pending.length) {
+                    pending = null;
+                    pendingPos = 0;
+                }
+                continue;
             }
             
-        }
-       
-        if (last == CR && i == LF) {
-            startLine = true;
-        }
-        
-        if (endOfStream == false) {
-            if (i == -1) {
-                endOfStream = true;
-                calculateExtraData();
-                return readNext();
+            if (bufferPos == bufferLimit) {
+                // only block for more data if nothing was read yet
+                if (endOfStream || (off > start && in.available() <= 0)) {
+                    break;
+                }
+                int read = in.read(buffer, 0, buffer.length);
+                if (read == -1) {
+                    endOfStream = true;
+                    setPending(calculateExtraData());
+                } else {
+                    bufferPos = 0;
+                    bufferLimit = read;
+                }
+                continue;
+            }
+            
+            if (startLine) {
+                startLine = false;
+                if (buffer[bufferPos] == DOT) {
+                    // dot-stuffing, the dot itself will get copied as part of the next run
+                    b[off++] = DOT;
+                    continue;
+                }
+            }
+            
+            // copy the run of bytes up to the next CR or LF
+            int limit = Math.min(bufferLimit, bufferPos + end - off);
+            int i = bufferPos;
+            while (i < limit) {
+                byte c = buffer[i];
+                if (c == CR || c == LF) {
+                    break;
+                }
+                i++;
+            }
+            int length = i - bufferPos;
+            if (length > 0) {
+                System.arraycopy(buffer, bufferPos, b, off, length);
+                off += length;
+                bufferPos = i;
+                last = buffer[i - 1];
+                continue;
+            }
+            
+            byte c = buffer[bufferPos++];
+            if (c == CR) {
+                b[off++] = CR;
+            } else if (last == CR) {
+                b[off++] = LF;
+                startLine = true;
+            } else if (normalizeLineEndings) {
+                b[off++] = CR;
+                setPending(LF_ONLY);
+                startLine = true;
             } else {
-                last = i;
+                b[off++] = LF;
             }
-            return i;
-
-        } else {
-            return readNext();
+            last = c;
         }
-                
-       
-    }
-
-    private void calculateExtraData() {
-        if (empty || last == LF) {
-            extraData = DOT_CRLF;     
-        } else if (last == CR) {
-            extraData = LF_DOT_CRLF;
-        } else {
-            extraData = CRLF_DOT_CRLF;
+        
+        int read = off - start;
+        if (read == 0) {
+            return -1;
         }
-
+        return read;
     }
-
-    private int readNext() {
-        if (extraData == null || extraData.length == pos) {
-            return -1;
+    
+    private void setPending(byte[] pending) {
+        this.pending = pending;
+        this.pendingPos = 0;
+    }
+    
+    private byte[] calculateExtraData() {
+        if (last == -1 || last == LF) {
+            return DOT_CRLF;     
+        } else if (last == CR) {
+            return LF_DOT_CRLF;
         } else {
-            return extraData[pos++];
+            return CRLF_DOT_CRLF;
         }
     }
 
-
-
     @Override
     public int available() throws IOException {
-        if (endOfStream) {
-            return extraData.length - pos;
-        } else {
-            return in.available();
+        int available = bufferLimit - bufferPos;
+        if (pending != null) {
+            available += pending.length - pendingPos;
+        }
+        if (!endOfStream) {
+            available += in.available();
         }
+        return available;
     }
 
-
-
-
-
     @Override
     public void close() throws IOException {
         in.close();
     }
 
-
-
-
-
     @Override
     public  void mark(int readlimit) {
     }
 
-
-
-
-
     @Override
     public void reset() throws IOException {
         throw new IOException("Not supported");
     }
 
-
     @Override
     public boolean markSupported() {
         return false;
     }
     
-    
 }
@@ -0,0 +1,132 @@
+/**
+* Licensed to niosmtp developers ('niosmtp') under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* niosmtp licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package me.normanmaurer.niosmtp.core;
+
+
+/**
+ * Utilities which helps to dot-stuff and terminate message content which is hold in a <code>byte</code> array. 
+ * 
+ * A dot needs to get stuffed if it is the first byte of a line. A line starts at the beginning of the content and after every CRLF.
+ * 
+ * @author Norman Maurer
+ *
+ */
+public final class DataTerminatingUtils {
+
+    private final static byte CR = '\r';
+    private final static byte LF = '\n';
+    private final static byte DOT = '.';
+    private final static byte[] DOT_CRLF = new byte[] {DOT, CR, LF};
+    private final static byte[] CRLF_DOT_CRLF = new byte[] {CR, LF, DOT, CR, LF};
+    private final static byte[] LF_DOT_CRLF = new byte[] {LF, DOT, CR, LF};
+    private final static int[] EMPTY_POSITIONS = new int[0];
+    
+    private DataTerminatingUtils() {
+    }
+    
+    /**
+     * Return the positions of all dots within the given <code>byte</code> array which needs to get stuffed. 
+     * 
+     * @param data
+     * @return positions
+     */
+    public static int[] dotStuffingPositions(byte[] data) {
+        int[] positions = EMPTY_POSITIONS;
+        int count = 0;
+        int length = data.length;
+        if (length > 0 && data[0] == DOT) {
+            positions = new int[4];
+            positions[count++] = 0;
+        }
+        for (int i = 1; i < length - 1; i++) {
+            if (data[i] == LF && data[i + 1] == DOT && data[i - 1] == CR) {
+                if (count == positions.length) {
+                    int[] newPositions = new int[Math.max(4, count << 1)];
+                    System.arraycopy(positions, 0, newPositions, 0, count);
+                    positions = newPositions;
+                }
+                positions[count++] = ++i;
+            }
+        }
+        if (count == positions.length) {
+            return positions;
+        }
+        int[] result = new int[count];
+        System.arraycopy(positions, 0, result, 0, count);
+        return result;
+    }
+    
+    /**
+     * Return the bytes which needs to get appended to the given <code>byte</code> array to correctly terminate the DATA command. The returned
+     * array must not be modified.
+     * 
+     * @param data
+     * @return terminating
+     */
+    public static byte[] terminating(byte[] data) {
+        int length = data.length;
+        if (length < 1) {
+            return CRLF_DOT_CRLF;
+        } 
+        return terminating(length > 1 ? data[length - 2] : -1, data[length - 1]);
+    }
+    
+    /**
+     * Return the bytes which needs to get appended to content which ends with the given bytes to correctly terminate the DATA command. 
+     * Use <code>-1</code> for bytes which are not present because the content is too short. The returned array must not be modified.
+     * 
+     * @param prevLast
+     * @param last
+     * @return terminating
+     */
+    public static byte[] terminating(int prevLast, int last) {
+        if (last == CR) {
+            return LF_DOT_CRLF;
+        } else if (last == LF && prevLast == CR) {
+            return DOT_CRLF;
+        } else {
+            return CRLF_DOT_CRLF;
+        }
+    }
+    
+    /**
+     * Return a new <code>byte</code> array which holds the dot-stuffed and terminated content of the given <code>byte</code> array
+     * 
+     * @param data
+     * @return encoded
+     */
+    public static byte[] encode(byte[] data) {
+        int[] positions = dotStuffingPositions(data);
+        byte[] terminating = terminating(data);
+        byte[] encoded = new byte[data.length + positions.length + terminating.length];
+        int start = 0;
+        int index = 0;
+        for (int i = 0; i < positions.length; i++) {
+            int position = positions[i];
+            int length = position - start;
+            System.arraycopy(data, start, encoded, index, length);
+            index += length;
+            encoded[index++] = DOT;
+            start = position;
+        }
+        int length = data.length - start;
+        System.arraycopy(data, start, encoded, index, length);
+        index += length;
+        System.arraycopy(terminating, 0, encoded, index, terminating.length);
+        return encoded;
+    }
+}
@@ -0,0 +1,133 @@
+/**
+* Licensed to niosmtp developers ('niosmtp') under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* niosmtp licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package me.normanmaurer.niosmtp.core;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+
+/**
+ * Index of a file which holds the positions of all dots which needs to get stuffed and the bytes which are needed to terminate the 
+ * DATA command. This allows to send the file without the need to inspect its content again.
+ * 
+ * @author Norman Maurer
+ *
+ */
+public final class DotStuffingIndex {
+
+    private final static byte CR = '\r';
+    private final static byte LF = '\n';
+    private final static byte DOT = '.';
+    private final static int BUFFER_SIZE = 64 * 1024;
+    private final static long[] EMPTY_POSITIONS = new long[0];
+
+    private final File file;
+    private final long length;
+    private final long[] positions;
+    private final byte[] terminating;
+    
+    private DotStuffingIndex(File file, long length, long[] positions, byte[] terminating) {
+        this.file = file;
+        this.length = length;
+        this.positions = positions;
+        this.terminating = terminating;
+    }
+    
+    /**
+     * Return the indexed {@link File}
+     * 
+     * @return file
+     */
+    public File getFile() {
+        return file;
+    }
+    
+    /**
+     * Return the length of the {@link File} at the time it was indexed
+     * 
+     * @return length
+     */
+    public long getLength() {
+        return length;
+    }
+    
+    /**
+     * Return the positions of all dots which needs to get stuffed in ascending order. The returned array must not be modified.
+     * 
+     * @return positions
+     */
+    public long[] getDotStuffingPositions() {
+        return positions;
+    }
+    
+    /**
+     * Return the bytes which needs to get appended to terminate the DATA command. The returned array must not be modified.
+     * 
+     * @return terminating
+     */
+    public byte[] getTerminating() {
+        return terminating;
+    }
+    
+    /**
+     * Create a {@link DotStuffingIndex} for the given {@link File} by reading it once
+     * 
+     * @param file
+     * @return index
+     * @throws IOException
+     */
+    public static DotStuffingIndex create(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            long[] positions = EMPTY_POSITIONS;
+            int count = 0;
+            long offset = 0;
+            
+            // the last two bytes which were read or -1 if not present
+            int prevLast = -1;
+            int last = -1;
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                for (int i = 0; i < read; i++) {
+                    byte b = buffer[i];
+                    if (b == DOT && (last == -1 || (last == LF && prevLast == CR))) {
+                        if (count == positions.length) {
+                            long[] newPositions = new long[Math.max(4, count << 1)];
+                            System.arraycopy(positions, 0, newPositions, 0, count);
+                            positions = newPositions;
+                        }
+                        positions[count++] = offset + i;
+                    }
+                    prevLast = last;
+                    last = b;
+                }
+                offset += read;
+            }
+            if (count != positions.length) {
+                long[] result = new long[count];
+                System.arraycopy(positions, 0, result, 0, count);
+                positions = result;
+            }
+            return new DotStuffingIndex(file, offset, positions, DataTerminatingUtils.terminating(prevLast, last));
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/**
+* Licensed to niosmtp developers ('niosmtp') under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* niosmtp licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package me.normanmaurer.niosmtp.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import me.normanmaurer.niosmtp.SMTPResponse;
+import me.normanmaurer.niosmtp.transport.SMTPClientConstants;
+
+/**
+ * {@link SMTPResponse} implementation which holds the encoded text of all response lines in one <code>byte</code> array. The
+ * lines are only decoded to <code>String</code>'s once {@link #getLines()} is called.
+ * 
+ * @author Norman Maurer
+ *
+ */
+public class EncodedSMTPResponseImpl implements SMTPResponse, SMTPClientConstants {
+
+    private final static byte[] EMPTY_TEXT = new byte[0];
+    private final static int[] EMPTY_LINE_ENDS = new int[0];
+    
+    private final int code;
+    private final byte[] text;
+    private final int[] lineEnds;
+    private volatile List<String> lines;
+    
+    /**
+     * Create a new {@link EncodedSMTPResponseImpl} which has no response lines
+     * 
+     * @param code
+     */
+    public EncodedSMTPResponseImpl(int code) {
+        this(code, EMPTY_TEXT, EMPTY_LINE_ENDS);
+    }
+    
+    /**
+     * Create a new {@link EncodedSMTPResponseImpl}. 
+     * 
+     * The given <code>byte</code> array holds the text of all lines without the code, the separator and the line delimiters. 
+     * The end of each line is marked by the offset stored in the <code>int</code> array. Both arrays are not copied and so must not 
+     * be modified after passing them in.
+     * 
+     * @param code
+     * @param text
+     * @param lineEnds
+     */
+    public EncodedSMTPResponseImpl(int code, byte[] text, int[] lineEnds) {
+        this.code = code;
+        this.text = text;
+        this.lineEnds = lineEnds;
+    }
+    
+    @Override
+    public int getCode() {
+        return code;
+    }
+
+    @Override
+    public List<String> getLines() {
+        List<String> lines = this.lines;
+        if (lines == null) {
+            if (lineEnds.length == 0) {
+                lines = Collections.emptyList();
+            } else {
+                List<String> decoded = new ArrayList<String>(lineEnds.length);
+                int start = 0;
+                for (int i = 0; i < lineEnds.length; i++) {
+                    int end = lineEnds[i];
+                    decoded.add(new String(text, start, end - start, CHARSET));
+                    start = end;
+                }
+                lines = Collections.unmodifiableList(decoded);
+            }
+            this.lines = lines;
+        }
+        return lines;
+    }
+
+    /**
+     * Two {@link EncodedSMTPResponseImpl}'s are equal if they have the same code and the same encoded lines. They are compared without decoding 
+     * the lines.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        }
+        if (obj instanceof EncodedSMTPResponseImpl) {
+            EncodedSMTPResponseImpl response = (EncodedSMTPResponseImpl) obj;
+            return code == response.code && Arrays.equals(lineEnds, response.lineEnds) && Arrays.equals(text, response.text);
+        }
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        return (code * 31 + Arrays.hashCode(lineEnds)) * 31 + Arrays.hashCode(text);
+    }
+
+    @Override
+    public String toString() {
+        return StringUtils.toString(this);
+    }
+}
@@ -19,7 +19,8 @@ package me.normanmaurer.niosmtp.core;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
 
 import me.normanmaurer.niosmtp.SMTPClientFuture;
 import me.normanmaurer.niosmtp.transport.SMTPClientSession;
@@ -27,15 +28,32 @@ import me.normanmaurer.niosmtp.transport.SMTPClientSession;
 /**
  * Basic {@link SMTPClientFuture} implementation
  * 
+ * It is lock-free. Completing it is a single CAS, and only threads which block in {@link #get()} are parked until it is done.
+ * 
  * @author Norman Maurer
  *
  */
 public class SMTPClientFutureImpl<E> extends AbstractSMTPClientFuture<E>{
     
-    private volatile boolean isCancelled = false;
-    private final AtomicReference<E> result = new AtomicReference<E>();
+    /**
+     * Marker which is set as result once the {@link SMTPClientFuture} was cancelled
+     */
+    private static final Object CANCELLED = new Object();
+    
+    /**
+     * Marker which is set once the waiting threads were released
+     */
+    private static final Waiter RELEASED = new Waiter(null, null);
+    
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<SMTPClientFutureImpl, Object> RESULT_UPDATER = AtomicReferenceFieldUpdater.newUpdater(SMTPClientFutureImpl.class, Object.class, "result");
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<SMTPClientFutureImpl, Waiter> WAITERS_UPDATER = AtomicReferenceFieldUpdater.newUpdater(SMTPClientFutureImpl.class, Waiter.class, "waiters");
+
+    private volatile Object result;
+    private volatile Waiter waiters;
     private final boolean cancelable;
-    private int waiters;
         
     
     public SMTPClientFutureImpl(boolean cancelable) {
@@ -52,70 +70,141 @@ public class SMTPClientFutureImpl<E> extends AbstractSMTPClientFuture<E>{
      * @param result
      */
     public void setResult(E result) {
-        boolean fireListeners = false;
-        if (!isDone()) {
-            fireListeners = this.result.compareAndSet(null, result);
-            synchronized (this) {
-                if (waiters > 0) {
-                    notifyAll();
-                }
-            }
-                
+        if (result != null && RESULT_UPDATER.compareAndSet(this, null, result)) {
+            complete();
         }
-        if (fireListeners) {
-            notifyListeners();
-        }
-        
-    	
     }
 
     
     @Override
     public boolean cancel(boolean mayInterruptIfRunning) {
-        if (!cancelable || isDone()) {
+        if (!cancelable || !RESULT_UPDATER.compareAndSet(this, null, CANCELLED)) {
             return false;
         } else {
-            isCancelled = true;
             SMTPClientSession session = getSession();
             if (session != null) {
                 session.close();
             }
-            notifyListeners();
-           return true;
+            complete();
+            return true;
         }
     }
     
-    private synchronized void checkReady() throws InterruptedException {
-        
-        while (!isDone()) {
-            try {
-                waiters++;
-                wait();
-            } finally {
-                waiters--;
+    private void complete() {
+        Waiter waiter = WAITERS_UPDATER.getAndSet(this, RELEASED);
+        while (waiter != null && waiter != RELEASED) {
+            Thread thread = waiter.thread;
+            if (thread != null) {
+                LockSupport.unpark(thread);
             }
+            waiter = waiter.next;
         }
+        notifyListeners();
     }
-
-    private synchronized void checkReady(long timeout) throws InterruptedException {
+    
+    /**
+     * Park the current thread till the {@link SMTPClientFuture} is done or the timeout (in nanoseconds) exceeded. A timeout of <code>0</code>
+     * waits without a limit.
+     * 
+     * @param timeout
+     * @return done
+     * @throws InterruptedException
+     */
+    private boolean await(long timeout) throws InterruptedException {
+        if (isDone()) {
+            return true;
+        }
+        long deadline = System.nanoTime() + timeout;
+        Waiter waiter = null;
+        for (;;) {
+            Waiter head = waiters;
+            if (head == RELEASED) {
+                break;
+            }
+            waiter = new Waiter(Thread.currentThread(), head);
+            if (WAITERS_UPDATER.compareAndSet(this, head, waiter)) {
+                break;
+            }
+        }
         while (!isDone()) {
-            try {
-                waiters++;
-                wait(timeout);
-            } finally {
-                waiters--;
+            if (timeout > 0) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    removeWaiter(waiter);
+                    return false;
+                }
+                LockSupport.parkNanos(this, remaining);
+            } else {
+                LockSupport.park(this);
+            }
+            if (Thread.interrupted()) {
+                removeWaiter(waiter);
+                throw new InterruptedException();
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Unlink the {@link Waiter} of a thread which stopped waiting because of a timeout or an interrupt, so threads which call 
+     * {@link #get(long, TimeUnit)} again and again don't let the waiters grow till the {@link SMTPClientFuture} is done. 
+     * 
+     * The {@link Waiter} is marked by clearing its thread, then all marked {@link Waiter}'s are unlinked. If this races with another removal the 
+     * traversal is restarted.
+     * 
+     * @param waiter
+     */
+    private void removeWaiter(Waiter waiter) {
+        if (waiter == null) {
+            return;
+        }
+        waiter.thread = null;
+        retry:
+        for (;;) {
+            Waiter pred = null;
+            Waiter w = waiters;
+            while (w != null && w != RELEASED) {
+                Waiter next = w.next;
+                if (w.thread != null) {
+                    pred = w;
+                } else if (pred != null) {
+                    pred.next = next;
+                    if (pred.thread == null) {
+                        // pred was removed in the meantime
+                        continue retry;
+                    }
+                } else if (!WAITERS_UPDATER.compareAndSet(this, w, next)) {
+                    continue retry;
+                }
+                w = next;
             }
+            return;
         }
     }
     
+    /**
+     * Return the count of {@link Waiter}'s which are linked
+     * 
+     * @return count
+     */
+    int getWaiterCount() {
+        int count = 0;
+        Waiter w = waiters;
+        while (w != null && w != RELEASED) {
+            count++;
+            w = w.next;
+        }
+        return count;
+    }
+    
     @Override
     public boolean isCancelled() {
-        return isCancelled;
+        return result == CANCELLED;
     }
 
     @Override
     public  boolean isDone() {
-        return result.get() != null || isCancelled;
+        return result != null;
     }
 
 
@@ -125,7 +214,7 @@ public class SMTPClientFutureImpl<E> extends AbstractSMTPClientFuture<E>{
         if (Thread.interrupted()) {
             throw new InterruptedException();
         }
-        checkReady();
+        await(0);
         return getNoWait();
     }
 
@@ -136,15 +225,31 @@ public class SMTPClientFutureImpl<E> extends AbstractSMTPClientFuture<E>{
         if (Thread.interrupted()) {
             throw new InterruptedException();
         }
-        checkReady(unit.toMillis(timeout));
+        if (!await(Math.max(1, unit.toNanos(timeout)))) {
+            throw new TimeoutException();
+        }
         return getNoWait();
     }
 
+    @SuppressWarnings("unchecked")
     @Override
     public E getNoWait() {
-        return result.get();
+        Object result = this.result;
+        if (result == CANCELLED) {
+            return null;
+        }
+        return (E) result;
     }
 
 
+    private static final class Waiter {
+        private volatile Thread thread;
+        private volatile Waiter next;
+        
+        Waiter(Thread thread, Waiter next) {
+            this.thread = thread;
+            this.next = next;
+        }
+    }
 
 }
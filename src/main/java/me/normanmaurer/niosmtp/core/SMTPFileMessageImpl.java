@@ -0,0 +1,109 @@
+/**
+* Licensed to niosmtp developers ('niosmtp') under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* niosmtp licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package me.normanmaurer.niosmtp.core;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import me.normanmaurer.niosmtp.SMTPMessage;
+
+/**
+ * {@link SMTPMessage} implementation which is backed by {@link File}'s. 
+ * 
+ * The {@link File}'s are indexed once when the {@link SMTPFileMessageImpl} is created, which allows the Transport implementation to send
+ * the content without copy it into memory first. Because of this the {@link File}'s <strong>MUST NOT</strong> be modified after the 
+ * {@link SMTPFileMessageImpl} was created.
+ * 
+ * @author Norman Maurer
+ *
+ */
+public class SMTPFileMessageImpl implements SMTPMessage{
+
+    private final DotStuffingIndex _7BitIndex;
+    private final DotStuffingIndex _8BitIndex;
+    
+    /**
+     * Create a {@link SMTPFileMessageImpl} which use the same {@link File} for {@link #get7bit()} and {@link #get8Bit()}
+     * 
+     * @param file
+     * @throws IOException
+     */
+    public SMTPFileMessageImpl(File file) throws IOException {
+        this._7BitIndex = DotStuffingIndex.create(file);
+        this._8BitIndex = _7BitIndex;
+    }
+    
+    /**
+     * Create a {@link SMTPFileMessageImpl} which uses the given {@link File}'s
+     * 
+     * @param _7BitFile
+     * @param _8BitFile
+     * @throws IOException
+     */
+    public SMTPFileMessageImpl(File _7BitFile, File _8BitFile) throws IOException {
+        this._7BitIndex = DotStuffingIndex.create(_7BitFile);
+        if (_7BitFile.equals(_8BitFile)) {
+            this._8BitIndex = _7BitIndex;
+        } else {
+            this._8BitIndex = DotStuffingIndex.create(_8BitFile);
+        }
+    }
+    
+    /**
+     * Return a new {@link InputStream} for the 7bit {@link File} on every call
+     */
+    @Override
+    public InputStream get7bit() throws IOException {
+        return new FileInputStream(_7BitIndex.getFile());
+    }
+
+    /**
+     * Return a new {@link InputStream} for the 8bit {@link File} on every call
+     */
+    @Override
+    public InputStream get8Bit() throws IOException {
+        return new FileInputStream(_8BitIndex.getFile());
+    }
+
+    /**
+     * Return the length of the bigger {@link File}
+     */
+    @Override
+    public long getSize() {
+        return Math.max(_7BitIndex.getLength(), _8BitIndex.getLength());
+    }
+    
+    /**
+     * Return the {@link DotStuffingIndex} of the 7bit {@link File}
+     * 
+     * @return 7bitIndex
+     */
+    public DotStuffingIndex get7BitIndex() {
+        return _7BitIndex;
+    }
+    
+    /**
+     * Return the {@link DotStuffingIndex} of the 8bit {@link File}
+     * 
+     * @return 8bitIndex
+     */
+    public DotStuffingIndex get8BitIndex() {
+        return _8BitIndex;
+    }
+}
@@ -34,6 +34,7 @@ public class SMTPMessageImpl implements SMTPMessage{
     
     private final InputStream _7BitIn;
     private final InputStream _8BitIn;
+    private final long size;
 
     /**
      * Construct a {@link SMTPMessageImpl} which use the  given {@link InputStream} for {@link #get7bit()} and {@link #get8Bit()}.
@@ -44,8 +45,21 @@ public class SMTPMessageImpl implements SMTPMessage{
      * @param message
      */
     public SMTPMessageImpl(final InputStream message) {
-        this._7BitIn = message;
-        this._8BitIn = message;
+        this(message, -1);
+    }
+    
+    /**
+     * Construct a {@link SMTPMessageImpl} which use the  given {@link InputStream} for {@link #get7bit()} and {@link #get8Bit()} and has
+     * the given size.
+     * </br>
+     * </br>
+     * The {@link InputStream} <strong>MUST</strong> contain a message in 7bit 
+     * 
+     * @param message
+     * @param size the size of the message in bytes or <code>-1</code> if it is not known
+     */
+    public SMTPMessageImpl(final InputStream message, final long size) {
+        this(message, message, size);
     }
 
     /**
@@ -55,8 +69,20 @@ public class SMTPMessageImpl implements SMTPMessage{
      * @param _8BitIn
      */
     public SMTPMessageImpl(final InputStream _7BitIn, final InputStream _8BitIn) {
+        this(_7BitIn, _8BitIn, -1);
+    }
+    
+    /**
+     * Construct a {@link SMTPMessageImpl} which use the given {@link InputStream}'s and has the given size
+     * 
+     * @param _7BitIn
+     * @param _8BitIn
+     * @param size the size of the bigger message in bytes or <code>-1</code> if it is not known
+     */
+    public SMTPMessageImpl(final InputStream _7BitIn, final InputStream _8BitIn, final long size) {
         this._7BitIn = _7BitIn;
         this._8BitIn = _8BitIn;
+        this.size = size;
     }
     
     /**
@@ -76,4 +102,9 @@ public class SMTPMessageImpl implements SMTPMessage{
         return _8BitIn;
     }
 
+    @Override
+    public long getSize() {
+        return size;
+    }
+
 }
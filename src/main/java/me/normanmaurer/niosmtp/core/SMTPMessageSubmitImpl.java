@@ -27,10 +27,16 @@ public class SMTPMessageSubmitImpl implements SMTPMessageSubmit{
 
     private final SMTPMessage message;
     private final int recipients;
+    private final boolean chunking;
 
     public SMTPMessageSubmitImpl(SMTPMessage message, int recipients ) {
+        this(message, recipients, false);
+    }
+    
+    public SMTPMessageSubmitImpl(SMTPMessage message, int recipients, boolean chunking) {
         this.message = message;
         this.recipients = recipients;
+        this.chunking = chunking;
     }
     
     @Override
@@ -43,6 +49,11 @@ public class SMTPMessageSubmitImpl implements SMTPMessageSubmit{
         return message;
     } 
     
+    @Override
+    public boolean isChunking() {
+        return chunking;
+    }
+    
 
 
 }
@@ -35,15 +35,53 @@ public class SMTPPipeliningRequestImpl implements SMTPPipeliningRequest{
     private final Collection<SMTPRequest> requests;
     
     public SMTPPipeliningRequestImpl(String sender, Iterator<String> recipients) {
+        this(sender, recipients, true);
+    }
+    
+    /**
+     * Create a new {@link SMTPPipeliningRequestImpl} which holds the <code>MAIL</code> and <code>RCPT</code> {@link SMTPRequest}'s and 
+     * optional the <code>DATA</code> {@link SMTPRequest}
+     * 
+     * @param sender
+     * @param recipients
+     * @param data <code>true</code> if the <code>DATA</code> {@link SMTPRequest} should be included
+     */
+    public SMTPPipeliningRequestImpl(String sender, Iterator<String> recipients, boolean data) {
+        this(SMTPRequestImpl.mail(sender), recipients, data);
+    }
+    
+    /**
+     * Create a new {@link SMTPPipeliningRequestImpl} which holds the given <code>MAIL</code> {@link SMTPRequest}, the <code>RCPT</code> 
+     * {@link SMTPRequest}'s and optional the <code>DATA</code> {@link SMTPRequest}
+     * 
+     * @param mail
+     * @param recipients
+     * @param data <code>true</code> if the <code>DATA</code> {@link SMTPRequest} should be included
+     */
+    public SMTPPipeliningRequestImpl(SMTPRequest mail, Iterator<String> recipients, boolean data) {
         List<SMTPRequest> reqs = new ArrayList<SMTPRequest>();
-        reqs.add(SMTPRequestImpl.mail(sender));
+        if (mail != null) {
+            reqs.add(mail);
+        }
         while(recipients.hasNext()) {
             reqs.add(SMTPRequestImpl.rcpt(recipients.next()));
         }
-        reqs.add(SMTPRequestImpl.data());
+        if (data) {
+            reqs.add(SMTPRequestImpl.data());
+        }
         requests = Collections.unmodifiableCollection(reqs);
     }
     
+    /**
+     * Create a new {@link SMTPPipeliningRequestImpl} which only holds the <code>RCPT</code> {@link SMTPRequest}'s for the given recipients. This is 
+     * used if the recipients of a transaction are pipelined in more then one window.
+     * 
+     * @param recipients
+     */
+    public SMTPPipeliningRequestImpl(Iterator<String> recipients) {
+        this((SMTPRequest) null, recipients, false);
+    }
+    
     @Override
     public Collection<SMTPRequest> getRequests() {
         return requests;
@@ -0,0 +1,96 @@
+/**
+* Licensed to niosmtp developers ('niosmtp') under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* niosmtp licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package me.normanmaurer.niosmtp.core;
+
+import java.nio.ByteBuffer;
+
+import me.normanmaurer.niosmtp.SMTPByteArrayMessage;
+
+/**
+ * {@link SMTPByteArrayMessage} implementation which computes the dot-stuffed and terminated wire format of the message only once when it 
+ * is created. 
+ * 
+ * This is useful if the same message is delivered many times, as every delivery can just write the shared wire format without any copy. 
+ * The wire format is exposed as read-only {@link ByteBuffer}'s via {@link #get7BitWireFormat()} and {@link #get8BitWireFormat()}.
+ * 
+ * @author Norman Maurer
+ *
+ */
+public class SMTPPreparedMessageImpl extends SMTPByteArrayMessage {
+
+    private final byte[] _7BitMessage;
+    private final byte[] _8BitMessage;
+    private final ByteBuffer _7BitWireFormat;
+    private final ByteBuffer _8BitWireFormat;
+    
+    /**
+     * Create a {@link SMTPPreparedMessageImpl} instance which use the same <code>byte</code> array for {@link #get7BitAsByteArray()} and {@link #get8BitAsByteArray()}
+     * 
+     * @param message
+     */
+    public SMTPPreparedMessageImpl(final byte[] message) {
+        this(message, message);
+    }
+    
+    /**
+     * Create a {@link SMTPPreparedMessageImpl} instance which uses the given <code>byte</code> arrays for {@link #get7BitAsByteArray()} and {@link #get8BitAsByteArray()}
+     * 
+     * @param _7BitMessage
+     * @param _8BitMessage
+     */
+    public SMTPPreparedMessageImpl(final byte[] _7BitMessage, final byte[] _8BitMessage) {
+        this._7BitMessage = _7BitMessage;
+        this._8BitMessage = _8BitMessage;
+        
+        this._7BitWireFormat = ByteBuffer.wrap(DataTerminatingUtils.encode(_7BitMessage)).asReadOnlyBuffer();
+        if (_7BitMessage == _8BitMessage) {
+            this._8BitWireFormat = _7BitWireFormat;
+        } else {
+            this._8BitWireFormat = ByteBuffer.wrap(DataTerminatingUtils.encode(_8BitMessage)).asReadOnlyBuffer();
+        }
+    }
+    
+    @Override
+    public byte[] get7BitAsByteArray() {
+        return _7BitMessage;
+    }
+
+    @Override
+    public byte[] get8BitAsByteArray() {
+        return _8BitMessage;
+    }
+    
+    /**
+     * Return a read-only {@link ByteBuffer} which holds the dot-stuffed and terminated 7bit message. Every call returns a new 
+     * view of the shared content, so the position and limit of the returned {@link ByteBuffer} can be modified
+     * 
+     * @return 7bitWireFormat
+     */
+    public ByteBuffer get7BitWireFormat() {
+        return _7BitWireFormat.duplicate();
+    }
+    
+    /**
+     * Return a read-only {@link ByteBuffer} which holds the dot-stuffed and terminated 8bit message. Every call returns a new 
+     * view of the shared content, so the position and limit of the returned {@link ByteBuffer} can be modified
+     * 
+     * @return 8bitWireFormat
+     */
+    public ByteBuffer get8BitWireFormat() {
+        return _8BitWireFormat.duplicate();
+    }
+}
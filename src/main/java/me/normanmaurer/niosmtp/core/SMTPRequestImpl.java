@@ -17,32 +17,70 @@
 package me.normanmaurer.niosmtp.core;
 
 import me.normanmaurer.niosmtp.SMTPRequest;
+import me.normanmaurer.niosmtp.transport.SMTPClientConstants;
 
-public class SMTPRequestImpl implements SMTPRequest{
+/**
+ * {@link SMTPRequest} implementation.
+ * 
+ * The constant requests like <code>QUIT</code> or <code>DATA</code> hold their pre-encoded bytes, so they don't need to get encoded on 
+ * every write. <code>MAIL</code> and <code>RCPT</code> requests only hold the address and build the argument lazy if it is requested via 
+ * {@link #getArgument()}, which allows to encode them without create any intermediate <code>String</code>. 
+ * 
+ * @author Norman Maurer
+ *
+ */
+public class SMTPRequestImpl implements SMTPRequest, SMTPClientConstants{
+
+    private final static byte[] CRLF = new byte[] {'\r', '\n'};
 
-    private final static SMTPRequest QUIT_REQUEST = new SMTPRequestImpl("QUIT", null);
-    private final static SMTPRequest STARTTLS_REQUEST = new SMTPRequestImpl("STARTTLS", null);
-    private final static SMTPRequest DATA_REQUEST = new SMTPRequestImpl("DATA", null);
-    private final static SMTPRequest AUTH_LOGIN_REQUEST = new SMTPRequestImpl("AUTH", "LOGIN");
-    private final static SMTPRequest AUTH_PLAIN_REQUEST = new SMTPRequestImpl("AUTH", "PLAIN");
-    private final static SMTPRequest NOOP_REQUEST = new SMTPRequestImpl("NOOP", null);
-    private final static SMTPRequest RSET_REQUEST = new SMTPRequestImpl("RSET", null);
+    private final static SMTPRequest QUIT_REQUEST = constant("QUIT", null);
+    private final static SMTPRequest STARTTLS_REQUEST = constant("STARTTLS", null);
+    private final static SMTPRequest DATA_REQUEST = constant("DATA", null);
+    private final static SMTPRequest AUTH_LOGIN_REQUEST = constant("AUTH", "LOGIN");
+    private final static SMTPRequest AUTH_PLAIN_REQUEST = constant("AUTH", "PLAIN");
+    private final static SMTPRequest NOOP_REQUEST = constant("NOOP", null);
+    private final static SMTPRequest RSET_REQUEST = constant("RSET", null);
 
     private final String command;
-    private final String argument;
     private final char separator;
+    private final String address;
+    private final String parameters;
+    private final byte[] encoded;
+    private String argument;
 
     
     public SMTPRequestImpl(String command, String argument, char separator) {
-        this.command = command;
-        this.argument = argument;
-        this.separator = separator;
+        this(command, argument, separator, null, null, false);
     }
 
     public SMTPRequestImpl(String command, String argument) {
         this(command, argument, ' ');
     }
     
+    private SMTPRequestImpl(String command, String argument, char separator, String address, String parameters, boolean preEncode) {
+        this.command = command;
+        this.argument = argument;
+        this.separator = separator;
+        this.address = address;
+        this.parameters = parameters;
+        if (preEncode) {
+            byte[] request = StringUtils.toString(this).getBytes(CHARSET);
+            encoded = new byte[request.length + CRLF.length];
+            System.arraycopy(request, 0, encoded, 0, request.length);
+            System.arraycopy(CRLF, 0, encoded, request.length, CRLF.length);
+        } else {
+            encoded = null;
+        }
+    }
+    
+    private static SMTPRequest constant(String command, String argument) {
+        return new SMTPRequestImpl(command, argument, ' ', null, null, true);
+    }
+    
+    private static SMTPRequest address(String command, String address, String parameters) {
+        return new SMTPRequestImpl(command, null, ':', address, parameters, false);
+    }
+    
     @Override
     public String getCommand() {
         return command;
@@ -50,9 +88,47 @@ public class SMTPRequestImpl implements SMTPRequest{
 
     @Override
     public String getArgument() {
+        if (argument == null && address != null) {
+            // no need to synchronize as we would just build the same argument again
+            if (parameters == null) {
+                argument = "<" + address + ">";
+            } else {
+                argument = "<" + address + "> " + parameters;
+            }
+        }
         return argument;
     }
     
+    /**
+     * Return the address of a <code>MAIL</code> or <code>RCPT</code> request which will be enclosed by <code>&lt;</code> and <code>&gt;</code> 
+     * in the argument. For all other requests this will return <code>null</code>
+     * 
+     * @return address
+     */
+    public String getAddress() {
+        return address;
+    }
+    
+    /**
+     * Return the parameters of a <code>MAIL</code> or <code>RCPT</code> request which follow the address in the argument, or <code>null</code>
+     * if there are none
+     * 
+     * @return parameters
+     */
+    public String getParameters() {
+        return parameters;
+    }
+    
+    /**
+     * Return the pre-encoded bytes of the request (including the terminating <code>CRLF</code>) or <code>null</code> if the request
+     * needs to get encoded on every write. The returned array must not be modified.
+     * 
+     * @return encoded
+     */
+    public byte[] getEncoded() {
+        return encoded;
+    }
+    
     @Override
     public char getSeparator() {
         return separator;
@@ -101,7 +177,7 @@ public class SMTPRequestImpl implements SMTPRequest{
      * @return rcpt
      */
     public static SMTPRequest rcpt(String recipient) {
-        return new SMTPRequestImpl(RCPT_COMMAND, "<" + recipient + ">", ':');
+        return address(RCPT_COMMAND, recipient, null);
     }
     
     
@@ -112,10 +188,21 @@ public class SMTPRequestImpl implements SMTPRequest{
      * @return mail
      */
     public static SMTPRequest mail(String sender) {
+        return mail(sender, null);
+    }
+    
+    /**
+     * Create a <code>MAIL</code> {@link SMTPRequest} with the given parameters, like <code>BODY=8BITMIME</code>
+     * 
+     * @param sender
+     * @param parameters the parameters separated by a space or <code>null</code> if there are none
+     * @return mail
+     */
+    public static SMTPRequest mail(String sender, String parameters) {
         if (sender == null) {
             sender = "";
         }
-        return new SMTPRequestImpl(MAIL_COMMAND,  "<" + sender + ">", ':');
+        return address(MAIL_COMMAND, sender, parameters);
     }
     
     /**
@@ -145,6 +232,28 @@ public class SMTPRequestImpl implements SMTPRequest{
         return AUTH_PLAIN_REQUEST;
     }
     
+    /**
+     * Create a <code>AUTH PLAIN</code> {@link SMTPRequest} which holds the given base64 encoded credentials as initial-response, as specified 
+     * in RFC 4954. This allows to authenticate without waiting for the <code>334</code> challenge
+     * 
+     * @param initialResponse
+     * @return authPlain
+     */
+    public static SMTPRequest authPlain(String initialResponse) {
+        return auth(SMTPRequest.AUTH_PLAIN_ARGUMENT, initialResponse);
+    }
+    
+    /**
+     * Create a <code>AUTH</code> {@link SMTPRequest} for the given SASL mechanism which holds the given base64 encoded initial-response
+     * 
+     * @param mechanism
+     * @param initialResponse
+     * @return auth
+     */
+    public static SMTPRequest auth(String mechanism, String initialResponse) {
+        return new SMTPRequestImpl(SMTPRequest.AUTH_COMMAND, mechanism + " " + initialResponse);
+    }
+    
     
     /**
      * Create a <code>AUTH LOGIN</code> {@link SMTPRequest}
@@ -163,6 +272,21 @@ public class SMTPRequestImpl implements SMTPRequest{
     public static SMTPRequest noop() {
         return NOOP_REQUEST;
     }
+    /**
+     * Create a <code>BDAT</code> {@link SMTPRequest} for a chunk of the given size
+     * 
+     * @param size
+     * @param last <code>true</code> if this is the last chunk of the message
+     * @return bdat
+     */
+    public static SMTPRequest bdat(long size, boolean last) {
+        String argument = Long.toString(size);
+        if (last) {
+            argument = argument + " " + BDAT_LAST_ARGUMENT;
+        }
+        return new SMTPRequestImpl(BDAT_COMMAND, argument);
+    }
+    
     /**
      * Create a <code>RSET</code> {@link SMTPRequest}
      * 
@@ -26,7 +26,17 @@ public interface Authentication {
 
     public static enum AuthMode {
         Plain,
-        Login
+        Login,
+        
+        /**
+         * Use <code>XOAUTH2</code> with a token of the {@link OAuthAuthentication#getTokenProvider()}
+         */
+        XOAuth2,
+        
+        /**
+         * Use <code>OAUTHBEARER</code> as specified in RFC 7628 with a token of the {@link OAuthAuthentication#getTokenProvider()}
+         */
+        OAuthBearer
     }
     
     
@@ -0,0 +1,53 @@
+/**
+* Licensed to niosmtp developers ('niosmtp') under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* niosmtp licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package me.normanmaurer.niosmtp.delivery;
+
+import java.util.Iterator;
+
+import me.normanmaurer.niosmtp.transport.FutureResult;
+
+/**
+ * Listener which is notified about the results of a delivery while it is still in progress. This allows to process them as they arrive, 
+ * instead of waiting till all {@link SMTPDeliveryEnvelope}'s were delivered.
+ * 
+ * The methods are called from the IO-Thread, so they must not block.
+ * 
+ * @author Norman Maurer
+ *
+ */
+public interface DeliveryResultListener {
+
+    /**
+     * Called once the SMTP Server responded with the final {@link DeliveryRecipientStatus} of a recipient. This is done once the transaction 
+     * which contains the recipient is complete. 
+     * 
+     * Recipients which are failed without a response, for example because the connection was lost, are only reported via 
+     * {@link #onDeliveryResult(SMTPDeliveryEnvelope, FutureResult)}
+     * 
+     * @param envelope
+     * @param status
+     */
+    void onRecipientStatus(SMTPDeliveryEnvelope envelope, DeliveryRecipientStatus status);
+    
+    /**
+     * Called once the delivery of the {@link SMTPDeliveryEnvelope} is complete
+     * 
+     * @param envelope
+     * @param result
+     */
+    void onDeliveryResult(SMTPDeliveryEnvelope envelope, FutureResult<Iterator<DeliveryRecipientStatus>> result);
+}
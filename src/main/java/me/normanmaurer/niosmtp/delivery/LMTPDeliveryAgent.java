@@ -18,6 +18,8 @@ package me.normanmaurer.niosmtp.delivery;
 
 import me.normanmaurer.niosmtp.delivery.chain.LMTPClientFutureListenerFactoryImpl;
 import me.normanmaurer.niosmtp.delivery.chain.SMTPClientFutureListenerFactory;
+import me.normanmaurer.niosmtp.transport.SMTPCapabilitiesCache;
+import me.normanmaurer.niosmtp.transport.SMTPClientSessionPool;
 import me.normanmaurer.niosmtp.transport.SMTPClientTransport;
 
 
@@ -35,6 +37,14 @@ public class LMTPDeliveryAgent extends SMTPDeliveryAgent{
     public LMTPDeliveryAgent(SMTPClientTransport transport) {
         super(transport);
     }
+    
+    public LMTPDeliveryAgent(SMTPClientTransport transport, SMTPClientSessionPool pool) {
+        super(transport, pool);
+    }
+    
+    public LMTPDeliveryAgent(SMTPClientTransport transport, SMTPClientSessionPool pool, SMTPCapabilitiesCache capabilitiesCache) {
+        super(transport, pool, capabilitiesCache);
+    }
 
     @Override
     protected SMTPClientFutureListenerFactory createFactory() {
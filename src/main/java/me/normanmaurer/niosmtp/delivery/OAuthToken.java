@@ -0,0 +1,40 @@
+/**
+* Licensed to niosmtp developers ('niosmtp') under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* niosmtp licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package me.normanmaurer.niosmtp.delivery;
+
+/**
+ * An OAuth 2.0 access token which is used for <code>XOAUTH2</code> or <code>OAUTHBEARER</code> authentication
+ * 
+ * @author Norman Maurer
+ *
+ */
+public interface OAuthToken {
+
+    /**
+     * Return the access token
+     * 
+     * @return accessToken
+     */
+    String getAccessToken();
+    
+    /**
+     * Return the time in milliseconds (like {@link System#currentTimeMillis()}) at which the access token expires
+     * 
+     * @return expirationTime
+     */
+    long getExpirationTime();
+}
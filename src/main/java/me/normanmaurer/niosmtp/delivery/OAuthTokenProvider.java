@@ -0,0 +1,48 @@
+/**
+* Licensed to niosmtp developers ('niosmtp') under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* niosmtp licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package me.normanmaurer.niosmtp.delivery;
+
+import me.normanmaurer.niosmtp.SMTPClientFuture;
+import me.normanmaurer.niosmtp.transport.FutureResult;
+
+/**
+ * Provides the {@link OAuthToken}'s for <code>XOAUTH2</code> and <code>OAUTHBEARER</code> authentication. 
+ * 
+ * Implementations must not block the calling {@link Thread} while the {@link OAuthToken} is obtained, as it may be an I/O {@link Thread}. The
+ * returned {@link SMTPClientFuture} is notified once it is available instead.
+ * 
+ * @author Norman Maurer
+ *
+ */
+public interface OAuthTokenProvider {
+
+    /**
+     * Return a {@link SMTPClientFuture} which is notified once the {@link OAuthToken} for the given account is available
+     * 
+     * @param username
+     * @return future
+     */
+    SMTPClientFuture<FutureResult<OAuthToken>> getToken(String username);
+    
+    /**
+     * Invalidate the given {@link OAuthToken} of the account, as it was rejected by the SMTP Server
+     * 
+     * @param username
+     * @param token
+     */
+    void invalidate(String username, OAuthToken token);
+}
@@ -20,10 +20,18 @@ import java.net.InetSocketAddress;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 
 import me.normanmaurer.niosmtp.SMTPClientFuture;
+import me.normanmaurer.niosmtp.SMTPClientFutureListener;
 import me.normanmaurer.niosmtp.SMTPException;
+import me.normanmaurer.niosmtp.SMTPMessage;
 import me.normanmaurer.niosmtp.SMTPResponse;
 import me.normanmaurer.niosmtp.core.ArrayIterator;
 import me.normanmaurer.niosmtp.core.ReadySMTPClientFuture;
@@ -31,11 +39,18 @@ import me.normanmaurer.niosmtp.core.SMTPClientFutureImpl;
 import me.normanmaurer.niosmtp.delivery.chain.ChainedSMTPClientFutureListener;
 import me.normanmaurer.niosmtp.delivery.chain.SMTPClientFutureListenerFactory;
 import me.normanmaurer.niosmtp.delivery.chain.SMTPClientFutureListenerFactoryImpl;
+import me.normanmaurer.niosmtp.delivery.chain.SMTPDeliveryResumer;
+import me.normanmaurer.niosmtp.delivery.impl.DeliveryRecipientStatusImpl;
+import me.normanmaurer.niosmtp.delivery.impl.DeliveryResultImpl;
 import me.normanmaurer.niosmtp.transport.FutureResult;
+import me.normanmaurer.niosmtp.transport.SMTPCapabilities;
+import me.normanmaurer.niosmtp.transport.SMTPCapabilitiesCache;
 import me.normanmaurer.niosmtp.transport.SMTPClientConstants;
 import me.normanmaurer.niosmtp.transport.SMTPClientSession;
+import me.normanmaurer.niosmtp.transport.SMTPClientSessionPool;
 import me.normanmaurer.niosmtp.transport.SMTPClientTransport;
 import me.normanmaurer.niosmtp.transport.impl.FutureResultImpl;
+import me.normanmaurer.niosmtp.transport.impl.SMTPCapabilitiesCacheImpl;
 
 
 
@@ -49,13 +64,50 @@ import me.normanmaurer.niosmtp.transport.impl.FutureResultImpl;
 public class SMTPDeliveryAgent implements SMTPClientConstants, SMTPDeliverySessionConstants {
 
     private final SMTPClientTransport transport;
+    private final SMTPClientSessionPool pool;
+    private final SMTPCapabilitiesCache capabilitiesCache;
     private final static SMTPClientFutureListenerFactory FACTORY = new SMTPClientFutureListenerFactoryImpl();
+    private final static Random RANDOM = new Random();
     
     public SMTPDeliveryAgent(final SMTPClientTransport transport) {
-        this.transport = transport;
+        this(transport, null);
     }
 
+    /**
+     * Create a new {@link SMTPDeliveryAgent} which will reuse the {@link SMTPClientSession}'s of the given {@link SMTPClientSessionPool}. The {@link SMTPClientSession}'s
+     * are reset via <code>RSET</code> after the delivery and released to the {@link SMTPClientSessionPool} instead of closing them via <code>QUIT</code>.
+     * 
+     * @param transport
+     * @param pool the {@link SMTPClientSessionPool} to use or <code>null</code> if no pooling should be used
+     */
+    public SMTPDeliveryAgent(final SMTPClientTransport transport, final SMTPClientSessionPool pool) {
+        this(transport, pool, new SMTPCapabilitiesCacheImpl());
+    }
     
+    /**
+     * Create a new {@link SMTPDeliveryAgent} which will store the {@link SMTPCapabilities} of every destination in the given {@link SMTPCapabilitiesCache}. 
+     * This allows to share the {@link SMTPCapabilitiesCache} between different {@link SMTPDeliveryAgent}'s.
+     * 
+     * @param transport
+     * @param pool the {@link SMTPClientSessionPool} to use or <code>null</code> if no pooling should be used
+     * @param capabilitiesCache
+     */
+    public SMTPDeliveryAgent(final SMTPClientTransport transport, final SMTPClientSessionPool pool, final SMTPCapabilitiesCache capabilitiesCache) {
+        this.transport = transport;
+        this.pool = pool;
+        this.capabilitiesCache = capabilitiesCache;
+    }
+    
+    /**
+     * Return the {@link SMTPCapabilities} which were advertised by the given destination the last time a {@link SMTPClientSession} was 
+     * established to it, or <code>null</code> if they are not known (yet)
+     * 
+     * @param host
+     * @return capabilities
+     */
+    public SMTPCapabilities getCapabilities(InetSocketAddress host) {
+        return capabilitiesCache.get(host);
+    }
     
 
 
@@ -69,59 +121,125 @@ public class SMTPDeliveryAgent implements SMTPClientConstants, SMTPDeliverySessi
      * @param transactions
      * @return future
      */
-    public SMTPClientFuture<Collection<FutureResult<Iterator<DeliveryRecipientStatus>>>> deliver(InetSocketAddress host, final SMTPDeliveryAgentConfig config, final SMTPDeliveryEnvelope... transactions) {
+    public SMTPClientFuture<Collection<FutureResult<Iterator<DeliveryRecipientStatus>>>> deliver(final InetSocketAddress host, final SMTPDeliveryAgentConfig config, final SMTPDeliveryEnvelope... transactions) {
         if (transactions == null || transactions.length == 0) {
             throw new IllegalArgumentException("SMTPTransaction parameter must be not null and the length must be > 0");
         }
 
         final SMTPClientFutureImpl<Collection<FutureResult<Iterator<DeliveryRecipientStatus>>>> future = new SMTPClientFutureImpl<Collection<FutureResult<Iterator<DeliveryRecipientStatus>>>>();
-        final SMTPClientFutureListenerFactory factory = createFactory();
         
-        transport.connect(host, config).addListener(new ChainedSMTPClientFutureListener<SMTPResponse>() {
-          
-
-            @Override
-            public void onException(SMTPClientSession session, SMTPException t) {
-                initSession(session);
-                super.onException(session, t);
-            
-            }
-           
-            /**
-             * Init the SMTPClienSesion by adding all needed data to the attributes
-             * 
-             * @param session
-             */
-            private void initSession(SMTPClientSession session) {
-                
-                
-                Iterator<SMTPDeliveryEnvelope> transactionIt = new ArrayIterator<SMTPDeliveryEnvelope>(transactions);
-                session.setAttribute(SMTP_TRANSACTIONS_KEY, transactionIt);
-                SMTPDeliveryEnvelope transaction = transactionIt.next();
-                session.setAttribute(CURRENT_SMTP_TRANSACTION_KEY, transaction);
-                session.setAttribute(RECIPIENTS_KEY, transaction.getRecipients().iterator());
-
-                session.setAttribute(FUTURE_KEY, future);
-                session.setAttribute(DELIVERY_STATUS_KEY, new ArrayList<DeliveryRecipientStatus>());
-                session.setAttribute(DELIVERY_RESULT_LIST_KEY, new ArrayList<FutureResult<Iterator<DeliveryRecipientStatus>>>());
-                session.setAttribute(SMTP_CLIENT_FUTURE_LISTENER_FACTORY, createFactory());
-                session.setAttribute(SMTP_TRANSACTION_ACTIVE_KEY, false);
+        if (isMessageSizeExceeded(host, transactions)) {
+            // the destination is known to reject all the messages, so there is no need to even connect
+            List<FutureResult<Iterator<DeliveryRecipientStatus>>> resultList = new ArrayList<FutureResult<Iterator<DeliveryRecipientStatus>>>();
+            for (int i = 0; i < transactions.length; i++) {
+                List<DeliveryRecipientStatus> statusList = new ArrayList<DeliveryRecipientStatus>();
+                for (String recipient: transactions[i].getRecipients()) {
+                    statusList.add(new DeliveryRecipientStatusImpl(recipient, ChainedSMTPClientFutureListener.MESSAGE_SIZE_EXCEEDED_RESPONSE));
+                }
+                ChainedSMTPClientFutureListener.addResult(config, resultList, transactions[i], new DeliveryResultImpl(statusList));
             }
-
-            @Override
-            protected void onResult(SMTPClientSession session, SMTPResponse result) throws SMTPException {
-                initSession(session);
-                FutureResult<SMTPResponse> fResult = new FutureResultImpl<SMTPResponse>(result);
-                ReadySMTPClientFuture<FutureResult<SMTPResponse>> future = new ReadySMTPClientFuture<FutureResult<SMTPResponse>>(session, fResult);
-                future.addListener(factory.getListener(session));                
-            }
-        });
-        
+            future.setResult(resultList);
+        } else {
+            List<FutureResult<Iterator<DeliveryRecipientStatus>>> results = new ArrayList<FutureResult<Iterator<DeliveryRecipientStatus>>>();
+            start(host, config, new DeliveryListener(host, config, future, results, null, new DeliveryResumer(host, config, future), new ArrayIterator<SMTPDeliveryEnvelope>(transactions)));
+        }
        
         return future;
     }
     
+    /**
+     * Deliver the {@link SMTPDeliveryEnvelope}'s which are returned by the given {@link Iterator}
+     * 
+     * The {@link SMTPDeliveryEnvelope}'s are pulled from the {@link Iterator} only once the {@link SMTPClientSession} is ready to start their 
+     * transaction (or to pipeline it behind the current one), so at most two of them are held at the same time. This way a slow destination 
+     * throttles the consumption of the source instead of buffering all its {@link SMTPDeliveryEnvelope}'s in memory. The delivery ends once 
+     * {@link Iterator#hasNext()} returns <code>false</code>.
+     * 
+     * The {@link Iterator} is called from the IO-Thread, so it must not block.
+     * 
+     * @param host
+     * @param config
+     * @param transactions
+     * @return future
+     */
+    public SMTPClientFuture<Collection<FutureResult<Iterator<DeliveryRecipientStatus>>>> deliver(final InetSocketAddress host, final SMTPDeliveryAgentConfig config, final Iterator<SMTPDeliveryEnvelope> transactions) {
+        if (transactions == null || !transactions.hasNext()) {
+            throw new IllegalArgumentException("SMTPTransaction parameter must be not null and contain at least one element");
+        }
+
+        final SMTPClientFutureImpl<Collection<FutureResult<Iterator<DeliveryRecipientStatus>>>> future = new SMTPClientFutureImpl<Collection<FutureResult<Iterator<DeliveryRecipientStatus>>>>();
+        List<FutureResult<Iterator<DeliveryRecipientStatus>>> results = new ArrayList<FutureResult<Iterator<DeliveryRecipientStatus>>>();
+        start(host, config, new DeliveryListener(host, config, future, results, null, new DeliveryResumer(host, config, future), transactions));
+        return future;
+    }
+    
+    /**
+     * Start the delivery via the given {@link DeliveryListener} on a {@link SMTPClientSession} of the {@link SMTPClientSessionPool} or on a new one
+     * 
+     * @param host
+     * @param config
+     * @param listener
+     */
+    private void start(final InetSocketAddress host, final SMTPDeliveryAgentConfig config, final DeliveryListener listener) {
+        if (pool == null) {
+            transport.connect(host, config).addListener(listener);
+        } else {
+            pool.acquire(host, transport.getDeliveryMode(), config).addListener(new SMTPClientFutureListener<FutureResult<SMTPClientSession>>() {
 
+                @Override
+                public void operationComplete(SMTPClientFuture<FutureResult<SMTPClientSession>> acquireFuture) {
+                    FutureResult<SMTPClientSession> result = acquireFuture.getNoWait();
+                    if (!result.isSuccess()) {
+                        listener.fail(result.getException());
+                    } else if (result.getResult() == null) {
+                        // no idle session, so we need to connect
+                        transport.connect(host, config).addListener(listener);
+                    } else {
+                        listener.reuse(result.getResult());
+                    }
+                }
+            });
+        }
+    }
+    
+    /**
+     * Return the delay in milliseconds before the given reconnect attempt. The delay is doubled for every attempt and the second half of it is 
+     * randomized
+     * 
+     * @param reconnectDelay
+     * @param attempt
+     * @return delay
+     */
+    static long getReconnectDelay(long reconnectDelay, int attempt) {
+        long delay = reconnectDelay << Math.min(attempt - 1, 16);
+        long half = delay / 2;
+        if (half == 0) {
+            return delay;
+        }
+        return delay - half + (long) (RANDOM.nextDouble() * half);
+    }
+    
+    /**
+     * Return <code>true</code> if the {@link SMTPMessage}'s of all the given {@link SMTPDeliveryEnvelope}'s exceed the maximal message size which
+     * was advertised by the destination the last time
+     * 
+     * @param host
+     * @param transactions
+     * @return exceeded
+     */
+    private boolean isMessageSizeExceeded(InetSocketAddress host, SMTPDeliveryEnvelope... transactions) {
+        SMTPCapabilities capabilities = capabilitiesCache.get(host);
+        if (capabilities == null) {
+            return false;
+        }
+        for (int i = 0; i < transactions.length; i++) {
+            if (!ChainedSMTPClientFutureListener.isMessageSizeExceeded(capabilities, transactions[i].getMessage())) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
     
     /**
      * Return the {@link SMTPClientFutureListenerFactory} to use
@@ -131,4 +249,192 @@ public class SMTPDeliveryAgent implements SMTPClientConstants, SMTPDeliverySessi
     protected SMTPClientFutureListenerFactory createFactory() {
         return FACTORY;
     }
+    
+    /**
+     * {@link SMTPDeliveryResumer} which resumes the delivery over a new {@link SMTPClientSession} until the number of reconnect attempts of the
+     * {@link SMTPDeliveryAgentConfig} is exhausted
+     */
+    private final class DeliveryResumer implements SMTPDeliveryResumer {
+        private final InetSocketAddress host;
+        private final SMTPDeliveryAgentConfig config;
+        private final SMTPClientFutureImpl<Collection<FutureResult<Iterator<DeliveryRecipientStatus>>>> future;
+        private int attempts;
+        
+        public DeliveryResumer(InetSocketAddress host, SMTPDeliveryAgentConfig config, SMTPClientFutureImpl<Collection<FutureResult<Iterator<DeliveryRecipientStatus>>>> future) {
+            this.host = host;
+            this.config = config;
+            this.future = future;
+        }
+        
+        @Override
+        public synchronized boolean resume(SMTPClientSession session, List<FutureResult<Iterator<DeliveryRecipientStatus>>> results, Iterator<SMTPDeliveryEnvelope> remaining, List<DeliveryRecipientStatus> completed, SMTPException cause) {
+            if (attempts >= config.getReconnectAttempts()) {
+                return false;
+            }
+            attempts++;
+            
+            final DeliveryListener listener = new DeliveryListener(host, config, future, results, completed, this, remaining);
+            ReconnectExecutorHolder.EXECUTOR.schedule(new Runnable() {
+                
+                @Override
+                public void run() {
+                    start(host, config, listener);
+                }
+            }, getReconnectDelay(config.getReconnectDelay(), attempts), TimeUnit.MILLISECONDS);
+            return true;
+        }
+    }
+    
+    /**
+     * Holds the {@link ScheduledExecutorService} which is used to schedule the reconnects. It is only created once needed
+     */
+    private final static class ReconnectExecutorHolder {
+        private final static ScheduledExecutorService EXECUTOR = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "niosmtp-reconnect");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+    
+    /**
+     * {@link ChainedSMTPClientFutureListener} which starts the delivery once the welcome {@link SMTPResponse} was received, or directly for a
+     * {@link SMTPClientSession} which was taken out of the {@link SMTPClientSessionPool}
+     */
+    private final class DeliveryListener extends ChainedSMTPClientFutureListener<SMTPResponse> {
+        private final InetSocketAddress host;
+        private final SMTPDeliveryAgentConfig config;
+        private final SMTPClientFutureImpl<Collection<FutureResult<Iterator<DeliveryRecipientStatus>>>> future;
+        private final List<FutureResult<Iterator<DeliveryRecipientStatus>>> results;
+        private final List<DeliveryRecipientStatus> completed;
+        private final SMTPDeliveryResumer resumer;
+        private final Iterator<SMTPDeliveryEnvelope> transactions;
+        
+        /**
+         * 
+         * @param host
+         * @param config
+         * @param future
+         * @param results the results of the {@link SMTPDeliveryEnvelope}'s which were already completed over a previous {@link SMTPClientSession}
+         * @param completed the {@link DeliveryRecipientStatus}'s of the recipients of the first {@link SMTPDeliveryEnvelope} which were already completed 
+         *        over a previous {@link SMTPClientSession}, or <code>null</code>
+         * @param resumer
+         * @param transactions the {@link SMTPDeliveryEnvelope}'s to deliver, which are pulled once their transaction is started
+         */
+        public DeliveryListener(InetSocketAddress host, SMTPDeliveryAgentConfig config, SMTPClientFutureImpl<Collection<FutureResult<Iterator<DeliveryRecipientStatus>>>> future, 
+                List<FutureResult<Iterator<DeliveryRecipientStatus>>> results, List<DeliveryRecipientStatus> completed, SMTPDeliveryResumer resumer, Iterator<SMTPDeliveryEnvelope> transactions) {
+            this.host = host;
+            this.config = config;
+            this.future = future;
+            this.results = results;
+            this.completed = completed;
+            this.resumer = resumer;
+            this.transactions = transactions;
+        }
+
+        @Override
+        public void onException(SMTPClientSession session, SMTPException t) {
+            prepareFailure(session);
+            super.onException(session, t);
+        
+        }
+        
+        @Override
+        protected void onTransportException(SMTPClientSession session, SMTPException e) {
+            prepareFailure(session);
+            super.onTransportException(session, e);
+        }
+
+        /**
+         * Init the {@link SMTPClientSession} if the connection could not be established, so the {@link SMTPDeliveryEnvelope}'s can be failed or 
+         * resumed
+         * 
+         * @param session
+         */
+        private void prepareFailure(SMTPClientSession session) {
+            if (session.getAttribute(FUTURE_KEY) != future) {
+                if (pool != null && session.getAttribute(SMTP_CLIENT_SESSION_POOL_KEY) == null) {
+                    // the connection was not established so give the permit back
+                    pool.cancel(host, transport.getDeliveryMode(), config);
+                }
+                initSession(session);
+            }
+        }
+        
+        /**
+         * Fail all {@link SMTPDeliveryEnvelope}'s without a {@link SMTPClientSession}
+         * 
+         * @param e
+         */
+        public void fail(SMTPException e) {
+            List<FutureResult<Iterator<DeliveryRecipientStatus>>> resultList = new ArrayList<FutureResult<Iterator<DeliveryRecipientStatus>>>(results);
+            for (int i = 0; transactions.hasNext(); i++) {
+                SMTPDeliveryEnvelope transaction = transactions.next();
+                if (i == 0 && completed != null) {
+                    addResult(config, resultList, transaction, createEnvelopeResult(completed, transaction.getRecipients(), e));
+                } else {
+                    addResult(config, resultList, transaction, DeliveryResultImpl.create(e));
+                }
+            }
+            future.setResult(resultList);
+        }
+       
+        /**
+         * Init the SMTPClienSesion by adding all needed data to the attributes
+         * 
+         * @param session
+         */
+        private void initSession(SMTPClientSession session) {
+            
+            
+            session.setAttribute(SMTP_TRANSACTIONS_KEY, transactions);
+
+            session.setAttribute(FUTURE_KEY, future);
+            session.setAttribute(DELIVERY_RESULT_LIST_KEY, new ArrayList<FutureResult<Iterator<DeliveryRecipientStatus>>>(results));
+            session.setAttribute(SMTP_CLIENT_FUTURE_LISTENER_FACTORY, createFactory());
+            session.setAttribute(SMTP_TRANSACTION_ACTIVE_KEY, false);
+            session.setAttribute(SMTP_CAPABILITIES_CACHE_KEY, capabilitiesCache);
+            session.setAttribute(SMTP_DESTINATION_KEY, host);
+            session.setAttribute(SMTP_TRANSACTION_ID_KEY, 0);
+            session.setAttribute(NEXT_SMTP_TRANSACTION_KEY, null);
+            session.setAttribute(NEXT_SMTP_TRANSACTION_STARTED_KEY, null);
+            session.setAttribute(SMTP_SESSION_END_SENT_KEY, null);
+            session.setAttribute(TRANSACTION_EXCEPTION_KEY, null);
+            session.setAttribute(SMTP_DELIVERY_RESUMER_KEY, config.getReconnectAttempts() > 0 ? resumer : null);
+            
+            initSession(session, transactions.next());
+            if (completed != null) {
+                session.setAttribute(ENVELOPE_STATUS_KEY, new ArrayList<DeliveryRecipientStatus>(completed));
+            }
+        }
+
+        @Override
+        protected void onResult(SMTPClientSession session, SMTPResponse result) throws SMTPException {
+            if (pool != null) {
+                pool.register(host, session);
+                session.setAttribute(SMTP_CLIENT_SESSION_POOL_KEY, pool);
+            }
+            initSession(session);
+            FutureResult<SMTPResponse> fResult = new FutureResultImpl<SMTPResponse>(result);
+            ReadySMTPClientFuture<FutureResult<SMTPResponse>> future = new ReadySMTPClientFuture<FutureResult<SMTPResponse>>(session, fResult);
+            future.addListener(createFactory().getListener(session));                
+        }
+        
+        /**
+         * Start the delivery on a {@link SMTPClientSession} which was already used before and so is ready to start a new transaction
+         * 
+         * @param session
+         */
+        public void reuse(SMTPClientSession session) {
+            initSession(session);
+            try {
+                startTransaction(session);
+            } catch (SMTPException e) {
+                onException(session, e);
+            }
+        }
+    }
 }
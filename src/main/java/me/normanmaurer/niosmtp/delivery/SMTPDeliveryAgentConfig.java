@@ -16,7 +16,11 @@
 */
 package me.normanmaurer.niosmtp.delivery;
 
+import java.util.Collection;
+
+import me.normanmaurer.niosmtp.SMTPClientFuture;
 import me.normanmaurer.niosmtp.transport.SMTPClientConfig;
+import me.normanmaurer.niosmtp.transport.SMTPDeliveryMode;
 
 /**
  * Configuration which is used to deliver email via SMTP
@@ -47,6 +51,19 @@ public interface SMTPDeliveryAgentConfig extends SMTPClientConfig {
         DEPEND
 
     }
+    
+    public enum ChunkingMode {
+        
+        /**
+         * Don't use CHUNKING
+         */
+        NO,
+        
+        /**
+         * Use CHUNKING via <code>BDAT</code> if the server supports it and the size of the message is known. This is not supported for LMTP
+         */
+        TRY
+    }
 
     /**
      * 
@@ -66,6 +83,72 @@ public interface SMTPDeliveryAgentConfig extends SMTPClientConfig {
      * @return pipelining
      */
     PipeliningMode getPipeliningMode();
+    
+    /**
+     * Return {@link ChunkingMode} if the client should use CHUNKING if possible
+     * 
+     * @return chunking
+     */
+    ChunkingMode getChunkingMode();
+    
+    /**
+     * Return <code>true</code> if the commands of the next {@link SMTPDeliveryEnvelope} (or the <code>QUIT</code> if there is none left) should get 
+     * pipelined directly after the message of the current one was sent, without waiting for its final response. This is only done if 
+     * <code>PIPELINING</code> is active.
+     * 
+     * @return transactionPipelining
+     */
+    boolean isTransactionPipelining();
+    
+    /**
+     * Return how often a new connection should be established to resume the delivery of the {@link SMTPDeliveryEnvelope}'s which were not 
+     * completed yet if the connection failed. <code>0</code> disables it.
+     * 
+     * @return reconnectAttempts
+     */
+    int getReconnectAttempts();
+    
+    /**
+     * Return the delay in milliseconds before the first reconnect. It is doubled for every following attempt and randomized by up to the half of it, 
+     * so many failed deliveries to the same destination don't reconnect all at once.
+     * 
+     * @return reconnectDelay
+     */
+    long getReconnectDelay();
+    
+    /**
+     * Return the maximal count of <code>RCPT</code> commands which are pipelined without having received their {@link SMTPResponse}. If a 
+     * transaction has more recipients the <code>RCPT</code>'s are sent in windows as the responses are received, and the <code>DATA</code> is sent 
+     * once the last one was acknowledged. <code>0</code> means all of them are pipelined at once.
+     * 
+     * @return pipeliningWindow
+     */
+    int getPipeliningWindow();
+    
+    /**
+     * Return the {@link StartTlsPolicy} which decides if TLS is required for a destination, or <code>null</code> if the cached outcome of the 
+     * last <code>STARTTLS</code> negotiation decides it. This is only used with {@link SMTPDeliveryMode#STARTTLS_TRY}.
+     * 
+     * @return startTlsPolicy
+     */
+    StartTlsPolicy getStartTlsPolicy();
+    
+    /**
+     * Return the {@link DeliveryResultListener} which is notified about the results while the delivery is in progress, or <code>null</code> if none
+     * 
+     * @return listener
+     */
+    DeliveryResultListener getDeliveryResultListener();
+    
+    /**
+     * Return <code>true</code> if the results of all {@link SMTPDeliveryEnvelope}'s are kept till the delivery is complete, so they can be returned 
+     * by the {@link SMTPClientFuture}. If <code>false</code> the {@link SMTPClientFuture} is completed with an empty {@link Collection}, so the 
+     * results are only passed to the {@link DeliveryResultListener}. This way the memory usage does not grow with the count of 
+     * {@link SMTPDeliveryEnvelope}'s.
+     * 
+     * @return retained
+     */
+    boolean isDeliveryResultsRetained();
 
     /**
      * 
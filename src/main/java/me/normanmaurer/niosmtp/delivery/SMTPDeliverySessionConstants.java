@@ -16,12 +16,19 @@
 */
 package me.normanmaurer.niosmtp.delivery;
 
+import java.net.InetSocketAddress;
 import java.util.Iterator;
 import java.util.List;
 
+import me.normanmaurer.niosmtp.SMTPException;
+import me.normanmaurer.niosmtp.SMTPRequest;
+import me.normanmaurer.niosmtp.SMTPResponse;
 import me.normanmaurer.niosmtp.core.SMTPClientFutureImpl;
 import me.normanmaurer.niosmtp.delivery.chain.SMTPClientFutureListenerFactory;
+import me.normanmaurer.niosmtp.delivery.chain.SMTPDeliveryResumer;
+import me.normanmaurer.niosmtp.transport.SMTPCapabilitiesCache;
 import me.normanmaurer.niosmtp.transport.SMTPClientSession;
+import me.normanmaurer.niosmtp.transport.SMTPClientSessionPool;
 
 /**
  * Constants for temporary data which will get stored via the {@link SMTPClientSession#setAttribute(String, Object)()}  while sending the message. These
@@ -87,4 +94,113 @@ public interface SMTPDeliverySessionConstants {
      * Key under which the {@link SMTPClientFutureListenerFactory} will be stored
      */
     public final static String SMTP_CLIENT_FUTURE_LISTENER_FACTORY ="smtp_client_future_listener_factory";
+    
+    /**
+     * Key under which the {@link SMTPClientSessionPool} is stored if the {@link SMTPClientSession} should get released to it after the delivery
+     */
+    public final static String SMTP_CLIENT_SESSION_POOL_KEY = "smtp_client_session_pool";
+    
+    /**
+     * Key under which we store if the {@link SMTPClientSession} is established, which means the EHLO / HELO, STARTTLS and AUTH was done and
+     * transactions can be started
+     */
+    public final static String SMTP_SESSION_ESTABLISHED_KEY = "smtp_session_established";
+    
+    /**
+     * Key under which we store if the message of the current transaction is sent via <code>BDAT</code>
+     */
+    public final static String CHUNKING_ACTIVE_KEY = "chunking_active";
+    
+    /**
+     * Key under which the {@link SMTPCapabilitiesCache} is stored which should get updated once the <code>EHLO</code> response was received
+     */
+    public final static String SMTP_CAPABILITIES_CACHE_KEY = "smtp_capabilities_cache";
+    
+    /**
+     * Key under which the destination is stored as {@link InetSocketAddress}, like it was given to the {@link SMTPDeliveryAgent}
+     */
+    public final static String SMTP_DESTINATION_KEY = "smtp_destination";
+    
+    /**
+     * Key under which the sequence number of the current transaction is stored as {@link Integer}. It gets incremented each time the next 
+     * {@link SMTPDeliveryEnvelope} is processed, which allows to detect pipelined responses that belong to an already completed transaction
+     */
+    public final static String SMTP_TRANSACTION_ID_KEY = "smtp_transaction_id";
+    
+    /**
+     * Key under which the next {@link SMTPDeliveryEnvelope} is stored if it was already taken from the {@link Iterator} stored under 
+     * {@link #SMTP_TRANSACTIONS_KEY} to pipeline its commands behind the message of the current transaction
+     */
+    public final static String NEXT_SMTP_TRANSACTION_KEY = "next_smtp_transaction";
+    
+    /**
+     * Key under which we store if the commands of the {@link SMTPDeliveryEnvelope} stored under {@link #NEXT_SMTP_TRANSACTION_KEY} were already 
+     * sent. The value is a {@link Boolean} which is <code>true</code> if its message is sent via <code>BDAT</code>
+     */
+    public final static String NEXT_SMTP_TRANSACTION_STARTED_KEY = "next_smtp_transaction_started";
+    
+    /**
+     * Key under which we store if the <code>QUIT</code> or <code>RSET</code> which ends the {@link SMTPClientSession} was already pipelined 
+     * behind the message of the last transaction
+     */
+    public final static String SMTP_SESSION_END_SENT_KEY = "smtp_session_end_sent";
+    
+    /**
+     * Key under which the {@link SMTPException} is stored which failed the current transaction while the {@link SMTPClientSession} gets reset 
+     * via <code>RSET</code>
+     */
+    public final static String TRANSACTION_EXCEPTION_KEY = "transaction_exception";
+    
+    /**
+     * Key under which the {@link SMTPDeliveryResumer} is stored which is used to resume the delivery if the {@link SMTPClientSession} fails
+     */
+    public final static String SMTP_DELIVERY_RESUMER_KEY = "smtp_delivery_resumer";
+    
+    /**
+     * Key under which the recipients of the current transaction are stored as {@link List}. This may only be a part of the recipients of the 
+     * current {@link SMTPDeliveryEnvelope} if they need to be split over more then one transaction
+     */
+    public final static String TRANSACTION_RECIPIENTS_KEY = "transaction_recipients";
+    
+    /**
+     * Key under which the recipients of the current {@link SMTPDeliveryEnvelope} are stored as {@link List} which will be sent in a follow-up 
+     * transaction, as the SMTP Server does not accept that many recipients per transaction
+     */
+    public final static String PENDING_RECIPIENTS_KEY = "pending_recipients";
+    
+    /**
+     * Key under which the {@link DeliveryRecipientStatus}'s of the current {@link SMTPDeliveryEnvelope} are stored as {@link List} which were 
+     * completed by previous transactions
+     */
+    public final static String ENVELOPE_STATUS_KEY = "envelope_status";
+    
+    /**
+     * Key under which we store if the <code>RSET</code> was sent to close the transaction before the follow-up transaction for the remaining 
+     * recipients of the current {@link SMTPDeliveryEnvelope} is started
+     */
+    public final static String FOLLOW_UP_RESET_KEY = "follow_up_reset";
+    
+    /**
+     * Key under which the count of recipients of the current transaction which were already sent is stored as {@link Integer}, while the 
+     * <code>RCPT</code>'s are pipelined in windows. It is removed once the last <code>RCPT</code> was sent
+     */
+    public final static String PIPELINING_WINDOW_KEY = "pipelining_window";
+    
+    /**
+     * Key under which the {@link OAuthToken} is stored which was used for <code>AUTH</code>, so it can be invalidated if the SMTP Server
+     * rejects it
+     */
+    public final static String OAUTH_TOKEN_KEY = "oauth_token";
+    
+    /**
+     * Key under which the base64 encoded credentials of the {@link Authentication} are stored, so all steps of the <code>AUTH</code> of the 
+     * {@link SMTPClientSession} use the same credentials
+     */
+    public final static String ENCODED_CREDENTIALS_KEY = "encoded_credentials";
+    
+    /**
+     * Key under which the <code>EHLO</code> or <code>LHLO</code> {@link SMTPRequest} is stored which was sent after the welcome {@link SMTPResponse}, 
+     * so the same is sent again once <code>STARTTLS</code> was negotiated
+     */
+    public final static String HELLO_REQUEST_KEY = "hello_request";
 }
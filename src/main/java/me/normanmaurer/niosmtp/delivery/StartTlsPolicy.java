@@ -0,0 +1,48 @@
+/**
+* Licensed to niosmtp developers ('niosmtp') under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* niosmtp licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package me.normanmaurer.niosmtp.delivery;
+
+import java.net.InetSocketAddress;
+
+import me.normanmaurer.niosmtp.transport.SMTPCapabilitiesCache;
+import me.normanmaurer.niosmtp.transport.SMTPCapabilitiesCache.StartTlsOutcome;
+import me.normanmaurer.niosmtp.transport.SMTPDeliveryMode;
+
+/**
+ * Policy which decides if TLS must be used for a destination when the {@link SMTPDeliveryMode#STARTTLS_TRY} is used.
+ * 
+ * By default <code>STARTTLS</code> is skipped for destinations for which the last negotiation failed (as cached by the 
+ * {@link SMTPCapabilitiesCache}), and the delivery continues without TLS if <code>STARTTLS</code> is not advertised or rejected. If TLS is 
+ * required for a destination, it is always negotiated and the delivery fails if this is not possible, like with 
+ * {@link SMTPDeliveryMode#STARTTLS_DEPEND}.
+ * 
+ * Implementations must be thread-safe.
+ * 
+ * @author Norman Maurer
+ *
+ */
+public interface StartTlsPolicy {
+
+    /**
+     * Return <code>true</code> if TLS is required for the given destination
+     * 
+     * @param destination
+     * @param outcome the cached {@link StartTlsOutcome} of the last negotiation with the destination or <code>null</code> if none is known
+     * @return required
+     */
+    boolean isTlsRequired(InetSocketAddress destination, StartTlsOutcome outcome);
+}
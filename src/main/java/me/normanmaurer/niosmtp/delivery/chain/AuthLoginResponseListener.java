@@ -20,14 +20,9 @@ import me.normanmaurer.niosmtp.SMTPClientFuture;
 import me.normanmaurer.niosmtp.SMTPException;
 import me.normanmaurer.niosmtp.SMTPResponse;
 import me.normanmaurer.niosmtp.core.SMTPRequestImpl;
-import me.normanmaurer.niosmtp.delivery.SMTPDeliveryAgentConfig;
-import me.normanmaurer.niosmtp.delivery.SMTPDeliveryAgentConfig.PipeliningMode;
-import me.normanmaurer.niosmtp.delivery.SMTPDeliveryEnvelope;
 import me.normanmaurer.niosmtp.transport.FutureResult;
 import me.normanmaurer.niosmtp.transport.SMTPClientSession;
 
-import org.apache.commons.codec.binary.Base64;
-
 /**
  * {@link AbstractAuthResponseListener} which handles <code>AUTH LOGIN</code>
  * 
@@ -53,18 +48,7 @@ public class AuthLoginResponseListener extends AbstractAuthResponseListener{
         if (session.getAttribute(PROCESS_PASSWORD) != null) {
             session.setAttribute(PROCESS_PASSWORD, null);
             if (response.getCode() == 235) {
-                String mail = ((SMTPDeliveryEnvelope)session.getAttribute(CURRENT_SMTP_TRANSACTION_KEY)).getSender();
-                
-                boolean supportsPipelining = session.getSupportedExtensions().contains(PIPELINING_EXTENSION);
-                // We use a SMTPPipelinedRequest if the SMTPServer supports
-                // PIPELINING. This will allow the NETTY to get
-                // the MAX throughput as the encoder will write it out in one
-                // buffer if possible. This result in less system calls
-                if (supportsPipelining && ((SMTPDeliveryAgentConfig)session.getConfig()).getPipeliningMode() != PipeliningMode.NO) {
-                    pipelining(session);
-                } else {
-                    next(session, SMTPRequestImpl.mail(mail));
-                }
+                startTransaction(session);
             } else {
                 setDeliveryStatusForAll(session, response);
             }
@@ -73,7 +57,7 @@ public class AuthLoginResponseListener extends AbstractAuthResponseListener{
 
             if (response.getCode() == 334) {
                 session.setAttribute(PROCESS_PASSWORD, true);
-                SMTPClientFuture<FutureResult<SMTPResponse>> future = session.send(new SMTPRequestImpl(new String(Base64.encodeBase64(((SMTPDeliveryAgentConfig)session.getConfig()).getAuthentication().getPassword().getBytes(CHARSET)), CHARSET), null));
+                SMTPClientFuture<FutureResult<SMTPResponse>> future = session.send(new SMTPRequestImpl(EncodedCredentials.get(session).getPassword(), null));
                 future.addListener(INSTANCE);
             } else {
                 setDeliveryStatusForAll(session, response);
@@ -82,7 +66,7 @@ public class AuthLoginResponseListener extends AbstractAuthResponseListener{
         } else {
             if (response.getCode() == 334) {
                 session.setAttribute(PROCESS_USERNAME, true);
-                SMTPClientFuture<FutureResult<SMTPResponse>> future = session.send(new SMTPRequestImpl(new String(Base64.encodeBase64(((SMTPDeliveryAgentConfig)session.getConfig()).getAuthentication().getUsername().getBytes(CHARSET)), CHARSET), null));
+                SMTPClientFuture<FutureResult<SMTPResponse>> future = session.send(new SMTPRequestImpl(EncodedCredentials.get(session).getUsername(), null));
                 future.addListener(INSTANCE);
             } else {
                 setDeliveryStatusForAll(session, response);
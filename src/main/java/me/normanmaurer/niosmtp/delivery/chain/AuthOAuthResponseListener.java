@@ -0,0 +1,150 @@
+/**
+* Licensed to niosmtp developers ('niosmtp') under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* niosmtp licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package me.normanmaurer.niosmtp.delivery.chain;
+
+import me.normanmaurer.niosmtp.SMTPClientFuture;
+import me.normanmaurer.niosmtp.SMTPClientFutureListener;
+import me.normanmaurer.niosmtp.SMTPException;
+import me.normanmaurer.niosmtp.SMTPRequest;
+import me.normanmaurer.niosmtp.SMTPResponse;
+import me.normanmaurer.niosmtp.core.SMTPRequestImpl;
+import me.normanmaurer.niosmtp.delivery.Authentication.AuthMode;
+import me.normanmaurer.niosmtp.delivery.OAuthAuthentication;
+import me.normanmaurer.niosmtp.delivery.OAuthToken;
+import me.normanmaurer.niosmtp.delivery.OAuthTokenProvider;
+import me.normanmaurer.niosmtp.delivery.SMTPDeliveryAgentConfig;
+import me.normanmaurer.niosmtp.transport.FutureResult;
+import me.normanmaurer.niosmtp.transport.SMTPClientSession;
+
+import org.apache.commons.codec.binary.Base64;
+
+/**
+ * {@link AbstractAuthResponseListener} which handles <code>AUTH XOAUTH2</code> and <code>AUTH OAUTHBEARER</code>. 
+ * 
+ * The {@link OAuthToken} is always sent as initial-response. If it is rejected the SMTP Server sends a <code>334</code> with the error details,
+ * which needs to be answered by the client before the final {@link SMTPResponse} is received. In this case the {@link OAuthToken} is invalidated.
+ * 
+ * @author Norman Maurer
+ *
+ */
+public class AuthOAuthResponseListener extends AbstractAuthResponseListener {
+
+    /**
+     * Get instance of this {@link AuthOAuthResponseListener} implementation
+     */
+    public final static AuthOAuthResponseListener INSTANCE = new AuthOAuthResponseListener();
+    
+    private final static String PROCESS_ERROR = "PROCESS_OAUTH_ERROR";
+    private final static String OAUTH_MODE = "OAUTH_MODE";
+    
+    // The dummy response to the error challenge of OAUTHBEARER is a single ^A, while XOAUTH2 uses an empty one
+    private final static String OAUTHBEARER_ERROR_RESPONSE = "AQ==";
+    private final static String XOAUTH2_ERROR_RESPONSE = "";
+
+    private AuthOAuthResponseListener() {
+        
+    }
+    
+    /**
+     * Start the authentication with an {@link OAuthToken} of the {@link OAuthTokenProvider}. As the {@link OAuthToken} may not be available yet the
+     * <code>AUTH</code> is sent once the {@link SMTPClientFuture} of the {@link OAuthTokenProvider} was notified, so the calling {@link Thread} is 
+     * never blocked.
+     * 
+     * @param session
+     * @param auth
+     * @param mode the {@link AuthMode} to use, which may differ from the one of the {@link OAuthAuthentication} if the SMTP Server does not support it
+     */
+    public void authenticate(final SMTPClientSession session, final OAuthAuthentication auth, final AuthMode mode) {
+        auth.getTokenProvider().getToken(auth.getUsername()).addListener(new SMTPClientFutureListener<FutureResult<OAuthToken>>() {
+            
+            @Override
+            public void operationComplete(SMTPClientFuture<FutureResult<OAuthToken>> future) {
+                FutureResult<OAuthToken> result = future.getNoWait();
+                if (!result.isSuccess()) {
+                    onException(session, result.getException());
+                    return;
+                }
+                OAuthToken token = result.getResult();
+                session.setAttribute(OAUTH_TOKEN_KEY, token);
+                session.setAttribute(OAUTH_MODE, mode);
+                try {
+                    if (mode == AuthMode.OAuthBearer) {
+                        next(session, SMTPRequestImpl.auth(SMTPRequest.AUTH_OAUTHBEARER_ARGUMENT, encodeOAuthBearer(auth.getUsername(), token)));
+                    } else {
+                        next(session, SMTPRequestImpl.auth(SMTPRequest.AUTH_XOAUTH2_ARGUMENT, encodeXOAuth2(auth.getUsername(), token)));
+                    }
+                } catch (SMTPException e) {
+                    onException(session, e);
+                }
+            }
+        });
+    }
+    
+    /**
+     * Return the base64 encoded initial-response for <code>XOAUTH2</code>
+     * 
+     * @param username
+     * @param token
+     * @return encoded
+     */
+    public static String encodeXOAuth2(String username, OAuthToken token) {
+        return encode("user=" + username + "\001auth=Bearer " + token.getAccessToken() + "\001\001");
+    }
+    
+    /**
+     * Return the base64 encoded initial-response for <code>OAUTHBEARER</code> as specified in RFC 7628
+     * 
+     * @param username
+     * @param token
+     * @return encoded
+     */
+    public static String encodeOAuthBearer(String username, OAuthToken token) {
+        // the username is a saslname of RFC 5801, so ',' and '=' need to be escaped
+        String saslName = username.replace("=", "=3D").replace(",", "=2C");
+        return encode("n,a=" + saslName + ",\001auth=Bearer " + token.getAccessToken() + "\001\001");
+    }
+    
+    private static String encode(String value) {
+        return new String(Base64.encodeBase64(value.getBytes(CHARSET)), CHARSET);
+    }
+    
+    @Override
+    public void onResult(SMTPClientSession session, SMTPResponse response) throws SMTPException {
+        boolean errorSent = session.setAttribute(PROCESS_ERROR, null) != null;
+        OAuthToken token = (OAuthToken) session.setAttribute(OAUTH_TOKEN_KEY, null);
+        AuthMode mode = (AuthMode) session.getAttribute(OAUTH_MODE);
+        if (response.getCode() == 235) {
+            session.setAttribute(OAUTH_MODE, null);
+            startTransaction(session);
+            return;
+        }
+        
+        OAuthAuthentication auth = (OAuthAuthentication) ((SMTPDeliveryAgentConfig)session.getConfig()).getAuthentication();
+        if (token != null) {
+            auth.getTokenProvider().invalidate(auth.getUsername(), token);
+        }
+        if (response.getCode() == 334 && !errorSent) {
+            session.setAttribute(PROCESS_ERROR, true);
+            String errorResponse = mode == AuthMode.OAuthBearer ? OAUTHBEARER_ERROR_RESPONSE : XOAUTH2_ERROR_RESPONSE;
+            session.send(new SMTPRequestImpl(errorResponse, null)).addListener(INSTANCE);
+        } else {
+            session.setAttribute(OAUTH_MODE, null);
+            setDeliveryStatusForAll(session, response);
+        }
+    }
+
+}
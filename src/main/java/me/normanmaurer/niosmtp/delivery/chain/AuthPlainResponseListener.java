@@ -20,17 +20,14 @@ import me.normanmaurer.niosmtp.SMTPClientFuture;
 import me.normanmaurer.niosmtp.SMTPException;
 import me.normanmaurer.niosmtp.SMTPResponse;
 import me.normanmaurer.niosmtp.core.SMTPRequestImpl;
-import me.normanmaurer.niosmtp.delivery.Authentication;
-import me.normanmaurer.niosmtp.delivery.SMTPDeliveryAgentConfig;
-import me.normanmaurer.niosmtp.delivery.SMTPDeliveryAgentConfig.PipeliningMode;
-import me.normanmaurer.niosmtp.delivery.SMTPDeliveryEnvelope;
 import me.normanmaurer.niosmtp.transport.FutureResult;
 import me.normanmaurer.niosmtp.transport.SMTPClientSession;
 
-import org.apache.commons.codec.binary.Base64;
-
 /**
- * {@link AbstractAuthResponseListener} which should be used to handle <code>AUTH PLAIN</code>
+ * {@link AbstractAuthResponseListener} which should be used to handle <code>AUTH PLAIN</code>. 
+ * 
+ * If the credentials were sent as initial-response the {@link SMTPResponse} is the final one. Otherwise they are sent once the <code>334</code> 
+ * challenge was received.
  * 
  * @author Norman Maurer
  *
@@ -51,34 +48,16 @@ public class AuthPlainResponseListener extends AbstractAuthResponseListener{
     
     @Override
     public void onResult(SMTPClientSession session, SMTPResponse response) throws SMTPException {
-        if (session.setAttribute(PROCESS_AUTH, null) != null) {
-            if (response.getCode() == 235) {
-                String mail = ((SMTPDeliveryEnvelope)session.getAttribute(CURRENT_SMTP_TRANSACTION_KEY)).getSender();
-
-                
-                boolean supportsPipelining = session.getSupportedExtensions().contains(PIPELINING_EXTENSION);
-                // We use a SMTPPipelinedRequest if the SMTPServer supports
-                // PIPELINING. This will allow the NETTY to get
-                // the MAX throughput as the encoder will write it out in one
-                // buffer if possible. This result in less system calls
-                if (supportsPipelining && ((SMTPDeliveryAgentConfig)session.getConfig()).getPipeliningMode() != PipeliningMode.NO) {
-                    pipelining(session);
-                } else {
-                    next(session, SMTPRequestImpl.mail(mail));
-                }
-            } else {
-                setDeliveryStatusForAll(session, response);
-            }
+        boolean credentialsSent = session.setAttribute(PROCESS_AUTH, null) != null;
+        if (response.getCode() == 235) {
+            startTransaction(session);
+        } else if (response.getCode() == 334 && !credentialsSent) {
+            session.setAttribute(PROCESS_AUTH, true);
+            EncodedCredentials credentials = EncodedCredentials.get(session);
+            SMTPClientFuture<FutureResult<SMTPResponse>> future = session.send(new SMTPRequestImpl(credentials.getPlain(), null));
+            future.addListener(INSTANCE);
         } else {
-            if (response.getCode() == 334) {
-                session.setAttribute(PROCESS_AUTH, true);
-                Authentication auth = ((SMTPDeliveryAgentConfig)session.getConfig()).getAuthentication();
-                String userPass = auth.getUsername() + "\0" + auth.getPassword();
-                SMTPClientFuture<FutureResult<SMTPResponse>> future = session.send(new SMTPRequestImpl(new String(Base64.encodeBase64(userPass.getBytes(CHARSET)), CHARSET), null));
-                future.addListener(INSTANCE);
-            } else {
-                setDeliveryStatusForAll(session, response);
-            }
+            setDeliveryStatusForAll(session, response);
         }
     }
 
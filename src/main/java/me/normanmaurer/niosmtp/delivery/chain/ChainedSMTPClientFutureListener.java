@@ -16,11 +16,15 @@
 */
 package me.normanmaurer.niosmtp.delivery.chain;
 
+import java.net.InetSocketAddress;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 
+import me.normanmaurer.niosmtp.SMTPByteArrayMessage;
 import me.normanmaurer.niosmtp.SMTPClientFuture;
 import me.normanmaurer.niosmtp.SMTPClientFutureListener;
 import me.normanmaurer.niosmtp.SMTPMessage;
@@ -28,21 +32,31 @@ import me.normanmaurer.niosmtp.SMTPException;
 import me.normanmaurer.niosmtp.SMTPPipeliningRequest;
 import me.normanmaurer.niosmtp.SMTPRequest;
 import me.normanmaurer.niosmtp.SMTPResponse;
+import me.normanmaurer.niosmtp.core.CompositeIterator;
 import me.normanmaurer.niosmtp.core.SMTPClientFutureImpl;
+import me.normanmaurer.niosmtp.core.SMTPFileMessageImpl;
 import me.normanmaurer.niosmtp.core.SMTPMessageSubmitImpl;
 import me.normanmaurer.niosmtp.core.SMTPPipeliningRequestImpl;
 import me.normanmaurer.niosmtp.core.SMTPRequestImpl;
+import me.normanmaurer.niosmtp.core.SMTPResponseImpl;
 import me.normanmaurer.niosmtp.delivery.DeliveryRecipientStatus;
 import me.normanmaurer.niosmtp.delivery.DeliveryRecipientStatus.DeliveryStatus;
+import me.normanmaurer.niosmtp.delivery.DeliveryResultListener;
 import me.normanmaurer.niosmtp.delivery.SMTPDeliveryAgentConfig;
+import me.normanmaurer.niosmtp.delivery.SMTPDeliveryAgentConfig.ChunkingMode;
 import me.normanmaurer.niosmtp.delivery.SMTPDeliveryAgentConfig.PipeliningMode;
 import me.normanmaurer.niosmtp.delivery.SMTPDeliverySessionConstants;
 import me.normanmaurer.niosmtp.delivery.SMTPDeliveryEnvelope;
 import me.normanmaurer.niosmtp.delivery.impl.DeliveryRecipientStatusImpl;
+import me.normanmaurer.niosmtp.delivery.impl.DeliveryRecipientStatusTable;
 import me.normanmaurer.niosmtp.delivery.impl.DeliveryResultImpl;
+import me.normanmaurer.niosmtp.delivery.impl.SMTPDeliveryEnvelopeImpl;
 import me.normanmaurer.niosmtp.transport.FutureResult;
+import me.normanmaurer.niosmtp.transport.SMTPCapabilities;
+import me.normanmaurer.niosmtp.transport.SMTPCapabilitiesCache;
 import me.normanmaurer.niosmtp.transport.SMTPClientConstants;
 import me.normanmaurer.niosmtp.transport.SMTPClientSession;
+import me.normanmaurer.niosmtp.transport.SMTPClientSessionPool;
 
 /**
  * Abstract base implementation of {@link SMTPClientFutureListener} which completes the {@link SMTPClientFuture} on an {@link Exception}
@@ -52,33 +66,165 @@ import me.normanmaurer.niosmtp.transport.SMTPClientSession;
  */
 public abstract class ChainedSMTPClientFutureListener<E> implements SMTPClientFutureListener<FutureResult<E>>, SMTPDeliverySessionConstants, SMTPClientConstants {
     
+    /**
+     * {@link SMTPResponse} which is used for all recipients of a {@link SMTPDeliveryEnvelope} if its {@link SMTPMessage} exceeds the maximal message size 
+     * which was advertised by the SMTP Server. This {@link SMTPResponse} is created locally, as the {@link SMTPDeliveryEnvelope} is never sent to the SMTP Server.
+     */
+    public static final SMTPResponse MESSAGE_SIZE_EXCEEDED_RESPONSE;
+    
+    static {
+        SMTPResponseImpl response = new SMTPResponseImpl(552);
+        response.addLine("5.3.4 Message size exceeds fixed maximum message size");
+        MESSAGE_SIZE_EXCEEDED_RESPONSE = response;
+    }
+    
+    /**
+     * The code of the {@link SMTPResponse} which is used by the SMTP Server to reject a recipient because there are too many recipients in the 
+     * transaction. It is also used for other temporary failures, see {@link #isTooManyRecipients(SMTPResponse)}
+     */
+    public static final int TOO_MANY_RECIPIENTS_CODE = 452;
+    
+    /**
+     * The enhanced status code which is used by the SMTP Server to reject a recipient because there are too many recipients in the transaction
+     */
+    public static final String TOO_MANY_RECIPIENTS_STATUS = "4.5.3";
+    
     @Override
     public void operationComplete(SMTPClientFuture<FutureResult<E>> future) {
         FutureResult<E> result = future.getNoWait();
         SMTPClientSession session = future.getSession();
         if (!result.isSuccess()) {
-            onException(session, result.getException());
+            onTransportException(session, result.getException());
         } else {
             try {
                 onResult(session, result.getResult());
             } catch (SMTPException e) {
-                onException(session, e);
+                onTransactionException(session, e);
             }
         }
     }
+    
+    /**
+     * Handle a transport-level {@link SMTPException}, like a closed connection or a timeout. If a {@link SMTPDeliveryResumer} is stored in the 
+     * {@link SMTPClientSession} it is used to resume the delivery of the {@link SMTPDeliveryEnvelope}'s which were not completed yet over a new
+     * {@link SMTPClientSession}. If this is not possible {@link #onException(SMTPClientSession, SMTPException)} is called.
+     * 
+     * @param session
+     * @param e
+     */
+    @SuppressWarnings("unchecked")
+    protected void onTransportException(SMTPClientSession session, SMTPException e) {
+        SMTPDeliveryResumer resumer = (SMTPDeliveryResumer) session.getAttribute(SMTP_DELIVERY_RESUMER_KEY);
+        SMTPClientFuture<?> future = (SMTPClientFuture<?>) session.getAttribute(FUTURE_KEY);
+        if (resumer == null || future == null || future.isDone()) {
+            onException(session, e);
+            return;
+        }
+        
+        List<FutureResult<Iterator<DeliveryRecipientStatus>>> results = new ArrayList<FutureResult<Iterator<DeliveryRecipientStatus>>>((List<FutureResult<Iterator<DeliveryRecipientStatus>>>) session.getAttribute(DELIVERY_RESULT_LIST_KEY));
+        List<SMTPDeliveryEnvelope> remaining = new ArrayList<SMTPDeliveryEnvelope>();
+        List<DeliveryRecipientStatus> completed = (List<DeliveryRecipientStatus>) session.getAttribute(ENVELOPE_STATUS_KEY);
+        
+        SMTPDeliveryAgentConfig config = (SMTPDeliveryAgentConfig) session.getConfig();
+        FutureResult<Iterator<DeliveryRecipientStatus>> failed = null;
+        SMTPException transactionException = (SMTPException) session.getAttribute(TRANSACTION_EXCEPTION_KEY);
+        if (transactionException != null) {
+            // The current transaction was already failed by a protocol-level SMTPException
+            failed = createEnvelopeResult(session, transactionException);
+            if (config.isDeliveryResultsRetained()) {
+                results.add(failed);
+            }
+            completed = null;
+        } else {
+            SMTPDeliveryEnvelope transaction = (SMTPDeliveryEnvelope) session.getAttribute(CURRENT_SMTP_TRANSACTION_KEY);
+            if (completed != null) {
+                // Some recipients were already completed by a previous transaction, so only resume the others
+                transaction = new SMTPDeliveryEnvelopeImpl(transaction.getSender(), getUnfinishedRecipients(session), transaction.getMessage());
+                completed = new ArrayList<DeliveryRecipientStatus>(completed);
+            }
+            remaining.add(transaction);
+        }
+        SMTPDeliveryEnvelope next = (SMTPDeliveryEnvelope) session.getAttribute(NEXT_SMTP_TRANSACTION_KEY);
+        if (next != null) {
+            remaining.add(next);
+        }
+        // The SMTPDeliveryEnvelope's which were not started yet are left in the iterator, as it may pull them lazily from its source
+        Iterator<SMTPDeliveryEnvelope> rest = ((Iterator<SMTPDeliveryEnvelope>) session.getAttribute(SMTP_TRANSACTIONS_KEY));
+        Iterator<SMTPDeliveryEnvelope> remainingIt = new CompositeIterator<SMTPDeliveryEnvelope>(remaining.iterator(), rest);
+        
+        if (remainingIt.hasNext() && resumer.resume(session, results, remainingIt, completed, e)) {
+            DeliveryResultListener listener = config.getDeliveryResultListener();
+            if (failed != null && listener != null) {
+                // Only notify now, as onException creates the result again if the delivery is not resumed
+                listener.onDeliveryResult((SMTPDeliveryEnvelope) session.getAttribute(CURRENT_SMTP_TRANSACTION_KEY), failed);
+            }
+            // The delivery is continued over a new SMTPClientSession, so replace the SMTPClientFuture with a completed one. This makes sure 
+            // that late SMTPResponse's or exceptions of this SMTPClientSession don't touch the results anymore
+            SMTPClientFutureImpl<Collection<FutureResult<Iterator<DeliveryRecipientStatus>>>> resumed = new SMTPClientFutureImpl<Collection<FutureResult<Iterator<DeliveryRecipientStatus>>>>();
+            resumed.setResult(results);
+            session.setAttribute(SMTP_DELIVERY_RESUMER_KEY, null);
+            session.setAttribute(FUTURE_KEY, resumed);
+            session.setAttribute(SMTP_TRANSACTIONS_KEY, Collections.<SMTPDeliveryEnvelope>emptyList().iterator());
+            session.close();
+        } else {
+            onException(session, e);
+        }
+    }
+    
+    /**
+     * Handle a protocol-level {@link SMTPException} which was thrown while processing a {@link SMTPResponse}. If the {@link SMTPClientSession} 
+     * is established only the current {@link SMTPDeliveryEnvelope} is failed and the transaction is reset via <code>RSET</code>, so the remaining 
+     * {@link SMTPDeliveryEnvelope}'s can still be delivered over the same {@link SMTPClientSession}. 
+     * 
+     * Otherwise, or if commands were already pipelined behind the current transaction, {@link #onException(SMTPClientSession, SMTPException)} is
+     * called which fails all of them.
+     * 
+     * @param session
+     * @param e
+     */
+    protected void onTransactionException(SMTPClientSession session, SMTPException e) {
+        if (session.getAttribute(SMTP_SESSION_ESTABLISHED_KEY) == null || session.getAttribute(TRANSACTION_EXCEPTION_KEY) != null 
+                || session.getAttribute(NEXT_SMTP_TRANSACTION_STARTED_KEY) != null || session.getAttribute(SMTP_SESSION_END_SENT_KEY) != null) {
+            onException(session, e);
+            return;
+        }
+        
+        // Mark the transaction as completed, so pipelined responses which belong to it are not processed anymore
+        Integer id = (Integer) session.getAttribute(SMTP_TRANSACTION_ID_KEY);
+        session.setAttribute(SMTP_TRANSACTION_ID_KEY, id == null ? 0 : id + 1);
+        
+        session.setAttribute(TRANSACTION_EXCEPTION_KEY, e);
+        try {
+            next(session, SMTPRequestImpl.rset());
+        } catch (SMTPException e1) {
+            onException(session, e);
+        }
+    }
 
     @SuppressWarnings("unchecked")
     protected void onException(SMTPClientSession session, SMTPException e) {
         SMTPClientFutureImpl<Collection<FutureResult<Iterator<DeliveryRecipientStatus>>>> future = (SMTPClientFutureImpl<Collection<FutureResult<Iterator<DeliveryRecipientStatus>>>>) session.getAttribute(FUTURE_KEY);
+        if (future.isDone()) {
+            // All SMTPDeliveryEnvelope's were already processed, for example if the connection was closed while a pipelined QUIT was pending, or
+            // the delivery was resumed over a new SMTPClientSession
+            session.close();
+            return;
+        }
         
         List<FutureResult<Iterator<DeliveryRecipientStatus>>> resultList = ((List<FutureResult<Iterator<DeliveryRecipientStatus>>>) session.getAttribute(DELIVERY_RESULT_LIST_KEY));
         Iterator<SMTPDeliveryEnvelope> transactions = ((Iterator<SMTPDeliveryEnvelope>) session.getAttribute(SMTP_TRANSACTIONS_KEY));
         
-        resultList.add(DeliveryResultImpl.create(e));
+        // The current transaction may already be failed by a protocol-level SMTPException
+        SMTPException transactionException = (SMTPException) session.setAttribute(TRANSACTION_EXCEPTION_KEY, null);
+        addResult(session, resultList, (SMTPDeliveryEnvelope) session.getAttribute(CURRENT_SMTP_TRANSACTION_KEY), createEnvelopeResult(session, transactionException != null ? transactionException : e));
+        SMTPDeliveryEnvelope next = (SMTPDeliveryEnvelope) session.setAttribute(NEXT_SMTP_TRANSACTION_KEY, null);
+        if (next != null) {
+            // The next transaction was already taken from the iterator as it was pipelined
+            addResult(session, resultList, next, DeliveryResultImpl.create(e));
+        }
         while(transactions.hasNext()) {
             // Remove the transactions from iterator and place a DeliveryResult which contains a Exception
-            transactions.next();
-            resultList.add(DeliveryResultImpl.create(e));
+            addResult(session, resultList, transactions.next(), DeliveryResultImpl.create(e));
         }
         
         future.setResult(resultList);
@@ -91,6 +237,90 @@ public abstract class ChainedSMTPClientFutureListener<E> implements SMTPClientFu
         session.close();
     }
     
+    /**
+     * Add the result of the given {@link SMTPDeliveryEnvelope} to the results, if they are retained, and pass it to the 
+     * {@link DeliveryResultListener} of the {@link SMTPClientSession}'s {@link SMTPDeliveryAgentConfig}
+     * 
+     * @param session
+     * @param results
+     * @param envelope
+     * @param result
+     */
+    protected static void addResult(SMTPClientSession session, List<FutureResult<Iterator<DeliveryRecipientStatus>>> results, SMTPDeliveryEnvelope envelope, FutureResult<Iterator<DeliveryRecipientStatus>> result) {
+        addResult((SMTPDeliveryAgentConfig) session.getConfig(), results, envelope, result);
+    }
+    
+    /**
+     * Add the result of the given {@link SMTPDeliveryEnvelope} to the results, if they are retained, and pass it to the {@link DeliveryResultListener}
+     * of the {@link SMTPDeliveryAgentConfig}
+     * 
+     * @param config
+     * @param results
+     * @param envelope
+     * @param result
+     */
+    public static void addResult(SMTPDeliveryAgentConfig config, List<FutureResult<Iterator<DeliveryRecipientStatus>>> results, SMTPDeliveryEnvelope envelope, FutureResult<Iterator<DeliveryRecipientStatus>> result) {
+        DeliveryResultListener listener = config.getDeliveryResultListener();
+        if (listener != null) {
+            listener.onDeliveryResult(envelope, result);
+        }
+        if (config.isDeliveryResultsRetained()) {
+            results.add(result);
+        }
+    }
+    
+    /**
+     * Create the result for the current {@link SMTPDeliveryEnvelope} which failed because of the given {@link SMTPException}. If some of its 
+     * recipients were already completed by a previous transaction their {@link DeliveryRecipientStatus} is kept, so only the others are failed.
+     * 
+     * @param session
+     * @param e
+     * @return result
+     */
+    @SuppressWarnings("unchecked")
+    protected FutureResult<Iterator<DeliveryRecipientStatus>> createEnvelopeResult(SMTPClientSession session, SMTPException e) {
+        List<DeliveryRecipientStatus> completed = (List<DeliveryRecipientStatus>) session.getAttribute(ENVELOPE_STATUS_KEY);
+        if (completed == null) {
+            return DeliveryResultImpl.create(e);
+        }
+        return createEnvelopeResult(completed, getUnfinishedRecipients(session), e);
+    }
+    
+    /**
+     * Create the result for a {@link SMTPDeliveryEnvelope} of which only the given recipients failed because of the given {@link SMTPException}
+     * 
+     * @param completed the {@link DeliveryRecipientStatus}'s of the recipients which were already completed
+     * @param unfinished the recipients which were not completed
+     * @param e
+     * @return result
+     */
+    protected static FutureResult<Iterator<DeliveryRecipientStatus>> createEnvelopeResult(List<DeliveryRecipientStatus> completed, Collection<String> unfinished, SMTPException e) {
+        SMTPResponseImpl response = new SMTPResponseImpl(451);
+        response.addLine("4.3.0 Transaction not completed: " + e.getMessage());
+
+        List<DeliveryRecipientStatus> statusList = new ArrayList<DeliveryRecipientStatus>(completed);
+        for (String rcpt: unfinished) {
+            statusList.add(new DeliveryRecipientStatusImpl(rcpt, response));
+        }
+        return new DeliveryResultImpl(DeliveryRecipientStatusTable.create(statusList));
+    }
+    
+    /**
+     * Return the recipients of the current {@link SMTPDeliveryEnvelope} which were not completed yet
+     * 
+     * @param session
+     * @return recipients
+     */
+    @SuppressWarnings("unchecked")
+    private List<String> getUnfinishedRecipients(SMTPClientSession session) {
+        List<String> recipients = new ArrayList<String>((List<String>) session.getAttribute(TRANSACTION_RECIPIENTS_KEY));
+        List<String> pending = (List<String>) session.getAttribute(PENDING_RECIPIENTS_KEY);
+        if (pending != null) {
+            recipients.addAll(pending);
+        }
+        return recipients;
+    }
+    
     protected abstract void onResult(SMTPClientSession session, E result) throws SMTPException;
     
     @SuppressWarnings("unchecked")
@@ -101,27 +331,78 @@ public abstract class ChainedSMTPClientFutureListener<E> implements SMTPClientFu
         while (recipients.hasNext()) {
             statusList.add(new DeliveryRecipientStatusImpl(recipients.next(), response));
         }
+        
+        // The recipients which were not sent yet share the same fate
+        List<String> pending = (List<String>) session.setAttribute(PENDING_RECIPIENTS_KEY, null);
+        if (pending != null) {
+            for (String rcpt: pending) {
+                statusList.add(new DeliveryRecipientStatusImpl(rcpt, response));
+            }
+        }
 
         setDeliveryStatus(session);
     }
     
     /**
-     * Init the SMTPClienSesion by adding all needed data to the attributes
+     * Init the SMTPClienSesion by adding all needed data for the given {@link SMTPDeliveryEnvelope} to the attributes. If a maximal count of recipients 
+     * per transaction is known for the destination the recipients are split over more then one transaction.
      * 
      * @param session
+     * @param transaction
      */
-    @SuppressWarnings("unchecked")
-    private void initSession(SMTPClientSession session) {
-        Iterator<SMTPDeliveryEnvelope> transactionList = ((Iterator<SMTPDeliveryEnvelope>) session.getAttribute(SMTP_TRANSACTIONS_KEY));
-        SMTPDeliveryEnvelope transaction =  transactionList.next();
-        
+    protected void initSession(SMTPClientSession session, SMTPDeliveryEnvelope transaction) {
+        initSession(session, transaction, getMaxRecipients(session));
+    }
+    
+    private void initSession(SMTPClientSession session, SMTPDeliveryEnvelope transaction, int maxRecipients) {
         session.setAttribute(CURRENT_SMTP_TRANSACTION_KEY,transaction);
-        session.setAttribute(RECIPIENTS_KEY, transaction.getRecipients().iterator());
+        session.setAttribute(ENVELOPE_STATUS_KEY, null);
+        session.setAttribute(FOLLOW_UP_RESET_KEY, null);
+        initRecipients(session, transaction.getRecipients(), maxRecipients);
+    }
+    
+    /**
+     * Init the {@link SMTPClientSession} for a transaction which sends the given recipients of the current {@link SMTPDeliveryEnvelope}. If there are 
+     * more then <code>maxRecipients</code> the others are kept for a follow-up transaction.
+     * 
+     * @param session
+     * @param recipients
+     * @param maxRecipients the maximal count of recipients per transaction or <code>0</code> if there is no limit
+     */
+    private void initRecipients(SMTPClientSession session, Collection<String> recipients, int maxRecipients) {
+        List<String> transactionRecipients = new ArrayList<String>(recipients);
+        List<String> pending = null;
+        if (maxRecipients > 0 && transactionRecipients.size() > maxRecipients) {
+            pending = new ArrayList<String>(transactionRecipients.subList(maxRecipients, transactionRecipients.size()));
+            transactionRecipients = new ArrayList<String>(transactionRecipients.subList(0, maxRecipients));
+        }
+        session.setAttribute(TRANSACTION_RECIPIENTS_KEY, transactionRecipients);
+        session.setAttribute(PENDING_RECIPIENTS_KEY, pending);
+        session.setAttribute(RECIPIENTS_KEY, transactionRecipients.iterator());
         session.setAttribute(DELIVERY_STATUS_KEY, new ArrayList<DeliveryRecipientStatus>());
+        session.setAttribute(PIPELINING_WINDOW_KEY, null);
 
+        Integer id = (Integer) session.getAttribute(SMTP_TRANSACTION_ID_KEY);
+        session.setAttribute(SMTP_TRANSACTION_ID_KEY, id == null ? 0 : id + 1);
+        
         // cleanup old attribute
         session.setAttribute(CURRENT_RCPT_KEY, null);
-
+    }
+    
+    /**
+     * Return the maximal count of recipients per transaction which was learned for the destination of the {@link SMTPClientSession}, or <code>0</code> 
+     * if it is unknown
+     * 
+     * @param session
+     * @return maxRecipients
+     */
+    protected int getMaxRecipients(SMTPClientSession session) {
+        SMTPCapabilitiesCache cache = (SMTPCapabilitiesCache) session.getAttribute(SMTP_CAPABILITIES_CACHE_KEY);
+        InetSocketAddress destination = (InetSocketAddress) session.getAttribute(SMTP_DESTINATION_KEY);
+        if (cache == null || destination == null) {
+            return 0;
+        }
+        return cache.getMaxRecipients(destination);
     }
     
     
@@ -132,46 +413,399 @@ public abstract class ChainedSMTPClientFutureListener<E> implements SMTPClientFu
      * @param session
      * @throws SMTPException 
      */
+    @SuppressWarnings("unchecked")
     protected void pipelining(SMTPClientSession session) throws SMTPException {
         SMTPDeliveryEnvelope transaction = (SMTPDeliveryEnvelope) session.getAttribute(CURRENT_SMTP_TRANSACTION_KEY);
+        List<String> recipients = (List<String>) session.getAttribute(TRANSACTION_RECIPIENTS_KEY);
         
         session.setAttribute(PIPELINING_ACTIVE_KEY, true);
-        SMTPPipeliningRequest request = new SMTPPipeliningRequestImpl(transaction.getSender(), transaction.getRecipients().iterator());
-        next(session, request);
+        int window = ((SMTPDeliveryAgentConfig)session.getConfig()).getPipeliningWindow();
+        if (window > 0 && recipients.size() > window) {
+            // Only pipeline a window of RCPT's, so the input buffer of the SMTP Server is not flooded. The DATA or BDAT is sent 
+            // once all of them were acknowledged
+            session.setAttribute(PIPELINING_WINDOW_KEY, 0);
+            pipelineRecipients(session, mail(session, transaction));
+            if (window > 1) {
+                // Send the second half, so the window stays filled while the responses of the first one are received
+                pipelineRecipients(session, null);
+            }
+        } else if (session.getAttribute(CHUNKING_ACTIVE_KEY) != null) {
+            // When using BDAT the message itself can be pipelined directly after the RCPT's as there is no need to wait 
+            // for an intermediate response like for DATA
+            next(session, new SMTPPipeliningRequestImpl(mail(session, transaction), recipients.iterator(), false));
+            next(session, transaction.getMessage());
+            pipelineNext(session);
+        } else {
+            SMTPPipeliningRequest request = new SMTPPipeliningRequestImpl(mail(session, transaction), recipients.iterator(), true);
+            next(session, request);
+        }
         
     }
     
     
     /**
-     * Set the DeliveryStatus and notify the {@link SMTPClientFuture} if needed
+     * Pipeline the <code>RCPT</code>'s of the next window of recipients if not all of them were sent yet. Each call sends the half of 
+     * {@link SMTPDeliveryAgentConfig#getPipeliningWindow()}, so there are never more <code>RCPT</code>'s in flight if this is called once the 
+     * {@link SMTPResponse}'s of the previous one were received.
+     * 
+     * @param session
+     * @param mail the <code>MAIL</code> {@link SMTPRequest} which is sent in front of the first window, or <code>null</code>
+     * @throws SMTPException
+     */
+    @SuppressWarnings("unchecked")
+    protected void pipelineRecipients(SMTPClientSession session, SMTPRequest mail) throws SMTPException {
+        Integer sent = (Integer) session.getAttribute(PIPELINING_WINDOW_KEY);
+        if (sent == null) {
+            return;
+        }
+        List<String> recipients = (List<String>) session.getAttribute(TRANSACTION_RECIPIENTS_KEY);
+        int end = Math.min(sent + Math.max(1, ((SMTPDeliveryAgentConfig)session.getConfig()).getPipeliningWindow() / 2), recipients.size());
+        Iterator<String> window = recipients.subList(sent, end).iterator();
+        
+        // The key must be still present while the listener is created, so the window is only updated after it was sent
+        next(session, mail == null ? new SMTPPipeliningRequestImpl(window) : new SMTPPipeliningRequestImpl(mail, window, false));
+        session.setAttribute(PIPELINING_WINDOW_KEY, end < recipients.size() ? end : null);
+    }
+    
+    /**
+     * Set the DeliveryStatus and notify the {@link SMTPClientFuture} if needed.
+     * 
+     * If the SMTP Server rejected recipients with <code>452 4.5.3</code> because there were too many of them in the transaction, they are sent in a follow-up 
+     * transaction together with the recipients which were not sent yet. The learned limit is stored in the {@link SMTPCapabilitiesCache}, so the 
+     * recipients of later {@link SMTPDeliveryEnvelope}'s are split up front. This is not possible if the commands of the next {@link SMTPDeliveryEnvelope}
+     * (or the end of the {@link SMTPClientSession}) were already pipelined, in which case the <code>452</code> is reported for these recipients.
      * 
      * @param session
      * @throws SMTPException 
      */
     @SuppressWarnings("unchecked")
     protected void setDeliveryStatus(SMTPClientSession session) throws SMTPException {
-        SMTPClientFutureImpl<Collection<FutureResult<Iterator<DeliveryRecipientStatus>>>> future = (SMTPClientFutureImpl<Collection<FutureResult<Iterator<DeliveryRecipientStatus>>>>) session.getAttribute(FUTURE_KEY);
         List<DeliveryRecipientStatus> statusList = (List<DeliveryRecipientStatus>) session.getAttribute(DELIVERY_STATUS_KEY);
+        List<String> followUp = new ArrayList<String>();
+        
+        int limit = getTooManyRecipientsLimit(statusList);
+        if (limit > 0 && session.getAttribute(NEXT_SMTP_TRANSACTION_STARTED_KEY) == null && session.getAttribute(SMTP_SESSION_END_SENT_KEY) == null) {
+            learnMaxRecipients(session, limit);
+            
+            Iterator<DeliveryRecipientStatus> status = statusList.iterator();
+            while (status.hasNext()) {
+                DeliveryRecipientStatus s = status.next();
+                if (isTooManyRecipients(s.getResponse())) {
+                    followUp.add(s.getAddress());
+                    status.remove();
+                }
+            }
+        }
+        List<String> pending = (List<String>) session.getAttribute(PENDING_RECIPIENTS_KEY);
+        if (pending != null) {
+            followUp.addAll(pending);
+        }
+        
+        DeliveryResultListener listener = ((SMTPDeliveryAgentConfig)session.getConfig()).getDeliveryResultListener();
+        if (listener != null) {
+            SMTPDeliveryEnvelope transaction = (SMTPDeliveryEnvelope) session.getAttribute(CURRENT_SMTP_TRANSACTION_KEY);
+            for (DeliveryRecipientStatus s: statusList) {
+                listener.onRecipientStatus(transaction, s);
+            }
+        }
+        
+        List<DeliveryRecipientStatus> completed = (List<DeliveryRecipientStatus>) session.getAttribute(ENVELOPE_STATUS_KEY);
+        if (followUp.isEmpty()) {
+            if (completed != null) {
+                completed.addAll(statusList);
+                statusList = completed;
+            }
+            // The result may be retained for a long time, so keep it in the compact form
+            completeTransaction(session, new DeliveryResultImpl(DeliveryRecipientStatusTable.create(statusList)));
+        } else {
+            if (completed == null) {
+                completed = new ArrayList<DeliveryRecipientStatus>();
+                session.setAttribute(ENVELOPE_STATUS_KEY, completed);
+            }
+            completed.addAll(statusList);
+            initRecipients(session, followUp, getMaxRecipients(session));
+            
+            if (Boolean.TRUE.equals(session.getAttribute(SMTP_TRANSACTION_ACTIVE_KEY))) {
+                // The message was not accepted, so the transaction needs to be closed before the next one can be started
+                session.setAttribute(FOLLOW_UP_RESET_KEY, true);
+                next(session, SMTPRequestImpl.rset());
+            } else {
+                startTransaction(session);
+            }
+        }
+    }
+    
+    /**
+     * Return the count of recipients which were accepted before the first {@link DeliveryRecipientStatus} which was rejected because of too many 
+     * recipients, which is the maximal count of recipients per transaction of the SMTP Server. Recipients which were rejected for other reasons 
+     * are not counted. If no recipient was rejected because of too many recipients, or none was accepted before, <code>-1</code> is returned.
+     * 
+     * @param statusList
+     * @return limit
+     */
+    private static int getTooManyRecipientsLimit(List<DeliveryRecipientStatus> statusList) {
+        int accepted = 0;
+        for (int i = 0; i < statusList.size(); i++) {
+            DeliveryRecipientStatus status = statusList.get(i);
+            if (isTooManyRecipients(status.getResponse())) {
+                return accepted > 0 ? accepted : -1;
+            }
+            if (status.getStatus() == DeliveryStatus.Ok) {
+                accepted++;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Return <code>true</code> if the {@link SMTPResponse} rejected a recipient because there are too many recipients in the transaction. This is 
+     * the case if it is a <code>452</code> with the enhanced status code {@link #TOO_MANY_RECIPIENTS_STATUS} or, if the SMTP Server does not send 
+     * enhanced status codes, with a text which says so. Other <code>452</code>'s like <code>4.3.1</code> (insufficient system storage) are 
+     * temporary failures of the recipient, which would also fail in a follow-up transaction.
+     * 
+     * @param response
+     * @return tooManyRecipients
+     */
+    protected static boolean isTooManyRecipients(SMTPResponse response) {
+        if (response.getCode() != TOO_MANY_RECIPIENTS_CODE) {
+            return false;
+        }
+        List<String> lines = response.getLines();
+        if (lines.isEmpty()) {
+            return false;
+        }
+        String line = lines.get(0);
+        if (line.length() > 1 && Character.isDigit(line.charAt(0)) && line.charAt(1) == '.') {
+            return line.startsWith(TOO_MANY_RECIPIENTS_STATUS) 
+                    && (line.length() == TOO_MANY_RECIPIENTS_STATUS.length() || line.charAt(TOO_MANY_RECIPIENTS_STATUS.length()) == ' ');
+        }
+        return line.toLowerCase(Locale.US).contains("too many recipients");
+    }
+    
+    /**
+     * Store the maximal count of recipients per transaction in the {@link SMTPCapabilitiesCache} if it is lower then the one which is known already
+     * 
+     * @param session
+     * @param maxRecipients
+     */
+    private void learnMaxRecipients(SMTPClientSession session, int maxRecipients) {
+        SMTPCapabilitiesCache cache = (SMTPCapabilitiesCache) session.getAttribute(SMTP_CAPABILITIES_CACHE_KEY);
+        InetSocketAddress destination = (InetSocketAddress) session.getAttribute(SMTP_DESTINATION_KEY);
+        if (cache != null && destination != null) {
+            int current = cache.getMaxRecipients(destination);
+            if (current == 0 || maxRecipients < current) {
+                cache.putMaxRecipients(destination, maxRecipients);
+            }
+        }
+    }
+    
+    /**
+     * Complete the current transaction with the given result and start the next one or end the {@link SMTPClientSession} if there is 
+     * no {@link SMTPDeliveryEnvelope} left
+     * 
+     * @param session
+     * @param result
+     * @throws SMTPException
+     */
+    @SuppressWarnings("unchecked")
+    protected void completeTransaction(SMTPClientSession session, FutureResult<Iterator<DeliveryRecipientStatus>> result) throws SMTPException {
+        SMTPClientFutureImpl<Collection<FutureResult<Iterator<DeliveryRecipientStatus>>>> future = (SMTPClientFutureImpl<Collection<FutureResult<Iterator<DeliveryRecipientStatus>>>>) session.getAttribute(FUTURE_KEY);
         List<FutureResult<Iterator<DeliveryRecipientStatus>>> resultList = ((List<FutureResult<Iterator<DeliveryRecipientStatus>>>) session.getAttribute(DELIVERY_RESULT_LIST_KEY));
         Iterator<SMTPDeliveryEnvelope> transactions = ((Iterator<SMTPDeliveryEnvelope>) session.getAttribute(SMTP_TRANSACTIONS_KEY));
 
-        resultList.add(new DeliveryResultImpl(statusList));
+        addResult(session, resultList, (SMTPDeliveryEnvelope) session.getAttribute(CURRENT_SMTP_TRANSACTION_KEY), result);
         
-        if (!transactions.hasNext()) {
+        SMTPDeliveryEnvelope next = (SMTPDeliveryEnvelope) session.setAttribute(NEXT_SMTP_TRANSACTION_KEY, null);
+        if (next != null) {
+            Boolean chunking = (Boolean) session.setAttribute(NEXT_SMTP_TRANSACTION_STARTED_KEY, null);
+            
+            // If the commands were already sent the recipients must not be split anymore
+            initSession(session, next, chunking == null ? getMaxRecipients(session) : 0);
+            if (chunking == null) {
+                startTransaction(session);
+            } else if (chunking) {
+                // The commands and the message were already sent, so pipeline the next transaction now
+                session.setAttribute(CHUNKING_ACTIVE_KEY, true);
+                pipelineNext(session);
+            } else {
+                // The commands were already sent, so just wait for the responses
+                session.setAttribute(CHUNKING_ACTIVE_KEY, null);
+            }
+        } else if (!transactions.hasNext()) {
             future.setResult(resultList);
 
-            next(session, SMTPRequestImpl.quit());
+            if (session.getAttribute(SMTP_SESSION_END_SENT_KEY) == null) {
+                endSession(session);
+            }
         } else {
-            initSession(session);
-            if (session.getSupportedExtensions().contains(PIPELINING_EXTENSION) && ((SMTPDeliveryAgentConfig)session.getConfig()).getPipeliningMode() != PipeliningMode.NO) {
-                pipelining(session);
-            } else {
-                String sender = ((SMTPDeliveryEnvelope) session.getAttribute(CURRENT_SMTP_TRANSACTION_KEY)).getSender();
+            initSession(session, transactions.next());
+            startTransaction(session);
+        }
 
-                next(session, SMTPRequestImpl.mail(sender));
+    }
+    
+    /**
+     * Pipeline the commands of the next {@link SMTPDeliveryEnvelope} directly after the message of the current one was sent, without waiting for 
+     * its final {@link SMTPResponse}. If there is no {@link SMTPDeliveryEnvelope} left the {@link SMTPClientSession} is ended instead. 
+     * 
+     * This is only done if <code>PIPELINING</code> is active and it was enabled via {@link SMTPDeliveryAgentConfig#isTransactionPipelining()}. As the 
+     * {@link SMTPResponse}'s are received in order, the ones of the next {@link SMTPDeliveryEnvelope} will only be processed after the current one 
+     * was completed.
+     * 
+     * @param session
+     * @throws SMTPException
+     */
+    @SuppressWarnings("unchecked")
+    protected void pipelineNext(SMTPClientSession session) throws SMTPException {
+        if (session.getAttribute(PIPELINING_ACTIVE_KEY) == null || !((SMTPDeliveryAgentConfig)session.getConfig()).isTransactionPipelining()) {
+            return;
+        }
+        if (session.getAttribute(PENDING_RECIPIENTS_KEY) != null || getTooManyRecipientsLimit((List<DeliveryRecipientStatus>) session.getAttribute(DELIVERY_STATUS_KEY)) > 0) {
+            // A follow-up transaction is needed for the current SMTPDeliveryEnvelope
+            return;
+        }
+        Iterator<SMTPDeliveryEnvelope> transactions = ((Iterator<SMTPDeliveryEnvelope>) session.getAttribute(SMTP_TRANSACTIONS_KEY));
+        if (!transactions.hasNext()) {
+            session.setAttribute(SMTP_SESSION_END_SENT_KEY, true);
+            endSession(session);
+            return;
+        }
+        
+        SMTPDeliveryEnvelope transaction = transactions.next();
+        session.setAttribute(NEXT_SMTP_TRANSACTION_KEY, transaction);
+        if (isMessageSizeExceeded(session.getCapabilities(), transaction.getMessage())) {
+            // Nothing to send as it will get failed locally once the current transaction is complete
+            return;
+        }
+        int maxRecipients = getMaxRecipients(session);
+        int window = ((SMTPDeliveryAgentConfig)session.getConfig()).getPipeliningWindow();
+        int recipients = transaction.getRecipients().size();
+        if ((maxRecipients > 0 && recipients > maxRecipients) || (window > 0 && recipients > window)) {
+            // The recipients need to be split or pipelined in windows, so start the transaction once the current one is complete
+            return;
+        }
+        
+        boolean chunking = useChunking(session, transaction.getMessage());
+        session.setAttribute(NEXT_SMTP_TRANSACTION_STARTED_KEY, chunking);
+        next(session, new SMTPPipeliningRequestImpl(mail(session, transaction), transaction.getRecipients().iterator(), !chunking));
+        if (chunking) {
+            next(session, transaction.getMessage(), transaction.getRecipients().size(), true);
+        }
+    }
+    
+    /**
+     * Start the transaction for the current {@link SMTPDeliveryEnvelope}. This is done via <code>PIPELINING</code> if the SMTP Server supports it and 
+     * it is not disabled by the {@link SMTPDeliveryAgentConfig}.
+     * 
+     * @param session
+     * @throws SMTPException
+     */
+    protected void startTransaction(SMTPClientSession session) throws SMTPException {
+        session.setAttribute(SMTP_SESSION_ESTABLISHED_KEY, true);
+        
+        SMTPDeliveryEnvelope transaction = (SMTPDeliveryEnvelope) session.getAttribute(CURRENT_SMTP_TRANSACTION_KEY);
+        if (isMessageSizeExceeded(session.getCapabilities(), transaction.getMessage())) {
+            // the SMTP Server would reject the message anyway, so don't waste bandwidth and fail it without sending anything
+            setDeliveryStatusForAll(session, MESSAGE_SIZE_EXCEEDED_RESPONSE);
+            return;
+        }
+        
+        if (useChunking(session)) {
+            session.setAttribute(CHUNKING_ACTIVE_KEY, true);
+        } else {
+            session.setAttribute(CHUNKING_ACTIVE_KEY, null);
+        }
+        
+        // We use a SMTPPipelinedRequest if the SMTPServer supports
+        // PIPELINING. This will allow the NETTY to get
+        // the MAX throughput as the encoder will write it out in one
+        // buffer if possible. This result in less system calls
+        if (session.getCapabilities().isSupported(PIPELINING_EXTENSION) && ((SMTPDeliveryAgentConfig)session.getConfig()).getPipeliningMode() != PipeliningMode.NO) {
+            pipelining(session);
+        } else {
+            next(session, mail(session, transaction));
+        }
+    }
+    
+    /**
+     * Create the <code>MAIL</code> {@link SMTPRequest} for the given {@link SMTPDeliveryEnvelope}. If the SMTP Server supports <code>8BITMIME</code>
+     * the message is sent without converting it to 7bit, so <code>BODY=8BITMIME</code> is added. If the SMTP Server supports <code>SIZE</code> and the 
+     * size of the {@link SMTPMessage} is known <code>SIZE=</code> is added.
+     * 
+     * @param session
+     * @param transaction
+     * @return mail
+     */
+    protected SMTPRequest mail(SMTPClientSession session, SMTPDeliveryEnvelope transaction) {
+        SMTPCapabilities capabilities = session.getCapabilities();
+        String parameters = null;
+        if (capabilities.isSupported(_8BITMIME_EXTENSION)) {
+            parameters = BODY_8BITMIME_PARAMETER;
+        }
+        long size = transaction.getMessage().getSize();
+        if (size >= 0 && capabilities.isSupported(SIZE_EXTENSION)) {
+            if (parameters == null) {
+                parameters = SIZE_PARAMETER + size;
+            } else {
+                parameters = parameters + " " + SIZE_PARAMETER + size;
             }
         }
-
+        return SMTPRequestImpl.mail(transaction.getSender(), parameters);
+    }
+    
+    /**
+     * Return <code>true</code> if the size of the {@link SMTPMessage} is known and exceeds the maximal message size which is advertised in the 
+     * given {@link SMTPCapabilities}
+     * 
+     * @param capabilities
+     * @param msg
+     * @return exceeded
+     */
+    public static boolean isMessageSizeExceeded(SMTPCapabilities capabilities, SMTPMessage msg) {
+        long maxSize = capabilities.getMaxMessageSize();
+        return maxSize > 0 && msg.getSize() > maxSize && capabilities.isSupported(SIZE_EXTENSION);
+    }
+    
+    /**
+     * Return <code>true</code> if the {@link SMTPMessage} of the current {@link SMTPDeliveryEnvelope} should get sent via <code>BDAT</code>. This is 
+     * only the case if the SMTP Server supports <code>CHUNKING</code>, it is enabled by the {@link SMTPDeliveryAgentConfig} and the size of the {@link SMTPMessage}
+     * is known up front.
+     * 
+     * @param session
+     * @return chunking
+     */
+    protected boolean useChunking(SMTPClientSession session) {
+        return useChunking(session, ((SMTPDeliveryEnvelope) session.getAttribute(CURRENT_SMTP_TRANSACTION_KEY)).getMessage());
+    }
+    
+    /**
+     * Return <code>true</code> if the given {@link SMTPMessage} should get sent via <code>BDAT</code>
+     * 
+     * @param session
+     * @param msg
+     * @return chunking
+     * @see #useChunking(SMTPClientSession)
+     */
+    protected boolean useChunking(SMTPClientSession session, SMTPMessage msg) {
+        if (((SMTPDeliveryAgentConfig)session.getConfig()).getChunkingMode() == ChunkingMode.NO || !session.getCapabilities().isSupported(CHUNKING_EXTENSION)) {
+            return false;
+        }
+        return msg instanceof SMTPByteArrayMessage || msg instanceof SMTPFileMessageImpl;
+    }
+    
+    /**
+     * End the {@link SMTPClientSession} after all {@link SMTPDeliveryEnvelope}'s were processed. If the {@link SMTPClientSession} is pooled it will
+     * get reset via <code>RSET</code> and released to the {@link SMTPClientSessionPool}, otherwise a <code>QUIT</code> is sent.
+     * 
+     * @param session
+     * @throws SMTPException
+     */
+    protected void endSession(SMTPClientSession session) throws SMTPException {
+        if (session.getAttribute(SMTP_CLIENT_SESSION_POOL_KEY) != null && session.getAttribute(SMTP_SESSION_ESTABLISHED_KEY) != null) {
+            next(session, SMTPRequestImpl.rset());
+        } else {
+            next(session, SMTPRequestImpl.quit());
+        }
     }
     
     protected final void next(SMTPClientSession session, SMTPPipeliningRequest request) throws SMTPException {
@@ -186,7 +820,6 @@ public abstract class ChainedSMTPClientFutureListener<E> implements SMTPClientFu
     
     @SuppressWarnings("unchecked")
     protected final void next(SMTPClientSession session, SMTPMessage request) throws SMTPException {
-        SMTPClientFutureListenerFactory factory = (SMTPClientFutureListenerFactory) session.getAttribute(SMTP_CLIENT_FUTURE_LISTENER_FACTORY);
         List<DeliveryRecipientStatus> statusList = (List<DeliveryRecipientStatus>) session.getAttribute(DELIVERY_STATUS_KEY);
         int rcpts = 0;
         for(DeliveryRecipientStatus status: statusList) {
@@ -194,6 +827,11 @@ public abstract class ChainedSMTPClientFutureListener<E> implements SMTPClientFu
                 rcpts++;
             }
         }
-        session.send(new SMTPMessageSubmitImpl(request, rcpts)).addListener(factory.getListener(session, request));
+        next(session, request, rcpts, session.getAttribute(CHUNKING_ACTIVE_KEY) != null);
+    }
+    
+    protected final void next(SMTPClientSession session, SMTPMessage request, int rcpts, boolean chunking) throws SMTPException {
+        SMTPClientFutureListenerFactory factory = (SMTPClientFutureListenerFactory) session.getAttribute(SMTP_CLIENT_FUTURE_LISTENER_FACTORY);
+        session.send(new SMTPMessageSubmitImpl(request, rcpts, chunking)).addListener(factory.getListener(session, request));
     }
 }
\ No newline at end of file
@@ -0,0 +1,73 @@
+/**
+* Licensed to niosmtp developers ('niosmtp') under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* niosmtp licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package me.normanmaurer.niosmtp.delivery.chain;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+import me.normanmaurer.niosmtp.SMTPException;
+import me.normanmaurer.niosmtp.SMTPPipeliningRequest;
+import me.normanmaurer.niosmtp.SMTPResponse;
+import me.normanmaurer.niosmtp.delivery.DeliveryRecipientStatus;
+import me.normanmaurer.niosmtp.delivery.impl.DeliveryRecipientStatusImpl;
+import me.normanmaurer.niosmtp.transport.SMTPClientSession;
+
+
+/**
+ * {@link ChainedSMTPClientFutureListener} implementation which will handle the {@link SMTPResponse}'s of the <code>MAIL</code> and <code>RCPT</code> 
+ * {@link SMTPPipeliningRequest} if the message is sent via <code>BDAT</code>. 
+ * 
+ * As the <code>BDAT</code> is pipelined directly after the <code>RCPT</code>'s, this will only record the status of the recipients. The transaction is 
+ * completed by the {@link PostDataResponseListener} once the <code>BDAT</code> {@link SMTPResponse} was received.
+ * 
+ * @author Norman Maurer
+ *
+ */
+public class ChunkingPipeliningResponseListener extends ChainedSMTPClientFutureListener<Collection<SMTPResponse>> {
+
+    /**
+     * Get instance of this {@link ChunkingPipeliningResponseListener} implementation
+     */
+    public final static ChunkingPipeliningResponseListener INSTANCE = new ChunkingPipeliningResponseListener();
+    
+    private ChunkingPipeliningResponseListener() {
+        
+    }
+    
+    @SuppressWarnings("unchecked")
+    @Override
+    protected void onResult(SMTPClientSession session, Collection<SMTPResponse> result) throws SMTPException {
+        Iterator<String> recipients = (Iterator<String>) session.getAttribute(RECIPIENTS_KEY);
+        List<DeliveryRecipientStatus> statusList = (List<DeliveryRecipientStatus>) session.getAttribute(DELIVERY_STATUS_KEY);
+        Iterator<SMTPResponse> responses = result.iterator();
+
+        SMTPResponse mailResponse = responses.next();
+        if (mailResponse.getCode() >= 400) {
+            // MAIL was rejected so all recipients failed with the same response
+            while (recipients.hasNext()) {
+                statusList.add(new DeliveryRecipientStatusImpl(recipients.next(), mailResponse));
+            }
+        } else {
+            session.setAttribute(SMTP_TRANSACTION_ACTIVE_KEY, true);
+            while (recipients.hasNext()) {
+                statusList.add(new DeliveryRecipientStatusImpl(recipients.next(), responses.next()));
+            }
+        }
+    }
+
+}
@@ -60,8 +60,12 @@ public class DataResponseListener extends AbstractPipeliningResponseListener {
 
         int code = response.getCode();
 
-        if (code < 400) {
+        if (code == 354) {
             next(session, msg);
+            pipelineNext(session);
+        } else if (code < 400) {
+            // The SMTP Server did not switch to the DATA mode, so it's not possible to send the message within this transaction
+            throw new SMTPException("Unexpected response to DATA: " + response);
         } else {
             if (!pipeliningActive || !future.isDone()) {
                 Iterator<DeliveryRecipientStatus> status = statusList.iterator();
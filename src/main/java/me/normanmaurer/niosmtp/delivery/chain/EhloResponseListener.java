@@ -16,7 +16,7 @@
 */
 package me.normanmaurer.niosmtp.delivery.chain;
 
-import java.util.Iterator;
+import java.net.InetSocketAddress;
 import java.util.Set;
 
 import me.normanmaurer.niosmtp.SMTPClientFutureListener;
@@ -26,19 +26,25 @@ import me.normanmaurer.niosmtp.SMTPResponse;
 import me.normanmaurer.niosmtp.SMTPUnsupportedExtensionException;
 import me.normanmaurer.niosmtp.core.SMTPRequestImpl;
 import me.normanmaurer.niosmtp.delivery.Authentication;
+import me.normanmaurer.niosmtp.delivery.Authentication.AuthMode;
+import me.normanmaurer.niosmtp.delivery.OAuthAuthentication;
 import me.normanmaurer.niosmtp.delivery.SMTPDeliveryAgentConfig;
 import me.normanmaurer.niosmtp.delivery.SMTPDeliveryAgentConfig.PipeliningMode;
-import me.normanmaurer.niosmtp.delivery.SMTPDeliveryEnvelope;
+import me.normanmaurer.niosmtp.transport.SMTPCapabilities;
+import me.normanmaurer.niosmtp.transport.SMTPCapabilitiesCache;
+import me.normanmaurer.niosmtp.transport.SMTPCapabilitiesCache.StartTlsOutcome;
 import me.normanmaurer.niosmtp.transport.SMTPClientConstants;
 import me.normanmaurer.niosmtp.transport.SMTPDeliveryMode;
 import me.normanmaurer.niosmtp.transport.SMTPClientSession;
+import me.normanmaurer.niosmtp.transport.impl.SMTPCapabilitiesImpl;
 
 /**
  * {@link ChainedSMTPClientFutureListener} implementation which will handle the <code>EHLO</code> {@link SMTPResponse}
  * 
  * It will write the next {@link SMTPRequest} to the {@link SMTPClientSession} with the right {@link SMTPClientFutureListener} added.
  * 
- * This implementation also handles the <code>PIPELINING</code> and also the <code>STARTTLS</code> extension
+ * This implementation also handles the <code>PIPELINING</code> and also the <code>STARTTLS</code> extension. As required by RFC 3207 the 
+ * <code>EHLO</code> is sent again once TLS was negotiated, and only the {@link SMTPCapabilities} which were advertised then are used and cached.
  * 
  * @author Norman Maurer
  *
@@ -81,59 +87,24 @@ public class EhloResponseListener extends ChainedSMTPClientFutureListener<SMTPRe
 
         } else if (code < 400) {
 
-            boolean supportsPipelining = false;
-            boolean supportsStartTLS = false;
-            initSupportedExtensions(session, response);
+            SMTPCapabilities capabilities = SMTPCapabilitiesImpl.parse(response);
+            session.setCapabilities(capabilities);
 
-            // Check if the SMTPServer supports PIPELINING
-            Set<String> extensions = session.getSupportedExtensions();
-
-            if (extensions.contains(PIPELINING_EXTENSION)) {
-                supportsPipelining = true;
-            }
-            if (extensions.contains(STARTTLS_EXTENSION)) {
-                supportsStartTLS = true;
-            }
-
-            // Check if we depend on pipelining
-            if (!supportsPipelining && ((SMTPDeliveryAgentConfig)session.getConfig()).getPipeliningMode() == PipeliningMode.DEPEND) {
-                throw  PIPELINING_NOT_SUPPORTED_EXECTION;
-            }
-
-            if (!supportsStartTLS && session.getDeliveryMode() == SMTPDeliveryMode.STARTTLS_DEPEND) {
-                throw STARTTLS_NOT_SUPPORTED_EXECTION;
-            }
-            
-            
-
-            if (supportsStartTLS && (session.getDeliveryMode() == SMTPDeliveryMode.STARTTLS_DEPEND || session.getDeliveryMode() == SMTPDeliveryMode.STARTTLS_TRY)) {
-                next(session, SMTPRequestImpl.startTls());
-            } else {
-                Authentication auth = ((SMTPDeliveryAgentConfig)session.getConfig()).getAuthentication();
-                if (auth == null) {
-                    // We use a SMTPPipelinedRequest if the SMTPServer supports
-                    // PIPELINING. This will allow the NETTY to get
-                    // the MAX throughput as the encoder will write it out in one
-                    // buffer if possible. This result in less system calls
-                    if (supportsPipelining && ((SMTPDeliveryAgentConfig)session.getConfig()).getPipeliningMode() != PipeliningMode.NO) {
-                        pipelining(session);
-                    } else {
-                        String mail = ((SMTPDeliveryEnvelope)session.getAttribute(CURRENT_SMTP_TRANSACTION_KEY)).getSender();
-                        next(session, SMTPRequestImpl.mail(mail));
-                    }
-                } else {
-                    switch (auth.getMode()) {
-                    case Plain:
-                        next(session, SMTPRequestImpl.authPlain());
-
-                        break;
-                    case Login:
-                        next(session, SMTPRequestImpl.authLogin());
-                    default:
-                        break;
+            SMTPDeliveryMode deliveryMode = session.getDeliveryMode();
+            if ((deliveryMode == SMTPDeliveryMode.STARTTLS_DEPEND || deliveryMode == SMTPDeliveryMode.STARTTLS_TRY) && !session.isEncrypted()) {
+                boolean required = StartTlsResponseListener.isTlsRequired(session);
+                if (!capabilities.isSupported(STARTTLS_EXTENSION)) {
+                    StartTlsResponseListener.putStartTlsOutcome(session, StartTlsOutcome.NOT_ADVERTISED);
+                    if (required) {
+                        throw STARTTLS_NOT_SUPPORTED_EXECTION;
                     }
+                } else if (required || StartTlsResponseListener.getStartTlsOutcome(session) != StartTlsOutcome.FAILED) {
+                    // the capabilities are replaced by the ones of the EHLO which is sent after TLS was negotiated, so they are not cached
+                    next(session, SMTPRequestImpl.startTls());
+                    return;
                 }
             }
+            proceed(session, capabilities);
 
         } else {
             setDeliveryStatusForAll(session, response);
@@ -145,21 +116,110 @@ public class EhloResponseListener extends ChainedSMTPClientFutureListener<SMTPRe
     
     
     /**
-     * Return all supported extensions which are included in the {@link SMTPResponse}
+     * Use the given {@link SMTPCapabilities} as the final ones of the {@link SMTPClientSession}, which means they are cached for the destination 
+     * and checked before authenticating. This must only be called once it is clear that no (more) <code>STARTTLS</code> will be negotiated.
+     * 
+     * @param session
+     * @param capabilities
+     * @throws SMTPException
+     */
+    void proceed(SMTPClientSession session, SMTPCapabilities capabilities) throws SMTPException {
+        cacheCapabilities(session, capabilities);
+
+        // Check if we depend on pipelining
+        if (!capabilities.isSupported(PIPELINING_EXTENSION) && ((SMTPDeliveryAgentConfig)session.getConfig()).getPipeliningMode() == PipeliningMode.DEPEND) {
+            throw  PIPELINING_NOT_SUPPORTED_EXECTION;
+        }
+        authenticate(session, capabilities);
+    }
+    
+    /**
+     * Authenticate with the {@link Authentication} of the {@link SMTPDeliveryAgentConfig} or start the transaction if there is none
      * 
-     * @param response
-     * @return extensions
+     * @param session
+     * @param capabilities
+     * @throws SMTPException
      */
-    private void initSupportedExtensions(SMTPClientSession session, SMTPResponse response) {
-        Iterator<String> lines = response.getLines().iterator();
-        while(lines.hasNext()) {
-            String line = lines.next();
-            if (line.equalsIgnoreCase(PIPELINING_EXTENSION)) {
-                session.addSupportedExtensions(PIPELINING_EXTENSION);
-            } else if (line.equalsIgnoreCase(STARTTLS_EXTENSION)) {
-                session.addSupportedExtensions(STARTTLS_EXTENSION);
+    private void authenticate(SMTPClientSession session, SMTPCapabilities capabilities) throws SMTPException {
+        Authentication auth = ((SMTPDeliveryAgentConfig)session.getConfig()).getAuthentication();
+        if (auth == null) {
+            startTransaction(session);
+        } else {
+            AuthMode mode = selectAuthMode(capabilities, auth);
+            switch (mode) {
+            case Plain:
+                // Send the credentials as initial-response, so only one round-trip is needed
+                next(session, SMTPRequestImpl.authPlain(EncodedCredentials.get(session).getPlain()));
+
+                break;
+            case Login:
+                next(session, SMTPRequestImpl.authLogin());
+                break;
+            case XOAuth2:
+            case OAuthBearer:
+                // The token is requested asynchronously, so the AUTH is sent once it is available
+                AuthOAuthResponseListener.INSTANCE.authenticate(session, (OAuthAuthentication) auth, mode);
+                break;
+            default:
+                break;
             }
         }
     }
     
+    /**
+     * Select the {@link AuthMode} to use. The one of the {@link Authentication} is preferred, but if the SMTP Server advertised its SASL mechanisms
+     * and it is not one of them, the first supported {@link AuthMode} which was advertised is used. {@link OAuthAuthentication} can only use
+     * <code>XOAUTH2</code> or <code>OAUTHBEARER</code>, as there is no password.
+     * 
+     * @param capabilities
+     * @param auth
+     * @return mode
+     */
+    private static AuthMode selectAuthMode(SMTPCapabilities capabilities, Authentication auth) {
+        Set<String> mechanisms = capabilities.getAuthMechanisms();
+        AuthMode mode = auth.getMode();
+        if (mechanisms.isEmpty() || mechanisms.contains(getMechanism(mode))) {
+            return mode;
+        }
+        boolean oauth = auth instanceof OAuthAuthentication;
+        AuthMode[] modes = AuthMode.values();
+        for (int i = 0; i < modes.length; i++) {
+            if (isOAuth(modes[i]) == oauth && mechanisms.contains(getMechanism(modes[i]))) {
+                return modes[i];
+            }
+        }
+        return mode;
+    }
+    
+    private static String getMechanism(AuthMode mode) {
+        switch (mode) {
+        case Login:
+            return SMTPRequest.AUTH_LOGIN_ARGUMENT;
+        case XOAuth2:
+            return SMTPRequest.AUTH_XOAUTH2_ARGUMENT;
+        case OAuthBearer:
+            return SMTPRequest.AUTH_OAUTHBEARER_ARGUMENT;
+        default:
+            return SMTPRequest.AUTH_PLAIN_ARGUMENT;
+        }
+    }
+    
+    private static boolean isOAuth(AuthMode mode) {
+        return mode == AuthMode.XOAuth2 || mode == AuthMode.OAuthBearer;
+    }
+    
+    /**
+     * Cache the {@link SMTPCapabilities} for the destination of the {@link SMTPClientSession} if a {@link SMTPCapabilitiesCache} is used
+     * 
+     * @param session
+     * @param capabilities
+     */
+    private static void cacheCapabilities(SMTPClientSession session, SMTPCapabilities capabilities) {
+        SMTPCapabilitiesCache cache = (SMTPCapabilitiesCache) session.getAttribute(SMTP_CAPABILITIES_CACHE_KEY);
+        InetSocketAddress destination = (InetSocketAddress) session.getAttribute(SMTP_DESTINATION_KEY);
+        if (cache != null && destination != null) {
+            cache.put(destination, capabilities);
+        }
+    }
+    
 }
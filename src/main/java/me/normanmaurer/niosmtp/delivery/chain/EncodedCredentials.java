@@ -0,0 +1,114 @@
+/**
+* Licensed to niosmtp developers ('niosmtp') under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* niosmtp licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package me.normanmaurer.niosmtp.delivery.chain;
+
+import me.normanmaurer.niosmtp.delivery.Authentication;
+import me.normanmaurer.niosmtp.delivery.SMTPDeliveryAgentConfig;
+import me.normanmaurer.niosmtp.delivery.SMTPDeliverySessionConstants;
+import me.normanmaurer.niosmtp.delivery.impl.SMTPDeliveryAgentConfigImpl;
+import me.normanmaurer.niosmtp.transport.SMTPClientConstants;
+import me.normanmaurer.niosmtp.transport.SMTPClientSession;
+
+import org.apache.commons.codec.binary.Base64;
+
+/**
+ * The base64 encoded credentials of an {@link Authentication} as they are sent while <code>AUTH</code>. 
+ * 
+ * If a {@link SMTPDeliveryAgentConfigImpl} is used they are cached in it, so they are only encoded again once the username or password 
+ * of the {@link Authentication} change. Each {@link SMTPClientSession} stores the ones it started with, so all steps of the <code>AUTH</code> 
+ * use the same credentials, while a new {@link SMTPClientSession} gets the current ones.
+ * 
+ * @author Norman Maurer
+ *
+ */
+public final class EncodedCredentials implements SMTPClientConstants, SMTPDeliverySessionConstants {
+
+    private final String rawUsername;
+    private final String rawPassword;
+    private final String plain;
+    private final String username;
+    private final String password;
+    
+    private EncodedCredentials(String rawUsername, String rawPassword) {
+        this.rawUsername = rawUsername;
+        this.rawPassword = rawPassword;
+        // authzid NUL authcid NUL passwd as specified in RFC 4616, with an empty authzid
+        this.plain = encode("\0" + rawUsername + "\0" + rawPassword);
+        this.username = encode(rawUsername);
+        this.password = encode(rawPassword);
+    }
+    
+    private static String encode(String value) {
+        return new String(Base64.encodeBase64(value.getBytes(CHARSET)), CHARSET);
+    }
+    
+    /**
+     * Return the {@link EncodedCredentials} of the {@link Authentication} of the {@link SMTPDeliveryAgentConfig} which is used by the given 
+     * {@link SMTPClientSession}
+     * 
+     * @param session
+     * @return credentials
+     */
+    static EncodedCredentials get(SMTPClientSession session) {
+        EncodedCredentials credentials = (EncodedCredentials) session.getAttribute(ENCODED_CREDENTIALS_KEY);
+        if (credentials == null) {
+            SMTPDeliveryAgentConfig config = (SMTPDeliveryAgentConfig)session.getConfig();
+            Authentication auth = config.getAuthentication();
+            String rawUsername = auth.getUsername();
+            String rawPassword = auth.getPassword();
+            if (config instanceof SMTPDeliveryAgentConfigImpl) {
+                SMTPDeliveryAgentConfigImpl configImpl = (SMTPDeliveryAgentConfigImpl) config;
+                credentials = configImpl.getEncodedCredentials();
+                if (credentials == null || !rawUsername.equals(credentials.rawUsername) || !rawPassword.equals(credentials.rawPassword)) {
+                    credentials = new EncodedCredentials(rawUsername, rawPassword);
+                    configImpl.setEncodedCredentials(credentials);
+                }
+            } else {
+                credentials = new EncodedCredentials(rawUsername, rawPassword);
+            }
+            session.setAttribute(ENCODED_CREDENTIALS_KEY, credentials);
+        }
+        return credentials;
+    }
+    
+    /**
+     * Return the encoded credentials for <code>AUTH PLAIN</code>
+     * 
+     * @return plain
+     */
+    public String getPlain() {
+        return plain;
+    }
+    
+    /**
+     * Return the encoded username for <code>AUTH LOGIN</code>
+     * 
+     * @return username
+     */
+    public String getUsername() {
+        return username;
+    }
+    
+    /**
+     * Return the encoded password for <code>AUTH LOGIN</code>
+     * 
+     * @return password
+     */
+    public String getPassword() {
+        return password;
+    }
+}
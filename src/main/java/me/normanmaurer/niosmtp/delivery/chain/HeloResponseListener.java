@@ -18,10 +18,9 @@ package me.normanmaurer.niosmtp.delivery.chain;
 
 import me.normanmaurer.niosmtp.SMTPException;
 import me.normanmaurer.niosmtp.SMTPResponse;
-import me.normanmaurer.niosmtp.core.SMTPRequestImpl;
-import me.normanmaurer.niosmtp.delivery.SMTPDeliveryEnvelope;
 import me.normanmaurer.niosmtp.transport.SMTPClientConstants;
 import me.normanmaurer.niosmtp.transport.SMTPClientSession;
+import me.normanmaurer.niosmtp.transport.impl.SMTPCapabilitiesImpl;
 
 /**
  * {@link me.normanmaurer.niosmtp.delivery.chain.ChainedSMTPClientFutureListener} implementation which will handle the <code>HELO</code> {@link me.normanmaurer.niosmtp.SMTPResponse}
@@ -50,10 +49,10 @@ public class HeloResponseListener extends ChainedSMTPClientFutureListener<SMTPRe
     public void onResult(SMTPClientSession session, SMTPResponse response) throws SMTPException {
         int code = response.getCode();
 
-        String mail = ((SMTPDeliveryEnvelope)session.getAttribute(CURRENT_SMTP_TRANSACTION_KEY)).getSender();
-
         if (code < 400) {
-            next(session, SMTPRequestImpl.mail(mail));
+            // HELO does not support any EXTENSION
+            session.setCapabilities(SMTPCapabilitiesImpl.EMPTY);
+            startTransaction(session);
         } else {
             setDeliveryStatusForAll(session, response);
 
@@ -61,6 +61,7 @@ public class LMTPPostDataResponseCallback extends ChainedSMTPClientFutureListene
                 ((DeliveryRecipientStatusImpl)s).setResponse(responses.next());
             }
         }            
+        session.setAttribute(SMTP_TRANSACTION_ACTIVE_KEY, false);
         setDeliveryStatus(session);        
     }
 }
@@ -43,7 +43,9 @@ public class LMTPWelcomeResponseListener extends ChainedSMTPClientFutureListener
     public void onResult(SMTPClientSession session, SMTPResponse response) throws SMTPException {
         int code = response.getCode();
         if (code < 400) {          
-            next(session, LMTPRequest.lhlo(((SMTPDeliveryAgentConfig) session.getConfig()).getHeloName()));
+            LMTPRequest lhlo = LMTPRequest.lhlo(((SMTPDeliveryAgentConfig) session.getConfig()).getHeloName());
+            session.setAttribute(HELLO_REQUEST_KEY, lhlo);
+            next(session, lhlo);
         } else {
             setDeliveryStatusForAll(session, response);
         }            
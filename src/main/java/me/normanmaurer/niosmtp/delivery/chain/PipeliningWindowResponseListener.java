@@ -0,0 +1,117 @@
+/**
+* Licensed to niosmtp developers ('niosmtp') under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* niosmtp licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package me.normanmaurer.niosmtp.delivery.chain;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+import me.normanmaurer.niosmtp.SMTPClientFuture;
+import me.normanmaurer.niosmtp.SMTPException;
+import me.normanmaurer.niosmtp.SMTPPipeliningRequest;
+import me.normanmaurer.niosmtp.SMTPRequest;
+import me.normanmaurer.niosmtp.SMTPResponse;
+import me.normanmaurer.niosmtp.core.SMTPRequestImpl;
+import me.normanmaurer.niosmtp.delivery.DeliveryRecipientStatus;
+import me.normanmaurer.niosmtp.delivery.DeliveryRecipientStatus.DeliveryStatus;
+import me.normanmaurer.niosmtp.delivery.SMTPDeliveryAgentConfig;
+import me.normanmaurer.niosmtp.delivery.SMTPDeliveryEnvelope;
+import me.normanmaurer.niosmtp.delivery.impl.DeliveryRecipientStatusImpl;
+import me.normanmaurer.niosmtp.transport.SMTPClientSession;
+
+
+/**
+ * {@link ChainedSMTPClientFutureListener} implementation which will handle the {@link SMTPResponse}'s of a {@link SMTPPipeliningRequest} which holds 
+ * one window of <code>RCPT</code>'s (and the <code>MAIL</code> for the first one), if the recipients are pipelined in windows because of 
+ * {@link SMTPDeliveryAgentConfig#getPipeliningWindow()}.
+ * 
+ * Once the {@link SMTPResponse}'s were received the next window is sent. After the last one the <code>DATA</code> (or the message via <code>BDAT</code>)
+ * is sent if at least one recipient was accepted.
+ * 
+ * @author Norman Maurer
+ *
+ */
+public class PipeliningWindowResponseListener extends ChainedSMTPClientFutureListener<Collection<SMTPResponse>> {
+
+    private final Object transactionId;
+    private final boolean mail;
+    
+    /**
+     * Create a new {@link PipeliningWindowResponseListener} for the given {@link SMTPPipeliningRequest} which belongs to the current transaction
+     * of the {@link SMTPClientSession}
+     * 
+     * @param session
+     * @param request
+     */
+    public PipeliningWindowResponseListener(SMTPClientSession session, SMTPPipeliningRequest request) {
+        this.transactionId = session.getAttribute(SMTP_TRANSACTION_ID_KEY);
+        this.mail = SMTPRequest.MAIL_COMMAND.equalsIgnoreCase(request.getRequests().iterator().next().getCommand());
+    }
+    
+    @SuppressWarnings("unchecked")
+    @Override
+    protected void onResult(SMTPClientSession session, Collection<SMTPResponse> result) throws SMTPException {
+        SMTPClientFuture<?> future = (SMTPClientFuture<?>) session.getAttribute(FUTURE_KEY);
+        Object currentId = session.getAttribute(SMTP_TRANSACTION_ID_KEY);
+        if (future.isDone() || (transactionId == null ? currentId != null : !transactionId.equals(currentId))) {
+            // The transaction was already completed, for example because the MAIL was rejected
+            return;
+        }
+        
+        Iterator<String> recipients = (Iterator<String>) session.getAttribute(RECIPIENTS_KEY);
+        List<DeliveryRecipientStatus> statusList = (List<DeliveryRecipientStatus>) session.getAttribute(DELIVERY_STATUS_KEY);
+        Iterator<SMTPResponse> responses = result.iterator();
+
+        if (mail) {
+            SMTPResponse mailResponse = responses.next();
+            if (mailResponse.getCode() >= 400) {
+                // MAIL was rejected so all recipients failed with the same response
+                setDeliveryStatusForAll(session, mailResponse);
+                return;
+            }
+            session.setAttribute(SMTP_TRANSACTION_ACTIVE_KEY, true);
+        }
+        while (responses.hasNext()) {
+            statusList.add(new DeliveryRecipientStatusImpl(recipients.next(), responses.next()));
+        }
+        
+        if (recipients.hasNext()) {
+            // The window is free again, so send the next one if there are still recipients left
+            pipelineRecipients(session, null);
+            return;
+        }
+        
+        boolean success = false;
+        for (int i = 0; i < statusList.size(); i++) {
+            if (statusList.get(i).getStatus() == DeliveryStatus.Ok) {
+                success = true;
+                break;
+            }
+        }
+        if (!success) {
+            // all recipients failed so we should now complete the transaction
+            setDeliveryStatus(session);
+        } else if (session.getAttribute(CHUNKING_ACTIVE_KEY) != null) {
+            // no need for DATA as the message is sent via BDAT
+            next(session, ((SMTPDeliveryEnvelope) session.getAttribute(CURRENT_SMTP_TRANSACTION_KEY)).getMessage());
+            pipelineNext(session);
+        } else {
+            next(session, SMTPRequestImpl.data());
+        }
+    }
+
+}
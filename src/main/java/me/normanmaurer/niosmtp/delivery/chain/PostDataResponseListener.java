@@ -73,9 +73,15 @@ public class PostDataResponseListener extends ChainedSMTPClientFutureListener<Co
                 }
             }
         } else {
+            // When BDAT was pipelined the recipients may have been rejected before, so only
+            // update the status of the accepted ones in this case
+            boolean chunking = session.getAttribute(CHUNKING_ACTIVE_KEY) != null;
             Iterator<DeliveryRecipientStatus> status = statusList.iterator();
             while(status.hasNext()) {
-                ((DeliveryRecipientStatusImpl)status.next()).setResponse(response);
+                DeliveryRecipientStatus s = status.next();
+                if (!chunking || s.getStatus() == DeliveryStatus.Ok) {
+                    ((DeliveryRecipientStatusImpl)s).setResponse(response);
+                }
             }
 
         }    
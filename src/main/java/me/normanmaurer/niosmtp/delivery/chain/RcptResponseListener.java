@@ -26,6 +26,7 @@ import me.normanmaurer.niosmtp.SMTPResponse;
 import me.normanmaurer.niosmtp.core.SMTPRequestImpl;
 import me.normanmaurer.niosmtp.delivery.DeliveryRecipientStatus;
 import me.normanmaurer.niosmtp.delivery.SMTPDeliveryAgentConfig;
+import me.normanmaurer.niosmtp.delivery.SMTPDeliveryEnvelope;
 import me.normanmaurer.niosmtp.delivery.DeliveryRecipientStatus.DeliveryStatus;
 import me.normanmaurer.niosmtp.delivery.SMTPDeliveryAgentConfig.PipeliningMode;
 import me.normanmaurer.niosmtp.delivery.impl.DeliveryRecipientStatusImpl;
@@ -91,7 +92,12 @@ public class RcptResponseListener extends AbstractPipeliningResponseListener {
                 // PIPELINING and we don't want to use it
                 // as otherwise we already sent this
                 if (!pipeliningActive || ((SMTPDeliveryAgentConfig)session.getConfig()).getPipeliningMode() == PipeliningMode.NO) {
-                    next(session, SMTPRequestImpl.data());
+                    if (session.getAttribute(CHUNKING_ACTIVE_KEY) != null) {
+                        // no need for DATA as the message is sent via BDAT
+                        next(session, ((SMTPDeliveryEnvelope) session.getAttribute(CURRENT_SMTP_TRANSACTION_KEY)).getMessage());
+                    } else {
+                        next(session, SMTPRequestImpl.data());
+                    }
                 }
 
             } else {
@@ -0,0 +1,67 @@
+/**
+* Licensed to niosmtp developers ('niosmtp') under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* niosmtp licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package me.normanmaurer.niosmtp.delivery.chain;
+
+import me.normanmaurer.niosmtp.SMTPException;
+import me.normanmaurer.niosmtp.SMTPResponse;
+import me.normanmaurer.niosmtp.delivery.SMTPDeliveryEnvelope;
+import me.normanmaurer.niosmtp.delivery.impl.DeliveryResultImpl;
+import me.normanmaurer.niosmtp.transport.SMTPClientSession;
+
+/**
+ * {@link ChainedSMTPClientFutureListener} implementation which will run after a <code>RSET</code> request which was sent to reset the
+ * transaction of a {@link SMTPDeliveryEnvelope} that failed because of a protocol-level {@link SMTPException}, or to close the transaction 
+ * before the follow-up transaction for the remaining recipients of the {@link SMTPDeliveryEnvelope} is started.
+ * 
+ * If the reset was successful the {@link SMTPDeliveryEnvelope} is failed and the next one is processed, or the follow-up transaction is started. 
+ * Otherwise all remaining {@link SMTPDeliveryEnvelope}'s are failed.
+ * 
+ * @author Norman Maurer
+ *
+ */
+public class ResetTransactionResponseListener extends ChainedSMTPClientFutureListener<SMTPResponse> {
+
+    /**
+     * Get instance of this {@link ResetTransactionResponseListener} implementation
+     */
+    public final static ResetTransactionResponseListener INSTANCE = new ResetTransactionResponseListener();
+    
+    private ResetTransactionResponseListener() {
+        
+    }
+    
+    @Override
+    protected void onResult(SMTPClientSession session, SMTPResponse response) throws SMTPException {
+        boolean followUp = session.setAttribute(FOLLOW_UP_RESET_KEY, null) != null;
+        if (response.getCode() >= 400) {
+            // The state of the SMTPClientSession is unknown, so it's not safe to start another transaction
+            SMTPException e = (SMTPException) session.getAttribute(TRANSACTION_EXCEPTION_KEY);
+            if (e == null) {
+                e = new SMTPException("Unable to reset the transaction: " + response);
+            }
+            onException(session, e);
+        } else if (followUp) {
+            session.setAttribute(SMTP_TRANSACTION_ACTIVE_KEY, false);
+            startTransaction(session);
+        } else {
+            SMTPException e = (SMTPException) session.setAttribute(TRANSACTION_EXCEPTION_KEY, null);
+            session.setAttribute(SMTP_TRANSACTION_ACTIVE_KEY, false);
+            completeTransaction(session, DeliveryResultImpl.create(e));
+        }
+    }
+
+}
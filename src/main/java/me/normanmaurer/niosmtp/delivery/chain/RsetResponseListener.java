@@ -0,0 +1,61 @@
+/**
+* Licensed to niosmtp developers ('niosmtp') under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* niosmtp licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package me.normanmaurer.niosmtp.delivery.chain;
+
+import me.normanmaurer.niosmtp.SMTPClientFuture;
+import me.normanmaurer.niosmtp.SMTPClientFutureListener;
+import me.normanmaurer.niosmtp.SMTPResponse;
+import me.normanmaurer.niosmtp.delivery.SMTPDeliverySessionConstants;
+import me.normanmaurer.niosmtp.transport.FutureResult;
+import me.normanmaurer.niosmtp.transport.SMTPClientSession;
+import me.normanmaurer.niosmtp.transport.SMTPClientSessionPool;
+
+
+/**
+ * {@link SMTPClientFutureListener} implementation which will run after a <code>RSET</code> request which was sent to
+ * reset a pooled {@link SMTPClientSession} after all deliveries were done.
+ * 
+ * It will release the {@link SMTPClientSession} to the {@link SMTPClientSessionPool} if the reset was successful and close it otherwise.
+ * 
+ * @author Norman Maurer
+ *
+ */
+public class RsetResponseListener implements SMTPClientFutureListener<FutureResult<SMTPResponse>>, SMTPDeliverySessionConstants {
+
+    /**
+     * Get instance of this {@link RsetResponseListener} implementation
+     */
+    public final static RsetResponseListener INSTANCE = new RsetResponseListener();
+    
+    private RsetResponseListener() {
+        
+    }
+    
+    @Override
+    public void operationComplete(SMTPClientFuture<FutureResult<SMTPResponse>> future) {
+        SMTPClientSession session = future.getSession();
+        FutureResult<SMTPResponse> result = future.getNoWait();
+        SMTPClientSessionPool pool = (SMTPClientSessionPool) session.getAttribute(SMTP_CLIENT_SESSION_POOL_KEY);
+        
+        if (pool != null && result.isSuccess() && result.getResult().getCode() < 400) {
+            pool.release(session);
+        } else {
+            session.close();
+        }
+    }
+
+}
@@ -27,6 +27,7 @@ import me.normanmaurer.niosmtp.SMTPPipeliningRequest;
 import me.normanmaurer.niosmtp.SMTPRequest;
 import me.normanmaurer.niosmtp.SMTPResponse;
 import me.normanmaurer.niosmtp.core.ReadySMTPClientFuture;
+import me.normanmaurer.niosmtp.delivery.SMTPDeliverySessionConstants;
 import me.normanmaurer.niosmtp.transport.FutureResult;
 import me.normanmaurer.niosmtp.transport.SMTPClientSession;
 import me.normanmaurer.niosmtp.transport.impl.FutureResultImpl;
@@ -54,13 +55,20 @@ public class SMTPClientFutureListenerFactoryImpl implements SMTPClientFutureList
         } else if (SMTPRequest.STARTTLS_COMMAND.equals(cmd)) {
             return StartTlsResponseListener.INSTANCE;
         } else if (SMTPRequest.AUTH_COMMAND.equals(cmd) && arg != null) {
-            if (arg.equals(SMTPRequest.AUTH_PLAIN_ARGUMENT)) {
+            if (arg.equals(SMTPRequest.AUTH_PLAIN_ARGUMENT) || arg.startsWith(SMTPRequest.AUTH_PLAIN_ARGUMENT + " ")) {
                 return AuthPlainResponseListener.INSTANCE;
             } else if (arg.equals(SMTPRequest.AUTH_LOGIN_ARGUMENT)) {
                 return AuthLoginResponseListener.INSTANCE;
+            } else if (arg.startsWith(SMTPRequest.AUTH_XOAUTH2_ARGUMENT + " ") || arg.startsWith(SMTPRequest.AUTH_OAUTHBEARER_ARGUMENT + " ")) {
+                return AuthOAuthResponseListener.INSTANCE;
             }
         } else if (SMTPRequest.QUIT_COMMAND.equals(cmd)) {
             return QuitResponseListener.INSTANCE;
+        } else if (SMTPRequest.RSET_COMMAND.equals(cmd)) {
+            if (session.getAttribute(SMTPDeliverySessionConstants.TRANSACTION_EXCEPTION_KEY) != null || session.getAttribute(SMTPDeliverySessionConstants.FOLLOW_UP_RESET_KEY) != null) {
+                return ResetTransactionResponseListener.INSTANCE;
+            }
+            return RsetResponseListener.INSTANCE;
         }
 
         throw new SMTPException("No valid callback found for request " + request);
@@ -78,14 +86,33 @@ public class SMTPClientFutureListenerFactoryImpl implements SMTPClientFutureList
 
     @Override
     public SMTPClientFutureListener<FutureResult<Collection<SMTPResponse>>> getListener(SMTPClientSession session, final SMTPPipeliningRequest request) throws SMTPException {
+        // Check the request itself and not the session as the request may belong to the next transaction if it was pipelined 
+        // behind the message of the current one. Without DATA the message is sent via BDAT directly after the RCPT's
+        SMTPRequest last = null;
+        for (SMTPRequest req: request.getRequests()) {
+            last = req;
+        }
+        if (last == null || !SMTPRequest.DATA_COMMAND.equalsIgnoreCase(last.getCommand())) {
+            if (session.getAttribute(SMTPDeliverySessionConstants.PIPELINING_WINDOW_KEY) != null) {
+                // The RCPT's of the current transaction are pipelined in windows
+                return new PipeliningWindowResponseListener(session, request);
+            }
+            return ChunkingPipeliningResponseListener.INSTANCE;
+        }
         
         return new ChainedSMTPClientFutureListener<Collection<SMTPResponse>>() {
             private final Iterator<SMTPRequest> requests = request.getRequests().iterator();
             
             @Override
             protected void onResult(SMTPClientSession session, Collection<SMTPResponse> result) throws SMTPException {
+                Object transactionId = session.getAttribute(SMTPDeliverySessionConstants.SMTP_TRANSACTION_ID_KEY);
                 Iterator<SMTPResponse> responses = result.iterator();
                 while(responses.hasNext()) {
+                    if (!isSameTransaction(transactionId, session.getAttribute(SMTPDeliverySessionConstants.SMTP_TRANSACTION_ID_KEY))) {
+                        // The transaction was already completed by one of the previous responses (for example because the MAIL was rejected), 
+                        // so the remaining responses belong to it and must not be processed in the context of the next transaction
+                        break;
+                    }
                     FutureResult<SMTPResponse> fResult = new FutureResultImpl<SMTPResponse>(responses.next());
                     ReadySMTPClientFuture<FutureResult<SMTPResponse>> future = new ReadySMTPClientFuture<FutureResult<SMTPResponse>>(session, fResult);
                     future.addListener(getListener(session, requests.next()));
@@ -95,6 +122,10 @@ public class SMTPClientFutureListenerFactoryImpl implements SMTPClientFutureList
         
     }
     
+    private static boolean isSameTransaction(Object id, Object currentId) {
+        return id == null ? currentId == null : id.equals(currentId);
+    }
+    
     
 
 }
@@ -0,0 +1,50 @@
+/**
+* Licensed to niosmtp developers ('niosmtp') under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* niosmtp licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package me.normanmaurer.niosmtp.delivery.chain;
+
+import java.util.Iterator;
+import java.util.List;
+
+import me.normanmaurer.niosmtp.SMTPException;
+import me.normanmaurer.niosmtp.delivery.DeliveryRecipientStatus;
+import me.normanmaurer.niosmtp.delivery.SMTPDeliveryEnvelope;
+import me.normanmaurer.niosmtp.transport.FutureResult;
+import me.normanmaurer.niosmtp.transport.SMTPClientSession;
+
+/**
+ * Resumes the delivery of {@link SMTPDeliveryEnvelope}'s over a new {@link SMTPClientSession} after the old one failed on the transport level
+ * 
+ * @author Norman Maurer
+ *
+ */
+public interface SMTPDeliveryResumer {
+
+    /**
+     * Resume the delivery of the given {@link SMTPDeliveryEnvelope}'s which were not completed yet. Return <code>false</code> if this is not possible,
+     * for example because the retry budget is exhausted. In this case the caller is responsible to fail them.
+     * 
+     * @param session the failed {@link SMTPClientSession}
+     * @param results the results of the already completed {@link SMTPDeliveryEnvelope}'s
+     * @param remaining the {@link SMTPDeliveryEnvelope}'s which were not completed yet. The ones which were not started yet are not taken out of the 
+     *        source, so they are only pulled once the delivery is resumed
+     * @param completed the {@link DeliveryRecipientStatus}'s of the recipients of the first remaining {@link SMTPDeliveryEnvelope} which were already 
+     *        completed by a previous transaction, or <code>null</code> if there are none
+     * @param cause the {@link SMTPException} which caused the {@link SMTPClientSession} to fail
+     * @return resumed
+     */
+    boolean resume(SMTPClientSession session, List<FutureResult<Iterator<DeliveryRecipientStatus>>> results, Iterator<SMTPDeliveryEnvelope> remaining, List<DeliveryRecipientStatus> completed, SMTPException cause);
+}
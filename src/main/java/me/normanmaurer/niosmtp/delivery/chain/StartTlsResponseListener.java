@@ -16,25 +16,32 @@
 */
 package me.normanmaurer.niosmtp.delivery.chain;
 
+import java.net.InetSocketAddress;
+
 import me.normanmaurer.niosmtp.SMTPClientFuture;
 import me.normanmaurer.niosmtp.SMTPClientFutureListener;
 import me.normanmaurer.niosmtp.SMTPException;
 import me.normanmaurer.niosmtp.SMTPRequest;
 import me.normanmaurer.niosmtp.SMTPResponse;
-import me.normanmaurer.niosmtp.core.SMTPRequestImpl;
 import me.normanmaurer.niosmtp.delivery.SMTPDeliveryAgentConfig;
-import me.normanmaurer.niosmtp.delivery.SMTPDeliveryAgentConfig.PipeliningMode;
-import me.normanmaurer.niosmtp.delivery.SMTPDeliveryEnvelope;
+import me.normanmaurer.niosmtp.delivery.StartTlsPolicy;
 import me.normanmaurer.niosmtp.transport.FutureResult;
+import me.normanmaurer.niosmtp.transport.SMTPCapabilities;
+import me.normanmaurer.niosmtp.transport.SMTPCapabilitiesCache;
+import me.normanmaurer.niosmtp.transport.SMTPCapabilitiesCache.StartTlsOutcome;
 import me.normanmaurer.niosmtp.transport.SMTPClientConstants;
 import me.normanmaurer.niosmtp.transport.SMTPClientSession;
+import me.normanmaurer.niosmtp.transport.SMTPDeliveryMode;
 
 /**
  * {@link ChainedSMTPClientFutureListener} implementation which will handle the <code>STARTLS</code> {@link SMTPResponse}
  * 
- * It will write the next {@link SMTPRequest} to the {@link SMTPClientSession} with the right {@link StartTlsResponseListener} added.
+ * It will write the next {@link SMTPRequest} to the {@link SMTPClientSession} with the right {@link StartTlsResponseListener} added. Once 
+ * the TLS handshake completed the <code>EHLO</code> is sent again, as the {@link SMTPCapabilities} which were advertised before must be discarded 
+ * (RFC 3207).
  * 
- * This implementation also handles the <code>PIPELINING</code> and also the <code>STARTTLS</code> extension
+ * The outcome of the negotiation is stored in the {@link SMTPCapabilitiesCache}, so following deliveries to the same destination 
+ * skip <code>STARTTLS</code> if it failed and TLS is not required.
  * 
  * @author Norman Maurer
  *
@@ -60,16 +67,16 @@ public class StartTlsResponseListener extends ChainedSMTPClientFutureListener<SM
                 
                 @Override
                 public void operationComplete(SMTPClientFuture<FutureResult<me.normanmaurer.niosmtp.transport.FutureResult.Void>> future) {
+                    FutureResult<me.normanmaurer.niosmtp.transport.FutureResult.Void> result = future.getNoWait();
+                    if (!result.isSuccess()) {
+                        // the handshake failed, so a reconnect will not try STARTTLS again unless TLS is required
+                        putStartTlsOutcome(session, StartTlsOutcome.FAILED);
+                        onTransportException(session, result.getException());
+                        return;
+                    }
+                    putStartTlsOutcome(session, StartTlsOutcome.SUPPORTED);
                     try {
-                        // We use a SMTPPipelinedRequest if the SMTPServer supports PIPELINING. This will allow the NETTY to get
-                        // the MAX throughput as the encoder will write it out in one buffer if possible. This result in less system calls
-                        if (session.getSupportedExtensions().contains(PIPELINING_EXTENSION) && ((SMTPDeliveryAgentConfig)session.getConfig()).getPipeliningMode() != PipeliningMode.NO) {
-                            pipelining(session);
-                        } else {
-                            String mail = ((SMTPDeliveryEnvelope) session.getAttribute(CURRENT_SMTP_TRANSACTION_KEY)).getSender();
-
-                            next(session, SMTPRequestImpl.mail(mail));
-                        }
+                        next(session, (SMTPRequest) session.getAttribute(HELLO_REQUEST_KEY));
                     } catch (SMTPException e) {
                         onException(session, e);
                     }
@@ -80,7 +87,61 @@ public class StartTlsResponseListener extends ChainedSMTPClientFutureListener<SM
 
            
         } else {
-            setDeliveryStatusForAll(session, response);
+            putStartTlsOutcome(session, StartTlsOutcome.FAILED);
+            if (isTlsRequired(session)) {
+                setDeliveryStatusForAll(session, response);
+            } else {
+                // continue without TLS, so the capabilities which were advertised before are the final ones
+                EhloResponseListener.INSTANCE.proceed(session, session.getCapabilities());
+            }
+        }
+    }
+    
+    /**
+     * Return <code>true</code> if the delivery must fail if TLS can not be negotiated for the {@link SMTPClientSession}. This is always the case for 
+     * {@link SMTPDeliveryMode#STARTTLS_DEPEND}, and for {@link SMTPDeliveryMode#STARTTLS_TRY} if the {@link StartTlsPolicy} says so.
+     * 
+     * @param session
+     * @return required
+     */
+    static boolean isTlsRequired(SMTPClientSession session) {
+        if (session.getDeliveryMode() == SMTPDeliveryMode.STARTTLS_DEPEND) {
+            return true;
+        }
+        StartTlsPolicy policy = ((SMTPDeliveryAgentConfig)session.getConfig()).getStartTlsPolicy();
+        InetSocketAddress destination = (InetSocketAddress) session.getAttribute(SMTP_DESTINATION_KEY);
+        if (policy == null || destination == null) {
+            return false;
+        }
+        return policy.isTlsRequired(destination, getStartTlsOutcome(session));
+    }
+    
+    /**
+     * Return the cached {@link StartTlsOutcome} for the destination of the {@link SMTPClientSession} or <code>null</code> if it is unknown
+     * 
+     * @param session
+     * @return outcome
+     */
+    static StartTlsOutcome getStartTlsOutcome(SMTPClientSession session) {
+        SMTPCapabilitiesCache cache = (SMTPCapabilitiesCache) session.getAttribute(SMTP_CAPABILITIES_CACHE_KEY);
+        InetSocketAddress destination = (InetSocketAddress) session.getAttribute(SMTP_DESTINATION_KEY);
+        if (cache == null || destination == null) {
+            return null;
+        }
+        return cache.getStartTlsOutcome(destination);
+    }
+    
+    /**
+     * Cache the {@link StartTlsOutcome} for the destination of the {@link SMTPClientSession}
+     * 
+     * @param session
+     * @param outcome
+     */
+    static void putStartTlsOutcome(SMTPClientSession session, StartTlsOutcome outcome) {
+        SMTPCapabilitiesCache cache = (SMTPCapabilitiesCache) session.getAttribute(SMTP_CAPABILITIES_CACHE_KEY);
+        InetSocketAddress destination = (InetSocketAddress) session.getAttribute(SMTP_DESTINATION_KEY);
+        if (cache != null && destination != null) {
+            cache.putStartTlsOutcome(destination, outcome);
         }
     }
 
@@ -50,7 +50,9 @@ public class WelcomeResponseListener extends ChainedSMTPClientFutureListener<SMT
     public void onResult(SMTPClientSession session, SMTPResponse response) throws SMTPException {
         int code = response.getCode();
         if (code < 400) {   
-            next(session, SMTPRequestImpl.ehlo(((SMTPDeliveryAgentConfig)session.getConfig()).getHeloName()));
+            SMTPRequest ehlo = SMTPRequestImpl.ehlo(((SMTPDeliveryAgentConfig)session.getConfig()).getHeloName());
+            session.setAttribute(HELLO_REQUEST_KEY, ehlo);
+            next(session, ehlo);
         } else {
             setDeliveryStatusForAll(session, response);
         }
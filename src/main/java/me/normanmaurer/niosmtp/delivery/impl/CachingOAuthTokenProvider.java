@@ -0,0 +1,199 @@
+/**
+* Licensed to niosmtp developers ('niosmtp') under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* niosmtp licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package me.normanmaurer.niosmtp.delivery.impl;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import me.normanmaurer.niosmtp.SMTPClientFuture;
+import me.normanmaurer.niosmtp.SMTPClientFutureListener;
+import me.normanmaurer.niosmtp.core.SMTPClientFutureImpl;
+import me.normanmaurer.niosmtp.delivery.OAuthToken;
+import me.normanmaurer.niosmtp.delivery.OAuthTokenProvider;
+import me.normanmaurer.niosmtp.transport.FutureResult;
+import me.normanmaurer.niosmtp.transport.impl.FutureResultImpl;
+
+/**
+ * {@link OAuthTokenProvider} which caches the {@link OAuthToken}'s of another {@link OAuthTokenProvider} per account. 
+ * 
+ * If a {@link ScheduledExecutorService} is given, a new {@link OAuthToken} is requested in the background once the cached one gets close to its 
+ * expiration, as long as the account was used since the cached {@link OAuthToken} was received. So authentications of accounts which are in use 
+ * don't need to wait for the {@link OAuthTokenProvider}, while the {@link OAuthToken}'s of unused accounts are not refreshed forever. 
+ * 
+ * Without a {@link ScheduledExecutorService} the refresh is only started by an authentication which finds the cached {@link OAuthToken} close to 
+ * its expiration. It still uses the cached one, but if no authentication happened in the meantime the next one needs to wait once the 
+ * {@link OAuthToken} expired.
+ * 
+ * Only the first authentication of an account needs to wait for the {@link OAuthTokenProvider} in any case. Concurrent requests for the same 
+ * account share one request.
+ * 
+ * @author Norman Maurer
+ *
+ */
+public class CachingOAuthTokenProvider implements OAuthTokenProvider {
+
+    private final OAuthTokenProvider provider;
+    private final long refreshBefore;
+    private final ScheduledExecutorService executor;
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+    
+    /**
+     * Create a new {@link CachingOAuthTokenProvider} which refreshes the {@link OAuthToken}'s 60 seconds before they expire
+     * 
+     * @param provider
+     */
+    public CachingOAuthTokenProvider(OAuthTokenProvider provider) {
+        this(provider, 60 * 1000);
+    }
+    
+    /**
+     * 
+     * @param provider
+     * @param refreshBefore the milliseconds before the expiration of an {@link OAuthToken} at which a new one is requested
+     */
+    public CachingOAuthTokenProvider(OAuthTokenProvider provider, long refreshBefore) {
+        this(provider, refreshBefore, null);
+    }
+    
+    /**
+     * 
+     * @param provider
+     * @param refreshBefore the milliseconds before the expiration of an {@link OAuthToken} at which a new one is requested
+     * @param executor the {@link ScheduledExecutorService} which is used to refresh the {@link OAuthToken}'s of used accounts before they expire or
+     *        <code>null</code> if they should only be refreshed by an authentication
+     */
+    public CachingOAuthTokenProvider(OAuthTokenProvider provider, long refreshBefore, ScheduledExecutorService executor) {
+        if (refreshBefore < 0) {
+            throw new IllegalArgumentException("refreshBefore must be >= 0");
+        }
+        this.provider = provider;
+        this.refreshBefore = refreshBefore;
+        this.executor = executor;
+    }
+    
+    @Override
+    public SMTPClientFuture<FutureResult<OAuthToken>> getToken(String username) {
+        Entry entry = entries.get(username);
+        if (entry == null) {
+            entry = new Entry();
+            Entry old = entries.putIfAbsent(username, entry);
+            if (old != null) {
+                entry = old;
+            }
+        }
+        synchronized (entry) {
+            OAuthToken token = entry.token;
+            long now = System.currentTimeMillis();
+            if (token != null && token.getExpirationTime() > now) {
+                entry.used = true;
+                if (entry.pending == null && token.getExpirationTime() - refreshBefore <= now) {
+                    // refresh in the background and use the still valid token in the meantime
+                    refresh(username, entry);
+                }
+                SMTPClientFutureImpl<FutureResult<OAuthToken>> future = new SMTPClientFutureImpl<FutureResult<OAuthToken>>(false);
+                future.setResult(new FutureResultImpl<OAuthToken>(token));
+                return future;
+            }
+            SMTPClientFuture<FutureResult<OAuthToken>> pending = entry.pending;
+            if (pending == null) {
+                pending = refresh(username, entry);
+            }
+            return pending;
+        }
+    }
+    
+    /**
+     * Request a new {@link OAuthToken} for the account. Must be called while holding the lock of the {@link Entry}
+     * 
+     * @param username
+     * @param entry
+     * @return future
+     */
+    private SMTPClientFuture<FutureResult<OAuthToken>> refresh(final String username, final Entry entry) {
+        final SMTPClientFutureImpl<FutureResult<OAuthToken>> pending = new SMTPClientFutureImpl<FutureResult<OAuthToken>>(false);
+        entry.pending = pending;
+        provider.getToken(username).addListener(new SMTPClientFutureListener<FutureResult<OAuthToken>>() {
+            
+            @Override
+            public void operationComplete(SMTPClientFuture<FutureResult<OAuthToken>> future) {
+                FutureResult<OAuthToken> result = future.getNoWait();
+                synchronized (entry) {
+                    if (result.isSuccess()) {
+                        entry.token = result.getResult();
+                        entry.used = false;
+                        scheduleRefresh(username, entry, entry.token);
+                    }
+                    entry.pending = null;
+                }
+                pending.setResult(result);
+            }
+        });
+        return pending;
+    }
+
+    /**
+     * Schedule the refresh of the given {@link OAuthToken} if a {@link ScheduledExecutorService} was given. Must be called while holding the lock 
+     * of the {@link Entry}
+     * 
+     * @param username
+     * @param entry
+     * @param token
+     */
+    private void scheduleRefresh(final String username, final Entry entry, final OAuthToken token) {
+        if (executor == null) {
+            return;
+        }
+        long delay = token.getExpirationTime() - refreshBefore - System.currentTimeMillis();
+        if (delay <= 0) {
+            // the token is already close to its expiration, so the next authentication will refresh it
+            return;
+        }
+        executor.schedule(new Runnable() {
+            
+            @Override
+            public void run() {
+                synchronized (entry) {
+                    // only refresh if the token was not replaced or invalidated in the meantime and the account is still in use
+                    if (entry.token == token && entry.pending == null && entry.used) {
+                        refresh(username, entry);
+                    }
+                }
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void invalidate(String username, OAuthToken token) {
+        Entry entry = entries.get(username);
+        if (entry != null) {
+            synchronized (entry) {
+                if (entry.token == token) {
+                    entry.token = null;
+                }
+            }
+        }
+        provider.invalidate(username, token);
+    }
+    
+    private static final class Entry {
+        private OAuthToken token;
+        private SMTPClientFuture<FutureResult<OAuthToken>> pending;
+        private boolean used;
+    }
+}
@@ -60,7 +60,16 @@ public class DeliveryRecipientStatusImpl implements DeliveryRecipientStatus{
 
     @Override
     public DeliveryStatus getStatus() {
-        int code = response.getCode();
+        return getStatus(response.getCode());
+    }
+    
+    /**
+     * Return the {@link DeliveryStatus} for the given code
+     * 
+     * @param code
+     * @return status
+     */
+    static DeliveryStatus getStatus(int code) {
         if (code >= 200 && code <= 299) {
             return DeliveryStatus.Ok;
         } else if (code >= 400 && code <= 499) {
@@ -0,0 +1,212 @@
+/**
+* Licensed to niosmtp developers ('niosmtp') under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* niosmtp licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package me.normanmaurer.niosmtp.delivery.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import me.normanmaurer.niosmtp.SMTPResponse;
+import me.normanmaurer.niosmtp.core.EncodedSMTPResponseImpl;
+import me.normanmaurer.niosmtp.delivery.DeliveryRecipientStatus;
+
+/**
+ * Compact, read-only table of {@link DeliveryRecipientStatus}'s. 
+ * 
+ * The codes are stored in an <code>int[]</code> and every distinct {@link SMTPResponse} only once, referenced by its index. The addresses are the 
+ * {@link String}'s of the recipients and so are not copied. The {@link DeliveryRecipientStatus}'s are only created as flyweight views while they 
+ * are accessed, so a result with many recipients retains a few bytes per recipient instead of a {@link DeliveryRecipientStatus} and a 
+ * {@link SMTPResponse} for each of them.
+ * 
+ * {@link SMTPResponse}'s are the same if they are the same instance or, for {@link EncodedSMTPResponseImpl}'s as they are received, if they have 
+ * the same code and encoded lines. So the lines never need to be decoded to find out.
+ * 
+ * @author Norman Maurer
+ *
+ */
+public final class DeliveryRecipientStatusTable implements Iterable<DeliveryRecipientStatus> {
+
+    private final String[] addresses;
+    private final int[] codes;
+    private final int[] responseIndexes;
+    private final SMTPResponse[] responses;
+    
+    private DeliveryRecipientStatusTable(String[] addresses, int[] codes, int[] responseIndexes, SMTPResponse[] responses) {
+        this.addresses = addresses;
+        this.codes = codes;
+        this.responseIndexes = responseIndexes;
+        this.responses = responses;
+    }
+    
+    /**
+     * Create a new {@link DeliveryRecipientStatusTable} which holds the given {@link DeliveryRecipientStatus}'s
+     * 
+     * @param statusList
+     * @return table
+     */
+    public static DeliveryRecipientStatusTable create(Collection<DeliveryRecipientStatus> statusList) {
+        int size = statusList.size();
+        String[] addresses = new String[size];
+        int[] codes = new int[size];
+        int[] responseIndexes = new int[size];
+        List<SMTPResponse> responses = new ArrayList<SMTPResponse>();
+        Map<SMTPResponse, Integer> indexes = new HashMap<SMTPResponse, Integer>();
+        
+        SMTPResponse last = null;
+        int lastIndex = -1;
+        int i = 0;
+        for (DeliveryRecipientStatus status: statusList) {
+            SMTPResponse response = status.getResponse();
+            if (response != last) {
+                // the same SMTPResponse is often used for many recipients in a row, so only look it up if it changed
+                Integer index = indexes.get(response);
+                if (index == null) {
+                    index = responses.size();
+                    responses.add(response);
+                    indexes.put(response, index);
+                }
+                last = response;
+                lastIndex = index;
+            }
+            addresses[i] = status.getAddress();
+            codes[i] = response.getCode();
+            responseIndexes[i] = lastIndex;
+            i++;
+        }
+        return new DeliveryRecipientStatusTable(addresses, codes, responseIndexes, responses.toArray(new SMTPResponse[responses.size()]));
+    }
+    
+    /**
+     * Return the count of recipients
+     * 
+     * @return size
+     */
+    public int size() {
+        return addresses.length;
+    }
+    
+    /**
+     * Return the count of distinct {@link SMTPResponse}'s
+     * 
+     * @return responses
+     */
+    public int getResponseCount() {
+        return responses.length;
+    }
+    
+    /**
+     * Return the code of the {@link SMTPResponse} for the recipient with the given index
+     * 
+     * @param index
+     * @return code
+     */
+    public int getCode(int index) {
+        return codes[index];
+    }
+    
+    /**
+     * Return the address of the recipient with the given index
+     * 
+     * @param index
+     * @return address
+     */
+    public String getAddress(int index) {
+        return addresses[index];
+    }
+    
+    /**
+     * Return the {@link SMTPResponse} for the recipient with the given index
+     * 
+     * @param index
+     * @return response
+     */
+    public SMTPResponse getResponse(int index) {
+        return responses[responseIndexes[index]];
+    }
+    
+    /**
+     * Return a {@link DeliveryRecipientStatus} view of the recipient with the given index
+     * 
+     * @param index
+     * @return status
+     */
+    public DeliveryRecipientStatus get(int index) {
+        if (index < 0 || index >= addresses.length) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + addresses.length);
+        }
+        return new StatusView(index);
+    }
+
+    @Override
+    public Iterator<DeliveryRecipientStatus> iterator() {
+        return new Iterator<DeliveryRecipientStatus>() {
+            private int index = 0;
+            
+            @Override
+            public boolean hasNext() {
+                return index < addresses.length;
+            }
+
+            @Override
+            public DeliveryRecipientStatus next() {
+                if (hasNext()) {
+                    return new StatusView(index++);
+                } else {
+                    throw new NoSuchElementException();
+                }
+            }
+
+            /**
+             * Throws {@link UnsupportedOperationException}
+             */
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException("Read-only");
+            }
+        };
+    }
+    
+    /**
+     * Flyweight {@link DeliveryRecipientStatus} which reads from the {@link DeliveryRecipientStatusTable}
+     */
+    private final class StatusView implements DeliveryRecipientStatus {
+        private final int index;
+        
+        public StatusView(int index) {
+            this.index = index;
+        }
+        
+        @Override
+        public SMTPResponse getResponse() {
+            return DeliveryRecipientStatusTable.this.getResponse(index);
+        }
+
+        @Override
+        public DeliveryStatus getStatus() {
+            return DeliveryRecipientStatusImpl.getStatus(codes[index]);
+        }
+
+        @Override
+        public String getAddress() {
+            return addresses[index];
+        }
+    }
+}
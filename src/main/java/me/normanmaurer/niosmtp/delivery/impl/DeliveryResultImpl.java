@@ -45,5 +45,16 @@ public class DeliveryResultImpl extends FutureResult<Iterator<DeliveryRecipientS
         return status.iterator();
     }
     
+    /**
+     * Create a new {@link FutureResult} for a failed delivery. This is the same as {@link FutureResult#create(Throwable)} but returns the right
+     * generic type.
+     * 
+     * @param t
+     * @return result
+     */
+    @SuppressWarnings("unchecked")
+    public static FutureResult<Iterator<DeliveryRecipientStatus>> create(Throwable t) {
+        return FutureResult.create(t);
+    }
 
 }
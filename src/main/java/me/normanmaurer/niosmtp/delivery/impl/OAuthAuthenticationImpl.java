@@ -0,0 +1,72 @@
+/**
+* Licensed to niosmtp developers ('niosmtp') under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* niosmtp licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package me.normanmaurer.niosmtp.delivery.impl;
+
+import me.normanmaurer.niosmtp.delivery.OAuthAuthentication;
+import me.normanmaurer.niosmtp.delivery.OAuthTokenProvider;
+
+/**
+ * {@link OAuthAuthentication} implementation for simple usage
+ * 
+ * @author Norman Maurer
+ *
+ */
+public class OAuthAuthenticationImpl extends AuthenticationImpl implements OAuthAuthentication {
+
+    private final OAuthTokenProvider provider;
+
+    /**
+     * 
+     * @param username
+     * @param provider
+     * @param mode must be {@link AuthMode#XOAuth2} or {@link AuthMode#OAuthBearer}
+     */
+    public OAuthAuthenticationImpl(String username, OAuthTokenProvider provider, AuthMode mode) {
+        super(username, null, mode);
+        if (mode != AuthMode.XOAuth2 && mode != AuthMode.OAuthBearer) {
+            throw new IllegalArgumentException("Mode must be XOAuth2 or OAuthBearer");
+        }
+        this.provider = provider;
+    }
+    
+    @Override
+    public OAuthTokenProvider getTokenProvider() {
+        return provider;
+    }
+    
+    /**
+     * Create an {@link OAuthAuthentication} instance which use <code>XOAUTH2</code>
+     * 
+     * @param username
+     * @param provider
+     * @return xoauth2
+     */
+    public static OAuthAuthentication xoauth2(String username, OAuthTokenProvider provider) {
+        return new OAuthAuthenticationImpl(username, provider, AuthMode.XOAuth2);
+    }
+    
+    /**
+     * Create an {@link OAuthAuthentication} instance which use <code>OAUTHBEARER</code>
+     * 
+     * @param username
+     * @param provider
+     * @return oauthBearer
+     */
+    public static OAuthAuthentication oauthBearer(String username, OAuthTokenProvider provider) {
+        return new OAuthAuthenticationImpl(username, provider, AuthMode.OAuthBearer);
+    }
+}
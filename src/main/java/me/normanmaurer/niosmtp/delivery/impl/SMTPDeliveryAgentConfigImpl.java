@@ -17,7 +17,11 @@
 package me.normanmaurer.niosmtp.delivery.impl;
 
 import me.normanmaurer.niosmtp.delivery.Authentication;
+import me.normanmaurer.niosmtp.delivery.DeliveryResultListener;
 import me.normanmaurer.niosmtp.delivery.SMTPDeliveryAgentConfig;
+import me.normanmaurer.niosmtp.delivery.SMTPDeliveryEnvelope;
+import me.normanmaurer.niosmtp.delivery.StartTlsPolicy;
+import me.normanmaurer.niosmtp.delivery.chain.EncodedCredentials;
 import me.normanmaurer.niosmtp.transport.impl.SMTPClientConfigImpl;
 
 /**
@@ -31,7 +35,25 @@ public class SMTPDeliveryAgentConfigImpl extends SMTPClientConfigImpl implements
 
     private PipeliningMode pipeliningMode = PipeliningMode.TRY;;
 
+    private ChunkingMode chunkingMode = ChunkingMode.NO;
+    
     private Authentication auth;
+    
+    private boolean transactionPipelining = false;
+    
+    private int reconnectAttempts = 0;
+    
+    private long reconnectDelay = 1000;
+    
+    private int pipeliningWindow = 0;
+    
+    private StartTlsPolicy startTlsPolicy;
+    
+    private DeliveryResultListener deliveryResultListener;
+    
+    private boolean deliveryResultsRetained = true;
+    
+    private volatile EncodedCredentials encodedCredentials;
 
     /**
      * 
@@ -69,6 +91,131 @@ public class SMTPDeliveryAgentConfigImpl extends SMTPClientConfigImpl implements
         this.pipeliningMode = pipeliningMode;
     }
 
+    @Override
+    public ChunkingMode getChunkingMode() {
+        return chunkingMode;
+    }
+    
+    /**
+     * Specify if <code>CHUNKING</code> should get used if possible. Default is {@link ChunkingMode#NO}
+     * 
+     * @param chunkingMode
+     */
+    public void setChunkingMode(ChunkingMode chunkingMode) {
+        this.chunkingMode = chunkingMode;
+    }
+
+    @Override
+    public boolean isTransactionPipelining() {
+        return transactionPipelining;
+    }
+    
+    /**
+     * Specify if the commands of the next {@link SMTPDeliveryEnvelope} should get pipelined directly after the message of the current one. 
+     * Default is <code>false</code>
+     * 
+     * @param transactionPipelining
+     */
+    public void setTransactionPipelining(boolean transactionPipelining) {
+        this.transactionPipelining = transactionPipelining;
+    }
+
+    @Override
+    public int getReconnectAttempts() {
+        return reconnectAttempts;
+    }
+    
+    /**
+     * Set how often a new connection should be established to resume the delivery after the connection failed. Default is <code>0</code>, which
+     * means the delivery of all remaining {@link SMTPDeliveryEnvelope}'s fails.
+     * 
+     * @param reconnectAttempts
+     */
+    public void setReconnectAttempts(int reconnectAttempts) {
+        if (reconnectAttempts < 0) {
+            throw new IllegalArgumentException("reconnectAttempts must be >= 0");
+        }
+        this.reconnectAttempts = reconnectAttempts;
+    }
+    
+    @Override
+    public long getReconnectDelay() {
+        return reconnectDelay;
+    }
+    
+    /**
+     * Set the delay in milliseconds before the first reconnect. Default is <code>1000</code>
+     * 
+     * @param reconnectDelay
+     */
+    public void setReconnectDelay(long reconnectDelay) {
+        if (reconnectDelay < 0) {
+            throw new IllegalArgumentException("reconnectDelay must be >= 0");
+        }
+        this.reconnectDelay = reconnectDelay;
+    }
+    
+    @Override
+    public int getPipeliningWindow() {
+        return pipeliningWindow;
+    }
+    
+    /**
+     * Set the maximal count of <code>RCPT</code> commands which are pipelined without having received their response. Default is <code>0</code>,
+     * which means all recipients of a transaction are pipelined at once.
+     * 
+     * @param pipeliningWindow
+     */
+    public void setPipeliningWindow(int pipeliningWindow) {
+        if (pipeliningWindow < 0) {
+            throw new IllegalArgumentException("pipeliningWindow must be >= 0");
+        }
+        this.pipeliningWindow = pipeliningWindow;
+    }
+    
+    @Override
+    public StartTlsPolicy getStartTlsPolicy() {
+        return startTlsPolicy;
+    }
+    
+    /**
+     * Set the {@link StartTlsPolicy} which decides if TLS is required for a destination. Default is <code>null</code>, which means 
+     * <code>STARTTLS</code> is skipped for destinations for which the last negotiation failed.
+     * 
+     * @param startTlsPolicy
+     */
+    public void setStartTlsPolicy(StartTlsPolicy startTlsPolicy) {
+        this.startTlsPolicy = startTlsPolicy;
+    }
+    
+    @Override
+    public DeliveryResultListener getDeliveryResultListener() {
+        return deliveryResultListener;
+    }
+    
+    /**
+     * Set the {@link DeliveryResultListener} which is notified about the results while the delivery is in progress. Default is <code>null</code>
+     * 
+     * @param deliveryResultListener
+     */
+    public void setDeliveryResultListener(DeliveryResultListener deliveryResultListener) {
+        this.deliveryResultListener = deliveryResultListener;
+    }
+    
+    @Override
+    public boolean isDeliveryResultsRetained() {
+        return deliveryResultsRetained;
+    }
+    
+    /**
+     * Specify if the results of all {@link SMTPDeliveryEnvelope}'s are kept till the delivery is complete. Default is <code>true</code>
+     * 
+     * @param deliveryResultsRetained
+     */
+    public void setDeliveryResultsRetained(boolean deliveryResultsRetained) {
+        this.deliveryResultsRetained = deliveryResultsRetained;
+    }
+
     @Override
     public Authentication getAuthentication() {
         return auth;
@@ -88,5 +235,24 @@ public class SMTPDeliveryAgentConfigImpl extends SMTPClientConfigImpl implements
     public void setAuthentication(Authentication auth) {
         this.auth = auth;
     }
+    
+    /**
+     * Return the {@link EncodedCredentials} which were encoded the last time a {@link Authentication} was used with this 
+     * {@link SMTPDeliveryAgentConfigImpl} or <code>null</code> if none were encoded yet
+     * 
+     * @return encodedCredentials
+     */
+    public EncodedCredentials getEncodedCredentials() {
+        return encodedCredentials;
+    }
+    
+    /**
+     * Cache the {@link EncodedCredentials}, so they only need to be encoded again once the credentials of the {@link Authentication} change
+     * 
+     * @param encodedCredentials
+     */
+    public void setEncodedCredentials(EncodedCredentials encodedCredentials) {
+        this.encodedCredentials = encodedCredentials;
+    }
 
 }
\ No newline at end of file
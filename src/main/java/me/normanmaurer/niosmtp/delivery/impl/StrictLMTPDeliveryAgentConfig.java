@@ -44,5 +44,24 @@ public class StrictLMTPDeliveryAgentConfig extends SMTPDeliveryAgentConfigImpl{
             throw new IllegalArgumentException("LMTP-Servers MUST implement PIPELINING");
         }
     }
+    
+    /**
+     * Returns {@link ChunkingMode#NO} as <code>CHUNKING</code> is not supported for LMTP
+     */
+    @Override
+    public ChunkingMode getChunkingMode() {
+        return ChunkingMode.NO;
+    }
+    
+    /**
+     * Throws an {@link IllegalArgumentException} if set it to something
+     * different then {@link ChunkingMode#NO}
+     */
+    @Override
+    public void setChunkingMode(ChunkingMode chunkingMode) {
+        if (chunkingMode != ChunkingMode.NO) {
+            throw new IllegalArgumentException("CHUNKING is not supported for LMTP");
+        }
+    }
 
 }
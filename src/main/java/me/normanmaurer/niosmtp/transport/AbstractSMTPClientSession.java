@@ -19,11 +19,9 @@ package me.normanmaurer.niosmtp.transport;
 import java.net.InetSocketAddress;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.CopyOnWriteArraySet;
 
 
 import me.normanmaurer.niosmtp.SMTPClientFuture;
@@ -33,6 +31,7 @@ import me.normanmaurer.niosmtp.SMTPRequest;
 import me.normanmaurer.niosmtp.SMTPResponse;
 import me.normanmaurer.niosmtp.core.SMTPClientFutureImpl;
 import me.normanmaurer.niosmtp.transport.impl.FutureResultImpl;
+import me.normanmaurer.niosmtp.transport.impl.SMTPCapabilitiesImpl;
 
 import org.slf4j.Logger;
 
@@ -48,7 +47,7 @@ public abstract class AbstractSMTPClientSession implements SMTPClientSession {
     private final Logger logger;
     private final SMTPDeliveryMode mode;
     private final SMTPClientConfig config;
-    private final CopyOnWriteArraySet<String> extensions = new CopyOnWriteArraySet<String>();
+    private volatile SMTPCapabilities capabilities = SMTPCapabilitiesImpl.EMPTY;
     private final ConcurrentMap<String, Object> attrs = new ConcurrentHashMap<String, Object>();
     private final InetSocketAddress remote;
     private final InetSocketAddress local;
@@ -93,12 +92,17 @@ public abstract class AbstractSMTPClientSession implements SMTPClientSession {
 
     @Override
     public Set<String> getSupportedExtensions() {
-        return Collections.unmodifiableSet(extensions);
+        return capabilities.getExtensions();
     }
 
     @Override
-    public void addSupportedExtensions(String extensions) {
-        this.extensions.add(extensions);
+    public SMTPCapabilities getCapabilities() {
+        return capabilities;
+    }
+
+    @Override
+    public void setCapabilities(SMTPCapabilities capabilities) {
+        this.capabilities = capabilities;
     }
 
 
@@ -0,0 +1,67 @@
+/**
+* Licensed to niosmtp developers ('niosmtp') under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* niosmtp licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package me.normanmaurer.niosmtp.transport;
+
+import java.util.Set;
+
+/**
+ * The ESMTP capabilities which the SMTP Server advertised in its <code>EHLO</code> (or <code>LHLO</code>) response
+ * 
+ * @author Norman Maurer
+ *
+ */
+public interface SMTPCapabilities {
+
+    /**
+     * Return <code>true</code> if the given EXTENSION is supported. The lookup is case-insensitive.
+     * 
+     * @param extension
+     * @return supported
+     */
+    boolean isSupported(String extension);
+    
+    /**
+     * Return the parameters which were advertised for the given EXTENSION. This will return an empty {@link String} if the EXTENSION
+     * was advertised without any parameters and <code>null</code> if it is not supported at all.
+     * 
+     * @param extension
+     * @return parameters
+     */
+    String getParameters(String extension);
+    
+    /**
+     * Return a "read-only" {@link Set} of all supported EXTENSIONS (in upper-case)
+     * 
+     * @return extensions
+     */
+    Set<String> getExtensions();
+    
+    /**
+     * Return the maximal message size in bytes which was advertised via the <code>SIZE</code> EXTENSION, or <code>0</code> if
+     * no fixed limit was advertised
+     * 
+     * @return maxSize
+     */
+    long getMaxMessageSize();
+    
+    /**
+     * Return a "read-only" {@link Set} of all SASL mechanisms (in upper-case) which were advertised via the <code>AUTH</code> EXTENSION
+     * 
+     * @return mechanisms
+     */
+    Set<String> getAuthMechanisms();
+}
@@ -0,0 +1,108 @@
+/**
+* Licensed to niosmtp developers ('niosmtp') under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* niosmtp licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package me.normanmaurer.niosmtp.transport;
+
+import java.net.InetSocketAddress;
+
+/**
+ * Cache which holds the last {@link SMTPCapabilities} which were advertised by a destination and the limits which were learned from 
+ * its responses. This allows to make decisions before a connection to the destination was established. 
+ * 
+ * Implementations must be thread-safe.
+ * 
+ * @author Norman Maurer
+ *
+ */
+public interface SMTPCapabilitiesCache {
+
+    public enum StartTlsOutcome {
+        
+        /**
+         * <code>STARTTLS</code> was advertised and the TLS handshake completed
+         */
+        SUPPORTED,
+        
+        /**
+         * <code>STARTTLS</code> was advertised but rejected or the TLS handshake failed
+         */
+        FAILED,
+        
+        /**
+         * <code>STARTTLS</code> was not advertised
+         */
+        NOT_ADVERTISED
+    }
+
+    /**
+     * Return the cached {@link SMTPCapabilities} for the given destination or <code>null</code> if nothing is cached (or the cached 
+     * {@link SMTPCapabilities} are expired)
+     * 
+     * @param destination
+     * @return capabilities
+     */
+    SMTPCapabilities get(InetSocketAddress destination);
+    
+    /**
+     * Cache the {@link SMTPCapabilities} for the given destination
+     * 
+     * @param destination
+     * @param capabilities
+     */
+    void put(InetSocketAddress destination, SMTPCapabilities capabilities);
+    
+    /**
+     * Remove the cached {@link SMTPCapabilities} for the given destination
+     * 
+     * @param destination
+     */
+    void remove(InetSocketAddress destination);
+    
+    /**
+     * Return the maximal count of recipients per transaction which was learned for the given destination, or <code>0</code> if no limit is 
+     * known (or it is expired)
+     * 
+     * @param destination
+     * @return maxRecipients
+     */
+    int getMaxRecipients(InetSocketAddress destination);
+    
+    /**
+     * Cache the maximal count of recipients per transaction for the given destination. This is learned once the SMTP Server rejects 
+     * recipients with <code>452</code>.
+     * 
+     * @param destination
+     * @param maxRecipients
+     */
+    void putMaxRecipients(InetSocketAddress destination, int maxRecipients);
+    
+    /**
+     * Return the {@link StartTlsOutcome} of the last <code>STARTTLS</code> negotiation with the given destination, or <code>null</code> if none is
+     * known (or it is expired)
+     * 
+     * @param destination
+     * @return outcome
+     */
+    StartTlsOutcome getStartTlsOutcome(InetSocketAddress destination);
+    
+    /**
+     * Cache the {@link StartTlsOutcome} of a <code>STARTTLS</code> negotiation with the given destination
+     * 
+     * @param destination
+     * @param outcome
+     */
+    void putStartTlsOutcome(InetSocketAddress destination, StartTlsOutcome outcome);
+}
@@ -48,6 +48,41 @@ public interface SMTPClientConstants {
      */
     public final static String _8BITMIME_EXTENSION = "8BITMIME";
     
+    /**
+     * Identifier used to detect if the SMTP Server supports <code>CHUNKING</code>
+     */
+    public final static String CHUNKING_EXTENSION = "CHUNKING";
+    
+    /**
+     * Identifier used to detect if the SMTP Server supports <code>BINARYMIME</code>
+     */
+    public final static String BINARYMIME_EXTENSION = "BINARYMIME";
+    
+    /**
+     * Identifier used to detect if the SMTP Server supports <code>SIZE</code>
+     */
+    public final static String SIZE_EXTENSION = "SIZE";
+    
+    /**
+     * Identifier used to detect if the SMTP Server supports <code>AUTH</code>
+     */
+    public final static String AUTH_EXTENSION = "AUTH";
+    
+    /**
+     * Identifier used to detect if the SMTP Server supports <code>ENHANCEDSTATUSCODES</code>
+     */
+    public final static String ENHANCEDSTATUSCODES_EXTENSION = "ENHANCEDSTATUSCODES";
+    
+    /**
+     * <code>MAIL</code> parameter which is used to declare that the message is sent as 8bit (per rfc6152)
+     */
+    public final static String BODY_8BITMIME_PARAMETER = "BODY=8BITMIME";
+    
+    /**
+     * <code>MAIL</code> parameter which is used to declare the size of the message (per rfc1870). The size needs to get appended
+     */
+    public final static String SIZE_PARAMETER = "SIZE=";
+    
     
 
 }
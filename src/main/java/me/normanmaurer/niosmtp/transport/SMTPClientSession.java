@@ -71,11 +71,21 @@ public interface SMTPClientSession {
     Set<String> getSupportedExtensions();
     
     /**
-     * Add the supported EXTENSIONS for the {@link SMTPClientSession}. 
+     * Return the {@link SMTPCapabilities} which were advertised by the SMTP Server. This will be set in the EHLO Response so you will get 
+     * {@link SMTPCapabilities} which does not support any EXTENSION before the EHLO Response was processed
      * 
-     * @param extension
+     * @return capabilities
      */
-    void addSupportedExtensions(String extension);
+    SMTPCapabilities getCapabilities();
+    
+    /**
+     * Set the {@link SMTPCapabilities} for the {@link SMTPClientSession}. This replaces the previous set {@link SMTPCapabilities}. It is called 
+     * for every <code>EHLO</code> response, so also for the one to the <code>EHLO</code> which is sent again once <code>STARTTLS</code> was 
+     * negotiated, as the SMTP Server may advertise different EXTENSIONS then (RFC 3207)
+     * 
+     * @param capabilities
+     */
+    void setCapabilities(SMTPCapabilities capabilities);
     
     /**
      * Return the id of the {@link SMTPClientSession}.
@@ -0,0 +1,78 @@
+/**
+* Licensed to niosmtp developers ('niosmtp') under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* niosmtp licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package me.normanmaurer.niosmtp.transport;
+
+import java.net.InetSocketAddress;
+
+import me.normanmaurer.niosmtp.SMTPClientFuture;
+
+/**
+ * A pool of already established {@link SMTPClientSession}'s which allows to reuse them for more then one delivery. 
+ * 
+ * {@link SMTPClientSession}'s are pooled per destination, which is the remote {@link InetSocketAddress}, the {@link SMTPDeliveryMode} and
+ * the {@link SMTPClientConfig} which was used to establish them.
+ * 
+ * @author Norman Maurer
+ *
+ */
+public interface SMTPClientSessionPool {
+
+    /**
+     * Acquire a {@link SMTPClientSession} for the given destination. The returned {@link SMTPClientFuture} is notified once an idle {@link SMTPClientSession} 
+     * was handed out or the caller is allowed to establish a new connection. In the later case the {@link FutureResult} will hold <code>null</code>, and 
+     * the caller MUST either call {@link #register(InetSocketAddress, SMTPClientSession)} once the connection was established or {@link #cancel(InetSocketAddress, SMTPDeliveryMode, SMTPClientConfig)}
+     * if the connection attempt failed.
+     * 
+     * @param remote
+     * @param mode
+     * @param config
+     * @return future
+     */
+    SMTPClientFuture<FutureResult<SMTPClientSession>> acquire(InetSocketAddress remote, SMTPDeliveryMode mode, SMTPClientConfig config);
+    
+    /**
+     * Register a newly established {@link SMTPClientSession} with the pool. This must be called for every connection which was permitted by
+     * {@link #acquire(InetSocketAddress, SMTPDeliveryMode, SMTPClientConfig)}
+     * 
+     * @param remote the {@link InetSocketAddress} which was used to acquire the permit
+     * @param session
+     */
+    void register(InetSocketAddress remote, SMTPClientSession session);
+    
+    /**
+     * Give back a permit which was handed out by {@link #acquire(InetSocketAddress, SMTPDeliveryMode, SMTPClientConfig)} but could not get used
+     * because the connection attempt failed
+     * 
+     * @param remote
+     * @param mode
+     * @param config
+     */
+    void cancel(InetSocketAddress remote, SMTPDeliveryMode mode, SMTPClientConfig config);
+    
+    /**
+     * Release the {@link SMTPClientSession} back to the pool so it can get reused. The {@link SMTPClientSession} MUST be in a state where
+     * a new transaction can get started, which means it was reset via <code>RSET</code> before.
+     * 
+     * @param session
+     */
+    void release(SMTPClientSession session);
+    
+    /**
+     * Destroy the pool and close all idle {@link SMTPClientSession}'s
+     */
+    void destroy();
+}
@@ -44,12 +44,30 @@ public interface SMTPClientTransport {
      * Connect to the given {@link InetSocketAddress} and returns a {@link SMTPClientFuture}. The {@link SMTPClientFuture} is notified once the Welcome {@link SMTPResponse} 
      * was received or an {@link Exception} was thrown
      * 
+     * If the {@link InetSocketAddress} was created with the host name of the destination (for example the MX host), it is used for TLS. So it is 
+     * sent via SNI and cached TLS sessions are resumed across all addresses of the destination. Otherwise the IP address is used.
+     * 
      * @param remote
      * @param config
      * @return future
      */
     SMTPClientFuture<FutureResult<SMTPResponse>> connect(InetSocketAddress remote, SMTPClientConfig config);
     
+    /**
+     * Return the {@link SSLSessionStatistics} of the TLS handshakes which were done by the connections of this {@link SMTPClientTransport}. 
+     * If TLS is never used, no handshake is recorded.
+     * 
+     * @return statistics
+     */
+    SSLSessionStatistics getSSLSessionStatistics();
+    
+    /**
+     * Return the {@link SMTPResponseCacheStatistics} of the cache which lets identical {@link SMTPResponse}'s received by the connections of this 
+     * {@link SMTPClientTransport} share one instance, or <code>null</code> if no cache is used.
+     * 
+     * @return statistics
+     */
+    SMTPResponseCacheStatistics getResponseCacheStatistics();
     
 
     /**
@@ -0,0 +1,57 @@
+/**
+* Licensed to niosmtp developers ('niosmtp') under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* niosmtp licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package me.normanmaurer.niosmtp.transport;
+
+import me.normanmaurer.niosmtp.SMTPResponse;
+
+/**
+ * Statistics about the cache of a {@link SMTPClientTransport} which shares one immutable instance between identical {@link SMTPResponse}'s. It 
+ * can be used to tune the size of the cache.
+ * 
+ * @author Norman Maurer
+ *
+ */
+public interface SMTPResponseCacheStatistics {
+
+    /**
+     * Return the maximal count of {@link SMTPResponse}'s which are cached
+     * 
+     * @return size
+     */
+    int getSize();
+    
+    /**
+     * Return the count of received {@link SMTPResponse}'s which were found in the cache
+     * 
+     * @return hits
+     */
+    long getHits();
+    
+    /**
+     * Return the count of received {@link SMTPResponse}'s which were not found in the cache
+     * 
+     * @return misses
+     */
+    long getMisses();
+    
+    /**
+     * Return the ratio of hits to all lookups, or <code>0</code> if nothing was looked up yet
+     * 
+     * @return hitRate
+     */
+    double getHitRate();
+}
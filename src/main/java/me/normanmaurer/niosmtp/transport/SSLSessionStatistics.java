@@ -0,0 +1,57 @@
+/**
+* Licensed to niosmtp developers ('niosmtp') under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* niosmtp licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package me.normanmaurer.niosmtp.transport;
+
+/**
+ * Statistics about the TLS handshakes of a {@link SMTPClientTransport}, which can be used to monitor how often a cached TLS session is resumed
+ * instead of doing a full handshake.
+ * 
+ * The statistics of a connection are recorded once it was closed.
+ * 
+ * @author Norman Maurer
+ *
+ */
+public interface SSLSessionStatistics {
+
+    /**
+     * Return the count of completed TLS handshakes
+     * 
+     * @return handshakes
+     */
+    long getHandshakes();
+    
+    /**
+     * Return the count of completed TLS handshakes which resumed a cached TLS session
+     * 
+     * @return resumedHandshakes
+     */
+    long getResumedHandshakes();
+    
+    /**
+     * Return the count of TLS handshakes which were started but not completed
+     * 
+     * @return failedHandshakes
+     */
+    long getFailedHandshakes();
+    
+    /**
+     * Return the ratio of resumed to completed TLS handshakes, or <code>0</code> if no handshake was completed yet
+     * 
+     * @return resumptionRate
+     */
+    double getResumptionRate();
+}
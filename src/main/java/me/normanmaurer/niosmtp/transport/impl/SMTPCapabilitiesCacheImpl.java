@@ -0,0 +1,176 @@
+/**
+* Licensed to niosmtp developers ('niosmtp') under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* niosmtp licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package me.normanmaurer.niosmtp.transport.impl;
+
+import java.net.InetSocketAddress;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import me.normanmaurer.niosmtp.transport.SMTPCapabilities;
+import me.normanmaurer.niosmtp.transport.SMTPCapabilitiesCache;
+
+/**
+ * {@link SMTPCapabilitiesCache} implementation which keeps the {@link SMTPCapabilities}, the learned limits and the {@link StartTlsOutcome}'s for 
+ * {@link #getTimeToLive()} seconds. 
+ * 
+ * Expired entries are removed lazy. Once more then {@link #getMaxEntries()} destinations are cached all expired entries are removed
+ * and if this is not enough the cache is cleared.
+ * 
+ * @author Norman Maurer
+ *
+ */
+public class SMTPCapabilitiesCacheImpl implements SMTPCapabilitiesCache {
+
+    public static final int DEFAULT_TIME_TO_LIVE = 3600;
+    public static final int DEFAULT_MAX_ENTRIES = 4096;
+    
+    private final ConcurrentMap<InetSocketAddress, Entry<SMTPCapabilities>> entries = new ConcurrentHashMap<InetSocketAddress, Entry<SMTPCapabilities>>();
+    private final ConcurrentMap<InetSocketAddress, Entry<Integer>> maxRecipients = new ConcurrentHashMap<InetSocketAddress, Entry<Integer>>();
+    private final ConcurrentMap<InetSocketAddress, Entry<StartTlsOutcome>> startTlsOutcomes = new ConcurrentHashMap<InetSocketAddress, Entry<StartTlsOutcome>>();
+    private final int timeToLive;
+    private final int maxEntries;
+    
+    public SMTPCapabilitiesCacheImpl() {
+        this(DEFAULT_TIME_TO_LIVE, DEFAULT_MAX_ENTRIES);
+    }
+    
+    /**
+     * Create a new cache
+     * 
+     * @param timeToLive the time in seconds for which the {@link SMTPCapabilities} are cached
+     * @param maxEntries the maximal count of cached destinations
+     */
+    public SMTPCapabilitiesCacheImpl(int timeToLive, int maxEntries) {
+        if (timeToLive < 1) {
+            throw new IllegalArgumentException("timeToLive must be >= 1");
+        }
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be >= 1");
+        }
+        this.timeToLive = timeToLive;
+        this.maxEntries = maxEntries;
+    }
+    
+    /**
+     * Return the time in seconds for which the {@link SMTPCapabilities} are cached
+     * 
+     * @return timeToLive
+     */
+    public int getTimeToLive() {
+        return timeToLive;
+    }
+    
+    /**
+     * Return the maximal count of cached destinations
+     * 
+     * @return maxEntries
+     */
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+    
+    @Override
+    public SMTPCapabilities get(InetSocketAddress destination) {
+        return get(entries, destination);
+    }
+
+    @Override
+    public void put(InetSocketAddress destination, SMTPCapabilities capabilities) {
+        put(entries, destination, capabilities);
+    }
+
+    @Override
+    public void remove(InetSocketAddress destination) {
+        entries.remove(destination);
+        maxRecipients.remove(destination);
+        startTlsOutcomes.remove(destination);
+    }
+    
+    @Override
+    public int getMaxRecipients(InetSocketAddress destination) {
+        Integer max = get(maxRecipients, destination);
+        if (max == null) {
+            return 0;
+        }
+        return max;
+    }
+
+    @Override
+    public void putMaxRecipients(InetSocketAddress destination, int max) {
+        if (max < 1) {
+            throw new IllegalArgumentException("maxRecipients must be >= 1");
+        }
+        put(maxRecipients, destination, max);
+    }
+    
+    @Override
+    public StartTlsOutcome getStartTlsOutcome(InetSocketAddress destination) {
+        return get(startTlsOutcomes, destination);
+    }
+
+    @Override
+    public void putStartTlsOutcome(InetSocketAddress destination, StartTlsOutcome outcome) {
+        if (outcome == null) {
+            throw new IllegalArgumentException("outcome must not be null");
+        }
+        put(startTlsOutcomes, destination, outcome);
+    }
+    
+    private <V> V get(ConcurrentMap<InetSocketAddress, Entry<V>> map, InetSocketAddress destination) {
+        Entry<V> entry = map.get(destination);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.isExpired(System.nanoTime())) {
+            map.remove(destination, entry);
+            return null;
+        }
+        return entry.value;
+    }
+    
+    private <V> void put(ConcurrentMap<InetSocketAddress, Entry<V>> map, InetSocketAddress destination, V value) {
+        if (map.size() >= maxEntries && !map.containsKey(destination)) {
+            long now = System.nanoTime();
+            Iterator<Entry<V>> it = map.values().iterator();
+            while (it.hasNext()) {
+                if (it.next().isExpired(now)) {
+                    it.remove();
+                }
+            }
+            if (map.size() >= maxEntries) {
+                map.clear();
+            }
+        }
+        map.put(destination, new Entry<V>(value, System.nanoTime() + TimeUnit.SECONDS.toNanos(timeToLive)));
+    }
+    
+    private static final class Entry<V> {
+        private final V value;
+        private final long expires;
+        
+        public Entry(V value, long expires) {
+            this.value = value;
+            this.expires = expires;
+        }
+        
+        public boolean isExpired(long now) {
+            return now - expires >= 0;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/**
+* Licensed to niosmtp developers ('niosmtp') under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* niosmtp licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package me.normanmaurer.niosmtp.transport.impl;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import me.normanmaurer.niosmtp.SMTPResponse;
+import me.normanmaurer.niosmtp.transport.SMTPCapabilities;
+import me.normanmaurer.niosmtp.transport.SMTPClientConstants;
+
+/**
+ * Immutable {@link SMTPCapabilities} implementation which is parsed out of the <code>EHLO</code> {@link SMTPResponse}.
+ * 
+ * The EXTENSIONS which are used by niosmtp itself are stored in a bitset, so looking them up is cheap. All other EXTENSIONS are kept 
+ * together with their parameters in a {@link Map}.
+ * 
+ * @author Norman Maurer
+ *
+ */
+public final class SMTPCapabilitiesImpl implements SMTPCapabilities, SMTPClientConstants {
+
+    private final static String[] KNOWN_EXTENSIONS = new String[] {PIPELINING_EXTENSION, STARTTLS_EXTENSION, _8BITMIME_EXTENSION, CHUNKING_EXTENSION, 
+            BINARYMIME_EXTENSION, SIZE_EXTENSION, AUTH_EXTENSION, ENHANCEDSTATUSCODES_EXTENSION};
+    private final static Map<String, Integer> KNOWN_BITS = new HashMap<String, Integer>();
+    
+    static {
+        for (int i = 0; i < KNOWN_EXTENSIONS.length; i++) {
+            KNOWN_BITS.put(KNOWN_EXTENSIONS[i], 1 << i);
+        }
+    }
+    
+    /**
+     * {@link SMTPCapabilities} which does not support any EXTENSION. This is used before the <code>EHLO</code> {@link SMTPResponse} was 
+     * received or if the SMTP Server only supports <code>HELO</code>
+     */
+    public final static SMTPCapabilitiesImpl EMPTY = new SMTPCapabilitiesImpl(0, Collections.<String, String>emptyMap(), 0, Collections.<String>emptySet());
+    
+    private final int bits;
+    private final Map<String, String> extensions;
+    private final long maxMessageSize;
+    private final Set<String> authMechanisms;
+    
+    private SMTPCapabilitiesImpl(int bits, Map<String, String> extensions, long maxMessageSize, Set<String> authMechanisms) {
+        this.bits = bits;
+        this.extensions = extensions;
+        this.maxMessageSize = maxMessageSize;
+        this.authMechanisms = authMechanisms;
+    }
+    
+    /**
+     * Parse the {@link SMTPCapabilities} out of the <code>EHLO</code> {@link SMTPResponse}. The first line of the {@link SMTPResponse} holds the 
+     * greeting and so is ignored.
+     * 
+     * @param response
+     * @return capabilities
+     */
+    public static SMTPCapabilitiesImpl parse(SMTPResponse response) {
+        Iterator<String> lines = response.getLines().iterator();
+        if (!lines.hasNext()) {
+            return EMPTY;
+        }
+        
+        // skip the greeting
+        lines.next();
+        
+        int bits = 0;
+        long maxMessageSize = 0;
+        Map<String, String> extensions = new LinkedHashMap<String, String>();
+        Set<String> authMechanisms = new LinkedHashSet<String>();
+        
+        while (lines.hasNext()) {
+            String line = lines.next().trim();
+            if (line.length() == 0) {
+                continue;
+            }
+            int index = line.indexOf(' ');
+            
+            // some old servers use AUTH=<mechanisms>
+            int legacyIndex = line.indexOf('=');
+            boolean legacyAuth = false;
+            if (legacyIndex != -1 && (index == -1 || legacyIndex < index)) {
+                legacyAuth = line.substring(0, legacyIndex).equalsIgnoreCase(AUTH_EXTENSION);
+                if (legacyAuth) {
+                    index = legacyIndex;
+                }
+            }
+            String keyword;
+            String parameters;
+            if (index == -1) {
+                keyword = line.toUpperCase(Locale.US);
+                parameters = "";
+            } else {
+                keyword = line.substring(0, index).toUpperCase(Locale.US);
+                parameters = line.substring(index + 1).trim();
+            }
+            
+            Integer bit = KNOWN_BITS.get(keyword);
+            if (bit != null) {
+                bits |= bit;
+            }
+            if (AUTH_EXTENSION.equals(keyword)) {
+                String[] mechanisms = parameters.split(" ");
+                for (int i = 0; i < mechanisms.length; i++) {
+                    if (mechanisms[i].length() > 0) {
+                        authMechanisms.add(mechanisms[i].toUpperCase(Locale.US));
+                    }
+                }
+                if (legacyAuth && extensions.containsKey(keyword)) {
+                    // don't overwrite the parameters of the "real" AUTH line
+                    continue;
+                }
+            } else if (SIZE_EXTENSION.equals(keyword) && parameters.length() > 0) {
+                try {
+                    maxMessageSize = Long.parseLong(parameters);
+                } catch (NumberFormatException e) {
+                    // ignore invalid limits
+                }
+            }
+            extensions.put(keyword, parameters);
+        }
+        return new SMTPCapabilitiesImpl(bits, Collections.unmodifiableMap(extensions), maxMessageSize, Collections.unmodifiableSet(authMechanisms));
+    }
+    
+    @Override
+    public boolean isSupported(String extension) {
+        Integer bit = KNOWN_BITS.get(extension);
+        if (bit != null) {
+            return (bits & bit) != 0;
+        }
+        return extensions.containsKey(extension.toUpperCase(Locale.US));
+    }
+
+    @Override
+    public String getParameters(String extension) {
+        return extensions.get(extension.toUpperCase(Locale.US));
+    }
+
+    @Override
+    public Set<String> getExtensions() {
+        return extensions.keySet();
+    }
+
+    @Override
+    public long getMaxMessageSize() {
+        return maxMessageSize;
+    }
+
+    @Override
+    public Set<String> getAuthMechanisms() {
+        return authMechanisms;
+    }
+
+    @Override
+    public String toString() {
+        return extensions.toString();
+    }
+}
@@ -0,0 +1,456 @@
+/**
+* Licensed to niosmtp developers ('niosmtp') under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* niosmtp licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package me.normanmaurer.niosmtp.transport.impl;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import me.normanmaurer.niosmtp.SMTPClientFuture;
+import me.normanmaurer.niosmtp.SMTPClientFutureListener;
+import me.normanmaurer.niosmtp.SMTPException;
+import me.normanmaurer.niosmtp.SMTPResponse;
+import me.normanmaurer.niosmtp.core.ReadySMTPClientFuture;
+import me.normanmaurer.niosmtp.core.SMTPClientFutureImpl;
+import me.normanmaurer.niosmtp.core.SMTPRequestImpl;
+import me.normanmaurer.niosmtp.transport.FutureResult;
+import me.normanmaurer.niosmtp.transport.SMTPClientConfig;
+import me.normanmaurer.niosmtp.transport.SMTPClientSession;
+import me.normanmaurer.niosmtp.transport.SMTPClientSessionPool;
+import me.normanmaurer.niosmtp.transport.SMTPDeliveryMode;
+
+/**
+ * {@link SMTPClientSessionPool} implementation which keeps at most {@link #getMaxSessions()} {@link SMTPClientSession}'s per destination.
+ * 
+ * Idle {@link SMTPClientSession}'s are kept alive by sending a <code>NOOP</code> every {@link #getKeepAliveInterval()} seconds and get
+ * closed via <code>QUIT</code> once they were idle for more then {@link #getIdleTimeout()} seconds. The {@link #getMinRetained()} most recently 
+ * used idle {@link SMTPClientSession}'s of a destination are not closed because of the idle timeout. The pool never opens {@link SMTPClientSession}'s 
+ * by itself, so this is only a floor for the eviction and no minimum of idle {@link SMTPClientSession}'s which is guaranteed.
+ * 
+ * @author Norman Maurer
+ *
+ */
+public class SMTPClientSessionPoolImpl implements SMTPClientSessionPool {
+
+    public static final int DEFAULT_MIN_RETAINED = 0;
+    public static final int DEFAULT_MAX_SESSIONS = 8;
+    public static final int DEFAULT_IDLE_TIMEOUT = 60;
+    public static final int DEFAULT_KEEPALIVE_INTERVAL = 20;
+
+    private static final SMTPException DESTROYED_EXCEPTION = new SMTPException("SMTPClientSessionPool was destroyed");
+
+    private final ConcurrentMap<DestinationKey, Destination> destinations = new ConcurrentHashMap<DestinationKey, Destination>();
+    private final ConcurrentMap<SMTPClientSession, Destination> registered = new ConcurrentHashMap<SMTPClientSession, Destination>();
+    private final ScheduledExecutorService executor;
+    private final int minRetained;
+    private final int maxSessions;
+    private final int idleTimeout;
+    private final int keepAliveInterval;
+    private volatile boolean destroyed = false;
+    
+    public SMTPClientSessionPoolImpl() {
+        this(DEFAULT_MIN_RETAINED, DEFAULT_MAX_SESSIONS, DEFAULT_IDLE_TIMEOUT, DEFAULT_KEEPALIVE_INTERVAL);
+    }
+    
+    /**
+     * Create a new pool
+     * 
+     * @param minRetained the count of idle {@link SMTPClientSession}'s per destination which are not closed because of the idle timeout
+     * @param maxSessions the maximum of {@link SMTPClientSession}'s (idle and in use) per destination
+     * @param idleTimeout the time in seconds after which an idle {@link SMTPClientSession} will get closed
+     * @param keepAliveInterval the interval in seconds in which a <code>NOOP</code> is sent to idle {@link SMTPClientSession}'s
+     */
+    public SMTPClientSessionPoolImpl(int minRetained, int maxSessions, int idleTimeout, int keepAliveInterval) {
+        if (minRetained < 0 || maxSessions < 1 || minRetained > maxSessions) {
+            throw new IllegalArgumentException("minRetained must be >= 0 and <= maxSessions, maxSessions must be > 0");
+        }
+        if (idleTimeout < 1 || keepAliveInterval < 1) {
+            throw new IllegalArgumentException("idleTimeout and keepAliveInterval must be > 0");
+        }
+        this.minRetained = minRetained;
+        this.maxSessions = maxSessions;
+        this.idleTimeout = idleTimeout;
+        this.keepAliveInterval = keepAliveInterval;
+        this.executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "niosmtp-session-pool");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        
+        // check the idle sessions twice per keep alive interval so we never miss one by much
+        long checkInterval = TimeUnit.SECONDS.toMillis(Math.min(idleTimeout, keepAliveInterval)) / 2;
+        executor.scheduleWithFixedDelay(new Runnable() {
+            
+            @Override
+            public void run() {
+                checkIdleSessions();
+            }
+        }, checkInterval, checkInterval, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Return the count of idle {@link SMTPClientSession}'s per destination which are not closed because of the idle timeout. Idle 
+     * {@link SMTPClientSession}'s which get closed by the server or fail the keep alive are not replaced.
+     * 
+     * @return minRetained
+     */
+    public int getMinRetained() {
+        return minRetained;
+    }
+    
+    /**
+     * Return the maximum of {@link SMTPClientSession}'s per destination
+     * 
+     * @return maxSessions
+     */
+    public int getMaxSessions() {
+        return maxSessions;
+    }
+    
+    /**
+     * Return the time in seconds after which an idle {@link SMTPClientSession} is closed
+     * 
+     * @return idleTimeout
+     */
+    public int getIdleTimeout() {
+        return idleTimeout;
+    }
+    
+    /**
+     * Return the interval in seconds in which idle {@link SMTPClientSession}'s receive a <code>NOOP</code>
+     * 
+     * @return keepAliveInterval
+     */
+    public int getKeepAliveInterval() {
+        return keepAliveInterval;
+    }
+    
+    @SuppressWarnings("unchecked")
+    @Override
+    public SMTPClientFuture<FutureResult<SMTPClientSession>> acquire(InetSocketAddress remote, SMTPDeliveryMode mode, SMTPClientConfig config) {
+        if (destroyed) {
+            return new ReadySMTPClientFuture<FutureResult<SMTPClientSession>>(null, FutureResult.create(DESTROYED_EXCEPTION));
+        }
+        DestinationKey key = new DestinationKey(remote, mode, config);
+        for (;;) {
+            Destination dest = destinations.get(key);
+            if (dest == null) {
+                dest = new Destination();
+                Destination old = destinations.putIfAbsent(key, dest);
+                if (old != null) {
+                    dest = old;
+                }
+            }
+            SMTPClientSession session = null;
+            synchronized (dest) {
+                if (dest.removed) {
+                    // the destination was removed by the idle check in the meantime so try again
+                    continue;
+                }
+                IdleSession idle;
+                while ((idle = dest.idle.poll()) != null) {
+                    if (!idle.session.isClosed()) {
+                        session = idle.session;
+                        break;
+                    }
+                }
+                if (session == null) {
+                    if (dest.sessions < maxSessions) {
+                        dest.sessions++;
+                    } else {
+                        SMTPClientFutureImpl<FutureResult<SMTPClientSession>> waiter = new SMTPClientFutureImpl<FutureResult<SMTPClientSession>>(false);
+                        dest.waiters.add(waiter);
+                        return waiter;
+                    }
+                }
+            }
+            return new ReadySMTPClientFuture<FutureResult<SMTPClientSession>>(session, new FutureResultImpl<SMTPClientSession>(session));
+        }
+    }
+
+    @Override
+    public void register(InetSocketAddress remote, final SMTPClientSession session) {
+        final Destination dest = destinations.get(new DestinationKey(remote, session.getDeliveryMode(), session.getConfig()));
+        if (dest == null) {
+            throw new IllegalStateException("No connection was permitted for SMTPClientSession " + session.getId());
+        }
+        registered.put(session, dest);
+        session.getCloseFuture().addListener(new SMTPClientFutureListener<FutureResult<FutureResult.Void>>() {
+
+            @Override
+            public void operationComplete(SMTPClientFuture<FutureResult<FutureResult.Void>> future) {
+                SMTPClientFutureImpl<FutureResult<SMTPClientSession>> waiter;
+                registered.remove(session);
+                synchronized (dest) {
+                    Iterator<IdleSession> it = dest.idle.iterator();
+                    while (it.hasNext()) {
+                        if (it.next().session == session) {
+                            it.remove();
+                            break;
+                        }
+                    }
+                    waiter = freeSlot(dest);
+                }
+                permit(waiter);
+            }
+        });
+    }
+
+    @Override
+    public void cancel(InetSocketAddress remote, SMTPDeliveryMode mode, SMTPClientConfig config) {
+        Destination dest = destinations.get(new DestinationKey(remote, mode, config));
+        if (dest != null) {
+            SMTPClientFutureImpl<FutureResult<SMTPClientSession>> waiter;
+            synchronized (dest) {
+                waiter = freeSlot(dest);
+            }
+            permit(waiter);
+        }
+    }
+
+    @Override
+    public void release(SMTPClientSession session) {
+        Destination dest = registered.get(session);
+        if (destroyed || dest == null || session.isClosed()) {
+            // the registered close listener will take care of the bookkeeping
+            session.close();
+        } else {
+            offer(dest, new IdleSession(session));
+        }
+    }
+
+    @Override
+    public void destroy() {
+        destroyed = true;
+        executor.shutdownNow();
+        
+        Iterator<Destination> it = destinations.values().iterator();
+        while (it.hasNext()) {
+            Destination dest = it.next();
+            List<IdleSession> idle;
+            List<SMTPClientFutureImpl<FutureResult<SMTPClientSession>>> waiters;
+            synchronized (dest) {
+                idle = new ArrayList<IdleSession>(dest.idle);
+                waiters = new ArrayList<SMTPClientFutureImpl<FutureResult<SMTPClientSession>>>(dest.waiters);
+                dest.idle.clear();
+                dest.waiters.clear();
+            }
+            for (IdleSession s: idle) {
+                quit(s.session);
+            }
+            for (SMTPClientFutureImpl<FutureResult<SMTPClientSession>> waiter: waiters) {
+                fail(waiter);
+            }
+        }
+    }
+
+    /**
+     * Hand the {@link IdleSession} to the next waiter or add it to the idle sessions of the {@link Destination}. These are ordered by the time 
+     * they were used the last time, so the most recently used ones are at the start.
+     * 
+     * @param dest
+     * @param idle
+     */
+    private void offer(Destination dest, IdleSession idle) {
+        SMTPClientFutureImpl<FutureResult<SMTPClientSession>> waiter;
+        synchronized (dest) {
+            waiter = dest.waiters.poll();
+            if (waiter == null) {
+                // sessions which were just released go to the start, but the ones which were only kept alive need to keep their place
+                ListIterator<IdleSession> it = dest.idle.listIterator();
+                while (it.hasNext()) {
+                    if (it.next().lastUsed <= idle.lastUsed) {
+                        it.previous();
+                        break;
+                    }
+                }
+                it.add(idle);
+            }
+        }
+        if (waiter != null) {
+            waiter.setSMTPClientSession(idle.session);
+            waiter.setResult(new FutureResultImpl<SMTPClientSession>(idle.session));
+        }
+    }
+
+    /**
+     * Free the slot of a {@link SMTPClientSession} and return the waiter which is now allowed to connect, if any. Must be called while holding the
+     * lock of the {@link Destination}.
+     * 
+     * @param dest
+     * @return waiter
+     */
+    private SMTPClientFutureImpl<FutureResult<SMTPClientSession>> freeSlot(Destination dest) {
+        SMTPClientFutureImpl<FutureResult<SMTPClientSession>> waiter = dest.waiters.poll();
+        if (waiter == null) {
+            dest.sessions--;
+        }
+        return waiter;
+    }
+    
+    @SuppressWarnings("unchecked")
+    private void permit(SMTPClientFutureImpl<FutureResult<SMTPClientSession>> waiter) {
+        if (waiter != null) {
+            if (destroyed) {
+                fail(waiter);
+            } else {
+                waiter.setResult(new FutureResultImpl<SMTPClientSession>(null));
+            }
+        }
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static void fail(SMTPClientFutureImpl<FutureResult<SMTPClientSession>> waiter) {
+        waiter.setResult(FutureResult.create(DESTROYED_EXCEPTION));
+    }
+    
+    /**
+     * Close all {@link SMTPClientSession}'s which were idle for too long and send a <code>NOOP</code> to the ones which need to be kept alive
+     */
+    private void checkIdleSessions() {
+        long now = System.currentTimeMillis();
+        long idleMillis = TimeUnit.SECONDS.toMillis(idleTimeout);
+        long keepAliveMillis = TimeUnit.SECONDS.toMillis(keepAliveInterval);
+        
+        Iterator<Map.Entry<DestinationKey, Destination>> entries = destinations.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<DestinationKey, Destination> entry = entries.next();
+            Destination dest = entry.getValue();
+            List<IdleSession> expired = new ArrayList<IdleSession>();
+            List<IdleSession> keepAlive = new ArrayList<IdleSession>();
+            
+            synchronized (dest) {
+                int idleCount = dest.idle.size();
+                
+                // the oldest idle sessions are at the end 
+                Iterator<IdleSession> it = dest.idle.descendingIterator();
+                while (it.hasNext()) {
+                    IdleSession s = it.next();
+                    if (s.session.isClosed()) {
+                        it.remove();
+                        idleCount--;
+                    } else if (now - s.lastUsed >= idleMillis && idleCount > minRetained) {
+                        it.remove();
+                        idleCount--;
+                        expired.add(s);
+                    } else if (now - s.lastKeepAlive >= keepAliveMillis) {
+                        it.remove();
+                        keepAlive.add(s);
+                    }
+                }
+                
+                if (dest.sessions == 0 && dest.waiters.isEmpty()) {
+                    dest.removed = true;
+                    destinations.remove(entry.getKey(), dest);
+                }
+            }
+            
+            for (IdleSession s: expired) {
+                quit(s.session);
+            }
+            for (IdleSession s: keepAlive) {
+                keepAlive(dest, s);
+            }
+        }
+    }
+    
+    private void keepAlive(final Destination dest, final IdleSession idle) {
+        idle.session.send(SMTPRequestImpl.noop()).addListener(new SMTPClientFutureListener<FutureResult<SMTPResponse>>() {
+            
+            @Override
+            public void operationComplete(SMTPClientFuture<FutureResult<SMTPResponse>> future) {
+                FutureResult<SMTPResponse> result = future.getNoWait();
+                if (!destroyed && result.isSuccess() && result.getResult().getCode() < 400) {
+                    idle.lastKeepAlive = System.currentTimeMillis();
+                    offer(dest, idle);
+                } else {
+                    idle.session.close();
+                }
+            }
+        });
+    }
+    
+    private static void quit(final SMTPClientSession session) {
+        session.send(SMTPRequestImpl.quit()).addListener(new SMTPClientFutureListener<FutureResult<SMTPResponse>>() {
+            
+            @Override
+            public void operationComplete(SMTPClientFuture<FutureResult<SMTPResponse>> future) {
+                // close the session no matter what the server returned
+                session.close();
+            }
+        });
+    }
+
+    private static final class IdleSession {
+        private final SMTPClientSession session;
+        private final long lastUsed;
+        private volatile long lastKeepAlive;
+        
+        public IdleSession(SMTPClientSession session) {
+            this.session = session;
+            this.lastUsed = System.currentTimeMillis();
+            this.lastKeepAlive = lastUsed;
+        }
+    }
+    
+    private static final class Destination {
+        private final LinkedList<IdleSession> idle = new LinkedList<IdleSession>();
+        private final LinkedList<SMTPClientFutureImpl<FutureResult<SMTPClientSession>>> waiters = new LinkedList<SMTPClientFutureImpl<FutureResult<SMTPClientSession>>>();
+        private int sessions;
+        private boolean removed;
+    }
+    
+    private static final class DestinationKey {
+        private final InetSocketAddress remote;
+        private final SMTPDeliveryMode mode;
+        private final SMTPClientConfig config;
+        
+        public DestinationKey(InetSocketAddress remote, SMTPDeliveryMode mode, SMTPClientConfig config) {
+            this.remote = remote;
+            this.mode = mode;
+            this.config = config;
+        }
+
+        @Override
+        public int hashCode() {
+            return (remote.hashCode() * 31 + mode.hashCode()) * 31 + config.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj instanceof DestinationKey) {
+                DestinationKey key = (DestinationKey) obj;
+                return remote.equals(key.remote) && mode == key.mode && config.equals(key.config);
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/**
+* Licensed to niosmtp developers ('niosmtp') under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* niosmtp licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package me.normanmaurer.niosmtp.transport.impl;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSessionContext;
+
+import me.normanmaurer.niosmtp.transport.SMTPClientTransport;
+
+/**
+ * Utility class which helps to configure the {@link SSLContext} which is used by a {@link SMTPClientTransport}
+ * 
+ * @author Norman Maurer
+ *
+ */
+public class SSLContextUtils {
+
+    /**
+     * Default size of the client TLS session cache
+     */
+    public final static int DEFAULT_SESSION_CACHE_SIZE = 1024;
+    
+    /**
+     * Default timeout in seconds of the cached client TLS sessions
+     */
+    public final static int DEFAULT_SESSION_TIMEOUT = 60 * 60;
+    
+    private SSLContextUtils() {
+        
+    }
+    
+    /**
+     * Configure the client {@link SSLSessionContext} of the {@link SSLContext} with {@link #DEFAULT_SESSION_CACHE_SIZE} and 
+     * {@link #DEFAULT_SESSION_TIMEOUT}
+     * 
+     * @param context
+     * @return context
+     */
+    public static SSLContext configureClientSessionCache(SSLContext context) {
+        return configureClientSessionCache(context, DEFAULT_SESSION_CACHE_SIZE, DEFAULT_SESSION_TIMEOUT);
+    }
+    
+    /**
+     * Configure the client {@link SSLSessionContext} of the {@link SSLContext}. The cached TLS sessions are resumed by new connections to the same 
+     * destination, which saves the full TLS handshake. 
+     * 
+     * @param context
+     * @param size the maximal count of cached TLS sessions or <code>0</code> for no limit
+     * @param timeout the seconds after which a cached TLS session is not resumed anymore or <code>0</code> for no limit
+     * @return context
+     */
+    public static SSLContext configureClientSessionCache(SSLContext context, int size, int timeout) {
+        if (size < 0) {
+            throw new IllegalArgumentException("size must be >= 0");
+        }
+        if (timeout < 0) {
+            throw new IllegalArgumentException("timeout must be >= 0");
+        }
+        SSLSessionContext sessionContext = context.getClientSessionContext();
+        sessionContext.setSessionCacheSize(size);
+        sessionContext.setSessionTimeout(timeout);
+        return context;
+    }
+}
@@ -0,0 +1,87 @@
+/**
+* Licensed to niosmtp developers ('niosmtp') under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* niosmtp licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package me.normanmaurer.niosmtp.transport.impl;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.net.ssl.SSLSession;
+
+import me.normanmaurer.niosmtp.transport.SSLSessionStatistics;
+
+/**
+ * Thread-safe {@link SSLSessionStatistics} implementation
+ * 
+ * @author Norman Maurer
+ *
+ */
+public class SSLSessionStatisticsImpl implements SSLSessionStatistics {
+
+    // cipher suite of a SSLSession for which no handshake was completed
+    private final static String NULL_CIPHER_SUITE = "SSL_NULL_WITH_NULL_NULL";
+    
+    private final AtomicLong handshakes = new AtomicLong();
+    private final AtomicLong resumedHandshakes = new AtomicLong();
+    private final AtomicLong failedHandshakes = new AtomicLong();
+    
+    /**
+     * Record the {@link SSLSession} of a connection for which a TLS handshake was started. 
+     * 
+     * @param session
+     * @param handshakeStarted the time in milliseconds before the TLS handshake was started. If the {@link SSLSession} was created before, it 
+     *        was resumed
+     */
+    public void record(SSLSession session, long handshakeStarted) {
+        if (session == null || NULL_CIPHER_SUITE.equals(session.getCipherSuite())) {
+            failedHandshakes.incrementAndGet();
+            return;
+        }
+        handshakes.incrementAndGet();
+        if (session.getCreationTime() < handshakeStarted) {
+            resumedHandshakes.incrementAndGet();
+        }
+    }
+    
+    @Override
+    public long getHandshakes() {
+        return handshakes.get();
+    }
+
+    @Override
+    public long getResumedHandshakes() {
+        return resumedHandshakes.get();
+    }
+
+    @Override
+    public long getFailedHandshakes() {
+        return failedHandshakes.get();
+    }
+
+    @Override
+    public double getResumptionRate() {
+        long completed = handshakes.get();
+        if (completed == 0) {
+            return 0;
+        }
+        return (double) resumedHandshakes.get() / completed;
+    }
+
+    @Override
+    public String toString() {
+        return "SSLSessionStatistics[handshakes=" + getHandshakes() + ", resumedHandshakes=" + getResumedHandshakes() + ", failedHandshakes=" 
+                + getFailedHandshakes() + "]";
+    }
+}
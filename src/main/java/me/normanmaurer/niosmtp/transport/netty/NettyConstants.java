@@ -16,12 +16,15 @@
 */
 package me.normanmaurer.niosmtp.transport.netty;
 
+import me.normanmaurer.niosmtp.SMTPResponse;
 import me.normanmaurer.niosmtp.transport.netty.internal.SMTPClientIdleHandler;
 import me.normanmaurer.niosmtp.transport.netty.internal.SMTPConnectHandler;
 import me.normanmaurer.niosmtp.transport.netty.internal.SMTPDisconnectHandler;
 import me.normanmaurer.niosmtp.transport.netty.internal.SMTPPipeliningRequestEncoder;
 import me.normanmaurer.niosmtp.transport.netty.internal.SMTPRequestEncoder;
 import me.normanmaurer.niosmtp.transport.netty.internal.SMTPResponseDecoder;
+import me.normanmaurer.niosmtp.transport.netty.internal.SSLSessionStatisticsHandler;
+import me.normanmaurer.niosmtp.transport.netty.internal.SslHandshakeHandler;
 
 import org.jboss.netty.channel.ChannelPipeline;
 import org.jboss.netty.handler.ssl.SslHandler;
@@ -37,11 +40,6 @@ import org.jboss.netty.handler.timeout.IdleStateHandler;
  */
 public interface NettyConstants {
 
-    /**
-     * The key to used when adding the Framer to the {@link ChannelPipeline}
-     */
-    public static final String FRAMER_KEY = "framer";
-    
     /**
      * The key to use when adding the {@link IdleStateHandler} to the {@link ChannelPipeline}
      */
@@ -85,13 +83,23 @@ public interface NettyConstants {
     public static final String SSL_HANDLER_KEY = "sslHandler";
     
     /**
-     * The key to use when adding the SslHandshakeHandler to the {@link ChannelPipeline}
+     * The key to use when adding the {@link SslHandshakeHandler} to the {@link ChannelPipeline}
      */
     public static final String SSL_HANDSHAKE_HANDLER_KEY = "sslHandshakeHandler";
     
+    /**
+     * The key to use when adding the {@link SSLSessionStatisticsHandler} to the {@link ChannelPipeline}
+     */
+    public static final String SSL_STATISTICS_HANDLER_KEY = "sslStatisticsHandler";
+    
     /**
      * The key to use when adding the {@link SMTPClientIdleHandler} to the pipeline
      * 
      */
     public static final String SMTP_IDLE_HANDLER_KEY = "smtpIdleHandler";
+    
+    /**
+     * The key to use when adding the handler which dispatches the received {@link SMTPResponse}'s to the waiting futures to the {@link ChannelPipeline}
+     */
+    public static final String RESPONSE_HANDLER_KEY = "responseHandler";
 }
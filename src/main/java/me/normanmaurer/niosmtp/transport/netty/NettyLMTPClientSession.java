@@ -47,8 +47,8 @@ public class NettyLMTPClientSession extends NettySMTPClientSession{
         SMTPClientFutureImpl<FutureResult<Collection<SMTPResponse>>> future = new SMTPClientFutureImpl<FutureResult<Collection<SMTPResponse>>>(false);
         future.setSMTPClientSession(this);
 
-        addCollectionFutureHandler(future, msg.getRecipients());
-        writeMessage(msg.getMessage());
+        addResponseFuture(future, msg.getRecipients());
+        writeMessage(msg.getMessage(), msg.isChunking());
         return future;
     }
 
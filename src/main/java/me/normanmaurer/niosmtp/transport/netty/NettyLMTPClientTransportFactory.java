@@ -60,7 +60,7 @@ public class NettyLMTPClientTransportFactory extends NettySMTPClientTransportFac
      * @param workerCount
      * @return factory
      */
-    public static SMTPClientTransportFactory createNio(int workerCount) {
+    public static NettySMTPClientTransportFactory createNio(int workerCount) {
         return new NettySMTPClientTransportFactory(new NioClientSocketChannelFactory(Executors.newCachedThreadPool(), Executors.newCachedThreadPool(), workerCount), FACTORY);
     }
     
@@ -69,7 +69,7 @@ public class NettyLMTPClientTransportFactory extends NettySMTPClientTransportFac
      * 
      * @return factory
      */
-    public static SMTPClientTransportFactory createNio() {
+    public static NettySMTPClientTransportFactory createNio() {
         return new NettySMTPClientTransportFactory(new NioClientSocketChannelFactory(Executors.newCachedThreadPool(), Executors.newCachedThreadPool()), FACTORY);
     }
     
@@ -78,7 +78,7 @@ public class NettyLMTPClientTransportFactory extends NettySMTPClientTransportFac
      * 
      * @return factory
      */
-    public static SMTPClientTransportFactory createOio() {
+    public static NettySMTPClientTransportFactory createOio() {
         return new NettySMTPClientTransportFactory(new OioClientSocketChannelFactory(Executors.newCachedThreadPool()), FACTORY);
     }
     
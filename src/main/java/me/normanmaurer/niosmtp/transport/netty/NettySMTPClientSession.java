@@ -17,18 +17,23 @@
 package me.normanmaurer.niosmtp.transport.netty;
 
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.RandomAccessFile;
 import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Set;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import javax.net.ssl.SSLEngine;
 
 import me.normanmaurer.niosmtp.SMTPByteArrayMessage;
 import me.normanmaurer.niosmtp.SMTPClientFuture;
+import me.normanmaurer.niosmtp.SMTPDisconnectedException;
 import me.normanmaurer.niosmtp.SMTPException;
 import me.normanmaurer.niosmtp.SMTPMessage;
 import me.normanmaurer.niosmtp.SMTPMessageSubmit;
@@ -36,8 +41,13 @@ import me.normanmaurer.niosmtp.SMTPPipeliningRequest;
 import me.normanmaurer.niosmtp.SMTPRequest;
 import me.normanmaurer.niosmtp.SMTPResponse;
 import me.normanmaurer.niosmtp.core.DataTerminatingInputStream;
+import me.normanmaurer.niosmtp.core.DataTerminatingUtils;
+import me.normanmaurer.niosmtp.core.DotStuffingIndex;
 import me.normanmaurer.niosmtp.core.ReadySMTPClientFuture;
 import me.normanmaurer.niosmtp.core.SMTPClientFutureImpl;
+import me.normanmaurer.niosmtp.core.SMTPFileMessageImpl;
+import me.normanmaurer.niosmtp.core.SMTPPreparedMessageImpl;
+import me.normanmaurer.niosmtp.core.SMTPRequestImpl;
 import me.normanmaurer.niosmtp.transport.AbstractSMTPClientSession;
 import me.normanmaurer.niosmtp.transport.FutureResult;
 import me.normanmaurer.niosmtp.transport.SMTPClientConfig;
@@ -45,6 +55,8 @@ import me.normanmaurer.niosmtp.transport.SMTPClientConstants;
 import me.normanmaurer.niosmtp.transport.SMTPClientSession;
 import me.normanmaurer.niosmtp.transport.SMTPDeliveryMode;
 import me.normanmaurer.niosmtp.transport.impl.FutureResultImpl;
+import me.normanmaurer.niosmtp.transport.netty.internal.MappedFileChunkedInput;
+import me.normanmaurer.niosmtp.transport.netty.internal.SslHandshakeHandler;
 
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.buffer.ChannelBuffers;
@@ -54,7 +66,9 @@ import org.jboss.netty.channel.ChannelFutureListener;
 import org.jboss.netty.channel.ChannelHandlerContext;
 import org.jboss.netty.channel.ChannelPipeline;
 import org.jboss.netty.channel.ChannelStateEvent;
+import org.jboss.netty.channel.DefaultFileRegion;
 import org.jboss.netty.channel.ExceptionEvent;
+import org.jboss.netty.channel.FileRegion;
 import org.jboss.netty.channel.MessageEvent;
 import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
 import org.jboss.netty.handler.ssl.SslHandler;
@@ -71,79 +85,43 @@ import org.slf4j.Logger;
 class NettySMTPClientSession extends AbstractSMTPClientSession implements SMTPClientSession, SMTPClientConstants, NettyConstants{
 
 
-    private final static byte CR = '\r';
-    private final static byte LF = '\n';
-    private final static byte DOT = '.';
-    private final static byte[] DOT_CRLF = new byte[] {DOT, CR, LF};
-    private final static byte[] CRLF_DOT_CRLF = new byte[] {CR, LF, DOT, CR, LF};
-    private final static byte[] LF_DOT_CRLF = new byte[] {LF, DOT, CR, LF};
+    private final static byte[] DOT = new byte[] {'.'};
     
     private final Channel channel;
     private final SSLEngine engine;
     private final SMTPClientFutureImpl<FutureResult<me.normanmaurer.niosmtp.transport.FutureResult.Void>> closeFuture = new SMTPClientFutureImpl<FutureResult<me.normanmaurer.niosmtp.transport.FutureResult.Void>>();
-    private final AtomicInteger futureCount = new AtomicInteger(0);
+    private final ResponseHandler responseHandler = new ResponseHandler();
     private static final SMTPException STARTTLS_EXCEPTION = new SMTPException("SMTPClientSession already ecrypted!");
     
     public NettySMTPClientSession(Channel channel, Logger logger, SMTPClientConfig config, SMTPDeliveryMode mode,  SSLEngine engine) {
         super(logger, config, mode, (InetSocketAddress) channel.getLocalAddress(), (InetSocketAddress) channel.getRemoteAddress());      
         this.channel = channel;
         channel.getPipeline().addBefore(IDLE_HANDLER_KEY, "callback", new CloseHandler(closeFuture, logger));
+        channel.getPipeline().addBefore("callback", RESPONSE_HANDLER_KEY, responseHandler);
 
         this.engine = engine;
 
     }
     
 
-    protected void addFutureHandler(final SMTPClientFutureImpl<FutureResult<SMTPResponse>> future) {
-        SimpleChannelUpstreamHandler handler = new FutureHandler<SMTPResponse>(future) {
-
-            @Override
-            public void messageReceived(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
-                if (e.getMessage() instanceof SMTPResponse) {
-                    ctx.getPipeline().remove(this);
-                    future.setResult(new FutureResultImpl<SMTPResponse>((SMTPResponse)e.getMessage()));
-                } else {
-                    super.messageReceived(ctx, e);
-                }
-            }
-
-            
-        };
-        addHandler(handler);
-
+    /**
+     * Add the {@link SMTPClientFutureImpl} to the queue of futures which wait for a {@link SMTPResponse}
+     * 
+     * @param future
+     */
+    protected void addResponseFuture(SMTPClientFutureImpl<FutureResult<SMTPResponse>> future) {
+        responseHandler.add(new SingleResponseFuture(future));
     }
     
-    protected void addCollectionFutureHandler(final SMTPClientFutureImpl<FutureResult<Collection<SMTPResponse>>> future, final int responsesCount) {
-        FutureHandler<Collection<SMTPResponse>> handler = new FutureHandler<Collection<SMTPResponse>>(future) {
-            final Collection<SMTPResponse> responses = new ArrayList<SMTPResponse>();
-            @Override
-            public void messageReceived(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
-                if (e.getMessage() instanceof SMTPResponse) {
-                    responses.add((SMTPResponse) e.getMessage());
-                    if (responses.size() == responsesCount) {
-                        ctx.getPipeline().remove(this);
-                        future.setResult(new FutureResultImpl<Collection<SMTPResponse>>(responses));
-                    }
-                } else {
-                    super.messageReceived(ctx, e);
-                }
-            }
-
-            
-        };
-        addHandler(handler);
-
-    }
-
-    private void addHandler(SimpleChannelUpstreamHandler handler) {
-        ChannelPipeline cp = channel.getPipeline();
-        int count = futureCount.incrementAndGet();
-        String oldHandler = "futureHandler" + (count -1);
-        if (count == 1 || cp.get(oldHandler) == null) {
-            cp.addBefore("callback", "futureHandler" + count, handler);
-        } else {
-            cp.addBefore(oldHandler, "futureHandler" + count, handler);
-        }
+    /**
+     * Add the {@link SMTPClientFutureImpl} to the queue of futures which wait for a {@link SMTPResponse}. The {@link SMTPClientFutureImpl} will
+     * get notified once the given count of {@link SMTPResponse}'s were received
+     * 
+     * @param future
+     * @param responsesCount
+     */
+    protected void addResponseFuture(SMTPClientFutureImpl<FutureResult<Collection<SMTPResponse>>> future, int responsesCount) {
+        responseHandler.add(new CollectionResponseFuture(future, responsesCount));
     }
     
     @Override
@@ -157,9 +135,18 @@ class NettySMTPClientSession extends AbstractSMTPClientSession implements SMTPCl
         if (!isEncrypted()) {
             final SMTPClientFutureImpl<FutureResult<me.normanmaurer.niosmtp.transport.FutureResult.Void>> future = new SMTPClientFutureImpl<FutureResult<me.normanmaurer.niosmtp.transport.FutureResult.Void>>(false);
 
-            SslHandler sslHandler =  new SslHandler(engine, false);
-            channel.getPipeline().addFirst(SSL_HANDLER_KEY, sslHandler);
-            sslHandler.handshake().addListener(new ChannelFutureListener() {
+            SslHandshakeHandler handshakeHandler = channel.getPipeline().get(SslHandshakeHandler.class);
+            ChannelFuture handshakeFuture;
+            if (handshakeHandler != null) {
+                // use the handshake executor and limit of the transport
+                channel.getPipeline().addFirst(SSL_HANDLER_KEY, handshakeHandler.createSslHandler(engine));
+                handshakeFuture = handshakeHandler.handshake(channel);
+            } else {
+                SslHandler sslHandler =  new SslHandler(engine, false);
+                channel.getPipeline().addFirst(SSL_HANDLER_KEY, sslHandler);
+                handshakeFuture = sslHandler.handshake();
+            }
+            handshakeFuture.addListener(new ChannelFutureListener() {
                 
                 @Override
                 public void operationComplete(ChannelFuture cfuture) throws Exception {
@@ -181,7 +168,7 @@ class NettySMTPClientSession extends AbstractSMTPClientSession implements SMTPCl
     public SMTPClientFuture<FutureResult<SMTPResponse>> send(SMTPRequest request) {
         SMTPClientFutureImpl<FutureResult<SMTPResponse>> future = new SMTPClientFutureImpl<FutureResult<SMTPResponse>>(false);
         future.setSMTPClientSession(this);
-        addFutureHandler(future);
+        addResponseFuture(future);
         channel.write(request);
         return future;
     }
@@ -194,30 +181,57 @@ class NettySMTPClientSession extends AbstractSMTPClientSession implements SMTPCl
         SMTPClientFutureImpl<FutureResult<Collection<SMTPResponse>>> future = new SMTPClientFutureImpl<FutureResult<Collection<SMTPResponse>>>(false);
         future.setSMTPClientSession(this);
 
-        addCollectionFutureHandler(future,1 );
-        writeMessage(msg.getMessage());
+        addResponseFuture(future, 1);
+        writeMessage(msg.getMessage(), msg.isChunking());
         return future;
                     
     }
     
 
-    protected void writeMessage(SMTPMessage msg) {
-        Set<String> extensions = getSupportedExtensions();
+    protected void writeMessage(SMTPMessage msg, boolean chunking) {
+        boolean _8bit = getCapabilities().isSupported(_8BITMIME_EXTENSION);
 
-        if (msg instanceof SMTPByteArrayMessage) {
+        if (chunking) {
+            writeChunkedMessage(msg, _8bit);
+        } else if (msg instanceof SMTPPreparedMessageImpl) {
+            ByteBuffer wireFormat;
+            if (_8bit) {
+                wireFormat = ((SMTPPreparedMessageImpl)msg).get8BitWireFormat();
+            } else {
+                wireFormat = ((SMTPPreparedMessageImpl)msg).get7BitWireFormat();
+            }
+            channel.write(ChannelBuffers.wrappedBuffer(wireFormat));
+        } else if (msg instanceof SMTPByteArrayMessage) {
             byte[] data;
             
-            if (extensions.contains(_8BITMIME_EXTENSION)) {
+            if (_8bit) {
                 data = ((SMTPByteArrayMessage)msg).get8BitAsByteArray();
             } else {
                 data = ((SMTPByteArrayMessage)msg).get7BitAsByteArray();
             }
             channel.write(createDataTerminatingChannelBuffer(data));
+        } else if (msg instanceof SMTPFileMessageImpl) {
+            DotStuffingIndex index;
+            if (_8bit) {
+                index = ((SMTPFileMessageImpl) msg).get8BitIndex();
+            } else {
+                index = ((SMTPFileMessageImpl) msg).get7BitIndex();
+            }
+            try {
+                if (isEncrypted()) {
+                    // the content needs to get encrypted so we can not use zero-copy here
+                    channel.write(new MappedFileChunkedInput(index));
+                } else {
+                    writeFileRegions(index);
+                }
+            } catch (IOException e) {
+                channel.write(new ChunkedStream(new DataTerminatingInputStream(IOExceptionInputStream.INSTANCE)));
+            }
         } else {
             InputStream msgIn;
             try {
 
-                if (extensions.contains(_8BITMIME_EXTENSION)) {
+                if (_8bit) {
                     msgIn = msg.get8Bit();
                 } else {
                     msgIn = msg.get7bit();
@@ -251,46 +265,113 @@ class NettySMTPClientSession extends AbstractSMTPClientSession implements SMTPCl
 
     
     /**
-     * Create a {@link ChannelBuffer} which is terminated with a CRLF.CRLF sequence
+     * Write the {@link SMTPMessage} as one <code>BDAT LAST</code> chunk. There is no need for dot-stuffing here, so the content is written as it is
      * 
-     * @param data
-     * @return buffer
+     * @param msg
+     * @param _8bit
      */
-    private static ChannelBuffer createDataTerminatingChannelBuffer(byte[] data) {
-        int length = data.length;
-        if (length < 1) {
-            return ChannelBuffers.wrappedBuffer(CRLF_DOT_CRLF);
-        } else {
-            byte[] terminating;
-
-            byte last = data[length -1];
-
-            if (length == 1) {
-                if (last == CR) {
-                    terminating = LF_DOT_CRLF;
+    private void writeChunkedMessage(SMTPMessage msg, boolean _8bit) {
+        try {
+            if (msg instanceof SMTPByteArrayMessage) {
+                byte[] data;
+                if (_8bit) {
+                    data = ((SMTPByteArrayMessage) msg).get8BitAsByteArray();
+                } else {
+                    data = ((SMTPByteArrayMessage) msg).get7BitAsByteArray();
+                }
+                channel.write(SMTPRequestImpl.bdat(data.length, true));
+                channel.write(ChannelBuffers.wrappedBuffer(data));
+            } else if (msg instanceof SMTPFileMessageImpl) {
+                DotStuffingIndex index;
+                if (_8bit) {
+                    index = ((SMTPFileMessageImpl) msg).get8BitIndex();
                 } else {
-                    terminating = CRLF_DOT_CRLF;
+                    index = ((SMTPFileMessageImpl) msg).get7BitIndex();
+                }
+                if (isEncrypted()) {
+                    MappedFileChunkedInput input = new MappedFileChunkedInput(index.getFile(), index.getLength(), MappedFileChunkedInput.DEFAULT_CHUNK_SIZE);
+                    channel.write(SMTPRequestImpl.bdat(index.getLength(), true));
+                    channel.write(input);
+                } else {
+                    final RandomAccessFile file = new RandomAccessFile(index.getFile(), "r");
+                    channel.write(SMTPRequestImpl.bdat(index.getLength(), true));
+                    channel.write(new DefaultFileRegion(file.getChannel(), 0, index.getLength(), false)).addListener(new CloseFileListener(file));
                 }
             } else {
-                byte prevLast = data[length - 2];
-                
-                if (last == LF) {
-                    if (prevLast == CR) {
-                        terminating = DOT_CRLF;
-                    } else {
-                        terminating = CRLF_DOT_CRLF;
-                    }
-                } else if (last == CR) {
-                    terminating = LF_DOT_CRLF;
+                // the size of the InputStream is not known, so we need to buffer it
+                InputStream in;
+                if (_8bit) {
+                    in = msg.get8Bit();
                 } else {
-                    terminating = CRLF_DOT_CRLF;
-
+                    in = msg.get7bit();
                 }
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                byte[] buf = new byte[8192];
+                int read;
+                while ((read = in.read(buf)) != -1) {
+                    out.write(buf, 0, read);
+                }
+                byte[] data = out.toByteArray();
+                channel.write(SMTPRequestImpl.bdat(data.length, true));
+                channel.write(ChannelBuffers.wrappedBuffer(data));
             }
-            return ChannelBuffers.wrappedBuffer(data, terminating);
+        } catch (IOException e) {
+            channel.write(new ChunkedStream(IOExceptionInputStream.INSTANCE));
         }
+    }
+    
+    /**
+     * Write the content of the indexed file via {@link FileRegion}'s, so it can be transfered without copy it to memory first. The stuffed dots
+     * and the termination are written as {@link ChannelBuffer}'s between the {@link FileRegion}'s
+     * 
+     * @param index
+     * @throws IOException
+     */
+    private void writeFileRegions(DotStuffingIndex index) throws IOException {
+        final RandomAccessFile file = new RandomAccessFile(index.getFile(), "r");
+        FileChannel fileChannel = file.getChannel();
         
-      
+        long start = 0;
+        long[] positions = index.getDotStuffingPositions();
+        for (int i = 0; i < positions.length; i++) {
+            long position = positions[i];
+            if (position > start) {
+                channel.write(new DefaultFileRegion(fileChannel, start, position - start, false));
+            }
+            channel.write(ChannelBuffers.wrappedBuffer(DOT));
+            start = position;
+        }
+        if (index.getLength() > start) {
+            channel.write(new DefaultFileRegion(fileChannel, start, index.getLength() - start, false));
+        }
+        channel.write(ChannelBuffers.wrappedBuffer(index.getTerminating())).addListener(new CloseFileListener(file));
+    }
+    
+    /**
+     * Create a {@link ChannelBuffer} which is dot-stuffed and terminated with a CRLF.CRLF sequence. The given <code>byte</code> array is not
+     * copied, the stuffed dots are added as extra components of the returned {@link ChannelBuffer}
+     * 
+     * @param data
+     * @return buffer
+     */
+    private static ChannelBuffer createDataTerminatingChannelBuffer(byte[] data) {
+        byte[] terminating = DataTerminatingUtils.terminating(data);
+        int[] positions = DataTerminatingUtils.dotStuffingPositions(data);
+        if (positions.length == 0) {
+            return ChannelBuffers.wrappedBuffer(data, terminating);
+        }
+        ChannelBuffer[] buffers = new ChannelBuffer[positions.length * 2 + 2];
+        int start = 0;
+        int index = 0;
+        for (int i = 0; i < positions.length; i++) {
+            int position = positions[i];
+            buffers[index++] = ChannelBuffers.wrappedBuffer(data, start, position - start);
+            buffers[index++] = ChannelBuffers.wrappedBuffer(DOT);
+            start = position;
+        }
+        buffers[index++] = ChannelBuffers.wrappedBuffer(data, start, data.length - start);
+        buffers[index] = ChannelBuffers.wrappedBuffer(terminating);
+        return ChannelBuffers.wrappedBuffer(buffers);
     }
     
     private static final class CloseHandler extends SimpleChannelUpstreamHandler {
@@ -322,6 +403,26 @@ class NettySMTPClientSession extends AbstractSMTPClientSession implements SMTPCl
     }
     
     
+    /**
+     * {@link ChannelFutureListener} which closes the {@link RandomAccessFile} once the write operation is complete
+     */
+    private final static class CloseFileListener implements ChannelFutureListener {
+        private final RandomAccessFile file;
+
+        public CloseFileListener(RandomAccessFile file) {
+            this.file = file;
+        }
+        
+        @Override
+        public void operationComplete(ChannelFuture future) throws Exception {
+            try {
+                file.close();
+            } catch (IOException e) {
+                // ignore on close
+            }
+        }
+    }
+    
     private final static class IOExceptionInputStream extends InputStream {
         public final static IOExceptionInputStream INSTANCE= new IOExceptionInputStream();
         
@@ -340,7 +441,7 @@ class NettySMTPClientSession extends AbstractSMTPClientSession implements SMTPCl
         future.setSMTPClientSession(this);
 
         final int requests = request.getRequests().size();
-        addCollectionFutureHandler(future, requests);
+        addResponseFuture(future, requests);
         channel.write(request);      
         return future;
     }
@@ -350,24 +451,134 @@ class NettySMTPClientSession extends AbstractSMTPClientSession implements SMTPCl
         return closeFuture;
     }
     
+    /**
+     * {@link SimpleChannelUpstreamHandler} which holds a FIFO queue of all {@link ResponseFuture}'s which wait for {@link SMTPResponse}'s. As the SMTP Server 
+     * MUST respond in the same order as the {@link SMTPRequest}'s were sent, the received {@link SMTPResponse}'s are handed to the head of the queue.
+     * 
+     * This allows to use one handler per {@link Channel} for the whole lifetime of it, and so there is no need to modify the {@link ChannelPipeline} for every
+     * {@link SMTPRequest}
+     */
+    private static final class ResponseHandler extends SimpleChannelUpstreamHandler {
+        private final Queue<ResponseFuture> futures = new ConcurrentLinkedQueue<ResponseFuture>();
+        
+        public void add(ResponseFuture future) {
+            futures.add(future);
+        }
+        
+        @Override
+        public void messageReceived(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
+            Object msg = e.getMessage();
+            ResponseFuture future = futures.peek();
+            if (future != null && msg instanceof SMTPResponse) {
+                if (future.addResponse((SMTPResponse) msg)) {
+                    // remove it before notify the future as a listener may directly write the next request
+                    futures.poll();
+                    future.complete();
+                }
+            } else {
+                super.messageReceived(ctx, e);
+            }
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, ExceptionEvent e) throws Exception {
+            ResponseFuture future = futures.poll();
+            if (future != null) {
+                future.fail(e.getCause());
+            } else {
+                super.exceptionCaught(ctx, e);
+            }
+        }
+
+        @Override
+        public void channelClosed(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
+            // No SMTPResponse will be received anymore, so fail all ResponseFuture's which still wait for one
+            ResponseFuture future;
+            while ((future = futures.poll()) != null) {
+                future.fail(new SMTPDisconnectedException("Connection closed before all responses were received"));
+            }
+            super.channelClosed(ctx, e);
+        }
+    }
     
-    protected abstract class FutureHandler<E> extends SimpleChannelUpstreamHandler {
+    /**
+     * A future which waits for one or more {@link SMTPResponse}'s
+     */
+    private static abstract class ResponseFuture {
+        
+        /**
+         * Add the {@link SMTPResponse} and return <code>true</code> if all expected {@link SMTPResponse}'s were received
+         * 
+         * @param response
+         * @return complete
+         */
+        protected abstract boolean addResponse(SMTPResponse response);
+        
+        /**
+         * Notify the wrapped {@link SMTPClientFutureImpl} with the received {@link SMTPResponse}'s
+         */
+        protected abstract void complete();
+        
+        /**
+         * Notify the wrapped {@link SMTPClientFutureImpl} with the given {@link Throwable}
+         * 
+         * @param cause
+         */
+        protected abstract void fail(Throwable cause);
+    }
+    
+    private static final class SingleResponseFuture extends ResponseFuture {
+        private final SMTPClientFutureImpl<FutureResult<SMTPResponse>> future;
+        private SMTPResponse response;
+        
+        public SingleResponseFuture(SMTPClientFutureImpl<FutureResult<SMTPResponse>> future) {
+            this.future = future;
+        }
+        
+        @Override
+        protected boolean addResponse(SMTPResponse response) {
+            this.response = response;
+            return true;
+        }
 
-        protected SMTPClientFutureImpl<FutureResult<E>> future;
+        @Override
+        protected void complete() {
+            future.setResult(new FutureResultImpl<SMTPResponse>(response));
+        }
 
+        @SuppressWarnings("unchecked")
+        @Override
+        protected void fail(Throwable cause) {
+            future.setResult(FutureResult.create(cause));
+        }
+    }
+    
+    private static final class CollectionResponseFuture extends ResponseFuture {
+        private final SMTPClientFutureImpl<FutureResult<Collection<SMTPResponse>>> future;
+        private final Collection<SMTPResponse> responses;
+        private final int responsesCount;
 
-        public FutureHandler(SMTPClientFutureImpl<FutureResult<E>> future) {
+        public CollectionResponseFuture(SMTPClientFutureImpl<FutureResult<Collection<SMTPResponse>>> future, int responsesCount) {
             this.future = future;
+            this.responsesCount = responsesCount;
+            this.responses = new ArrayList<SMTPResponse>(responsesCount);
+        }
+        
+        @Override
+        protected boolean addResponse(SMTPResponse response) {
+            responses.add(response);
+            return responses.size() == responsesCount;
+        }
+
+        @Override
+        protected void complete() {
+            future.setResult(new FutureResultImpl<Collection<SMTPResponse>>(responses));
         }
-       
 
         @SuppressWarnings("unchecked")
         @Override
-        public void exceptionCaught(ChannelHandlerContext ctx, ExceptionEvent e) throws Exception {
-            ctx.getPipeline().remove(this);
-            future.setResult(FutureResult.create(e.getCause()));
-            
+        protected void fail(Throwable cause) {
+            future.setResult(FutureResult.create(cause));
         }
-        
     }
 }
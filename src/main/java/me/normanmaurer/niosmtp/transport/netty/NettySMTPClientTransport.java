@@ -17,6 +17,9 @@
 package me.normanmaurer.niosmtp.transport.netty;
 
 import java.net.InetSocketAddress;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import javax.net.ssl.SSLContext;
 
@@ -27,8 +30,13 @@ import me.normanmaurer.niosmtp.transport.FutureResult;
 import me.normanmaurer.niosmtp.transport.SMTPClientConfig;
 import me.normanmaurer.niosmtp.transport.SMTPDeliveryMode;
 import me.normanmaurer.niosmtp.transport.SMTPClientTransport;
+import me.normanmaurer.niosmtp.transport.SMTPResponseCacheStatistics;
+import me.normanmaurer.niosmtp.transport.SSLSessionStatistics;
+import me.normanmaurer.niosmtp.transport.impl.SSLSessionStatisticsImpl;
 import me.normanmaurer.niosmtp.transport.netty.internal.SMTPClientPipelineFactory;
+import me.normanmaurer.niosmtp.transport.netty.internal.SMTPResponseCache;
 import me.normanmaurer.niosmtp.transport.netty.internal.SecureSMTPClientPipelineFactory;
+import me.normanmaurer.niosmtp.transport.netty.internal.SslHandshakeHandler;
 
 import org.jboss.netty.bootstrap.ClientBootstrap;
 import org.jboss.netty.channel.ChannelFuture;
@@ -58,12 +66,45 @@ class NettySMTPClientTransport implements SMTPClientTransport{
     private final ClientSocketChannelFactory factory;
     private final DefaultChannelGroup channelGroup = new DefaultChannelGroup();
     private final SMTPClientSessionFactory sessionFactory;
+    private final SSLSessionStatisticsImpl statistics = new SSLSessionStatisticsImpl();
+    private final ThreadPoolExecutor handshakeExecutor;
+    private final SslHandshakeHandler handshakeHandler;
+    private final SMTPResponseCache responseCache;
+    
+    // maximal count of delegated SSLEngine tasks which wait for a handshake thread before the I/O thread needs to run them itself
+    private final static int HANDSHAKE_QUEUE_SIZE = 1024;
 
     NettySMTPClientTransport(SMTPDeliveryMode mode, SSLContext context, ClientSocketChannelFactory factory, SMTPClientSessionFactory sessionFactory) {
+        this(mode, context, factory, sessionFactory, 0, 0, SMTPResponseCache.DEFAULT_SIZE);
+    }
+    
+    /**
+     * 
+     * @param mode
+     * @param context
+     * @param factory
+     * @param sessionFactory
+     * @param handshakeThreads the count of threads which run the delegated tasks of the TLS handshakes or <code>0</code> if the I/O threads should
+     *        run them
+     * @param maxHandshakes the maximal count of concurrent TLS handshakes or <code>0</code> for no limit
+     * @param responseCacheSize the count of {@link SMTPResponse}'s which are cached, so identical ones share one instance, or <code>0</code> to 
+     *        disable the cache
+     */
+    NettySMTPClientTransport(SMTPDeliveryMode mode, SSLContext context, ClientSocketChannelFactory factory, SMTPClientSessionFactory sessionFactory, 
+            int handshakeThreads, int maxHandshakes, int responseCacheSize) {
         this.context = context;
         this.mode = mode;
         this.factory = factory;
         this.sessionFactory = sessionFactory;
+        if (context != null && handshakeThreads > 0) {
+            handshakeExecutor = new ThreadPoolExecutor(handshakeThreads, handshakeThreads, 60, TimeUnit.SECONDS, 
+                    new LinkedBlockingQueue<Runnable>(HANDSHAKE_QUEUE_SIZE), new ThreadPoolExecutor.CallerRunsPolicy());
+            handshakeExecutor.allowCoreThreadTimeOut(true);
+        } else {
+            handshakeExecutor = null;
+        }
+        handshakeHandler = new SslHandshakeHandler(handshakeExecutor, maxHandshakes);
+        responseCache = responseCacheSize > 0 ? new SMTPResponseCache(responseCacheSize) : null;
     }
 
     
@@ -82,14 +123,14 @@ class NettySMTPClientTransport implements SMTPClientTransport{
         ChannelPipelineFactory cp;
         switch (mode) {
         case PLAIN:
-            cp = new SMTPClientPipelineFactory(future, config, timer, sessionFactory);
+            cp = new SMTPClientPipelineFactory(future, config, timer, sessionFactory, responseCache);
             break;
         case SMTPS:
             // just move on to STARTTLS_DEPEND
         case STARTTLS_TRY:
             // just move on to STARTTLS_DEPEND
         case STARTTLS_DEPEND:
-            cp = new SecureSMTPClientPipelineFactory(future, config, timer,context, mode, sessionFactory);
+            cp = new SecureSMTPClientPipelineFactory(future, config, timer,context, mode, sessionFactory, remote, statistics, handshakeHandler, responseCache);
             break;
         default:
             throw new IllegalArgumentException("Unknown DeliveryMode " + mode);
@@ -110,6 +151,16 @@ class NettySMTPClientTransport implements SMTPClientTransport{
     }
     
 
+    @Override
+    public SSLSessionStatistics getSSLSessionStatistics() {
+        return statistics;
+    }
+
+    @Override
+    public SMTPResponseCacheStatistics getResponseCacheStatistics() {
+        return responseCache;
+    }
+
     @Override
     public SMTPDeliveryMode getDeliveryMode() {
         return mode;
@@ -120,6 +171,9 @@ class NettySMTPClientTransport implements SMTPClientTransport{
         timer.stop();
         channelGroup.close().awaitUninterruptibly();
         factory.releaseExternalResources();
+        if (handshakeExecutor != null) {
+            handshakeExecutor.shutdown();
+        }
     }
 
 }
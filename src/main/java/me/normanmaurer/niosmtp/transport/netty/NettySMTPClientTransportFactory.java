@@ -21,11 +21,13 @@ import java.util.concurrent.Executors;
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLEngine;
 
+import me.normanmaurer.niosmtp.SMTPResponse;
 import me.normanmaurer.niosmtp.transport.SMTPClientConfig;
 import me.normanmaurer.niosmtp.transport.SMTPClientSession;
 import me.normanmaurer.niosmtp.transport.SMTPDeliveryMode;
 import me.normanmaurer.niosmtp.transport.SMTPClientTransport;
 import me.normanmaurer.niosmtp.transport.SMTPClientTransportFactory;
+import me.normanmaurer.niosmtp.transport.netty.internal.SMTPResponseCache;
 
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.socket.ClientSocketChannelFactory;
@@ -48,6 +50,9 @@ public class NettySMTPClientTransportFactory implements SMTPClientTransportFacto
     }
     private final ClientSocketChannelFactory factory;
     private final SMTPClientSessionFactory sessionFactory;
+    private int handshakeThreads = Runtime.getRuntime().availableProcessors();
+    private int maxHandshakes = 0;
+    private int responseCacheSize = SMTPResponseCache.DEFAULT_SIZE;
 
     private final static SMTPClientSessionFactory FACTORY = new SMTPClientSessionFactory() {
         
@@ -68,7 +73,7 @@ public class NettySMTPClientTransportFactory implements SMTPClientTransportFacto
      * @param workerCount
      * @return factory
      */
-    public static SMTPClientTransportFactory createNio(int workerCount) {
+    public static NettySMTPClientTransportFactory createNio(int workerCount) {
         return new NettySMTPClientTransportFactory(new NioClientSocketChannelFactory(Executors.newCachedThreadPool(), Executors.newCachedThreadPool(), workerCount), FACTORY);
     }
     
@@ -77,7 +82,7 @@ public class NettySMTPClientTransportFactory implements SMTPClientTransportFacto
      * 
      * @return factory
      */
-    public static SMTPClientTransportFactory createNio() {
+    public static NettySMTPClientTransportFactory createNio() {
         return new NettySMTPClientTransportFactory(new NioClientSocketChannelFactory(Executors.newCachedThreadPool(), Executors.newCachedThreadPool()), FACTORY);
     }
     
@@ -86,19 +91,60 @@ public class NettySMTPClientTransportFactory implements SMTPClientTransportFacto
      * 
      * @return factory
      */
-    public static SMTPClientTransportFactory createOio() {
+    public static NettySMTPClientTransportFactory createOio() {
         return new NettySMTPClientTransportFactory(new OioClientSocketChannelFactory(Executors.newCachedThreadPool()), FACTORY);
     }
     
+    /**
+     * Set the count of threads which run the delegated tasks of the TLS handshakes (like the key exchange) of each {@link SMTPClientTransport} 
+     * which uses TLS, so they don't block the I/O threads. <code>0</code> means the I/O threads run them. Default is the count of available 
+     * processors.
+     * 
+     * @param handshakeThreads
+     */
+    public void setHandshakeThreads(int handshakeThreads) {
+        if (handshakeThreads < 0) {
+            throw new IllegalArgumentException("handshakeThreads must be >= 0");
+        }
+        this.handshakeThreads = handshakeThreads;
+    }
+    
+    /**
+     * Set the maximal count of concurrent TLS handshakes of each {@link SMTPClientTransport}. Further handshakes are started once others completed.
+     * <code>0</code> means no limit, which is the default.
+     * 
+     * @param maxHandshakes
+     */
+    public void setMaxHandshakes(int maxHandshakes) {
+        if (maxHandshakes < 0) {
+            throw new IllegalArgumentException("maxHandshakes must be >= 0");
+        }
+        this.maxHandshakes = maxHandshakes;
+    }
+    
+    /**
+     * Set the count of {@link SMTPResponse}'s which are cached by each {@link SMTPClientTransport}, so identical responses share one instance 
+     * instead of being allocated again for every connection. <code>0</code> disables the cache. Default is 
+     * {@link SMTPResponseCache#DEFAULT_SIZE}.
+     * 
+     * @param responseCacheSize
+     */
+    public void setResponseCacheSize(int responseCacheSize) {
+        if (responseCacheSize < 0) {
+            throw new IllegalArgumentException("responseCacheSize must be >= 0");
+        }
+        this.responseCacheSize = responseCacheSize;
+    }
+    
     @Override
     public SMTPClientTransport createPlain() {
-        return new NettySMTPClientTransport(SMTPDeliveryMode.PLAIN, null, factory, sessionFactory);
+        return new NettySMTPClientTransport(SMTPDeliveryMode.PLAIN, null, factory, sessionFactory, 0, 0, responseCacheSize);
     }
     
 
     @Override
     public SMTPClientTransport createSMTPS(SSLContext context) {
-        return new NettySMTPClientTransport(SMTPDeliveryMode.SMTPS, context, factory, sessionFactory);
+        return new NettySMTPClientTransport(SMTPDeliveryMode.SMTPS, context, factory, sessionFactory, handshakeThreads, maxHandshakes, responseCacheSize);
     }
     
 
@@ -110,7 +156,7 @@ public class NettySMTPClientTransportFactory implements SMTPClientTransportFacto
         } else {
             mode = SMTPDeliveryMode.STARTTLS_TRY;
         }
-        return new NettySMTPClientTransport(mode, context, factory, sessionFactory);
+        return new NettySMTPClientTransport(mode, context, factory, sessionFactory, handshakeThreads, maxHandshakes, responseCacheSize);
     }
     
 }
@@ -0,0 +1,143 @@
+/**
+* Licensed to niosmtp developers ('niosmtp') under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* niosmtp licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package me.normanmaurer.niosmtp.transport.netty.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import me.normanmaurer.niosmtp.core.DotStuffingIndex;
+
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.handler.stream.ChunkedInput;
+
+/**
+ * {@link ChunkedInput} which reads a file via memory-mapping and takes care of dot-stuffing and terminating the DATA command by using the 
+ * {@link DotStuffingIndex} of the file. 
+ * 
+ * This should be used if the content can not be transfered via a {@link org.jboss.netty.channel.FileRegion}, for example because the 
+ * connection is encrypted.
+ * 
+ * @author Norman Maurer
+ *
+ */
+public class MappedFileChunkedInput implements ChunkedInput {
+
+    public final static int DEFAULT_CHUNK_SIZE = 8192;
+    private final static int MAP_SIZE = 16 * 1024 * 1024;
+    private final static byte[] DOT = new byte[] {'.'};
+    private final static long[] EMPTY_POSITIONS = new long[0];
+    private final static byte[] EMPTY_TERMINATING = new byte[0];
+    
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final long length;
+    private final long[] positions;
+    private final byte[] terminating;
+    private final int chunkSize;
+    
+    private long position;
+    private int positionIndex;
+    private boolean terminated;
+    
+    private MappedByteBuffer mapped;
+    private long mappedStart;
+    
+    public MappedFileChunkedInput(DotStuffingIndex index) throws IOException {
+        this(index, DEFAULT_CHUNK_SIZE);
+    }
+    
+    public MappedFileChunkedInput(DotStuffingIndex index, int chunkSize) throws IOException {
+        this(index.getFile(), index.getLength(), index.getDotStuffingPositions(), index.getTerminating(), chunkSize);
+    }
+    
+    /**
+     * Create a new {@link MappedFileChunkedInput} which reads the first <code>length</code> bytes of the {@link File} without any dot-stuffing
+     * and termination. This is useful for <code>BDAT</code>
+     * 
+     * @param file
+     * @param length
+     * @param chunkSize
+     * @throws IOException
+     */
+    public MappedFileChunkedInput(File file, long length, int chunkSize) throws IOException {
+        this(file, length, EMPTY_POSITIONS, EMPTY_TERMINATING, chunkSize);
+    }
+    
+    private MappedFileChunkedInput(File file, long length, long[] positions, byte[] terminating, int chunkSize) throws IOException {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize must be > 0");
+        }
+        this.file = new RandomAccessFile(file, "r");
+        this.channel = this.file.getChannel();
+        this.length = length;
+        this.positions = positions;
+        this.terminating = terminating;
+        this.chunkSize = chunkSize;
+    }
+    
+    @Override
+    public boolean hasNextChunk() throws Exception {
+        return !terminated;
+    }
+
+    @Override
+    public Object nextChunk() throws Exception {
+        if (terminated) {
+            return null;
+        }
+        if (position == length) {
+            terminated = true;
+            return ChannelBuffers.wrappedBuffer(terminating);
+        }
+        if (positionIndex < positions.length && positions[positionIndex] == position) {
+            // stuff the dot, the original dot will be part of the next chunk
+            positionIndex++;
+            return ChannelBuffers.wrappedBuffer(DOT);
+        }
+        
+        long end = Math.min(length, position + chunkSize);
+        if (positionIndex < positions.length) {
+            end = Math.min(end, positions[positionIndex]);
+        }
+        if (mapped == null || position < mappedStart || end > mappedStart + mapped.capacity()) {
+            mappedStart = position;
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(length - position, MAP_SIZE));
+            end = Math.min(end, mappedStart + mapped.capacity());
+        }
+        ByteBuffer chunk = mapped.duplicate();
+        chunk.position((int) (position - mappedStart));
+        chunk.limit((int) (end - mappedStart));
+        position = end;
+        return ChannelBuffers.wrappedBuffer(chunk);
+    }
+
+    @Override
+    public boolean isEndOfInput() throws Exception {
+        return terminated;
+    }
+
+    @Override
+    public void close() throws Exception {
+        mapped = null;
+        file.close();
+    }
+
+}
@@ -27,7 +27,6 @@ import me.normanmaurer.niosmtp.transport.netty.SMTPClientSessionFactory;
 import org.jboss.netty.channel.ChannelPipeline;
 import org.jboss.netty.channel.ChannelPipelineFactory;
 import org.jboss.netty.channel.Channels;
-import org.jboss.netty.handler.codec.frame.LineBasedFrameDecoder;
 import org.jboss.netty.handler.stream.ChunkedWriteHandler;
 import org.jboss.netty.handler.timeout.IdleStateHandler;
 import org.jboss.netty.util.Timer;
@@ -43,7 +42,6 @@ import org.slf4j.LoggerFactory;
  */
 public class SMTPClientPipelineFactory implements ChannelPipelineFactory, NettyConstants{
     protected final static Logger LOGGER = LoggerFactory.getLogger(SMTPClientPipelineFactory.class);
-    private final static SMTPResponseDecoder SMTP_RESPONSE_DECODER = new SMTPResponseDecoder();
     private final static SMTPRequestEncoder SMTP_REQUEST_ENCODER = new SMTPRequestEncoder();
     private final static SMTPPipeliningRequestEncoder SMTP_PIPELINING_REQUEST_ENCODER = new SMTPPipeliningRequestEncoder();
     private final static SMTPClientIdleHandler SMTP_CLIENT_IDLE_HANDLER = new SMTPClientIdleHandler();
@@ -51,12 +49,18 @@ public class SMTPClientPipelineFactory implements ChannelPipelineFactory, NettyC
     protected final SMTPClientFutureImpl<FutureResult<SMTPResponse>> future;
     protected final SMTPClientConfig config;
     protected final SMTPClientSessionFactory factory;
+    private final SMTPResponseCache responseCache;
     
     public SMTPClientPipelineFactory(SMTPClientFutureImpl<FutureResult<SMTPResponse>> future, SMTPClientConfig config, Timer timer, SMTPClientSessionFactory factory) {
+        this(future, config, timer, factory, null);
+    }
+    
+    public SMTPClientPipelineFactory(SMTPClientFutureImpl<FutureResult<SMTPResponse>> future, SMTPClientConfig config, Timer timer, SMTPClientSessionFactory factory, SMTPResponseCache responseCache) {
         this.timer = timer;
         this.config = config;
         this.future = future;
         this.factory = factory;
+        this.responseCache = responseCache;
     }
     
     
@@ -64,8 +68,7 @@ public class SMTPClientPipelineFactory implements ChannelPipelineFactory, NettyC
     public ChannelPipeline getPipeline() throws Exception {
         ChannelPipeline pipeline = Channels.pipeline();
         pipeline.addLast(SMTP_IDLE_HANDLER_KEY, SMTP_CLIENT_IDLE_HANDLER);
-        pipeline.addLast(FRAMER_KEY, new LineBasedFrameDecoder(8192));
-        pipeline.addLast(SMTP_RESPONSE_DECODER_KEY, SMTP_RESPONSE_DECODER);
+        pipeline.addLast(SMTP_RESPONSE_DECODER_KEY, new SMTPResponseDecoder(SMTPResponseDecoder.DEFAULT_MAX_LINE_LENGTH, responseCache));
         pipeline.addLast(SMTP_REQUEST_ENCODER_KEY, SMTP_REQUEST_ENCODER);
         pipeline.addLast(SMTP_PIPELINING_REQUEST_ENCODER_KEY, SMTP_PIPELINING_REQUEST_ENCODER);
 
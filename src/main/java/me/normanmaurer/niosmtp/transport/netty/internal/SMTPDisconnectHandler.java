@@ -43,7 +43,7 @@ public class SMTPDisconnectHandler extends SimpleChannelUpstreamHandler implemen
 
     private boolean activeTransaction() {
         final SMTPClientSession session = future.getSession();
-        return session != null && (Boolean) session.getAttribute(SMTP_TRANSACTION_ACTIVE_KEY);
+        return session != null && Boolean.TRUE.equals(session.getAttribute(SMTP_TRANSACTION_ACTIVE_KEY));
     }
 
     @Override
@@ -16,12 +16,14 @@
 */
 package me.normanmaurer.niosmtp.transport.netty.internal;
 
+import java.util.Collection;
+
 import me.normanmaurer.niosmtp.SMTPPipeliningRequest;
+import me.normanmaurer.niosmtp.SMTPRequest;
 import me.normanmaurer.niosmtp.core.StringUtils;
 import me.normanmaurer.niosmtp.transport.SMTPClientConstants;
 
 import org.jboss.netty.buffer.ChannelBuffer;
-import org.jboss.netty.buffer.ChannelBuffers;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelHandlerContext;
 import org.jboss.netty.handler.codec.oneone.OneToOneEncoder;
@@ -31,26 +33,33 @@ import org.slf4j.LoggerFactory;
 /**
  * {@link OneToOneEncoder} which takes care to encode {@link SMTPPipeliningRequest}'s to {@link ChannelBuffer}'s
  * 
+ * All {@link SMTPRequest}'s of the {@link SMTPPipeliningRequest} are written to one {@link ChannelBuffer} which size is calculated up front.
+ * 
  * @author Norman Maurer
  *
  */
 public class SMTPPipeliningRequestEncoder extends OneToOneEncoder implements SMTPClientConstants{
     private final Logger logger = LoggerFactory.getLogger(SMTPRequestEncoder.class);
 
-    private final static byte[] CRLF = new byte[] {'\r', '\n'};
-    
     @Override
-    protected Object encode(ChannelHandlerContext ctx, Channel arg1, Object msg) throws Exception {
+    protected Object encode(ChannelHandlerContext ctx, Channel channel, Object msg) throws Exception {
         if (msg instanceof SMTPPipeliningRequest) {
             SMTPPipeliningRequest req = (SMTPPipeliningRequest) msg;
-            String request = StringUtils.toString((SMTPPipeliningRequest) req);
             
             if (logger.isDebugEnabled()) {
-                logger.debug("Channel " + ctx.getChannel().getId() + " sent: [" + request + "]");
+                logger.debug("Channel " + ctx.getChannel().getId() + " sent: [" + StringUtils.toString(req) + "]");
             }
             
-          
-            return ChannelBuffers.wrappedBuffer(request.getBytes(CHARSET), CRLF);
+            Collection<SMTPRequest> requests = req.getRequests();
+            int length = 0;
+            for (SMTPRequest request: requests) {
+                length += SMTPRequestEncoder.encodedLength(request);
+            }
+            ChannelBuffer buffer = channel.getConfig().getBufferFactory().getBuffer(length);
+            for (SMTPRequest request: requests) {
+                SMTPRequestEncoder.writeRequest(request, buffer);
+            }
+            return buffer;
         }
         return msg;
     }
@@ -17,6 +17,7 @@
 package me.normanmaurer.niosmtp.transport.netty.internal;
 
 import me.normanmaurer.niosmtp.SMTPRequest;
+import me.normanmaurer.niosmtp.core.SMTPRequestImpl;
 import me.normanmaurer.niosmtp.core.StringUtils;
 import me.normanmaurer.niosmtp.transport.SMTPClientConstants;
 
@@ -31,6 +32,9 @@ import org.slf4j.LoggerFactory;
 /**
  * {@link OneToOneEncoder} which encoded {@link SMTPRequest} objects to {@link ChannelBuffer}
  * 
+ * Pre-encoded requests are just wrapped, all others are written directly to a {@link ChannelBuffer} of the exact size without 
+ * create any intermediate <code>String</code>. Characters which are not US-ASCII are replaced by <code>?</code>.
+ * 
  * @author Norman Maurer
  *
  */
@@ -38,21 +42,120 @@ public class SMTPRequestEncoder extends OneToOneEncoder implements SMTPClientCon
     private final Logger logger = LoggerFactory.getLogger(SMTPRequestEncoder.class);
 
     private final static byte[] CRLF = new byte[] {'\r', '\n'};
+    private final static byte REPLACEMENT = '?';
     
     @Override
-    protected Object encode(ChannelHandlerContext ctx, Channel arg1, Object msg) throws Exception {
+    protected Object encode(ChannelHandlerContext ctx, Channel channel, Object msg) throws Exception {
         if (msg instanceof SMTPRequest) {
             SMTPRequest req = (SMTPRequest) msg;
-            String request = StringUtils.toString((SMTPRequest) req);
             
             if (logger.isDebugEnabled()) {
-                logger.debug("Channel " + ctx.getChannel().getId() + " sent: [" + request + "]");
+                logger.debug("Channel " + ctx.getChannel().getId() + " sent: [" + StringUtils.toString(req) + "]");
             }
             
-          
-            return ChannelBuffers.wrappedBuffer(request.getBytes(CHARSET), CRLF);
+            byte[] encoded = getEncoded(req);
+            if (encoded != null) {
+                return ChannelBuffers.wrappedBuffer(encoded);
+            }
+            ChannelBuffer buffer = channel.getConfig().getBufferFactory().getBuffer(encodedLength(req));
+            writeRequest(req, buffer);
+            return buffer;
         }
         return msg;
     }
 
+    /**
+     * Return the number of bytes which are needed to encode the given {@link SMTPRequest} (including the terminating <code>CRLF</code>)
+     * 
+     * @param req
+     * @return length
+     */
+    static int encodedLength(SMTPRequest req) {
+        byte[] encoded = getEncoded(req);
+        if (encoded != null) {
+            return encoded.length;
+        }
+        int length = req.getCommand().length() + CRLF.length;
+        String address = getAddress(req);
+        if (address != null) {
+            // separator + < + address + >
+            length += address.length() + 3;
+            String parameters = getParameters(req);
+            if (parameters != null) {
+                length += parameters.length() + 1;
+            }
+        } else {
+            String argument = req.getArgument();
+            if (argument != null) {
+                length += argument.length() + 1;
+            }
+        }
+        return length;
+    }
+    
+    /**
+     * Write the given {@link SMTPRequest} (including the terminating <code>CRLF</code>) to the {@link ChannelBuffer}
+     * 
+     * @param req
+     * @param buffer
+     */
+    static void writeRequest(SMTPRequest req, ChannelBuffer buffer) {
+        byte[] encoded = getEncoded(req);
+        if (encoded != null) {
+            buffer.writeBytes(encoded);
+            return;
+        }
+        writeAscii(req.getCommand(), buffer);
+        String address = getAddress(req);
+        if (address != null) {
+            buffer.writeByte(req.getSeparator());
+            buffer.writeByte('<');
+            writeAscii(address, buffer);
+            buffer.writeByte('>');
+            String parameters = getParameters(req);
+            if (parameters != null) {
+                buffer.writeByte(' ');
+                writeAscii(parameters, buffer);
+            }
+        } else {
+            String argument = req.getArgument();
+            if (argument != null) {
+                buffer.writeByte(req.getSeparator());
+                writeAscii(argument, buffer);
+            }
+        }
+        buffer.writeBytes(CRLF);
+    }
+    
+    private static void writeAscii(String value, ChannelBuffer buffer) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                buffer.writeByte(c);
+            } else {
+                buffer.writeByte(REPLACEMENT);
+            }
+        }
+    }
+    
+    private static byte[] getEncoded(SMTPRequest req) {
+        if (req instanceof SMTPRequestImpl) {
+            return ((SMTPRequestImpl) req).getEncoded();
+        }
+        return null;
+    }
+    
+    private static String getAddress(SMTPRequest req) {
+        if (req instanceof SMTPRequestImpl) {
+            return ((SMTPRequestImpl) req).getAddress();
+        }
+        return null;
+    }
+    
+    private static String getParameters(SMTPRequest req) {
+        if (req instanceof SMTPRequestImpl) {
+            return ((SMTPRequestImpl) req).getParameters();
+        }
+        return null;
+    }
 }
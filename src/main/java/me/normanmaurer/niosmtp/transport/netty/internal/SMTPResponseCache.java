@@ -0,0 +1,186 @@
+/**
+* Licensed to niosmtp developers ('niosmtp') under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* niosmtp licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package me.normanmaurer.niosmtp.transport.netty.internal;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import me.normanmaurer.niosmtp.SMTPResponse;
+import me.normanmaurer.niosmtp.core.EncodedSMTPResponseImpl;
+import me.normanmaurer.niosmtp.transport.SMTPResponseCacheStatistics;
+
+/**
+ * Bounded cache of immutable {@link SMTPResponse}'s which is keyed on the raw bytes of the response, so identical responses share one instance.
+ * 
+ * It is direct-mapped, which means every response can only be stored in the slot of its hash and replaces the one which was stored there before. 
+ * This keeps the lookup lock-free and makes sure nothing is allocated if the response is found. Responses whose text is longer then 
+ * {@link #MAX_TEXT_LENGTH} are not cached, as they are unlikely to be repeated.
+ * 
+ * It is thread-safe and so can be shared by all {@link SMTPResponseDecoder}'s of a transport.
+ * 
+ * @author Norman Maurer
+ *
+ */
+public final class SMTPResponseCache implements SMTPResponseCacheStatistics {
+
+    /**
+     * The default count of cached {@link SMTPResponse}'s
+     */
+    public final static int DEFAULT_SIZE = 256;
+    
+    /**
+     * The maximal length of the text of all lines of a {@link SMTPResponse} which is cached
+     */
+    public final static int MAX_TEXT_LENGTH = 256;
+    
+    private final AtomicReferenceArray<Entry> entries;
+    private final int mask;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    
+    /**
+     * Create a new {@link SMTPResponseCache}. The size is rounded up to the next power of two.
+     * 
+     * @param size
+     */
+    public SMTPResponseCache(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("size must be > 0");
+        }
+        int capacity = 1;
+        while (capacity < size) {
+            capacity <<= 1;
+        }
+        entries = new AtomicReferenceArray<Entry>(capacity);
+        mask = capacity - 1;
+    }
+    
+    /**
+     * Return the cached {@link SMTPResponse} for the given code and lines, or create and cache a new one. Responses without lines are not 
+     * looked up, as they are cheap to create.
+     * 
+     * The given <code>byte</code> array holds the text of all lines and the <code>int</code> array the offsets of their ends, like they are
+     * used by {@link EncodedSMTPResponseImpl}. Both are copied if a new {@link SMTPResponse} needs to be created, so they can be reused.
+     * 
+     * @param code
+     * @param text
+     * @param textLength
+     * @param lineEnds
+     * @param lineCount
+     * @return response
+     */
+    public SMTPResponse get(int code, byte[] text, int textLength, int[] lineEnds, int lineCount) {
+        if (lineCount == 0) {
+            return new EncodedSMTPResponseImpl(code);
+        }
+        byte[] responseText;
+        int[] responseLineEnds;
+        if (textLength > MAX_TEXT_LENGTH) {
+            responseText = new byte[textLength];
+            System.arraycopy(text, 0, responseText, 0, textLength);
+            responseLineEnds = new int[lineCount];
+            System.arraycopy(lineEnds, 0, responseLineEnds, 0, lineCount);
+            return new EncodedSMTPResponseImpl(code, responseText, responseLineEnds);
+        }
+        int hash = hash(code, text, textLength, lineEnds, lineCount);
+        int index = hash & mask;
+        Entry entry = entries.get(index);
+        if (entry != null && entry.matches(hash, code, text, textLength, lineEnds, lineCount)) {
+            hits.incrementAndGet();
+            return entry.response;
+        }
+        misses.incrementAndGet();
+        
+        responseText = new byte[textLength];
+        System.arraycopy(text, 0, responseText, 0, textLength);
+        responseLineEnds = new int[lineCount];
+        System.arraycopy(lineEnds, 0, responseLineEnds, 0, lineCount);
+        SMTPResponse response = new EncodedSMTPResponseImpl(code, responseText, responseLineEnds);
+        entries.set(index, new Entry(hash, code, responseText, responseLineEnds, response));
+        return response;
+    }
+    
+    private static int hash(int code, byte[] text, int textLength, int[] lineEnds, int lineCount) {
+        int hash = code;
+        for (int i = 0; i < textLength; i++) {
+            hash = 31 * hash + text[i];
+        }
+        for (int i = 0; i < lineCount; i++) {
+            hash = 31 * hash + lineEnds[i];
+        }
+        // spread the bits, as only the lower ones are used to select the slot
+        return hash ^ (hash >>> 16);
+    }
+    
+    @Override
+    public int getSize() {
+        return entries.length();
+    }
+
+    @Override
+    public long getHits() {
+        return hits.get();
+    }
+
+    @Override
+    public long getMisses() {
+        return misses.get();
+    }
+
+    @Override
+    public double getHitRate() {
+        long hits = this.hits.get();
+        long lookups = hits + misses.get();
+        if (lookups == 0) {
+            return 0;
+        }
+        return (double) hits / lookups;
+    }
+    
+    private static final class Entry {
+        private final int hash;
+        private final int code;
+        private final byte[] text;
+        private final int[] lineEnds;
+        private final SMTPResponse response;
+        
+        Entry(int hash, int code, byte[] text, int[] lineEnds, SMTPResponse response) {
+            this.hash = hash;
+            this.code = code;
+            this.text = text;
+            this.lineEnds = lineEnds;
+            this.response = response;
+        }
+        
+        boolean matches(int hash, int code, byte[] text, int textLength, int[] lineEnds, int lineCount) {
+            if (this.hash != hash || this.code != code || this.text.length != textLength || this.lineEnds.length != lineCount) {
+                return false;
+            }
+            for (int i = 0; i < textLength; i++) {
+                if (this.text[i] != text[i]) {
+                    return false;
+                }
+            }
+            for (int i = 0; i < lineCount; i++) {
+                if (this.lineEnds[i] != lineEnds[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
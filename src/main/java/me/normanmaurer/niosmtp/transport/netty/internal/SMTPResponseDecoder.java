@@ -18,89 +18,205 @@ package me.normanmaurer.niosmtp.transport.netty.internal;
 
 import me.normanmaurer.niosmtp.SMTPException;
 import me.normanmaurer.niosmtp.SMTPResponse;
-import me.normanmaurer.niosmtp.core.SMTPResponseImpl;
+import me.normanmaurer.niosmtp.core.EncodedSMTPResponseImpl;
 import me.normanmaurer.niosmtp.core.StringUtils;
 import me.normanmaurer.niosmtp.transport.SMTPClientConstants;
 
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelHandlerContext;
-import org.jboss.netty.handler.codec.oneone.OneToOneDecoder;
+import org.jboss.netty.handler.codec.frame.FrameDecoder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * {@link OneToOneDecoder} which decodes {@link SMTPResponse}'s. It also handles
+ * {@link FrameDecoder} which decodes {@link SMTPResponse}'s. It also handles
  * multi-line responses.
  * 
+ * The lines are framed and parsed in one pass directly from the received {@link ChannelBuffer}. The text of all lines of a response
+ * is collected in one <code>byte</code> array and only decoded to <code>String</code>'s once they are requested via {@link SMTPResponse#getLines()}.
+ * 
+ * As this {@link FrameDecoder} holds the state of the current response it must not be shared between different {@link Channel}'s.
  * 
  * @author Norman Maurer
  * 
  */
-public class SMTPResponseDecoder extends OneToOneDecoder implements SMTPClientConstants{
+public class SMTPResponseDecoder extends FrameDecoder implements SMTPClientConstants{
     private final static Logger logger = LoggerFactory.getLogger(SMTPResponseDecoder.class);
 
+    /**
+     * The maximal length of a response line (without the line delimiter)
+     */
+    public final static int DEFAULT_MAX_LINE_LENGTH = 8192;
+    
+    private final static byte CR = '\r';
+    private final static byte LF = '\n';
+    
+    private final int maxLineLength;
+    private final SMTPResponseCache cache;
+    
+    // State of the response which is currently decoded. The text buffer is reused
+    // for all responses and only copied once a response is complete
+    private int code = -1;
+    private byte[] text = new byte[128];
+    private int textLength;
+    private int[] lineEnds = new int[8];
+    private int lineCount;
+    
+    // true if a too long line was discarded before its line delimiter was received, so everything
+    // up to the next line delimiter belongs to it and must be discarded too
+    private boolean discarding;
+    
+    public SMTPResponseDecoder() {
+        this(DEFAULT_MAX_LINE_LENGTH);
+    }
+    
+    public SMTPResponseDecoder(int maxLineLength) {
+        this(maxLineLength, null);
+    }
+    
+    /**
+     * 
+     * @param maxLineLength
+     * @param cache the {@link SMTPResponseCache} which is used to share identical {@link SMTPResponse}'s or <code>null</code> if every 
+     *        {@link SMTPResponse} should be created
+     */
+    public SMTPResponseDecoder(int maxLineLength, SMTPResponseCache cache) {
+        if (maxLineLength <= 0) {
+            throw new IllegalArgumentException("maxLineLength must be > 0");
+        }
+        this.maxLineLength = maxLineLength;
+        this.cache = cache;
+    }
+    
     @Override
-    protected Object decode(ChannelHandlerContext ctx, Channel channel, Object msg) throws Exception {
-        if (msg instanceof ChannelBuffer) {
-            ChannelBuffer line = (ChannelBuffer) msg;
-
-            SMTPResponseImpl response = (SMTPResponseImpl) ctx.getAttachment();
-
-            // The separator must be on index 3 as the return code has always 3
-            // digits
-            int separator = line.getByte(3);
-
+    protected Object decode(ChannelHandlerContext ctx, Channel channel, ChannelBuffer buffer) throws Exception {
+        for (;;) {
+            int start = buffer.readerIndex();
+            int writerIndex = buffer.writerIndex();
+            int eol = buffer.indexOf(start, writerIndex, LF);
+            if (discarding) {
+                if (eol == -1) {
+                    // still no end of the too long line
+                    buffer.skipBytes(writerIndex - start);
+                    return null;
+                }
+                buffer.readerIndex(eol + 1);
+                discarding = false;
+                continue;
+            }
+            if (eol == -1) {
+                if (writerIndex - start > maxLineLength) {
+                    // discard what we have and also the rest of the line once it is received, then fail
+                    buffer.skipBytes(writerIndex - start);
+                    discarding = true;
+                    reset();
+                    throw new SMTPException("SMTPResponse line exceeds the maximal length of " + maxLineLength);
+                }
+                // wait for more data
+                return null;
+            }
+            
+            // mark the line as consumed before any parsing, so we never try to decode it twice
+            buffer.readerIndex(eol + 1);
+            
+            int end = eol;
+            if (end > start && buffer.getByte(end - 1) == CR) {
+                end--;
+            }
+            int length = end - start;
+            if (length > maxLineLength) {
+                reset();
+                throw new SMTPException("SMTPResponse line exceeds the maximal length of " + maxLineLength);
+            }
+            
+            // The return code has always 3 digits and the separator must be on index 3. If 
+            // there is no separator at all we handle the line like it was the last one 
+            int lineCode = length < 3 ? -1 : parseCode(buffer, start);
+            int separator = length > 3 ? buffer.getByte(start + 3) : SMTPResponse.LAST_SEPERATOR;
+            if (lineCode == -1 || (separator != SMTPResponse.LAST_SEPERATOR && separator != SMTPResponse.SEPERATOR)) {
+                reset();
+                // throw exception if the response does not have a valid format
+                throw new SMTPException("Unable to parse SMTPResponse: " + buffer.toString(start, length, CHARSET));
+            }
+            
+            if (code == -1) {
+                code = lineCode;
+            }
+            if (length > 4) {
+                addLine(buffer, start + 4, length - 4);
+            }
+            
             if (separator == SMTPResponse.LAST_SEPERATOR) {
                 // Ok we had a ' ' separator which means this was the end of the
                 // SMTPResponse
-                if (response == null) {
-                    int code = Integer.parseInt(line.readBytes(3).toString(CHARSET));
-                    response = new SMTPResponseImpl(code);
-                    // skip the next space
-                    line.skipBytes(1);
-                } else {
-                    // skip the code and the next space
-                    line.skipBytes(4);
-                }
-                
-                if (line.readable()) {
-                    response.addLine(line.toString(CHARSET));
-
-                }
-                ctx.setAttachment(null);
+                SMTPResponse response = createResponse();
+                reset();
                 if (logger.isDebugEnabled()) {
                     logger.debug("Channel " + ctx.getChannel().getId() + " received: [" + StringUtils.toString(response) + "]");
                 }
                 return response;
-            } else if (separator == SMTPResponse.SEPERATOR) {
-                // The '-' separator is used for multi-line responses so just
-                // add it to the response
-                if (response == null) {
-                    int code = Integer.parseInt(line.readBytes(3).toString(CHARSET));
-                    response = new SMTPResponseImpl(code);
-                    ctx.setAttachment(response);
-                    
-                    // skip the next space
-                    line.skipBytes(1);
-
-                } else {
-                    // skip the code and the next space
-                    line.skipBytes(4);
-                }
-                if (line.readable()) {
-                    response.addLine(line.toString(CHARSET));
-                }
-            } else {
-                // throw exception if the response does not have a valid format
-                throw new SMTPException("Unable to parse SMTPResponse: " + line.toString(CHARSET));
             }
-
-            return null;
-        } else {
-            return msg;
+            
+            // The '-' separator is used for multi-line responses so just
+            // try to decode the next line
         }
-
     }
 
+    /**
+     * Parse the 3 digit code which starts at the given index. Returns <code>-1</code> if the code is not valid
+     * 
+     * @param buffer
+     * @param index
+     * @return code
+     */
+    private static int parseCode(ChannelBuffer buffer, int index) {
+        int code = 0;
+        for (int i = index; i < index + 3; i++) {
+            int digit = buffer.getByte(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            code = code * 10 + digit;
+        }
+        return code;
+    }
+    
+    private void addLine(ChannelBuffer buffer, int index, int length) {
+        int newLength = textLength + length;
+        if (newLength > text.length) {
+            byte[] newText = new byte[Math.max(newLength, text.length << 1)];
+            System.arraycopy(text, 0, newText, 0, textLength);
+            text = newText;
+        }
+        buffer.getBytes(index, text, textLength, length);
+        textLength = newLength;
+        
+        if (lineCount == lineEnds.length) {
+            int[] newLineEnds = new int[lineEnds.length << 1];
+            System.arraycopy(lineEnds, 0, newLineEnds, 0, lineCount);
+            lineEnds = newLineEnds;
+        }
+        lineEnds[lineCount++] = textLength;
+    }
+    
+    private SMTPResponse createResponse() {
+        if (cache != null) {
+            return cache.get(code, text, textLength, lineEnds, lineCount);
+        }
+        if (lineCount == 0) {
+            return new EncodedSMTPResponseImpl(code);
+        }
+        byte[] responseText = new byte[textLength];
+        System.arraycopy(text, 0, responseText, 0, textLength);
+        int[] responseLineEnds = new int[lineCount];
+        System.arraycopy(lineEnds, 0, responseLineEnds, 0, lineCount);
+        return new EncodedSMTPResponseImpl(code, responseText, responseLineEnds);
+    }
+    
+    private void reset() {
+        code = -1;
+        textLength = 0;
+        lineCount = 0;
+    }
 }
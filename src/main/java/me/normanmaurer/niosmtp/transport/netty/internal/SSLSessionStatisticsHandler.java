@@ -0,0 +1,51 @@
+/**
+* Licensed to niosmtp developers ('niosmtp') under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* niosmtp licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package me.normanmaurer.niosmtp.transport.netty.internal;
+
+import me.normanmaurer.niosmtp.transport.impl.SSLSessionStatisticsImpl;
+
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelStateEvent;
+import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
+import org.jboss.netty.handler.ssl.SslHandler;
+
+/**
+ * {@link SimpleChannelUpstreamHandler} which records the TLS handshake of the connection in the {@link SSLSessionStatisticsImpl} once the 
+ * connection was closed. Connections which never added the {@link SslHandler} (because <code>STARTTLS</code> was not used) are ignored.
+ * 
+ * @author Norman Maurer
+ *
+ */
+public class SSLSessionStatisticsHandler extends SimpleChannelUpstreamHandler {
+
+    private final SSLSessionStatisticsImpl statistics;
+    private final long started = System.currentTimeMillis();
+    
+    public SSLSessionStatisticsHandler(SSLSessionStatisticsImpl statistics) {
+        this.statistics = statistics;
+    }
+    
+    @Override
+    public void channelClosed(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
+        SslHandler sslHandler = ctx.getPipeline().get(SslHandler.class);
+        if (sslHandler != null) {
+            statistics.record(sslHandler.getEngine().getSession(), started);
+        }
+        super.channelClosed(ctx, e);
+    }
+
+}
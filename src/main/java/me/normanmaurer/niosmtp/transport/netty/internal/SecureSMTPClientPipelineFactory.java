@@ -16,6 +16,9 @@
 */
 package me.normanmaurer.niosmtp.transport.netty.internal;
 
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLEngine;
 
@@ -24,17 +27,12 @@ import me.normanmaurer.niosmtp.core.SMTPClientFutureImpl;
 import me.normanmaurer.niosmtp.transport.FutureResult;
 import me.normanmaurer.niosmtp.transport.SMTPClientConfig;
 import me.normanmaurer.niosmtp.transport.SMTPDeliveryMode;
+import me.normanmaurer.niosmtp.transport.impl.SSLSessionStatisticsImpl;
 import me.normanmaurer.niosmtp.transport.netty.NettyConstants;
 import me.normanmaurer.niosmtp.transport.netty.SMTPClientSessionFactory;
 
-import org.jboss.netty.channel.ChannelFuture;
-import org.jboss.netty.channel.ChannelFutureListener;
-import org.jboss.netty.channel.ChannelHandlerContext;
 import org.jboss.netty.channel.ChannelPipeline;
 import org.jboss.netty.channel.ChannelPipelineFactory;
-import org.jboss.netty.channel.ChannelStateEvent;
-import org.jboss.netty.channel.Channels;
-import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
 import org.jboss.netty.handler.ssl.SslHandler;
 import org.jboss.netty.util.Timer;
 
@@ -47,14 +45,20 @@ import org.jboss.netty.util.Timer;
  */
 public class SecureSMTPClientPipelineFactory extends SMTPClientPipelineFactory implements NettyConstants{
 
-    private final static SslHandshakeHandler SSL_HANDSHAKE_HANDLER = new SslHandshakeHandler();
     private final SSLContext context;
     private final SMTPDeliveryMode mode;
+    private final InetSocketAddress remote;
+    private final SSLSessionStatisticsImpl statistics;
+    private final SslHandshakeHandler handshakeHandler;
 
-    public SecureSMTPClientPipelineFactory(SMTPClientFutureImpl<FutureResult<SMTPResponse>> future, SMTPClientConfig config, Timer timer, SSLContext context, SMTPDeliveryMode mode, SMTPClientSessionFactory factory) {
-        super(future, config, timer, factory);
+    public SecureSMTPClientPipelineFactory(SMTPClientFutureImpl<FutureResult<SMTPResponse>> future, SMTPClientConfig config, Timer timer, SSLContext context, SMTPDeliveryMode mode, SMTPClientSessionFactory factory, 
+            InetSocketAddress remote, SSLSessionStatisticsImpl statistics, SslHandshakeHandler handshakeHandler, SMTPResponseCache responseCache) {
+        super(future, config, timer, factory, responseCache);
         this.context = context;
         this.mode = mode;
+        this.remote = remote;
+        this.statistics = statistics;
+        this.handshakeHandler = handshakeHandler;
     }
 
 
@@ -62,58 +66,64 @@ public class SecureSMTPClientPipelineFactory extends SMTPClientPipelineFactory i
     public ChannelPipeline getPipeline() throws Exception {        
         ChannelPipeline cp = super.getPipeline();
 
+        // also added for STARTTLS, so the SMTPClientSession can use it to create the SslHandler
+        cp.addFirst(SSL_HANDSHAKE_HANDLER_KEY, handshakeHandler);
         if (mode == SMTPDeliveryMode.SMTPS) {
-            cp.addFirst(SSL_HANDSHAKE_HANDLER_KEY, SSL_HANDSHAKE_HANDLER);
-
-            final SslHandler sslHandler = new SslHandler(createSSLClientEngine(), false);
+            final SslHandler sslHandler = handshakeHandler.createSslHandler(createSSLClientEngine());
             cp.addFirst(SSL_HANDLER_KEY, sslHandler);
         }
+        cp.addBefore(DISCONNECT_HANDLER_KEY, SSL_STATISTICS_HANDLER_KEY, new SSLSessionStatisticsHandler(statistics));
         return cp;
     }
     
 
 
+    /**
+     * Create the {@link SSLEngine} with the host and port of the remote peer, as the {@link SSLContext} only resumes cached TLS sessions of
+     * {@link SSLEngine}'s which know their peer. If the host name of the destination is known it is used, so it is sent via SNI and the TLS
+     * sessions are resumed across all addresses of the destination.
+     * 
+     * @return engine
+     */
     private SSLEngine createSSLClientEngine() {
-        SSLEngine engine = context.createSSLEngine();
+        SSLEngine engine = context.createSSLEngine(getPeerHost(remote), remote.getPort());
         engine.setUseClientMode(true);
         return engine;
     }
     
+    /**
+     * Return the host name with which the {@link InetSocketAddress} was created, and its IP address if it was created without one. This never 
+     * triggers a reverse lookup, which would block the calling {@link Thread}.
+     * 
+     * @param remote
+     * @return host
+     */
+    private static String getPeerHost(InetSocketAddress remote) {
+        if (remote.isUnresolved()) {
+            return remote.getHostName();
+        }
+        InetAddress address = remote.getAddress();
+        
+        // InetAddress.toString() returns "hostname/address" and the hostname is only present if it is known already
+        String host = address.toString();
+        int index = host.indexOf('/');
+        if (index > 0) {
+            return host.substring(0, index);
+        }
+        return address.getHostAddress();
+    }
+    
 
     @Override
     protected SMTPConnectHandler createConnectHandler() {
-        if (mode == SMTPDeliveryMode.SMTPS || mode == SMTPDeliveryMode.PLAIN) {
+        if (mode == SMTPDeliveryMode.PLAIN) {
             return super.createConnectHandler();
+        } else if (mode == SMTPDeliveryMode.SMTPS) {
+            // the SSLEngine is already in use by the SslHandler, but the session needs to report the right mode
+            return new SMTPConnectHandler(future, LOGGER, config, mode, null, factory);
         } else {
             return new SMTPConnectHandler(future, LOGGER, config, mode, createSSLClientEngine(), factory);
         }
     }
 
-
-    /**
-     * {@link SimpleChannelUpstreamHandler} which takes care to call {@link SslHandler#handshake()} after the channel is connected
-     * 
-     * @author Norman Maurer
-     *
-     */
-    protected final static class SslHandshakeHandler extends SimpleChannelUpstreamHandler {
-        private static final ChannelFutureListener HANDSHAKE_LISTENER = new ChannelFutureListener() {
-
-            @Override
-            public void operationComplete(ChannelFuture future) throws Exception {
-                if (!future.isSuccess()) {
-                    Channels.fireExceptionCaught(future.getChannel(), future.getCause());
-                }
-            }
-            
-        };
-        
-        @Override
-        public void channelConnected(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
-            SslHandler sslHandler = ctx.getPipeline().get(SslHandler.class);
-            sslHandler.handshake().addListener(HANDSHAKE_LISTENER);
-        }
-        
-    }
-
 }
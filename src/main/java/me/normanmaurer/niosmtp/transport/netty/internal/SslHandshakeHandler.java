@@ -0,0 +1,174 @@
+/**
+* Licensed to niosmtp developers ('niosmtp') under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* niosmtp licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package me.normanmaurer.niosmtp.transport.netty.internal;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+
+import javax.net.ssl.SSLEngine;
+
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelFutureListener;
+import org.jboss.netty.channel.ChannelHandler.Sharable;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelStateEvent;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
+import org.jboss.netty.handler.ssl.SslHandler;
+
+/**
+ * {@link SimpleChannelUpstreamHandler} which creates the {@link SslHandler}'s of a transport and starts their handshakes. 
+ * 
+ * The delegated tasks of the {@link SSLEngine} (which do the expensive key exchange) are run by the given {@link Executor}, so they don't block 
+ * the I/O thread which also serves other connections. The count of concurrent handshakes can be limited, in which case further handshakes 
+ * are started once others completed.
+ * 
+ * For SMTPS the handshake is started once the {@link Channel} was connected. 
+ * 
+ * @author Norman Maurer
+ *
+ */
+@Sharable
+public class SslHandshakeHandler extends SimpleChannelUpstreamHandler {
+
+    private static final ChannelFutureListener HANDSHAKE_LISTENER = new ChannelFutureListener() {
+
+        @Override
+        public void operationComplete(ChannelFuture future) throws Exception {
+            if (!future.isSuccess()) {
+                Channels.fireExceptionCaught(future.getChannel(), future.getCause());
+            }
+        }
+        
+    };
+    
+    private final Executor executor;
+    private final int maxHandshakes;
+    private final Queue<PendingHandshake> pending = new LinkedList<PendingHandshake>();
+    private int handshakes;
+    
+    /**
+     * 
+     * @param executor the {@link Executor} which runs the delegated tasks of the {@link SSLEngine} or <code>null</code> if they should get run by 
+     *        the I/O thread
+     * @param maxHandshakes the maximal count of concurrent handshakes or <code>0</code> for no limit
+     */
+    public SslHandshakeHandler(Executor executor, int maxHandshakes) {
+        this.executor = executor;
+        this.maxHandshakes = maxHandshakes;
+    }
+    
+    /**
+     * Create a new {@link SslHandler} for the given {@link SSLEngine}
+     * 
+     * @param engine
+     * @return sslHandler
+     */
+    public SslHandler createSslHandler(SSLEngine engine) {
+        if (executor == null) {
+            return new SslHandler(engine, false);
+        }
+        return new SslHandler(engine, false, executor);
+    }
+    
+    /**
+     * Start the handshake of the {@link SslHandler} of the {@link Channel} once the limit of concurrent handshakes allows it.
+     * 
+     * @param channel
+     * @return future which is notified once the handshake completed
+     */
+    public ChannelFuture handshake(Channel channel) {
+        PendingHandshake handshake = new PendingHandshake(channel);
+        synchronized (pending) {
+            if (maxHandshakes > 0 && handshakes >= maxHandshakes) {
+                pending.add(handshake);
+                return handshake.future;
+            }
+            handshakes++;
+        }
+        if (!handshake.start()) {
+            release();
+        }
+        return handshake.future;
+    }
+    
+    /**
+     * Start the next pending handshake or release the slot of the completed one
+     */
+    private void release() {
+        while (true) {
+            PendingHandshake next;
+            synchronized (pending) {
+                next = pending.poll();
+                if (next == null) {
+                    handshakes--;
+                    return;
+                }
+            }
+            // the slot is handed over to the pending handshake
+            if (next.start()) {
+                return;
+            }
+        }
+    }
+    
+    @Override
+    public void channelConnected(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
+        if (ctx.getPipeline().get(SslHandler.class) != null) {
+            handshake(ctx.getChannel()).addListener(HANDSHAKE_LISTENER);
+        }
+        super.channelConnected(ctx, e);
+    }
+    
+    private final class PendingHandshake implements ChannelFutureListener {
+        private final Channel channel;
+        private final ChannelFuture future;
+        
+        public PendingHandshake(Channel channel) {
+            this.channel = channel;
+            this.future = Channels.future(channel);
+        }
+        
+        /**
+         * Start the handshake and return <code>true</code> or fail the future and return <code>false</code> if the {@link Channel} was closed 
+         * in the meantime
+         * 
+         * @return started
+         */
+        public boolean start() {
+            if (!channel.isConnected()) {
+                future.setFailure(new ClosedChannelException());
+                return false;
+            }
+            channel.getPipeline().get(SslHandler.class).handshake().addListener(this);
+            return true;
+        }
+
+        @Override
+        public void operationComplete(ChannelFuture handshakeFuture) throws Exception {
+            release();
+            if (handshakeFuture.isSuccess()) {
+                future.setSuccess();
+            } else {
+                future.setFailure(handshakeFuture.getCause());
+            }
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/**
+* Licensed to niosmtp developers ('niosmtp') under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* niosmtp licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package me.normanmaurer.niosmtp.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.Random;
+
+/**
+ * Measures the throughput of {@link DataTerminatingInputStream} when it is read in chunks like the <code>ChunkedStream</code> does which 
+ * writes the message. It is compared with the former implementation, which did the dot-stuffing byte by byte. This is no unit test and so not 
+ * run as part of the build.
+ * 
+ * Usage: <code>DataTerminatingInputStreamBenchmark [messageSize] [rounds]</code>
+ * 
+ * @author Norman Maurer
+ *
+ */
+public class DataTerminatingInputStreamBenchmark {
+
+    private final static int CHUNK_SIZE = 8192;
+    
+    public static void main(String[] args) throws Exception {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 8 * 1024 * 1024;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        byte[] message = createMessage(size);
+        
+        for (int i = 0; i < rounds; i++) {
+            long start = System.nanoTime();
+            long read = drain(new ByteByByteDataTerminatingInputStream(new ByteArrayInputStream(message)));
+            report("byte by byte", read, System.nanoTime() - start);
+            
+            start = System.nanoTime();
+            read = drain(new DataTerminatingInputStream(new ByteArrayInputStream(message)));
+            report("bulk", read, System.nanoTime() - start);
+        }
+    }
+    
+    /**
+     * Create a message which consists of lines of random length, some of them starting with a dot
+     */
+    private static byte[] createMessage(int size) {
+        Random random = new Random(0);
+        byte[] message = new byte[size];
+        int lineStart = 0;
+        int lineLength = 1 + random.nextInt(998);
+        for (int i = 0; i < size; i++) {
+            int pos = i - lineStart;
+            if (pos == lineLength) {
+                message[i] = '\r';
+            } else if (pos == lineLength + 1) {
+                message[i] = '\n';
+                lineStart = i + 1;
+                lineLength = 1 + random.nextInt(998);
+            } else if (pos == 0 && random.nextInt(20) == 0) {
+                message[i] = '.';
+            } else {
+                message[i] = (byte) ('a' + random.nextInt(26));
+            }
+        }
+        return message;
+    }
+    
+    private static long drain(InputStream in) throws IOException {
+        byte[] chunk = new byte[CHUNK_SIZE];
+        long read = 0;
+        int r;
+        while ((r = in.read(chunk, 0, chunk.length)) != -1) {
+            read += r;
+        }
+        return read;
+    }
+    
+    private static void report(String name, long bytes, long nanos) {
+        System.out.println(name + ": " + (long) (bytes / (nanos / 1000d)) + " MB/s");
+    }
+    
+    /**
+     * The former implementation of {@link DataTerminatingInputStream}. Reading into an array is done by the default implementation of 
+     * {@link InputStream}, which calls {@link #read()} for every byte.
+     */
+    private final static class ByteByByteDataTerminatingInputStream extends InputStream {
+        private final static byte CR = '\r';
+        private final static byte LF = '\n';
+        private final static byte DOT = '.';
+        private final static byte[] DOT_CRLF = new byte[] {DOT, CR, LF};
+        private final static byte[] CRLF_DOT_CRLF = new byte[] {CR, LF, DOT, CR, LF};
+        private final static byte[] LF_DOT_CRLF = new byte[] {LF, DOT, CR, LF};
+
+        private final PushbackInputStream in;
+        private int last;
+        private byte[] extraData;
+        private int pos = 0;
+        private boolean startLine = true;
+        private boolean endOfStream = false;
+        private boolean empty = true;
+        
+        public ByteByByteDataTerminatingInputStream(InputStream in) {
+            this.in = new PushbackInputStream(in, 2);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int i = in.read();
+            if (empty && i != -1) {
+                empty = false;
+            }
+            if (startLine && endOfStream == false) {
+                startLine = false;
+                if (i == DOT) {
+                    in.unread(i);
+                    return DOT;
+                }
+            }
+            if (last == CR && i == LF) {
+                startLine = true;
+            }
+            if (endOfStream == false) {
+                if (i == -1) {
+                    endOfStream = true;
+                    if (empty || last == LF) {
+                        extraData = DOT_CRLF;     
+                    } else if (last == CR) {
+                        extraData = LF_DOT_CRLF;
+                    } else {
+                        extraData = CRLF_DOT_CRLF;
+                    }
+                    return readNext();
+                } else {
+                    last = i;
+                }
+                return i;
+            } else {
+                return readNext();
+            }
+        }
+        
+        private int readNext() {
+            if (extraData == null || extraData.length == pos) {
+                return -1;
+            } else {
+                return extraData[pos++];
+            }
+        }
+    }
+}
@@ -19,7 +19,9 @@ package me.normanmaurer.niosmtp.core;
 import static org.junit.Assert.*;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 
 import org.junit.Test;
 
@@ -36,7 +38,11 @@ import me.normanmaurer.niosmtp.core.DataTerminatingInputStream;
 public class DataTerminatingInputStreamTest {
     
     private void checkStream(String expected, String msg) throws IOException {
-        DataTerminatingInputStream in = new DataTerminatingInputStream(new ByteArrayInputStream(msg.getBytes()));
+        checkStream(expected, msg, false);
+    }
+    
+    private void checkStream(String expected, String msg, boolean normalize) throws IOException {
+        DataTerminatingInputStream in = new DataTerminatingInputStream(new ByteArrayInputStream(msg.getBytes()), normalize);
         try {
             int i = -1;
             int a = 0;
@@ -49,7 +55,27 @@ public class DataTerminatingInputStreamTest {
             in.close();
         }
         
+        // check the bulk read with different sizes
+        for (int size: new int[] {1, 2, 3, 7, 8192}) {
+            assertEquals(expected, readBulk(new DataTerminatingInputStream(new ByteArrayInputStream(msg.getBytes()), normalize), size));
+        }
     }
+    
+    private String readBulk(InputStream in, int size) throws IOException {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buf = new byte[size];
+            int read;
+            while ((read = in.read(buf, 0, size)) != -1) {
+                assertTrue(read > 0);
+                out.write(buf, 0, read);
+            }
+            return new String(out.toByteArray());
+        } finally {
+            in.close();
+        }
+    }
+    
     @Test
     public void testNoCRLF() throws IOException {
         String msg = "Subject: test\r\ntest";
@@ -87,4 +113,42 @@ public class DataTerminatingInputStreamTest {
         checkStream(expected, msg);
 
     }
+    
+    @Test
+    public void testEmpty() throws IOException {
+        checkStream(".\r\n", "");
+    }
+    
+    @Test
+    public void testDotStuffingOnFirstLine() throws IOException {
+        String msg = ".test\r\n..\r\n";
+        String expected = "..test\r\n...\r\n.\r\n";
+
+        checkStream(expected, msg);
+    }
+    
+    @Test
+    public void testBareLF() throws IOException {
+        String msg = "Subject: test\n.test\r\n";
+        
+        checkStream("Subject: test\n.test\r\n.\r\n", msg);
+        checkStream("Subject: test\r\n..test\r\n.\r\n", msg, true);
+    }
+    
+    @Test
+    public void testBareLFAtEnd() throws IOException {
+        checkStream("test\r\n.\r\n", "test\n", true);
+    }
+    
+    @Test
+    public void testBufferBoundary() throws IOException {
+        StringBuilder msg = new StringBuilder();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            msg.append(".line ").append(i).append("\r\n");
+            expected.append("..line ").append(i).append("\r\n");
+        }
+        expected.append(".\r\n");
+        checkStream(expected.toString(), msg.toString());
+    }
 }
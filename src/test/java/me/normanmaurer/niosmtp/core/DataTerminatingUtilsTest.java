@@ -0,0 +1,66 @@
+/**
+* Licensed to niosmtp developers ('niosmtp') under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* niosmtp licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package me.normanmaurer.niosmtp.core;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+/**
+ * 
+ * @author Norman Maurer
+ *
+ */
+public class DataTerminatingUtilsTest {
+
+    private static String encode(String msg) {
+        return new String(DataTerminatingUtils.encode(msg.getBytes()));
+    }
+    
+    @Test
+    public void testTerminating() {
+        assertEquals("\r\n.\r\n", encode(""));
+        assertEquals("test\r\n.\r\n", encode("test"));
+        assertEquals("test\r\n.\r\n", encode("test\r"));
+        assertEquals("test\r\n.\r\n", encode("test\r\n"));
+        assertEquals("test\n\r\n.\r\n", encode("test\n"));
+    }
+    
+    @Test
+    public void testDotStuffing() {
+        assertEquals("..\r\n.\r\n", encode("."));
+        assertEquals("..test\r\n...\r\nline.\n.\r\n..\r\n.\r\n", encode(".test\r\n..\r\nline.\n.\r\n."));
+        assertArrayEquals(new int[0], DataTerminatingUtils.dotStuffingPositions("test\r\ntest\r\n".getBytes()));
+        assertArrayEquals(new int[] {0, 7, 11}, DataTerminatingUtils.dotStuffingPositions(".test\r\n.a\r\n.".getBytes()));
+    }
+    
+    @Test
+    public void testPreparedMessage() {
+        SMTPPreparedMessageImpl msg = new SMTPPreparedMessageImpl(".test".getBytes());
+        ByteBuffer wireFormat = msg.get7BitWireFormat();
+        assertTrue(wireFormat.isReadOnly());
+        byte[] data = new byte[wireFormat.remaining()];
+        wireFormat.get(data);
+        assertEquals("..test\r\n.\r\n", new String(data));
+        
+        // every call needs to return a new view
+        assertEquals(data.length, msg.get7BitWireFormat().remaining());
+        assertEquals(data.length, msg.get8BitWireFormat().remaining());
+    }
+}
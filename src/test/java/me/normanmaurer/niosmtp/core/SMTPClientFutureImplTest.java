@@ -0,0 +1,225 @@
+/**
+* Licensed to niosmtp developers ('niosmtp') under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* niosmtp licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package me.normanmaurer.niosmtp.core;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import me.normanmaurer.niosmtp.SMTPClientFuture;
+import me.normanmaurer.niosmtp.SMTPClientFutureListener;
+
+import org.junit.Test;
+
+/**
+ * 
+ * @author Norman Maurer
+ *
+ */
+public class SMTPClientFutureImplTest {
+
+    private static SMTPClientFutureListener<String> record(final List<Integer> notified, final int id) {
+        return new SMTPClientFutureListener<String>() {
+            
+            @Override
+            public void operationComplete(SMTPClientFuture<String> future) {
+                notified.add(id);
+            }
+        };
+    }
+    
+    @Test
+    public void testListenersNotifiedInOrder() {
+        SMTPClientFutureImpl<String> future = new SMTPClientFutureImpl<String>();
+        List<Integer> notified = new ArrayList<Integer>();
+        for (int i = 0; i < 5; i++) {
+            future.addListener(record(notified, i));
+        }
+        SMTPClientFutureListener<String> removed = record(notified, 5);
+        future.addListener(removed);
+        future.removeListener(removed);
+        assertTrue(notified.isEmpty());
+        
+        future.setResult("result");
+        future.setResult("other");
+        assertEquals("result", future.getNoWait());
+        assertEquals(5, notified.size());
+        for (int i = 0; i < 5; i++) {
+            assertEquals(i, notified.get(i).intValue());
+        }
+        
+        // added after the completion, so notified directly
+        future.addListener(record(notified, 6));
+        assertEquals(6, notified.size());
+        assertEquals(6, notified.get(5).intValue());
+    }
+    
+    @Test
+    public void testGetTimeout() throws Exception {
+        SMTPClientFutureImpl<String> future = new SMTPClientFutureImpl<String>();
+        try {
+            future.get(50, TimeUnit.MILLISECONDS);
+            fail();
+        } catch (TimeoutException e) {
+            // expected
+        }
+        future.setResult("result");
+        assertEquals("result", future.get(50, TimeUnit.MILLISECONDS));
+    }
+    
+    @Test
+    public void testRepeatedTimedGet() throws Exception {
+        final SMTPClientFutureImpl<String> future = new SMTPClientFutureImpl<String>();
+        final CountDownLatch waiting = new CountDownLatch(1);
+        final CountDownLatch released = new CountDownLatch(1);
+        Thread waiter = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    waiting.countDown();
+                    future.get();
+                    released.countDown();
+                } catch (Exception e) {
+                    // ignore
+                }
+            }
+        };
+        waiter.start();
+        assertTrue(waiting.await(5, TimeUnit.SECONDS));
+        while (future.getWaiterCount() == 0) {
+            Thread.sleep(10);
+        }
+        
+        for (int i = 0; i < 100; i++) {
+            try {
+                future.get(1, TimeUnit.MILLISECONDS);
+                fail();
+            } catch (TimeoutException e) {
+                // expected
+            }
+        }
+        // only the thread which still waits is left
+        assertEquals(1, future.getWaiterCount());
+        
+        future.setResult("result");
+        assertTrue(released.await(5, TimeUnit.SECONDS));
+        assertEquals(0, future.getWaiterCount());
+    }
+    
+    @Test
+    public void testInterruptedGet() throws Exception {
+        final SMTPClientFutureImpl<String> future = new SMTPClientFutureImpl<String>();
+        final AtomicInteger interrupted = new AtomicInteger();
+        Thread waiter = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    future.get();
+                } catch (InterruptedException e) {
+                    interrupted.incrementAndGet();
+                } catch (Exception e) {
+                    // ignore
+                }
+            }
+        };
+        waiter.start();
+        while (future.getWaiterCount() == 0) {
+            Thread.sleep(10);
+        }
+        waiter.interrupt();
+        waiter.join(5000);
+        
+        assertEquals(1, interrupted.get());
+        assertEquals(0, future.getWaiterCount());
+        assertFalse(future.isDone());
+    }
+    
+    @Test
+    public void testCancelReleasesWaiters() throws Exception {
+        final SMTPClientFutureImpl<String> future = new SMTPClientFutureImpl<String>();
+        final CountDownLatch latch = new CountDownLatch(1);
+        Thread waiter = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    future.get();
+                    latch.countDown();
+                } catch (Exception e) {
+                    // ignore
+                }
+            }
+        };
+        waiter.start();
+        Thread.sleep(50);
+        
+        assertTrue(future.cancel(true));
+        assertFalse(future.cancel(true));
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertTrue(future.isDone());
+        assertTrue(future.isCancelled());
+        assertNull(future.getNoWait());
+    }
+    
+    @Test
+    public void testConcurrentCompletion() throws Exception {
+        final int threads = 4;
+        final int futures = 10000;
+        final List<SMTPClientFutureImpl<String>> list = new ArrayList<SMTPClientFutureImpl<String>>();
+        for (int i = 0; i < futures; i++) {
+            list.add(new SMTPClientFutureImpl<String>());
+        }
+        final AtomicInteger notified = new AtomicInteger();
+        final SMTPClientFutureListener<String> listener = new SMTPClientFutureListener<String>() {
+            
+            @Override
+            public void operationComplete(SMTPClientFuture<String> future) {
+                assertTrue(future.isDone());
+                notified.incrementAndGet();
+            }
+        };
+        final CountDownLatch done = new CountDownLatch(threads * 2);
+        for (int t = 0; t < threads; t++) {
+            new Thread() {
+                @Override
+                public void run() {
+                    for (SMTPClientFutureImpl<String> future: list) {
+                        future.addListener(listener);
+                    }
+                    done.countDown();
+                }
+            }.start();
+            new Thread() {
+                @Override
+                public void run() {
+                    for (SMTPClientFutureImpl<String> future: list) {
+                        future.setResult("result");
+                    }
+                    done.countDown();
+                }
+            }.start();
+        }
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        
+        // every listener must be notified exactly once
+        assertEquals(threads * futures, notified.get());
+    }
+}
@@ -0,0 +1,174 @@
+/**
+* Licensed to niosmtp developers ('niosmtp') under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* niosmtp licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package me.normanmaurer.niosmtp.delivery;
+
+import static org.junit.Assert.*;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.atomic.AtomicReference;
+
+import me.normanmaurer.niosmtp.delivery.chain.EncodedCredentials;
+import me.normanmaurer.niosmtp.delivery.impl.AuthenticationImpl;
+import me.normanmaurer.niosmtp.delivery.impl.SMTPDeliveryAgentConfigImpl;
+import me.normanmaurer.niosmtp.transport.SMTPClientTransport;
+import me.normanmaurer.niosmtp.util.TestUtils;
+
+import org.apache.commons.codec.binary.Base64;
+import org.junit.Test;
+
+/**
+ * Tests that the <code>AUTH</code> mechanism is selected from the advertised ones and <code>AUTH PLAIN</code> only needs one round-trip
+ * 
+ * @author Norman Maurer
+ *
+ */
+public abstract class AbstractSMTPClientAuthNegotiationTest extends AbstractSimpleSMTPServerTest {
+
+    private final static String VALID_USER ="myuser";
+    private final static String VALID_PASS ="mypassword";
+    private final static String INITIAL_RESPONSE = "PLAIN " + new String(Base64.encodeBase64(("\0" + VALID_USER + "\0" + VALID_PASS).getBytes()));
+
+    protected SMTPDeliveryAgentConfigImpl createConfig(Authentication auth) {
+        SMTPDeliveryAgentConfigImpl conf = createConfig();
+        conf.setAuthentication(auth);
+        return conf;
+    }
+    
+    /**
+     * Create a {@link SimpleSMTPServer} which only supports <code>AUTH PLAIN</code> with initial-response
+     * 
+     * @param port
+     * @return server
+     * @throws Exception
+     */
+    private static SimpleSMTPServer createServer(int port) throws Exception {
+        return new SimpleSMTPServer(port, "PIPELINING", "AUTH PLAIN") {
+
+            @Override
+            protected String onAuth(String argument) {
+                if (INITIAL_RESPONSE.equals(argument)) {
+                    return "235 Authentication successful";
+                }
+                return "535 Authentication failed";
+            }
+            
+        };
+    }
+    
+    @Test
+    public void testPlainInitialResponse() throws Exception {
+        checkAuth(AuthenticationImpl.plain(VALID_USER, VALID_PASS));
+    }
+    
+    @Test
+    public void testSelectAdvertisedMechanism() throws Exception {
+        // LOGIN is not advertised, so PLAIN should be used
+        checkAuth(AuthenticationImpl.login(VALID_USER, VALID_PASS));
+    }
+    
+    private void checkAuth(Authentication auth) throws Exception {
+        int port = TestUtils.getFreePort();
+        
+        SimpleSMTPServer server = createServer(port);
+        SMTPClientTransport transport = createFactory().createPlain();
+        SMTPDeliveryAgent c = new SMTPDeliveryAgent(transport);
+
+        try {
+            assertStatus(c.deliver(new InetSocketAddress(port), createConfig(auth), envelope()).get().iterator().next(), 250);
+            assertEquals(1, server.getMessages().size());
+            
+            int authCount = 0;
+            for (String command: server.getCommands()) {
+                if (command.startsWith("AUTH")) {
+                    assertEquals("AUTH " + INITIAL_RESPONSE, command);
+                    authCount++;
+                }
+            }
+            assertEquals(1, authCount);
+        } finally {
+            server.stop();
+            transport.destroy();
+        }
+    }
+    
+    @Test
+    public void testChangedPassword() throws Exception {
+        int port = TestUtils.getFreePort();
+        
+        final AtomicReference<String> password = new AtomicReference<String>("oldpassword");
+        Authentication auth = new Authentication() {
+            
+            @Override
+            public String getUsername() {
+                return VALID_USER;
+            }
+            
+            @Override
+            public String getPassword() {
+                return password.get();
+            }
+            
+            @Override
+            public AuthMode getMode() {
+                return AuthMode.Plain;
+            }
+        };
+        SimpleSMTPServer server = createServer(port);
+        SMTPClientTransport transport = createFactory().createPlain();
+        SMTPDeliveryAgent c = new SMTPDeliveryAgent(transport);
+
+        try {
+            SMTPDeliveryAgentConfigImpl conf = createConfig(auth);
+            assertStatus(c.deliver(new InetSocketAddress(port), conf, envelope()).get().iterator().next(), 535);
+            EncodedCredentials credentials = conf.getEncodedCredentials();
+            
+            // the next connection must use the new password
+            password.set(VALID_PASS);
+            assertStatus(c.deliver(new InetSocketAddress(port), conf, envelope()).get().iterator().next(), 250);
+            assertEquals(1, server.getMessages().size());
+            assertEquals(2, server.getConnectionCount());
+            assertNotSame(credentials, conf.getEncodedCredentials());
+        } finally {
+            server.stop();
+            transport.destroy();
+        }
+    }
+    
+    @Test
+    public void testCredentialsEncodedOncePerConfig() throws Exception {
+        int port = TestUtils.getFreePort();
+        
+        SimpleSMTPServer server = createServer(port);
+        SMTPClientTransport transport = createFactory().createPlain();
+        SMTPDeliveryAgent c = new SMTPDeliveryAgent(transport);
+
+        try {
+            SMTPDeliveryAgentConfigImpl conf = createConfig(AuthenticationImpl.plain(VALID_USER, VALID_PASS));
+            assertStatus(c.deliver(new InetSocketAddress(port), conf, envelope()).get().iterator().next(), 250);
+            EncodedCredentials credentials = conf.getEncodedCredentials();
+            assertNotNull(credentials);
+            
+            // the credentials did not change, so the next connection reuses them
+            assertStatus(c.deliver(new InetSocketAddress(port), conf, envelope()).get().iterator().next(), 250);
+            assertEquals(2, server.getConnectionCount());
+            assertSame(credentials, conf.getEncodedCredentials());
+        } finally {
+            server.stop();
+            transport.destroy();
+        }
+    }
+}
@@ -0,0 +1,212 @@
+/**
+* Licensed to niosmtp developers ('niosmtp') under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* niosmtp licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package me.normanmaurer.niosmtp.delivery;
+
+import static org.junit.Assert.*;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import me.normanmaurer.niosmtp.delivery.impl.SMTPDeliveryAgentConfigImpl;
+import me.normanmaurer.niosmtp.transport.FutureResult;
+import me.normanmaurer.niosmtp.transport.SMTPClientTransport;
+import me.normanmaurer.niosmtp.util.TestUtils;
+
+import org.junit.Test;
+
+/**
+ * Tests that the {@link SMTPDeliveryEnvelope}'s of an {@link Iterator} are only pulled once their transaction is started, and that the results
+ * are passed to the {@link DeliveryResultListener} as they arrive
+ * 
+ * @author Norman Maurer
+ *
+ */
+public abstract class AbstractSMTPClientBulkDeliveryTest extends AbstractSimpleSMTPServerTest {
+
+    private final static int ENVELOPES = 20;
+    
+    /**
+     * {@link Iterator} which creates the {@link SMTPDeliveryEnvelope}'s on demand and counts how many were pulled
+     */
+    private static final class EnvelopeSource implements Iterator<SMTPDeliveryEnvelope> {
+        private final AtomicInteger pulled = new AtomicInteger();
+        
+        @Override
+        public boolean hasNext() {
+            return pulled.get() < ENVELOPES;
+        }
+
+        @Override
+        public SMTPDeliveryEnvelope next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            pulled.incrementAndGet();
+            return envelope();
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+    
+    /**
+     * {@link SimpleSMTPServer} which records how many {@link SMTPDeliveryEnvelope}'s were pulled ahead of the received <code>MAIL</code> commands
+     */
+    private static final class RecordingSMTPServer extends SimpleSMTPServer {
+        private final EnvelopeSource source;
+        private final AtomicInteger mails = new AtomicInteger();
+        private final AtomicInteger maxAhead = new AtomicInteger();
+        private final int closeOnData;
+        private final AtomicInteger data = new AtomicInteger();
+        
+        public RecordingSMTPServer(int port, EnvelopeSource source, int closeOnData, String... extensions) throws Exception {
+            super(port, extensions);
+            this.source = source;
+            this.closeOnData = closeOnData;
+        }
+
+        @Override
+        protected String onMail(String argument) {
+            int ahead = source.pulled.get() - mails.incrementAndGet();
+            if (ahead > maxAhead.get()) {
+                maxAhead.set(ahead);
+            }
+            return super.onMail(argument);
+        }
+        
+        @Override
+        protected String onData() {
+            if (data.incrementAndGet() == closeOnData) {
+                return null;
+            }
+            return super.onData();
+        }
+    }
+    
+    @Test
+    public void testPulledOnDemand() throws Exception {
+        checkPulledOnDemand(false, 0);
+    }
+    
+    @Test
+    public void testPulledOnDemandTransactionPipelining() throws Exception {
+        checkPulledOnDemand(true, 1);
+    }
+    
+    private void checkPulledOnDemand(boolean transactionPipelining, int maxAhead) throws Exception {
+        int port = TestUtils.getFreePort();
+        
+        EnvelopeSource source = new EnvelopeSource();
+        RecordingSMTPServer server = new RecordingSMTPServer(port, source, 0, "PIPELINING");
+        SMTPClientTransport transport = createFactory().createPlain();
+        SMTPDeliveryAgent c = new SMTPDeliveryAgent(transport);
+        
+        SMTPDeliveryAgentConfigImpl conf = createConfig();
+        conf.setTransactionPipelining(transactionPipelining);
+        
+        try {
+            assertAllDelivered(c.deliver(new InetSocketAddress(port), conf, source).get().iterator(), ENVELOPES);
+            assertEquals(ENVELOPES, server.getMessages().size());
+            assertTrue("pulled " + server.maxAhead.get() + " ahead", server.maxAhead.get() <= maxAhead);
+        } finally {
+            server.stop();
+            transport.destroy();
+        }
+    }
+    
+    @Test
+    public void testResumed() throws Exception {
+        int port = TestUtils.getFreePort();
+        
+        EnvelopeSource source = new EnvelopeSource();
+        RecordingSMTPServer server = new RecordingSMTPServer(port, source, 3, "PIPELINING");
+        SMTPClientTransport transport = createFactory().createPlain();
+        SMTPDeliveryAgent c = new SMTPDeliveryAgent(transport);
+        
+        SMTPDeliveryAgentConfigImpl conf = createConfig();
+        conf.setReconnectAttempts(1);
+        conf.setReconnectDelay(10);
+        
+        try {
+            assertAllDelivered(c.deliver(new InetSocketAddress(port), conf, source).get().iterator(), ENVELOPES);
+            assertEquals(ENVELOPES, server.getMessages().size());
+            assertEquals(2, server.getConnectionCount());
+            assertTrue(server.maxAhead.get() <= 0);
+        } finally {
+            server.stop();
+            transport.destroy();
+        }
+    }
+
+    @Test
+    public void testResultListener() throws Exception {
+        int port = TestUtils.getFreePort();
+        
+        final EnvelopeSource source = new EnvelopeSource();
+        RecordingSMTPServer server = new RecordingSMTPServer(port, source, 0, "PIPELINING");
+        SMTPClientTransport transport = createFactory().createPlain();
+        SMTPDeliveryAgent c = new SMTPDeliveryAgent(transport);
+        
+        final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+        final AtomicInteger maxPulled = new AtomicInteger();
+        SMTPDeliveryAgentConfigImpl conf = createConfig();
+        conf.setDeliveryResultsRetained(false);
+        conf.setDeliveryResultListener(new DeliveryResultListener() {
+            
+            @Override
+            public void onRecipientStatus(SMTPDeliveryEnvelope envelope, DeliveryRecipientStatus status) {
+                events.add(status.getAddress() + " " + status.getResponse().getCode());
+            }
+            
+            @Override
+            public void onDeliveryResult(SMTPDeliveryEnvelope envelope, FutureResult<Iterator<DeliveryRecipientStatus>> result) {
+                events.add("envelope " + result.isSuccess());
+                
+                // the result is passed on while the later SMTPDeliveryEnvelope's were not even pulled yet
+                maxPulled.set(Math.max(maxPulled.get(), source.pulled.get() - events.size() / 2));
+            }
+        });
+        
+        try {
+            assertTrue(c.deliver(new InetSocketAddress(port), conf, source).get().isEmpty());
+            assertEquals(ENVELOPES, server.getMessages().size());
+            assertEquals(ENVELOPES * 2, events.size());
+            for (int i = 0; i < ENVELOPES; i++) {
+                assertEquals("to@example.com 250", events.get(i * 2));
+                assertEquals("envelope true", events.get(i * 2 + 1));
+            }
+            assertTrue(maxPulled.get() <= 0);
+        } finally {
+            server.stop();
+            transport.destroy();
+        }
+    }
+    
+    private static void assertAllDelivered(Iterator<FutureResult<Iterator<DeliveryRecipientStatus>>> it, int count) {
+        for (int i = 0; i < count; i++) {
+            assertStatus(it.next(), 250);
+        }
+        assertFalse(it.hasNext());
+    }
+}
@@ -0,0 +1,213 @@
+/**
+* Licensed to niosmtp developers ('niosmtp') under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* niosmtp licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package me.normanmaurer.niosmtp.delivery;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.net.InetSocketAddress;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+import me.normanmaurer.niosmtp.SMTPMessage;
+import me.normanmaurer.niosmtp.core.SMTPByteArrayMessageImpl;
+import me.normanmaurer.niosmtp.core.SMTPFileMessageImpl;
+import me.normanmaurer.niosmtp.core.SMTPMessageImpl;
+import me.normanmaurer.niosmtp.delivery.SMTPDeliveryAgentConfig.ChunkingMode;
+import me.normanmaurer.niosmtp.delivery.SMTPDeliveryAgentConfig.PipeliningMode;
+import me.normanmaurer.niosmtp.delivery.impl.SMTPDeliveryAgentConfigImpl;
+import me.normanmaurer.niosmtp.transport.FutureResult;
+import me.normanmaurer.niosmtp.transport.SMTPClientTransport;
+import me.normanmaurer.niosmtp.util.TestUtils;
+
+import org.junit.Test;
+
+/**
+ * Tests for the CHUNKING (BDAT) extension. As the James Protocols SMTP Server does not support
+ * it, the {@link SimpleSMTPServer} is used.
+ * 
+ * @author Norman Maurer
+ *
+ */
+public abstract class AbstractSMTPClientChunkingTest extends AbstractSimpleSMTPServerTest {
+
+    private final static String DOT_STUFFING_MESSAGE = ".first\r\nSubject: test\r\n\r\n.\r\n..line\r\nend\r\n";
+    private final static String[] RECIPIENTS = new String[] {RECIPIENT, "to2@example.com"};
+
+    @Override
+    protected SMTPDeliveryAgentConfigImpl createConfig() {
+        SMTPDeliveryAgentConfigImpl conf = super.createConfig();
+        conf.setChunkingMode(ChunkingMode.TRY);
+        return conf;
+    }
+    
+    @Test
+    public void testChunkingByteArray() throws Exception {
+        checkChunking(new SMTPByteArrayMessageImpl(DOT_STUFFING_MESSAGE.getBytes()), PipeliningMode.TRY, true);
+    }
+    
+    @Test
+    public void testChunkingByteArrayNoPipelining() throws Exception {
+        checkChunking(new SMTPByteArrayMessageImpl(DOT_STUFFING_MESSAGE.getBytes()), PipeliningMode.NO, true);
+    }
+    
+    @Test
+    public void testChunkingFile() throws Exception {
+        File file = File.createTempFile("niosmtp", ".eml");
+        try {
+            FileOutputStream out = new FileOutputStream(file);
+            try {
+                out.write(DOT_STUFFING_MESSAGE.getBytes());
+            } finally {
+                out.close();
+            }
+            checkChunking(new SMTPFileMessageImpl(file), PipeliningMode.TRY, true);
+        } finally {
+            file.delete();
+        }
+    }
+    
+    @Test
+    public void testChunkingStreamUsesData() throws Exception {
+        checkChunking(new SMTPMessageImpl(new ByteArrayInputStream(DOT_STUFFING_MESSAGE.getBytes())), PipeliningMode.TRY, false);
+    }
+
+    @Test
+    public void testChunkingNotSupported() throws Exception {
+        int port = TestUtils.getFreePort();
+        SimpleSMTPServer server = new SimpleSMTPServer(port, "PIPELINING");
+        SMTPClientTransport transport = createFactory().createPlain();
+        SMTPDeliveryAgent c = new SMTPDeliveryAgent(transport);
+
+        try {
+            Collection<FutureResult<Iterator<DeliveryRecipientStatus>>> result = c.deliver(new InetSocketAddress(port), createConfig(), 
+                    envelope(new SMTPByteArrayMessageImpl(DOT_STUFFING_MESSAGE.getBytes()), RECIPIENT)).get();
+            assertStatus(result.iterator().next(), 250);
+            assertFalse(usedBdat(server.getCommands()));
+            assertEquals(DOT_STUFFING_MESSAGE, new String(server.getMessages().get(0)));
+        } finally {
+            server.stop();
+            transport.destroy();
+        }
+    }
+    
+    @Test
+    public void testChunkingRejectRecipient() throws Exception {
+        int port = TestUtils.getFreePort();
+        SimpleSMTPServer server = new SimpleSMTPServer(port, "PIPELINING", "CHUNKING") {
+
+            @Override
+            protected String onRcpt(String argument) {
+                if (argument.contains("to2@example.com")) {
+                    return "550 Unknown user";
+                }
+                return super.onRcpt(argument);
+            }
+            
+        };
+        SMTPClientTransport transport = createFactory().createPlain();
+        SMTPDeliveryAgent c = new SMTPDeliveryAgent(transport);
+
+        try {
+            Collection<FutureResult<Iterator<DeliveryRecipientStatus>>> result = c.deliver(new InetSocketAddress(port), createConfig(), 
+                    envelope(new SMTPByteArrayMessageImpl(DOT_STUFFING_MESSAGE.getBytes()), RECIPIENTS)).get();
+            FutureResult<Iterator<DeliveryRecipientStatus>> dr = result.iterator().next();
+            assertTrue(dr.isSuccess());
+            Iterator<DeliveryRecipientStatus> it = dr.getResult();
+            DeliveryRecipientStatus status = it.next();
+            assertEquals(DeliveryRecipientStatus.DeliveryStatus.Ok, status.getStatus());
+            status = it.next();
+            assertEquals(DeliveryRecipientStatus.DeliveryStatus.PermanentError, status.getStatus());
+            assertEquals(550, status.getResponse().getCode());
+            assertFalse(it.hasNext());
+            
+            assertTrue(usedBdat(server.getCommands()));
+            assertEquals(DOT_STUFFING_MESSAGE, new String(server.getMessages().get(0)));
+        } finally {
+            server.stop();
+            transport.destroy();
+        }
+    }
+    
+    @Test
+    public void testChunkingRejectAllRecipients() throws Exception {
+        int port = TestUtils.getFreePort();
+        SimpleSMTPServer server = new SimpleSMTPServer(port, "PIPELINING", "CHUNKING") {
+
+            @Override
+            protected String onRcpt(String argument) {
+                return "550 Unknown user";
+            }
+            
+        };
+        SMTPClientTransport transport = createFactory().createPlain();
+        SMTPDeliveryAgent c = new SMTPDeliveryAgent(transport);
+
+        try {
+            Collection<FutureResult<Iterator<DeliveryRecipientStatus>>> result = c.deliver(new InetSocketAddress(port), createConfig(), 
+                    envelope(new SMTPByteArrayMessageImpl(DOT_STUFFING_MESSAGE.getBytes()), RECIPIENTS)).get();
+            FutureResult<Iterator<DeliveryRecipientStatus>> dr = result.iterator().next();
+            assertTrue(dr.isSuccess());
+            Iterator<DeliveryRecipientStatus> it = dr.getResult();
+            for (int i = 0; i < 2; i++) {
+                DeliveryRecipientStatus status = it.next();
+                assertEquals(DeliveryRecipientStatus.DeliveryStatus.PermanentError, status.getStatus());
+                assertEquals(550, status.getResponse().getCode());
+            }
+            assertFalse(it.hasNext());
+            assertTrue(server.getMessages().isEmpty());
+        } finally {
+            server.stop();
+            transport.destroy();
+        }
+    }
+    
+    private void checkChunking(SMTPMessage msg, PipeliningMode mode, boolean bdat) throws Exception {
+        int port = TestUtils.getFreePort();
+        SimpleSMTPServer server = new SimpleSMTPServer(port, "PIPELINING", "CHUNKING");
+        SMTPClientTransport transport = createFactory().createPlain();
+        SMTPDeliveryAgent c = new SMTPDeliveryAgent(transport);
+
+        try {
+            SMTPDeliveryAgentConfigImpl conf = createConfig();
+            conf.setPipeliningMode(mode);
+            Collection<FutureResult<Iterator<DeliveryRecipientStatus>>> result = c.deliver(new InetSocketAddress(port), conf, 
+                    envelope(msg, RECIPIENTS)).get();
+            assertEquals(1, result.size());
+            assertStatus(result.iterator().next(), 250, 250);
+            
+            assertEquals(bdat, usedBdat(server.getCommands()));
+            assertEquals(1, server.getMessages().size());
+            assertEquals(DOT_STUFFING_MESSAGE, new String(server.getMessages().get(0)));
+        } finally {
+            server.stop();
+            transport.destroy();
+        }
+    }
+    
+    private static boolean usedBdat(List<String> commands) {
+        for (String command: commands) {
+            if (command.toUpperCase().startsWith("BDAT")) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
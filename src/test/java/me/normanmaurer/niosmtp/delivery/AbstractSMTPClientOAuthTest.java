@@ -0,0 +1,201 @@
+/**
+* Licensed to niosmtp developers ('niosmtp') under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* niosmtp licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package me.normanmaurer.niosmtp.delivery;
+
+import static org.junit.Assert.*;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import me.normanmaurer.niosmtp.delivery.impl.CachingOAuthTokenProvider;
+import me.normanmaurer.niosmtp.delivery.impl.OAuthAuthenticationImpl;
+import me.normanmaurer.niosmtp.delivery.impl.SMTPDeliveryAgentConfigImpl;
+import me.normanmaurer.niosmtp.transport.SMTPClientTransport;
+import me.normanmaurer.niosmtp.util.TestUtils;
+
+import org.apache.commons.codec.binary.Base64;
+import org.junit.Test;
+
+/**
+ * Tests for <code>AUTH XOAUTH2</code> and <code>AUTH OAUTHBEARER</code> with the {@link CachingOAuthTokenProvider}
+ * 
+ * @author Norman Maurer
+ *
+ */
+public abstract class AbstractSMTPClientOAuthTest extends AbstractSimpleSMTPServerTest {
+
+    private final static String VALID_USER ="myuser";
+
+    protected SMTPDeliveryAgentConfigImpl createConfig(Authentication auth) {
+        SMTPDeliveryAgentConfigImpl conf = createConfig();
+        conf.setAuthentication(auth);
+        return conf;
+    }
+    
+    /**
+     * {@link SimpleSMTPServer} which accepts all access tokens which were not revoked and records the accepted ones
+     */
+    private static final class OAuthServer extends SimpleSMTPServer {
+        private final List<String> revoked = Collections.synchronizedList(new ArrayList<String>());
+        private final List<String> accepted = Collections.synchronizedList(new ArrayList<String>());
+        
+        public OAuthServer(int port) throws Exception {
+            super(port, "PIPELINING", "AUTH XOAUTH2 OAUTHBEARER");
+        }
+
+        @Override
+        protected String onAuth(String argument) {
+            String[] parts = argument.split(" ");
+            String decoded = new String(Base64.decodeBase64(parts[1]));
+            String prefix;
+            if ("XOAUTH2".equals(parts[0])) {
+                prefix = "user=" + VALID_USER + "\001auth=Bearer ";
+            } else if ("OAUTHBEARER".equals(parts[0])) {
+                prefix = "n,a=" + VALID_USER + ",\001auth=Bearer ";
+            } else {
+                return "504 Unrecognized authentication type";
+            }
+            if (!decoded.startsWith(prefix) || !decoded.endsWith("\001\001")) {
+                return "501 Syntax error";
+            }
+            String token = decoded.substring(prefix.length(), decoded.length() - 2);
+            if (revoked.contains(token)) {
+                return "334 " + new String(Base64.encodeBase64("{\"status\":\"401\"}".getBytes()));
+            }
+            accepted.add(token);
+            return "235 Authentication successful";
+        }
+    }
+    
+    @Test
+    public void testXOAuth2() throws Exception {
+        checkAuth(OAuthAuthenticationImpl.xoauth2(VALID_USER, new InMemoryOAuthTokenProvider(10 * 60 * 1000, 0)), "AUTH XOAUTH2 ");
+    }
+    
+    @Test
+    public void testOAuthBearer() throws Exception {
+        checkAuth(OAuthAuthenticationImpl.oauthBearer(VALID_USER, new InMemoryOAuthTokenProvider(10 * 60 * 1000, 0)), "AUTH OAUTHBEARER ");
+    }
+    
+    private void checkAuth(Authentication auth, String prefix) throws Exception {
+        int port = TestUtils.getFreePort();
+        
+        OAuthServer server = new OAuthServer(port);
+        SMTPClientTransport transport = createFactory().createPlain();
+        SMTPDeliveryAgent c = new SMTPDeliveryAgent(transport);
+
+        try {
+            assertStatus(c.deliver(new InetSocketAddress(port), createConfig(auth), envelope()).get().iterator().next(), 250);
+            assertEquals(1, server.getMessages().size());
+            assertEquals(Arrays.asList("token-1"), server.accepted);
+            
+            int authCount = 0;
+            for (String command: server.getCommands()) {
+                if (command.startsWith("AUTH")) {
+                    assertTrue(command.startsWith(prefix));
+                    authCount++;
+                }
+            }
+            assertEquals(1, authCount);
+        } finally {
+            server.stop();
+            transport.destroy();
+        }
+    }
+    
+    @Test
+    public void testTokenCached() throws Exception {
+        int port = TestUtils.getFreePort();
+        
+        InMemoryOAuthTokenProvider provider = new InMemoryOAuthTokenProvider(10 * 60 * 1000, 100);
+        OAuthServer server = new OAuthServer(port);
+        SMTPClientTransport transport = createFactory().createPlain();
+        SMTPDeliveryAgent c = new SMTPDeliveryAgent(transport);
+
+        try {
+            SMTPDeliveryAgentConfigImpl conf = createConfig(OAuthAuthenticationImpl.xoauth2(VALID_USER, new CachingOAuthTokenProvider(provider)));
+            assertStatus(c.deliver(new InetSocketAddress(port), conf, envelope()).get().iterator().next(), 250);
+            assertStatus(c.deliver(new InetSocketAddress(port), conf, envelope()).get().iterator().next(), 250);
+            
+            assertEquals(1, provider.getRequests());
+            assertEquals(Arrays.asList("token-1", "token-1"), server.accepted);
+        } finally {
+            server.stop();
+            transport.destroy();
+        }
+    }
+    
+    @Test
+    public void testRefreshBeforeExpiration() throws Exception {
+        int port = TestUtils.getFreePort();
+        
+        InMemoryOAuthTokenProvider provider = new InMemoryOAuthTokenProvider(60 * 1000, 100);
+        OAuthServer server = new OAuthServer(port);
+        SMTPClientTransport transport = createFactory().createPlain();
+        SMTPDeliveryAgent c = new SMTPDeliveryAgent(transport);
+
+        try {
+            // every token is refreshed once it was issued
+            SMTPDeliveryAgentConfigImpl conf = createConfig(OAuthAuthenticationImpl.xoauth2(VALID_USER, new CachingOAuthTokenProvider(provider, 60 * 1000)));
+            assertStatus(c.deliver(new InetSocketAddress(port), conf, envelope()).get().iterator().next(), 250);
+            
+            // the still valid token is used while a new one is requested in the background
+            assertStatus(c.deliver(new InetSocketAddress(port), conf, envelope()).get().iterator().next(), 250);
+            assertEquals(2, provider.getRequests());
+            
+            // wait for the refresh to complete
+            Thread.sleep(500);
+            assertStatus(c.deliver(new InetSocketAddress(port), conf, envelope()).get().iterator().next(), 250);
+            
+            assertEquals(Arrays.asList("token-1", "token-1", "token-2"), server.accepted);
+        } finally {
+            server.stop();
+            transport.destroy();
+        }
+    }
+    
+    @Test
+    public void testRejectedTokenInvalidated() throws Exception {
+        int port = TestUtils.getFreePort();
+        
+        InMemoryOAuthTokenProvider provider = new InMemoryOAuthTokenProvider(10 * 60 * 1000, 0);
+        OAuthServer server = new OAuthServer(port);
+        server.revoked.add("token-1");
+        SMTPClientTransport transport = createFactory().createPlain();
+        SMTPDeliveryAgent c = new SMTPDeliveryAgent(transport);
+
+        try {
+            SMTPDeliveryAgentConfigImpl conf = createConfig(OAuthAuthenticationImpl.oauthBearer(VALID_USER, new CachingOAuthTokenProvider(provider)));
+            assertStatus(c.deliver(new InetSocketAddress(port), conf, envelope()).get().iterator().next(), 535);
+            assertEquals(Arrays.asList("token-1"), provider.getInvalidated());
+            
+            // the client must have answered the error challenge
+            assertTrue(server.getCommands().contains("AQ=="));
+            
+            // a new token is requested for the next delivery
+            assertStatus(c.deliver(new InetSocketAddress(port), conf, envelope()).get().iterator().next(), 250);
+            assertEquals(2, provider.getRequests());
+            assertEquals(Arrays.asList("token-2"), server.accepted);
+        } finally {
+            server.stop();
+            transport.destroy();
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/**
+* Licensed to niosmtp developers ('niosmtp') under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* niosmtp licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package me.normanmaurer.niosmtp.delivery;
+
+import static org.junit.Assert.*;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import me.normanmaurer.niosmtp.delivery.impl.SMTPDeliveryAgentConfigImpl;
+import me.normanmaurer.niosmtp.transport.FutureResult;
+import me.normanmaurer.niosmtp.transport.SMTPClientTransport;
+import me.normanmaurer.niosmtp.util.TestUtils;
+
+import org.junit.Test;
+
+/**
+ * Tests that the <code>RCPT</code>'s are pipelined in windows if {@link SMTPDeliveryAgentConfig#getPipeliningWindow()} is used
+ * 
+ * @author Norman Maurer
+ *
+ */
+public abstract class AbstractSMTPClientPipeliningWindowTest extends AbstractSimpleSMTPServerTest {
+
+    private final static int RECIPIENTS = 50;
+    private final static int WINDOW = 10;
+    
+    // All RCPT's have the same length, so the count of buffered ones can be calculated
+    private final static int RCPT_LENGTH = "RCPT TO:<to000@example.com>\r\n".length();
+
+    private final static List<String> RECIPIENT_LIST = new ArrayList<String>();
+    
+    static {
+        for (int i = 0; i < RECIPIENTS; i++) {
+            RECIPIENT_LIST.add("to" + String.format("%03d", i) + "@example.com");
+        }
+    }
+    
+    protected SMTPDeliveryAgentConfigImpl createConfig(int window) {
+        SMTPDeliveryAgentConfigImpl conf = createConfig();
+        conf.setPipeliningWindow(window);
+        return conf;
+    }
+    
+    private static SMTPDeliveryEnvelope windowEnvelope() {
+        return envelope(RECIPIENT_LIST.toArray(new String[RECIPIENTS]));
+    }
+    
+    @Test
+    public void testPipeliningWindow() throws Exception {
+        checkPipeliningWindow("PIPELINING");
+    }
+    
+    @Test
+    public void testPipeliningWindowChunking() throws Exception {
+        checkPipeliningWindow("PIPELINING", "CHUNKING");
+    }
+    
+    private void checkPipeliningWindow(String... extensions) throws Exception {
+        int port = TestUtils.getFreePort();
+        
+        SimpleSMTPServer server = new SimpleSMTPServer(port, extensions);
+        server.setRcptResponseDelay(2);
+        SMTPClientTransport transport = createFactory().createPlain();
+        SMTPDeliveryAgent c = new SMTPDeliveryAgent(transport);
+
+        try {
+            Iterator<FutureResult<Iterator<DeliveryRecipientStatus>>> it = c.deliver(new InetSocketAddress(port), createConfig(WINDOW), windowEnvelope(), windowEnvelope()).get().iterator();
+            assertAllStatus(it.next(), RECIPIENT_LIST, 250);
+            assertAllStatus(it.next(), RECIPIENT_LIST, 250);
+            assertFalse(it.hasNext());
+            assertEquals(2, server.getMessages().size());
+            
+            // the RCPT which is processed by the server is part of the window too
+            assertTrue(server.getMaxBufferedAfterRcpt() / RCPT_LENGTH < WINDOW);
+        } finally {
+            server.stop();
+            transport.destroy();
+        }
+    }
+    
+    @Test
+    public void testNoPipeliningWindow() throws Exception {
+        int port = TestUtils.getFreePort();
+        
+        SimpleSMTPServer server = new SimpleSMTPServer(port, "PIPELINING");
+        server.setRcptResponseDelay(2);
+        SMTPClientTransport transport = createFactory().createPlain();
+        SMTPDeliveryAgent c = new SMTPDeliveryAgent(transport);
+
+        try {
+            assertAllStatus(c.deliver(new InetSocketAddress(port), createConfig(0), windowEnvelope()).get().iterator().next(), RECIPIENT_LIST, 250);
+            assertEquals(1, server.getMessages().size());
+            assertTrue(server.getMaxBufferedAfterRcpt() / RCPT_LENGTH >= WINDOW);
+        } finally {
+            server.stop();
+            transport.destroy();
+        }
+    }
+    
+    @Test
+    public void testPipeliningWindowMailRejected() throws Exception {
+        int port = TestUtils.getFreePort();
+        
+        // reject the first MAIL, so the responses of the already sent window must be ignored
+        SimpleSMTPServer server = new SimpleSMTPServer(port, "PIPELINING") {
+            private final AtomicInteger mail = new AtomicInteger();
+
+            @Override
+            protected String onMail(String argument) {
+                if (mail.incrementAndGet() == 1) {
+                    return "550 Sender rejected";
+                }
+                return super.onMail(argument);
+            }
+            
+        };
+        SMTPClientTransport transport = createFactory().createPlain();
+        SMTPDeliveryAgent c = new SMTPDeliveryAgent(transport);
+
+        try {
+            Iterator<FutureResult<Iterator<DeliveryRecipientStatus>>> it = c.deliver(new InetSocketAddress(port), createConfig(WINDOW), windowEnvelope(), windowEnvelope()).get().iterator();
+            assertAllStatus(it.next(), RECIPIENT_LIST, 550);
+            assertAllStatus(it.next(), RECIPIENT_LIST, 250);
+            assertFalse(it.hasNext());
+            assertEquals(1, server.getMessages().size());
+        } finally {
+            server.stop();
+            transport.destroy();
+        }
+    }
+}
@@ -0,0 +1,199 @@
+/**
+* Licensed to niosmtp developers ('niosmtp') under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* niosmtp licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package me.normanmaurer.niosmtp.delivery;
+
+import static org.junit.Assert.*;
+
+import java.net.InetSocketAddress;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import me.normanmaurer.niosmtp.delivery.impl.SMTPDeliveryAgentConfigImpl;
+import me.normanmaurer.niosmtp.transport.FutureResult;
+import me.normanmaurer.niosmtp.transport.SMTPClientTransport;
+import me.normanmaurer.niosmtp.util.TestUtils;
+
+import org.junit.Test;
+
+/**
+ * Tests that errors within one transaction don't affect the other {@link SMTPDeliveryEnvelope}'s if the {@link SMTPClientSession} can be
+ * recovered.
+ * 
+ * @author Norman Maurer
+ *
+ */
+public abstract class AbstractSMTPClientRecoveryTest extends AbstractSimpleSMTPServerTest {
+
+    /**
+     * Create a {@link SimpleSMTPServer} which responds to the <code>DATA</code> of the second transaction with the given response
+     * 
+     * @param port
+     * @param dataResponse
+     * @param extensions
+     * @return server
+     * @throws Exception
+     */
+    private static SimpleSMTPServer createServer(int port, final String dataResponse, String... extensions) throws Exception {
+        return new SimpleSMTPServer(port, extensions) {
+            private final AtomicInteger data = new AtomicInteger();
+            
+            @Override
+            protected String onData() {
+                if (data.incrementAndGet() == 2) {
+                    return dataResponse;
+                }
+                return super.onData();
+            }
+        };
+    }
+    
+    @Test
+    public void testResetAfterProtocolError() throws Exception {
+        checkResetAfterProtocolError("PIPELINING");
+    }
+    
+    @Test
+    public void testResetAfterProtocolErrorNoPipelining() throws Exception {
+        checkResetAfterProtocolError();
+    }
+    
+    private void checkResetAfterProtocolError(String... extensions) throws Exception {
+        int port = TestUtils.getFreePort();
+        
+        // 250 is not a valid response to DATA
+        SimpleSMTPServer server = createServer(port, "250 OK", extensions);
+        SMTPClientTransport transport = createFactory().createPlain();
+        SMTPDeliveryAgent c = new SMTPDeliveryAgent(transport);
+
+        try {
+            Iterator<FutureResult<Iterator<DeliveryRecipientStatus>>> it = c.deliver(new InetSocketAddress(port), createConfig(), envelope(), envelope(), envelope()).get().iterator();
+            assertStatus(it.next(), 250);
+            
+            FutureResult<Iterator<DeliveryRecipientStatus>> failed = it.next();
+            assertFalse(failed.isSuccess());
+            assertNotNull(failed.getException());
+            
+            // the session was reset and the last transaction was delivered over the same connection
+            assertStatus(it.next(), 250);
+            assertFalse(it.hasNext());
+            assertEquals(2, server.getMessages().size());
+            assertEquals(1, server.getConnectionCount());
+            assertTrue(server.getCommands().contains("RSET"));
+        } finally {
+            server.stop();
+            transport.destroy();
+        }
+    }
+    
+    @Test
+    public void testTransportErrorFailsRemaining() throws Exception {
+        int port = TestUtils.getFreePort();
+        
+        // close the connection on the second DATA
+        SimpleSMTPServer server = createServer(port, null, "PIPELINING");
+        SMTPClientTransport transport = createFactory().createPlain();
+        SMTPDeliveryAgent c = new SMTPDeliveryAgent(transport);
+
+        try {
+            Iterator<FutureResult<Iterator<DeliveryRecipientStatus>>> it = c.deliver(new InetSocketAddress(port), createConfig(), envelope(), envelope(), envelope()).get().iterator();
+            assertStatus(it.next(), 250);
+            assertFalse(it.next().isSuccess());
+            assertFalse(it.next().isSuccess());
+            assertFalse(it.hasNext());
+            assertEquals(1, server.getMessages().size());
+        } finally {
+            server.stop();
+            transport.destroy();
+        }
+    }
+    
+    @Test
+    public void testReconnect() throws Exception {
+        int port = TestUtils.getFreePort();
+        
+        // close the connection on the second DATA
+        SimpleSMTPServer server = createServer(port, null, "PIPELINING");
+        SMTPClientTransport transport = createFactory().createPlain();
+        SMTPDeliveryAgent c = new SMTPDeliveryAgent(transport);
+        SMTPDeliveryAgentConfigImpl conf = createConfig();
+        conf.setReconnectAttempts(2);
+        conf.setReconnectDelay(10);
+        
+        try {
+            Iterator<FutureResult<Iterator<DeliveryRecipientStatus>>> it = c.deliver(new InetSocketAddress(port), conf, envelope(), envelope(), envelope()).get().iterator();
+            
+            // the result of the first envelope is kept and the delivery is resumed with the second one
+            assertStatus(it.next(), 250);
+            assertStatus(it.next(), 250);
+            assertStatus(it.next(), 250);
+            assertFalse(it.hasNext());
+            assertEquals(3, server.getMessages().size());
+            assertEquals(2, server.getConnectionCount());
+        } finally {
+            server.stop();
+            transport.destroy();
+        }
+    }
+    
+    @Test
+    public void testReconnectAttemptsExhausted() throws Exception {
+        int port = TestUtils.getFreePort();
+        
+        // close the connection on every DATA after the first one
+        SimpleSMTPServer server = new SimpleSMTPServer(port, "PIPELINING") {
+            private final AtomicInteger data = new AtomicInteger();
+            
+            @Override
+            protected String onData() {
+                if (data.incrementAndGet() > 1) {
+                    return null;
+                }
+                return super.onData();
+            }
+        };
+        SMTPClientTransport transport = createFactory().createPlain();
+        SMTPDeliveryAgent c = new SMTPDeliveryAgent(transport);
+        SMTPDeliveryAgentConfigImpl conf = createConfig();
+        conf.setReconnectAttempts(1);
+        conf.setReconnectDelay(10);
+        
+        try {
+            Iterator<FutureResult<Iterator<DeliveryRecipientStatus>>> it = c.deliver(new InetSocketAddress(port), conf, envelope(), envelope(), envelope()).get().iterator();
+            assertStatus(it.next(), 250);
+            assertFalse(it.next().isSuccess());
+            assertFalse(it.next().isSuccess());
+            assertFalse(it.hasNext());
+            assertEquals(1, server.getMessages().size());
+            assertEquals(2, server.getConnectionCount());
+        } finally {
+            server.stop();
+            transport.destroy();
+        }
+    }
+    
+    @Test
+    public void testReconnectDelay() {
+        for (int i = 0; i < 100; i++) {
+            long delay = SMTPDeliveryAgent.getReconnectDelay(100, 1);
+            assertTrue(delay >= 50 && delay <= 100);
+            
+            delay = SMTPDeliveryAgent.getReconnectDelay(100, 3);
+            assertTrue(delay >= 200 && delay <= 400);
+        }
+        assertEquals(0, SMTPDeliveryAgent.getReconnectDelay(0, 1));
+    }
+}
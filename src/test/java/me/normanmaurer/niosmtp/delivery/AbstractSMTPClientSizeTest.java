@@ -0,0 +1,146 @@
+/**
+* Licensed to niosmtp developers ('niosmtp') under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* niosmtp licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package me.normanmaurer.niosmtp.delivery;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+import me.normanmaurer.niosmtp.core.SMTPByteArrayMessageImpl;
+import me.normanmaurer.niosmtp.core.SMTPMessageImpl;
+import me.normanmaurer.niosmtp.transport.FutureResult;
+import me.normanmaurer.niosmtp.transport.SMTPClientTransport;
+import me.normanmaurer.niosmtp.util.TestUtils;
+
+import org.junit.Test;
+
+/**
+ * Tests for the SIZE extension. As the James Protocols SMTP Server only advertise SIZE if it is configured, the {@link SimpleSMTPServer} 
+ * is used.
+ * 
+ * @author Norman Maurer
+ *
+ */
+public abstract class AbstractSMTPClientSizeTest extends AbstractSimpleSMTPServerTest {
+
+    private final static byte[] SMALL_MESSAGE = "Subject: test\r\n\r\nsmall\r\n".getBytes();
+    private final static byte[] BIG_MESSAGE = new byte[200];
+    
+    static {
+        Arrays.fill(BIG_MESSAGE, (byte) 'a');
+    }
+
+    private final static String[] RECIPIENTS = new String[] {RECIPIENT, "to2@example.com"};
+    
+    @Test
+    public void testSizeParameter() throws Exception {
+        int port = TestUtils.getFreePort();
+        SimpleSMTPServer server = new SimpleSMTPServer(port, "PIPELINING", "SIZE 100");
+        SMTPClientTransport transport = createFactory().createPlain();
+        SMTPDeliveryAgent c = new SMTPDeliveryAgent(transport);
+
+        try {
+            Collection<FutureResult<Iterator<DeliveryRecipientStatus>>> result = c.deliver(new InetSocketAddress(port), createConfig(), 
+                    envelope(new SMTPByteArrayMessageImpl(SMALL_MESSAGE), RECIPIENTS), envelope(new SMTPMessageImpl(new ByteArrayInputStream(SMALL_MESSAGE)), RECIPIENTS)).get();
+            Iterator<FutureResult<Iterator<DeliveryRecipientStatus>>> it = result.iterator();
+            assertStatus(it.next(), 250, 250);
+            assertStatus(it.next(), 250, 250);
+            
+            List<String> mails = getMailCommands(server);
+            assertEquals(2, mails.size());
+            assertEquals("MAIL FROM:<from@example.com> SIZE=" + SMALL_MESSAGE.length, mails.get(0));
+            
+            // the size of the stream is unknown
+            assertEquals("MAIL FROM:<from@example.com>", mails.get(1));
+        } finally {
+            server.stop();
+            transport.destroy();
+        }
+    }
+    
+    @Test
+    public void testSizeExceeded() throws Exception {
+        int port = TestUtils.getFreePort();
+        SimpleSMTPServer server = new SimpleSMTPServer(port, "PIPELINING", "SIZE 100");
+        SMTPClientTransport transport = createFactory().createPlain();
+        SMTPDeliveryAgent c = new SMTPDeliveryAgent(transport);
+
+        try {
+            Collection<FutureResult<Iterator<DeliveryRecipientStatus>>> result = c.deliver(new InetSocketAddress(port), createConfig(), 
+                    envelope(new SMTPByteArrayMessageImpl(BIG_MESSAGE), RECIPIENTS), envelope(new SMTPByteArrayMessageImpl(SMALL_MESSAGE), RECIPIENTS)).get();
+            Iterator<FutureResult<Iterator<DeliveryRecipientStatus>>> it = result.iterator();
+            assertStatus(it.next(), 552, 552);
+            assertStatus(it.next(), 250, 250);
+            assertFalse(it.hasNext());
+            
+            // the big message must never hit the wire
+            assertEquals(1, getMailCommands(server).size());
+            assertEquals(1, server.getMessages().size());
+            assertEquals(1, server.getConnectionCount());
+        } finally {
+            server.stop();
+            transport.destroy();
+        }
+    }
+    
+    @Test
+    public void testSizeExceededCached() throws Exception {
+        int port = TestUtils.getFreePort();
+        SimpleSMTPServer server = new SimpleSMTPServer(port, "PIPELINING", "SIZE 100");
+        SMTPClientTransport transport = createFactory().createPlain();
+        SMTPDeliveryAgent c = new SMTPDeliveryAgent(transport);
+
+        try {
+            InetSocketAddress host = new InetSocketAddress(port);
+            assertStatus(c.deliver(host, createConfig(), envelope(new SMTPByteArrayMessageImpl(BIG_MESSAGE), RECIPIENTS)).get().iterator().next(), 552, 552);
+            assertEquals(1, server.getConnectionCount());
+            
+            // the limit of the destination is known now, so there is no need to connect again
+            Iterator<FutureResult<Iterator<DeliveryRecipientStatus>>> it = c.deliver(host, createConfig(), envelope(new SMTPByteArrayMessageImpl(BIG_MESSAGE), RECIPIENTS), envelope(new SMTPByteArrayMessageImpl(BIG_MESSAGE), RECIPIENTS)).get().iterator();
+            assertStatus(it.next(), 552, 552);
+            assertStatus(it.next(), 552, 552);
+            assertFalse(it.hasNext());
+            assertEquals(1, server.getConnectionCount());
+            
+            // one message fits, so we need to connect
+            it = c.deliver(host, createConfig(), envelope(new SMTPByteArrayMessageImpl(BIG_MESSAGE), RECIPIENTS), envelope(new SMTPByteArrayMessageImpl(SMALL_MESSAGE), RECIPIENTS)).get().iterator();
+            assertStatus(it.next(), 552, 552);
+            assertStatus(it.next(), 250, 250);
+            assertEquals(2, server.getConnectionCount());
+            assertEquals(1, server.getMessages().size());
+        } finally {
+            server.stop();
+            transport.destroy();
+        }
+    }
+    
+    private static List<String> getMailCommands(SimpleSMTPServer server) {
+        List<String> mails = server.getCommands();
+        Iterator<String> it = mails.iterator();
+        while (it.hasNext()) {
+            if (!it.next().startsWith("MAIL")) {
+                it.remove();
+            }
+        }
+        return mails;
+    }
+}
@@ -19,23 +19,40 @@ package me.normanmaurer.niosmtp.delivery;
 import static org.junit.Assert.*;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.InetSocketAddress;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
 
 
 import me.normanmaurer.niosmtp.SMTPConnectionException;
 import me.normanmaurer.niosmtp.SMTPClientFuture;
+import me.normanmaurer.niosmtp.SMTPMessage;
+import me.normanmaurer.niosmtp.core.SMTPByteArrayMessageImpl;
+import me.normanmaurer.niosmtp.core.SMTPFileMessageImpl;
 import me.normanmaurer.niosmtp.core.SMTPMessageImpl;
+import me.normanmaurer.niosmtp.core.SMTPPreparedMessageImpl;
 import me.normanmaurer.niosmtp.delivery.DeliveryRecipientStatus;
 import me.normanmaurer.niosmtp.delivery.SMTPDeliveryAgent;
 import me.normanmaurer.niosmtp.delivery.SMTPDeliveryEnvelope;
 import me.normanmaurer.niosmtp.delivery.impl.SMTPDeliveryAgentConfigImpl;
 import me.normanmaurer.niosmtp.delivery.impl.SMTPDeliveryEnvelopeImpl;
 import me.normanmaurer.niosmtp.transport.FutureResult;
+import me.normanmaurer.niosmtp.transport.SMTPCapabilities;
+import me.normanmaurer.niosmtp.transport.SMTPClientConstants;
+import me.normanmaurer.niosmtp.transport.SMTPClientSessionPool;
 import me.normanmaurer.niosmtp.transport.SMTPClientTransport;
 import me.normanmaurer.niosmtp.transport.SMTPClientTransportFactory;
+import me.normanmaurer.niosmtp.transport.impl.SMTPClientSessionPoolImpl;
 import me.normanmaurer.niosmtp.util.TestUtils;
 
 import org.apache.james.protocols.api.handler.WiringException;
@@ -71,6 +88,10 @@ public abstract class AbstractSMTPClientTest {
         return new SMTPDeliveryAgent(transport);
     }
     
+    protected SMTPDeliveryAgent createAgent(SMTPClientTransport transport, SMTPClientSessionPool pool) {
+        return new SMTPDeliveryAgent(transport, pool);
+    }
+    
     protected SMTPDeliveryAgentConfigImpl createConfig() {
         SMTPDeliveryAgentConfigImpl conf = new SMTPDeliveryAgentConfigImpl();
         conf.setConnectionTimeout(2);
@@ -558,6 +579,191 @@ public abstract class AbstractSMTPClientTest {
         }
         
     }
+    
+    @Test
+    public void testPooledSession() throws Exception {
+        checkPooledSession(new PooledSessionAssertCheck());
+    }
+    
+    @Test
+    public void testPooledSessionNonBlocking() throws Exception {
+        checkPooledSession(new AsyncAssertCheck(new PooledSessionAssertCheck()));
+    }
+    
+    private void checkPooledSession(AssertCheck check) throws Exception {
+        int port = TestUtils.getFreePort();
+        // count the sessions which sent HELO / EHLO, as EHLO is sent again after STARTTLS
+        final Set<String> sessions = Collections.synchronizedSet(new HashSet<String>());
+
+        NettyServer smtpServer = create(new SimpleHook() {
 
+            @Override
+            public HookResult doHelo(SMTPSession session, String helo) {
+                sessions.add(session.getSessionID());
+                return super.doHelo(session, helo);
+            }
+            
+        });
+        smtpServer.setListenAddresses(new InetSocketAddress(port));
+
+        smtpServer.bind();
+
+        SMTPClientTransport transport = createSMTPClient();
+        
+        // only allow one session so the second delivery needs to wait for the first one to be released
+        SMTPClientSessionPool pool = new SMTPClientSessionPoolImpl(0, 1, 60, 20);
+        SMTPDeliveryAgent c = createAgent(transport, pool);
+
+        try {
+            SMTPDeliveryAgentConfigImpl conf = createConfig();
+            SMTPDeliveryEnvelope transaction = new SMTPDeliveryEnvelopeImpl("from@example.com", Arrays.asList(new String[] {"to@example.com", "to2@example.com"}), new SMTPMessageImpl(new ByteArrayInputStream("msg".getBytes())));
+            
+            check.onSMTPClientFuture(c.deliver(new InetSocketAddress(port), conf, transaction));
+            check.onSMTPClientFuture(c.deliver(new InetSocketAddress(port), conf, transaction));
+            
+            // the second delivery must have used the pooled session
+            assertEquals(1, sessions.size());
+        } finally {
+            pool.destroy();
+            smtpServer.unbind();
+            transport.destroy();
+        }
+    }
+    
+    private final class PooledSessionAssertCheck extends AssertCheck {
+
+        @Override
+        protected void onDeliveryResult(Iterator<FutureResult<Iterator<DeliveryRecipientStatus>>> result) {
+            FutureResult<Iterator<DeliveryRecipientStatus>> dr = result.next();
+            assertTrue(dr.isSuccess());
+            assertNull(dr.getException());
+            Iterator<DeliveryRecipientStatus> it = dr.getResult();
+            DeliveryRecipientStatus status = it.next();
+            assertEquals(DeliveryRecipientStatus.DeliveryStatus.Ok, status.getStatus());
+            assertEquals("to@example.com", status.getAddress());
+
+            status = it.next();
+            assertEquals(DeliveryRecipientStatus.DeliveryStatus.Ok, status.getStatus());
+            assertEquals("to2@example.com", status.getAddress());
+            
+            assertFalse(it.hasNext());
+            assertFalse(result.hasNext());
+        }
+        
+    }
+
+    @Test
+    public void testDotStuffingStream() throws Exception {
+        checkDotStuffing(new SMTPMessageImpl(new ByteArrayInputStream(DOT_STUFFING_MESSAGE.getBytes())));
+    }
+    
+    @Test
+    public void testDotStuffingByteArray() throws Exception {
+        checkDotStuffing(new SMTPByteArrayMessageImpl(DOT_STUFFING_MESSAGE.getBytes()));
+    }
+    
+    @Test
+    public void testDotStuffingPrepared() throws Exception {
+        checkDotStuffing(new SMTPPreparedMessageImpl(DOT_STUFFING_MESSAGE.getBytes()));
+    }
+    
+    @Test
+    public void testDotStuffingFile() throws Exception {
+        File file = File.createTempFile("niosmtp", ".eml");
+        try {
+            FileOutputStream out = new FileOutputStream(file);
+            try {
+                out.write(DOT_STUFFING_MESSAGE.getBytes());
+            } finally {
+                out.close();
+            }
+            checkDotStuffing(new SMTPFileMessageImpl(file));
+        } finally {
+            file.delete();
+        }
+    }
+    
+    @Test
+    public void testCapabilitiesCache() throws Exception {
+        int port = TestUtils.getFreePort();
+
+        NettyServer smtpServer = create(new SimpleHook());
+        smtpServer.setListenAddresses(new InetSocketAddress(port));
+
+        smtpServer.bind();
+
+        SMTPClientTransport transport = createSMTPClient();
+        SMTPDeliveryAgent c = createAgent(transport);
+
+        try {
+            InetSocketAddress host = new InetSocketAddress(port);
+            assertNull(c.getCapabilities(host));
+            
+            SMTPDeliveryAgentConfigImpl conf = createConfig();
+            SMTPDeliveryEnvelope transaction = new SMTPDeliveryEnvelopeImpl("from@example.com", Arrays.asList(new String[] {"to@example.com"}), new SMTPMessageImpl(new ByteArrayInputStream("msg".getBytes())));
+            
+            FutureResult<Iterator<DeliveryRecipientStatus>> dr = c.deliver(host, conf, transaction).get().iterator().next();
+            assertTrue(dr.isSuccess());
+            assertEquals(DeliveryRecipientStatus.DeliveryStatus.Ok, dr.getResult().next().getStatus());
+            
+            // the server advertise 8BITMIME, so the message was sent with BODY=8BITMIME
+            SMTPCapabilities capabilities = c.getCapabilities(host);
+            assertNotNull(capabilities);
+            assertTrue(capabilities.isSupported(SMTPClientConstants._8BITMIME_EXTENSION));
+        } finally {
+            smtpServer.unbind();
+            transport.destroy();
+        }
+    }
+    
+    private final static String DOT_STUFFING_MESSAGE = ".first\r\nSubject: test\r\n\r\n.\r\n..line\r\nend\r\n";
+    
+    private void checkDotStuffing(SMTPMessage msg) throws Exception {
+        int port = TestUtils.getFreePort();
+        final AtomicReference<String> received = new AtomicReference<String>();
+
+        NettyServer smtpServer = create(new SimpleHook() {
+
+            @Override
+            public HookResult onMessage(SMTPSession session, MailEnvelope mail) {
+                try {
+                    ByteArrayOutputStream out = new ByteArrayOutputStream();
+                    InputStream in = mail.getMessageInputStream();
+                    byte[] buf = new byte[1024];
+                    int read;
+                    while ((read = in.read(buf)) != -1) {
+                        out.write(buf, 0, read);
+                    }
+                    received.set(new String(out.toByteArray()));
+                } catch (IOException e) {
+                    return new HookResult(HookReturnCode.DENYSOFT);
+                }
+                return super.onMessage(session, mail);
+            }
+            
+        });
+        smtpServer.setListenAddresses(new InetSocketAddress(port));
+
+        smtpServer.bind();
+
+        SMTPClientTransport transport = createSMTPClient();
+        SMTPDeliveryAgent c = createAgent(transport);
+
+        try {
+            SMTPDeliveryAgentConfigImpl conf = createConfig();
+            SMTPDeliveryEnvelope transaction = new SMTPDeliveryEnvelopeImpl("from@example.com", Arrays.asList(new String[] {"to@example.com"}), msg);
+            
+            Iterator<FutureResult<Iterator<DeliveryRecipientStatus>>> result = c.deliver(new InetSocketAddress(port), conf, transaction).get().iterator();
+            FutureResult<Iterator<DeliveryRecipientStatus>> dr = result.next();
+            assertTrue(dr.isSuccess());
+            assertEquals(DeliveryRecipientStatus.DeliveryStatus.Ok, dr.getResult().next().getStatus());
+            
+            // the server removes the stuffed dots again
+            assertTrue(received.get(), received.get().endsWith(DOT_STUFFING_MESSAGE));
+        } finally {
+            smtpServer.unbind();
+            transport.destroy();
+        }
+    }
 
 }
@@ -0,0 +1,239 @@
+/**
+* Licensed to niosmtp developers ('niosmtp') under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* niosmtp licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package me.normanmaurer.niosmtp.delivery;
+
+import static org.junit.Assert.*;
+
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import me.normanmaurer.niosmtp.transport.FutureResult;
+import me.normanmaurer.niosmtp.transport.SMTPCapabilitiesCache;
+import me.normanmaurer.niosmtp.transport.SMTPClientTransport;
+import me.normanmaurer.niosmtp.transport.impl.SMTPCapabilitiesCacheImpl;
+import me.normanmaurer.niosmtp.util.TestUtils;
+
+import org.junit.Test;
+
+/**
+ * Tests that recipients which are rejected with <code>452</code> because of too many recipients per transaction are delivered in a follow-up 
+ * transaction
+ * 
+ * @author Norman Maurer
+ *
+ */
+public abstract class AbstractSMTPClientTooManyRecipientsTest extends AbstractSimpleSMTPServerTest {
+
+    private final static String[] RECIPIENTS = new String[] {"to1@example.com", "to2@example.com", "to3@example.com", "to4@example.com", "to5@example.com"};
+    private final static int MAX_RECIPIENTS = 2;
+    private final static String TOO_MANY_RECIPIENTS = "452 4.5.3 Too many recipients";
+    
+    /**
+     * {@link SimpleSMTPServer} which rejects all recipients with <code>452</code> once {@link #MAX_RECIPIENTS} were received within a transaction
+     */
+    private static class LimitingSMTPServer extends SimpleSMTPServer {
+        private final AtomicInteger rejected = new AtomicInteger();
+        private final String response;
+        private int recipients;
+        
+        public LimitingSMTPServer(int port, String... extensions) throws Exception {
+            this(TOO_MANY_RECIPIENTS, port, extensions);
+        }
+        
+        public LimitingSMTPServer(String response, int port, String... extensions) throws Exception {
+            super(port, extensions);
+            this.response = response;
+        }
+        
+        @Override
+        protected String onMail(String argument) {
+            recipients = 0;
+            return super.onMail(argument);
+        }
+
+        @Override
+        protected String onRcpt(String argument) {
+            if (++recipients > MAX_RECIPIENTS) {
+                rejected.incrementAndGet();
+                return response;
+            }
+            return super.onRcpt(argument);
+        }
+        
+        public int getRejected() {
+            return rejected.get();
+        }
+        
+        public int getMailCount() {
+            int count = 0;
+            for (String command: getCommands()) {
+                if (command.startsWith("MAIL")) {
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+    
+    @Test
+    public void testFollowUpTransaction() throws Exception {
+        checkFollowUpTransaction(TOO_MANY_RECIPIENTS, "PIPELINING");
+    }
+    
+    @Test
+    public void testFollowUpTransactionNoPipelining() throws Exception {
+        checkFollowUpTransaction(TOO_MANY_RECIPIENTS);
+    }
+    
+    @Test
+    public void testFollowUpTransactionChunking() throws Exception {
+        checkFollowUpTransaction(TOO_MANY_RECIPIENTS, "PIPELINING", "CHUNKING");
+    }
+    
+    @Test
+    public void testFollowUpTransactionNoEnhancedStatusCode() throws Exception {
+        checkFollowUpTransaction("452 Too many recipients", "PIPELINING");
+    }
+    
+    private void checkFollowUpTransaction(String response, String... extensions) throws Exception {
+        int port = TestUtils.getFreePort();
+        
+        LimitingSMTPServer server = new LimitingSMTPServer(response, port, extensions);
+        SMTPCapabilitiesCache cache = new SMTPCapabilitiesCacheImpl();
+        SMTPClientTransport transport = createFactory().createPlain();
+        SMTPDeliveryAgent c = new SMTPDeliveryAgent(transport, null, cache);
+
+        try {
+            Iterator<FutureResult<Iterator<DeliveryRecipientStatus>>> it = c.deliver(new InetSocketAddress(port), createConfig(), envelope(RECIPIENTS), envelope(RECIPIENTS)).get().iterator();
+            assertAllStatus(it.next(), Arrays.asList(RECIPIENTS), 250);
+            assertAllStatus(it.next(), Arrays.asList(RECIPIENTS), 250);
+            assertFalse(it.hasNext());
+            
+            // the first envelope needs 3 transactions and the second one is split up front, so no more recipients are rejected
+            assertEquals(6, server.getMessages().size());
+            assertEquals(6, server.getMailCount());
+            assertEquals(3, server.getRejected());
+            assertEquals(1, server.getConnectionCount());
+            assertEquals(MAX_RECIPIENTS, cache.getMaxRecipients(new InetSocketAddress(port)));
+        } finally {
+            server.stop();
+            transport.destroy();
+        }
+    }
+    
+    @Test
+    public void testMaxRecipientsCached() throws Exception {
+        int port = TestUtils.getFreePort();
+        
+        LimitingSMTPServer server = new LimitingSMTPServer(port, "PIPELINING");
+        SMTPClientTransport transport = createFactory().createPlain();
+        SMTPDeliveryAgent c = new SMTPDeliveryAgent(transport);
+
+        try {
+            assertAllStatus(c.deliver(new InetSocketAddress(port), createConfig(), envelope(RECIPIENTS)).get().iterator().next(), Arrays.asList(RECIPIENTS), 250);
+            int rejected = server.getRejected();
+            assertTrue(rejected > 0);
+            
+            assertAllStatus(c.deliver(new InetSocketAddress(port), createConfig(), envelope(RECIPIENTS)).get().iterator().next(), Arrays.asList(RECIPIENTS), 250);
+            assertEquals(rejected, server.getRejected());
+            assertEquals(6, server.getMessages().size());
+            assertEquals(2, server.getConnectionCount());
+        } finally {
+            server.stop();
+            transport.destroy();
+        }
+    }
+    
+    @Test
+    public void testMixedRejections() throws Exception {
+        int port = TestUtils.getFreePort();
+        
+        // the first recipient is unknown, so it does not count towards the limit
+        LimitingSMTPServer server = new LimitingSMTPServer(port, "PIPELINING") {
+
+            @Override
+            protected String onRcpt(String argument) {
+                if (argument.contains(RECIPIENTS[0])) {
+                    return "550 5.1.1 User unknown";
+                }
+                return super.onRcpt(argument);
+            }
+            
+        };
+        SMTPCapabilitiesCache cache = new SMTPCapabilitiesCacheImpl();
+        SMTPClientTransport transport = createFactory().createPlain();
+        SMTPDeliveryAgent c = new SMTPDeliveryAgent(transport, null, cache);
+
+        try {
+            FutureResult<Iterator<DeliveryRecipientStatus>> dr = c.deliver(new InetSocketAddress(port), createConfig(), envelope(RECIPIENTS)).get().iterator().next();
+            assertTrue(dr.isSuccess());
+            Iterator<DeliveryRecipientStatus> it = dr.getResult();
+            for (int i = 0; i < RECIPIENTS.length; i++) {
+                DeliveryRecipientStatus status = it.next();
+                assertEquals(RECIPIENTS[i], status.getAddress());
+                assertEquals(i == 0 ? 550 : 250, status.getResponse().getCode());
+            }
+            assertFalse(it.hasNext());
+            
+            // only the accepted recipients are counted for the learned limit
+            assertEquals(2, server.getMessages().size());
+            assertEquals(2, server.getRejected());
+            assertEquals(MAX_RECIPIENTS, cache.getMaxRecipients(new InetSocketAddress(port)));
+        } finally {
+            server.stop();
+            transport.destroy();
+        }
+    }
+    
+    @Test
+    public void testInsufficientStorage() throws Exception {
+        int port = TestUtils.getFreePort();
+        
+        LimitingSMTPServer server = new LimitingSMTPServer("452 4.3.1 Insufficient system storage", port, "PIPELINING");
+        SMTPCapabilitiesCache cache = new SMTPCapabilitiesCacheImpl();
+        SMTPClientTransport transport = createFactory().createPlain();
+        SMTPDeliveryAgent c = new SMTPDeliveryAgent(transport, null, cache);
+
+        try {
+            FutureResult<Iterator<DeliveryRecipientStatus>> dr = c.deliver(new InetSocketAddress(port), createConfig(), envelope(RECIPIENTS)).get().iterator().next();
+            assertTrue(dr.isSuccess());
+            Iterator<DeliveryRecipientStatus> it = dr.getResult();
+            for (int i = 0; i < RECIPIENTS.length; i++) {
+                DeliveryRecipientStatus status = it.next();
+                assertEquals(RECIPIENTS[i], status.getAddress());
+                if (i < MAX_RECIPIENTS) {
+                    assertEquals(250, status.getResponse().getCode());
+                } else {
+                    assertEquals(DeliveryRecipientStatus.DeliveryStatus.TemporaryError, status.getStatus());
+                    assertEquals(452, status.getResponse().getCode());
+                }
+            }
+            assertFalse(it.hasNext());
+            
+            // the recipients are not retried in a follow-up transaction and no limit is learned
+            assertEquals(1, server.getMessages().size());
+            assertEquals(1, server.getMailCount());
+            assertEquals(3, server.getRejected());
+            assertEquals(0, cache.getMaxRecipients(new InetSocketAddress(port)));
+        } finally {
+            server.stop();
+            transport.destroy();
+        }
+    }
+}
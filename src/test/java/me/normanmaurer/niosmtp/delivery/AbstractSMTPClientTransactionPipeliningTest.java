@@ -0,0 +1,182 @@
+/**
+* Licensed to niosmtp developers ('niosmtp') under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* niosmtp licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package me.normanmaurer.niosmtp.delivery;
+
+import static org.junit.Assert.*;
+
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+
+import me.normanmaurer.niosmtp.SMTPMessage;
+import me.normanmaurer.niosmtp.core.SMTPByteArrayMessageImpl;
+import me.normanmaurer.niosmtp.delivery.SMTPDeliveryAgentConfig.ChunkingMode;
+import me.normanmaurer.niosmtp.delivery.impl.SMTPDeliveryAgentConfigImpl;
+import me.normanmaurer.niosmtp.delivery.impl.SMTPDeliveryEnvelopeImpl;
+import me.normanmaurer.niosmtp.transport.FutureResult;
+import me.normanmaurer.niosmtp.transport.SMTPClientTransport;
+import me.normanmaurer.niosmtp.util.TestUtils;
+
+import org.junit.Test;
+
+/**
+ * Tests for pipelining the commands of the next transaction directly after the message of the current one. The {@link SimpleSMTPServer} 
+ * delays the responses to the messages, so it can record if the next commands were pipelined.
+ * 
+ * @author Norman Maurer
+ *
+ */
+public abstract class AbstractSMTPClientTransactionPipeliningTest extends AbstractSimpleSMTPServerTest {
+
+    private final static byte[] BIG_MESSAGE = new byte[200];
+    
+    static {
+        Arrays.fill(BIG_MESSAGE, (byte) 'a');
+    }
+
+    protected SMTPDeliveryAgentConfigImpl createConfig(boolean transactionPipelining) {
+        SMTPDeliveryAgentConfigImpl conf = createConfig();
+        conf.setTransactionPipelining(transactionPipelining);
+        return conf;
+    }
+    
+    private static SMTPDeliveryEnvelope envelopeFrom(String sender, SMTPMessage msg) {
+        return new SMTPDeliveryEnvelopeImpl(sender, Arrays.asList(new String[] {RECIPIENT, "reject@example.com"}), msg);
+    }
+    
+    private static SMTPDeliveryEnvelope envelopeFrom(String sender) {
+        return envelopeFrom(sender, new SMTPByteArrayMessageImpl(MESSAGE));
+    }
+    
+    private static SimpleSMTPServer createServer(int port, String... extensions) throws Exception {
+        SimpleSMTPServer server = new SimpleSMTPServer(port, extensions) {
+
+            @Override
+            protected String onMail(String argument) {
+                if (argument.startsWith("<reject@")) {
+                    return "553 Sender rejected";
+                }
+                return super.onMail(argument);
+            }
+
+            @Override
+            protected String onRcpt(String argument) {
+                if (argument.startsWith("<reject@")) {
+                    return "550 Recipient rejected";
+                }
+                return super.onRcpt(argument);
+            }
+            
+        };
+        server.setMessageResponseDelay(200);
+        return server;
+    }
+    
+    @Test
+    public void testPipelineTransactions() throws Exception {
+        checkDelivery(createConfig(true), true, "PIPELINING");
+    }
+    
+    @Test
+    public void testPipelineTransactionsDisabled() throws Exception {
+        checkDelivery(createConfig(false), false, "PIPELINING");
+    }
+    
+    @Test
+    public void testPipelineTransactionsChunking() throws Exception {
+        SMTPDeliveryAgentConfigImpl conf = createConfig(true);
+        conf.setChunkingMode(ChunkingMode.TRY);
+        checkDelivery(conf, true, "PIPELINING", "CHUNKING");
+    }
+    
+    private void checkDelivery(SMTPDeliveryAgentConfig conf, boolean pipelined, String... extensions) throws Exception {
+        int port = TestUtils.getFreePort();
+        SimpleSMTPServer server = createServer(port, extensions);
+        SMTPClientTransport transport = createFactory().createPlain();
+        SMTPDeliveryAgent c = new SMTPDeliveryAgent(transport);
+
+        try {
+            Collection<FutureResult<Iterator<DeliveryRecipientStatus>>> result = c.deliver(new InetSocketAddress(port), conf, 
+                    envelopeFrom("from@example.com"), envelopeFrom("from2@example.com"), envelopeFrom("from3@example.com")).get();
+            assertEquals(3, result.size());
+            for (FutureResult<Iterator<DeliveryRecipientStatus>> dr: result) {
+                assertStatus(dr, 250, 550);
+            }
+            assertEquals(3, server.getMessages().size());
+            
+            // if pipelined the commands of the next transaction or the QUIT must be received before the response to the message was written
+            assertEquals(Arrays.asList(pipelined, pipelined, pipelined), server.getPipelinedAfterMessage());
+        } finally {
+            server.stop();
+            transport.destroy();
+        }
+    }
+    
+    @Test
+    public void testPipelineTransactionsMailRejected() throws Exception {
+        checkMailRejected(true);
+    }
+    
+    @Test
+    public void testMailRejectedBeforeNextTransaction() throws Exception {
+        checkMailRejected(false);
+    }
+    
+    private void checkMailRejected(boolean transactionPipelining) throws Exception {
+        int port = TestUtils.getFreePort();
+        SimpleSMTPServer server = createServer(port, "PIPELINING");
+        SMTPClientTransport transport = createFactory().createPlain();
+        SMTPDeliveryAgent c = new SMTPDeliveryAgent(transport);
+
+        try {
+            Iterator<FutureResult<Iterator<DeliveryRecipientStatus>>> it = c.deliver(new InetSocketAddress(port), createConfig(transactionPipelining), 
+                    envelopeFrom("from@example.com"), envelopeFrom("reject@example.com"), envelopeFrom("from3@example.com")).get().iterator();
+            assertStatus(it.next(), 250, 550);
+            
+            // the responses to the RCPT's and DATA of the rejected transaction must not be mixed up with the next one
+            assertStatus(it.next(), 553, 553);
+            assertStatus(it.next(), 250, 550);
+            assertFalse(it.hasNext());
+            assertEquals(2, server.getMessages().size());
+        } finally {
+            server.stop();
+            transport.destroy();
+        }
+    }
+    
+    @Test
+    public void testPipelineTransactionsSizeExceeded() throws Exception {
+        int port = TestUtils.getFreePort();
+        SimpleSMTPServer server = createServer(port, "PIPELINING", "SIZE 100");
+        SMTPClientTransport transport = createFactory().createPlain();
+        SMTPDeliveryAgent c = new SMTPDeliveryAgent(transport);
+
+        try {
+            Iterator<FutureResult<Iterator<DeliveryRecipientStatus>>> it = c.deliver(new InetSocketAddress(port), createConfig(true), 
+                    envelopeFrom("from@example.com"), envelopeFrom("from2@example.com", new SMTPByteArrayMessageImpl(BIG_MESSAGE)), envelopeFrom("from3@example.com")).get().iterator();
+            assertStatus(it.next(), 250, 550);
+            assertStatus(it.next(), 552, 552);
+            assertStatus(it.next(), 250, 550);
+            assertFalse(it.hasNext());
+            assertEquals(2, server.getMessages().size());
+        } finally {
+            server.stop();
+            transport.destroy();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/**
+* Licensed to niosmtp developers ('niosmtp') under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* niosmtp licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package me.normanmaurer.niosmtp.delivery;
+
+import static org.junit.Assert.*;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+import me.normanmaurer.niosmtp.SMTPClientFuture;
+import me.normanmaurer.niosmtp.delivery.impl.SMTPDeliveryAgentConfigImpl;
+import me.normanmaurer.niosmtp.transport.FutureResult;
+import me.normanmaurer.niosmtp.transport.SMTPClientTransport;
+import me.normanmaurer.niosmtp.transport.SSLSessionStatistics;
+import me.normanmaurer.niosmtp.transport.netty.NettySMTPClientTransportFactory;
+import me.normanmaurer.niosmtp.util.TestUtils;
+
+import org.apache.james.protocols.api.Encryption;
+import org.apache.james.protocols.netty.NettyServer;
+import org.apache.james.protocols.smtp.SMTPConfigurationImpl;
+import org.apache.james.protocols.smtp.SMTPProtocol;
+import org.apache.james.protocols.smtp.SMTPProtocolHandlerChain;
+import org.apache.james.protocols.smtp.hook.SimpleHook;
+import org.junit.Test;
+
+/**
+ * Tests that many concurrent TLS handshakes complete if their delegated tasks are offloaded and their count is limited
+ * 
+ * @author Norman Maurer
+ *
+ */
+public abstract class AbstractSMTPSClientHandshakeLimitTest extends AbstractSimpleSMTPServerTest {
+
+    private final static int CONNECTIONS = 10;
+
+    @Override
+    protected abstract NettySMTPClientTransportFactory createFactory();
+    
+    private NettySMTPClientTransportFactory createLimitedFactory() {
+        NettySMTPClientTransportFactory factory = createFactory();
+        factory.setHandshakeThreads(1);
+        factory.setMaxHandshakes(2);
+        return factory;
+    }
+    
+    @Test
+    public void testSMTPS() throws Exception {
+        checkConcurrentHandshakes(Encryption.createTls(BogusSslContextFactory.getServerContext()), 
+                createLimitedFactory().createSMTPS(BogusSslContextFactory.createClientContext()));
+    }
+    
+    @Test
+    public void testStartTLS() throws Exception {
+        checkConcurrentHandshakes(Encryption.createStartTls(BogusSslContextFactory.getServerContext()), 
+                createLimitedFactory().createStartTLS(BogusSslContextFactory.createClientContext(), true));
+    }
+    
+    private void checkConcurrentHandshakes(Encryption encryption, SMTPClientTransport transport) throws Exception {
+        int port = TestUtils.getFreePort();
+        
+        SMTPConfigurationImpl config = new SMTPConfigurationImpl();
+        SMTPProtocolHandlerChain chain = new SMTPProtocolHandlerChain(new SimpleHook());
+        NettyServer server = new NettyServer(new SMTPProtocol(chain, config, new MockLogger()), encryption);
+        server.setListenAddresses(new InetSocketAddress(port));
+        server.bind();
+
+        SMTPDeliveryAgent c = new SMTPDeliveryAgent(transport);
+        try {
+            SMTPDeliveryAgentConfigImpl conf = createConfig();
+            conf.setConnectionTimeout(4);
+            conf.setResponseTimeout(4);
+            
+            // all connections are opened at once, so more handshakes are requested than allowed at the same time
+            List<SMTPClientFuture<Collection<FutureResult<Iterator<DeliveryRecipientStatus>>>>> futures = 
+                    new ArrayList<SMTPClientFuture<Collection<FutureResult<Iterator<DeliveryRecipientStatus>>>>>();
+            for (int i = 0; i < CONNECTIONS; i++) {
+                futures.add(c.deliver(new InetSocketAddress(port), conf, envelope()));
+            }
+            for (SMTPClientFuture<Collection<FutureResult<Iterator<DeliveryRecipientStatus>>>> future: futures) {
+                assertStatus(future.get().iterator().next(), 250);
+            }
+            
+            // the handshakes are recorded once the connections were closed
+            SSLSessionStatistics statistics = transport.getSSLSessionStatistics();
+            for (int i = 0; i < 50 && statistics.getHandshakes() < CONNECTIONS; i++) {
+                Thread.sleep(100);
+            }
+            assertEquals(CONNECTIONS, statistics.getHandshakes());
+            assertEquals(0, statistics.getFailedHandshakes());
+        } finally {
+            server.unbind();
+            transport.destroy();
+        }
+    }
+}
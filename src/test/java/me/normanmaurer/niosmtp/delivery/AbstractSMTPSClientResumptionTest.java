@@ -0,0 +1,165 @@
+/**
+* Licensed to niosmtp developers ('niosmtp') under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* niosmtp licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package me.normanmaurer.niosmtp.delivery;
+
+import static org.junit.Assert.*;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Enumeration;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSessionContext;
+
+import me.normanmaurer.niosmtp.SMTPClientFuture;
+import me.normanmaurer.niosmtp.SMTPResponse;
+import me.normanmaurer.niosmtp.transport.FutureResult;
+import me.normanmaurer.niosmtp.transport.SMTPClientTransport;
+import me.normanmaurer.niosmtp.transport.SMTPClientTransportFactory;
+import me.normanmaurer.niosmtp.transport.SSLSessionStatistics;
+import me.normanmaurer.niosmtp.transport.impl.SMTPClientConfigImpl;
+import me.normanmaurer.niosmtp.transport.impl.SSLContextUtils;
+import me.normanmaurer.niosmtp.util.TestUtils;
+
+import org.apache.james.protocols.api.Encryption;
+import org.apache.james.protocols.netty.NettyServer;
+import org.apache.james.protocols.smtp.SMTPConfigurationImpl;
+import org.apache.james.protocols.smtp.SMTPProtocol;
+import org.apache.james.protocols.smtp.SMTPProtocolHandlerChain;
+import org.apache.james.protocols.smtp.hook.Hook;
+import org.junit.Test;
+
+/**
+ * Tests that SMTPS connections to the same destination resume the cached TLS session
+ * 
+ * @author Norman Maurer
+ *
+ */
+public abstract class AbstractSMTPSClientResumptionTest {
+
+    private final static int CONNECTIONS = 20;
+    
+    protected abstract SMTPClientTransportFactory createFactory();
+    
+    private static NettyServer createServer(int port) throws Exception {
+        SMTPConfigurationImpl config = new SMTPConfigurationImpl();
+        SMTPProtocolHandlerChain chain = new SMTPProtocolHandlerChain(new Hook[0]);
+        NettyServer server = new NettyServer(new SMTPProtocol(chain, config, new MockLogger()), Encryption.createTls(BogusSslContextFactory.getServerContext()));
+        server.setListenAddresses(new InetSocketAddress(port));
+        server.bind();
+        return server;
+    }
+    
+    @Test
+    public void testSessionResumed() throws Exception {
+        int port = TestUtils.getFreePort();
+        NettyServer server = createServer(port);
+        SMTPClientTransport transport = createFactory().createSMTPS(SSLContextUtils.configureClientSessionCache(BogusSslContextFactory.createClientContext()));
+        
+        try {
+            connect(transport, new InetSocketAddress(port), 3, null);
+            
+            SSLSessionStatistics statistics = transport.getSSLSessionStatistics();
+            assertEquals(3, statistics.getHandshakes());
+            assertEquals(2, statistics.getResumedHandshakes());
+            assertEquals(0, statistics.getFailedHandshakes());
+        } finally {
+            server.unbind();
+            transport.destroy();
+        }
+    }
+    
+    @Test
+    public void testFullAndResumedHandshakes() throws Exception {
+        int port = TestUtils.getFreePort();
+        NettyServer server = createServer(port);
+        SSLContext context = BogusSslContextFactory.createClientContext();
+        SMTPClientTransport transport = createFactory().createSMTPS(context);
+        
+        try {
+            InetSocketAddress address = new InetSocketAddress(port);
+            connect(transport, address, CONNECTIONS, context.getClientSessionContext());
+            
+            SSLSessionStatistics statistics = transport.getSSLSessionStatistics();
+            assertEquals(CONNECTIONS, statistics.getHandshakes());
+            assertEquals(0, statistics.getResumedHandshakes());
+            
+            connect(transport, address, CONNECTIONS, null);
+            assertEquals(2 * CONNECTIONS, statistics.getHandshakes());
+            
+            // the TLS session of the last connection is still cached
+            assertEquals(CONNECTIONS, statistics.getResumedHandshakes());
+            assertEquals(0, statistics.getFailedHandshakes());
+        } finally {
+            server.unbind();
+            transport.destroy();
+        }
+    }
+    
+    @Test
+    public void testSessionResumedAcrossAddresses() throws Exception {
+        int port = TestUtils.getFreePort();
+        NettyServer server = createServer(port);
+        SMTPClientTransport transport = createFactory().createSMTPS(SSLContextUtils.configureClientSessionCache(BogusSslContextFactory.createClientContext()));
+        
+        try {
+            // two addresses of the same destination
+            connect(transport, new InetSocketAddress(InetAddress.getByAddress("mx.example.com", new byte[] {127, 0, 0, 1}), port), 1, null);
+            connect(transport, new InetSocketAddress(InetAddress.getByAddress("mx.example.com", new byte[] {127, 0, 0, 2}), port), 1, null);
+            
+            SSLSessionStatistics statistics = transport.getSSLSessionStatistics();
+            assertEquals(2, statistics.getHandshakes());
+            assertEquals(1, statistics.getResumedHandshakes());
+        } finally {
+            server.unbind();
+            transport.destroy();
+        }
+    }
+    
+    /**
+     * Open and close the given count of connections one after the other and wait until their handshakes were recorded
+     * 
+     * @param transport
+     * @param address
+     * @param count
+     * @param invalidate if not <code>null</code> all cached TLS sessions of it are invalidated before each connection, so a full handshake is needed
+     * @throws Exception
+     */
+    private static void connect(SMTPClientTransport transport, InetSocketAddress address, int count, SSLSessionContext invalidate) throws Exception {
+        SMTPClientConfigImpl config = new SMTPClientConfigImpl();
+        SSLSessionStatistics statistics = transport.getSSLSessionStatistics();
+        long recorded = statistics.getHandshakes() + statistics.getFailedHandshakes() + count;
+        for (int i = 0; i < count; i++) {
+            if (invalidate != null) {
+                Enumeration<byte[]> ids = invalidate.getIds();
+                while (ids.hasMoreElements()) {
+                    invalidate.getSession(ids.nextElement()).invalidate();
+                }
+            }
+            SMTPClientFuture<FutureResult<SMTPResponse>> future = transport.connect(address, config);
+            FutureResult<SMTPResponse> result = future.get();
+            assertTrue(result.isSuccess());
+            assertEquals(220, result.getResult().getCode());
+            future.getSession().close().get();
+        }
+        
+        // the handshake is recorded after the close was notified
+        for (int i = 0; i < 50 && statistics.getHandshakes() + statistics.getFailedHandshakes() < recorded; i++) {
+            Thread.sleep(100);
+        }
+    }
+}
@@ -0,0 +1,190 @@
+/**
+* Licensed to niosmtp developers ('niosmtp') under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* niosmtp licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package me.normanmaurer.niosmtp.delivery;
+
+import static org.junit.Assert.*;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import me.normanmaurer.niosmtp.delivery.impl.AuthenticationImpl;
+import me.normanmaurer.niosmtp.delivery.impl.SMTPDeliveryAgentConfigImpl;
+import me.normanmaurer.niosmtp.transport.SMTPCapabilities;
+import me.normanmaurer.niosmtp.transport.SMTPCapabilitiesCache;
+import me.normanmaurer.niosmtp.transport.SMTPCapabilitiesCache.StartTlsOutcome;
+import me.normanmaurer.niosmtp.transport.SMTPClientTransport;
+import me.normanmaurer.niosmtp.transport.impl.SMTPCapabilitiesCacheImpl;
+import me.normanmaurer.niosmtp.util.TestUtils;
+
+import org.apache.commons.codec.binary.Base64;
+import org.junit.Test;
+
+/**
+ * Tests that the outcome of <code>STARTTLS</code> is cached per destination, so it is not negotiated again if it failed before, and that 
+ * only the capabilities which are advertised after <code>STARTTLS</code> are used
+ * 
+ * @author Norman Maurer
+ *
+ */
+public abstract class AbstractSMTPStartTLSClientOutcomeTest extends AbstractSimpleSMTPServerTest {
+
+    private static int getStartTlsCount(SimpleSMTPServer server) {
+        int count = 0;
+        for (String command: server.getCommands()) {
+            if (command.startsWith("STARTTLS")) {
+                count++;
+            }
+        }
+        return count;
+    }
+    
+    @Test
+    public void testRejectedStartTlsCached() throws Exception {
+        int port = TestUtils.getFreePort();
+        InetSocketAddress address = new InetSocketAddress(port);
+        
+        SimpleSMTPServer server = new SimpleSMTPServer(port, "PIPELINING", "STARTTLS");
+        SMTPCapabilitiesCache cache = new SMTPCapabilitiesCacheImpl();
+        SMTPClientTransport transport = createFactory().createStartTLS(BogusSslContextFactory.getClientContext(), false);
+        SMTPDeliveryAgent c = new SMTPDeliveryAgent(transport, null, cache);
+
+        try {
+            assertAllStatus(c.deliver(address, createConfig(), envelope()).get().iterator().next(), Arrays.asList(RECIPIENT), 250);
+            assertEquals(1, getStartTlsCount(server));
+            assertEquals(StartTlsOutcome.FAILED, cache.getStartTlsOutcome(address));
+            
+            // STARTTLS is skipped now
+            assertAllStatus(c.deliver(address, createConfig(), envelope()).get().iterator().next(), Arrays.asList(RECIPIENT), 250);
+            assertEquals(1, getStartTlsCount(server));
+            assertEquals(2, server.getMessages().size());
+        } finally {
+            server.stop();
+            transport.destroy();
+        }
+    }
+    
+    @Test
+    public void testNotAdvertisedCached() throws Exception {
+        int port = TestUtils.getFreePort();
+        InetSocketAddress address = new InetSocketAddress(port);
+        
+        SimpleSMTPServer server = new SimpleSMTPServer(port, "PIPELINING");
+        SMTPCapabilitiesCache cache = new SMTPCapabilitiesCacheImpl();
+        SMTPClientTransport transport = createFactory().createStartTLS(BogusSslContextFactory.getClientContext(), false);
+        SMTPDeliveryAgent c = new SMTPDeliveryAgent(transport, null, cache);
+
+        try {
+            assertAllStatus(c.deliver(address, createConfig(), envelope()).get().iterator().next(), Arrays.asList(RECIPIENT), 250);
+            assertEquals(0, getStartTlsCount(server));
+            assertEquals(StartTlsOutcome.NOT_ADVERTISED, cache.getStartTlsOutcome(address));
+        } finally {
+            server.stop();
+            transport.destroy();
+        }
+    }
+    
+    @Test
+    public void testEhloAfterStartTls() throws Exception {
+        int port = TestUtils.getFreePort();
+        InetSocketAddress address = new InetSocketAddress(port);
+        final String initialResponse = "PLAIN " + new String(Base64.encodeBase64("\0user\0password".getBytes()));
+        
+        // AUTH is only advertised once the connection is encrypted
+        SimpleSMTPServer server = new SimpleSMTPServer(port, "PIPELINING", "STARTTLS") {
+
+            @Override
+            protected String onEncryptedEhlo(String argument) {
+                return "250-localhost\r\n250-PIPELINING\r\n250 AUTH PLAIN";
+            }
+
+            @Override
+            protected String onStartTls() {
+                return "220 Ready to start TLS";
+            }
+
+            @Override
+            protected String onAuth(String argument) {
+                if (initialResponse.equals(argument)) {
+                    return "235 Authentication successful";
+                }
+                return "535 Authentication failed";
+            }
+            
+        };
+        server.setSslContext(BogusSslContextFactory.getServerContext());
+        SMTPCapabilitiesCache cache = new SMTPCapabilitiesCacheImpl();
+        SMTPClientTransport transport = createFactory().createStartTLS(BogusSslContextFactory.getClientContext(), false);
+        SMTPDeliveryAgent c = new SMTPDeliveryAgent(transport, null, cache);
+        
+        SMTPDeliveryAgentConfigImpl conf = createConfig();
+        // LOGIN is not advertised after STARTTLS, so PLAIN should be used
+        conf.setAuthentication(AuthenticationImpl.login("user", "password"));
+
+        try {
+            assertAllStatus(c.deliver(address, conf, envelope()).get().iterator().next(), Arrays.asList(RECIPIENT), 250);
+            assertEquals(StartTlsOutcome.SUPPORTED, cache.getStartTlsOutcome(address));
+            
+            List<String> commands = new ArrayList<String>();
+            for (String command: server.getCommands()) {
+                commands.add(command.split(" ")[0]);
+            }
+            // the QUIT may not be received yet
+            assertEquals(Arrays.asList("EHLO", "STARTTLS", "EHLO", "AUTH", "MAIL", "RCPT", "DATA"), commands.subList(0, 7));
+            
+            // only the capabilities which were advertised after STARTTLS are cached
+            SMTPCapabilities capabilities = cache.get(address);
+            assertFalse(capabilities.isSupported("STARTTLS"));
+            assertTrue(capabilities.getAuthMechanisms().contains("PLAIN"));
+        } finally {
+            server.stop();
+            transport.destroy();
+        }
+    }
+    
+    @Test
+    public void testPolicyRequiresTls() throws Exception {
+        int port = TestUtils.getFreePort();
+        final InetSocketAddress address = new InetSocketAddress(port);
+        
+        SimpleSMTPServer server = new SimpleSMTPServer(port, "PIPELINING", "STARTTLS");
+        SMTPCapabilitiesCache cache = new SMTPCapabilitiesCacheImpl();
+        cache.putStartTlsOutcome(address, StartTlsOutcome.FAILED);
+        SMTPClientTransport transport = createFactory().createStartTLS(BogusSslContextFactory.getClientContext(), false);
+        SMTPDeliveryAgent c = new SMTPDeliveryAgent(transport, null, cache);
+        
+        SMTPDeliveryAgentConfigImpl conf = createConfig();
+        conf.setStartTlsPolicy(new StartTlsPolicy() {
+            
+            @Override
+            public boolean isTlsRequired(InetSocketAddress destination, StartTlsOutcome outcome) {
+                return address.equals(destination);
+            }
+        });
+
+        try {
+            // STARTTLS is sent even if it failed before and the delivery fails as it is rejected again
+            assertAllStatus(c.deliver(address, conf, envelope()).get().iterator().next(), Arrays.asList(RECIPIENT), 454);
+            assertEquals(1, getStartTlsCount(server));
+            assertEquals(0, server.getMessages().size());
+        } finally {
+            server.stop();
+            transport.destroy();
+        }
+    }
+}
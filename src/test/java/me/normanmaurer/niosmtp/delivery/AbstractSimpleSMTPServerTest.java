@@ -0,0 +1,115 @@
+/**
+* Licensed to niosmtp developers ('niosmtp') under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* niosmtp licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package me.normanmaurer.niosmtp.delivery;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+
+import me.normanmaurer.niosmtp.SMTPMessage;
+import me.normanmaurer.niosmtp.core.SMTPByteArrayMessageImpl;
+import me.normanmaurer.niosmtp.delivery.impl.SMTPDeliveryAgentConfigImpl;
+import me.normanmaurer.niosmtp.delivery.impl.SMTPDeliveryEnvelopeImpl;
+import me.normanmaurer.niosmtp.transport.FutureResult;
+import me.normanmaurer.niosmtp.transport.SMTPClientTransportFactory;
+
+/**
+ * Base class for tests which deliver to a local test server like {@link SimpleSMTPServer}. It holds the fixtures and assertions they share.
+ * 
+ * @author Norman Maurer
+ *
+ */
+public abstract class AbstractSimpleSMTPServerTest {
+
+    protected final static byte[] MESSAGE = "Subject: test\r\n\r\nbody\r\n".getBytes();
+    protected final static String SENDER = "from@example.com";
+    protected final static String RECIPIENT = "to@example.com";
+    
+    protected abstract SMTPClientTransportFactory createFactory();
+    
+    protected SMTPDeliveryAgentConfigImpl createConfig() {
+        SMTPDeliveryAgentConfigImpl conf = new SMTPDeliveryAgentConfigImpl();
+        conf.setConnectionTimeout(2);
+        conf.setResponseTimeout(2);
+        return conf;
+    }
+    
+    /**
+     * Return a {@link SMTPDeliveryEnvelope} with {@link #MESSAGE} for {@link #RECIPIENT}
+     * 
+     * @return envelope
+     */
+    protected static SMTPDeliveryEnvelope envelope() {
+        return envelope(RECIPIENT);
+    }
+    
+    /**
+     * Return a {@link SMTPDeliveryEnvelope} with {@link #MESSAGE} for the given recipients
+     * 
+     * @param recipients
+     * @return envelope
+     */
+    protected static SMTPDeliveryEnvelope envelope(String... recipients) {
+        return envelope(new SMTPByteArrayMessageImpl(MESSAGE), recipients);
+    }
+    
+    /**
+     * Return a {@link SMTPDeliveryEnvelope} with the given {@link SMTPMessage} for the given recipients
+     * 
+     * @param message
+     * @param recipients
+     * @return envelope
+     */
+    protected static SMTPDeliveryEnvelope envelope(SMTPMessage message, String... recipients) {
+        return new SMTPDeliveryEnvelopeImpl(SENDER, Arrays.asList(recipients), message);
+    }
+    
+    /**
+     * Assert that the delivery was successful and the recipients got the given codes in order
+     * 
+     * @param dr
+     * @param codes
+     */
+    protected static void assertStatus(FutureResult<Iterator<DeliveryRecipientStatus>> dr, int... codes) {
+        assertTrue(dr.isSuccess());
+        Iterator<DeliveryRecipientStatus> it = dr.getResult();
+        for (int i = 0; i < codes.length; i++) {
+            assertEquals(codes[i], it.next().getResponse().getCode());
+        }
+        assertFalse(it.hasNext());
+    }
+    
+    /**
+     * Assert that the delivery was successful and all the given recipients got the given code in order
+     * 
+     * @param dr
+     * @param recipients
+     * @param code
+     */
+    protected static void assertAllStatus(FutureResult<Iterator<DeliveryRecipientStatus>> dr, Collection<String> recipients, int code) {
+        assertTrue(dr.isSuccess());
+        Iterator<DeliveryRecipientStatus> it = dr.getResult();
+        for (String recipient: recipients) {
+            DeliveryRecipientStatus status = it.next();
+            assertEquals(recipient, status.getAddress());
+            assertEquals(code, status.getResponse().getCode());
+        }
+        assertFalse(it.hasNext());
+    }
+}
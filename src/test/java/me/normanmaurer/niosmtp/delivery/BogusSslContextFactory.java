@@ -63,13 +63,7 @@ public class BogusSslContextFactory {
                     "Failed to initialize the server-side SSLContext", e);
         }
 
-        try {
-            clientContext = SSLContext.getInstance(PROTOCOL);
-            clientContext.init(null, BogusTrustManagerFactory.getTrustManagers(), null);
-        } catch (Exception e) {
-            throw new Error(
-                    "Failed to initialize the client-side SSLContext", e);
-        }
+        clientContext = createClientContext();
 
         SERVER_CONTEXT = serverContext;
         CLIENT_CONTEXT = clientContext;
@@ -82,5 +76,21 @@ public class BogusSslContextFactory {
     public static SSLContext getClientContext() {
         return CLIENT_CONTEXT;
     }
+    
+    /**
+     * Create a new client-side {@link SSLContext}, which does not share its TLS session cache with the one of {@link #getClientContext()}
+     * 
+     * @return context
+     */
+    public static SSLContext createClientContext() {
+        try {
+            SSLContext clientContext = SSLContext.getInstance(PROTOCOL);
+            clientContext.init(null, BogusTrustManagerFactory.getTrustManagers(), null);
+            return clientContext;
+        } catch (Exception e) {
+            throw new Error(
+                    "Failed to initialize the client-side SSLContext", e);
+        }
+    }
 }
 
@@ -0,0 +1,99 @@
+/**
+* Licensed to niosmtp developers ('niosmtp') under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* niosmtp licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package me.normanmaurer.niosmtp.delivery;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import me.normanmaurer.niosmtp.SMTPClientFuture;
+import me.normanmaurer.niosmtp.core.SMTPClientFutureImpl;
+import me.normanmaurer.niosmtp.delivery.impl.OAuthTokenImpl;
+import me.normanmaurer.niosmtp.transport.FutureResult;
+import me.normanmaurer.niosmtp.transport.impl.FutureResultImpl;
+
+/**
+ * In-memory {@link OAuthTokenProvider} which can be used as stand-in for a real authorization server in tests. It issues the access tokens
+ * <code>token-1</code>, <code>token-2</code>, ... and completes the requests from another {@link Thread} after the configured delay.
+ * 
+ * @author Norman Maurer
+ *
+ */
+public class InMemoryOAuthTokenProvider implements OAuthTokenProvider {
+
+    private final long lifetime;
+    private final long delay;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final List<String> invalidated = Collections.synchronizedList(new ArrayList<String>());
+    
+    /**
+     * 
+     * @param lifetime the milliseconds after which an issued token expires
+     * @param delay the milliseconds after which a request is completed
+     */
+    public InMemoryOAuthTokenProvider(long lifetime, long delay) {
+        this.lifetime = lifetime;
+        this.delay = delay;
+    }
+    
+    @Override
+    public SMTPClientFuture<FutureResult<OAuthToken>> getToken(String username) {
+        final SMTPClientFutureImpl<FutureResult<OAuthToken>> future = new SMTPClientFutureImpl<FutureResult<OAuthToken>>(false);
+        final String accessToken = "token-" + requests.incrementAndGet();
+        Thread thread = new Thread(new Runnable() {
+            
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                future.setResult(new FutureResultImpl<OAuthToken>(new OAuthTokenImpl(accessToken, System.currentTimeMillis() + lifetime)));
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        return future;
+    }
+
+    @Override
+    public void invalidate(String username, OAuthToken token) {
+        invalidated.add(token.getAccessToken());
+    }
+    
+    /**
+     * Return how many tokens were requested
+     * 
+     * @return requests
+     */
+    public int getRequests() {
+        return requests.get();
+    }
+    
+    /**
+     * Return the access tokens which were invalidated
+     * 
+     * @return invalidated
+     */
+    public List<String> getInvalidated() {
+        synchronized (invalidated) {
+            return new ArrayList<String>(invalidated);
+        }
+    }
+}
@@ -0,0 +1,428 @@
+/**
+* Licensed to niosmtp developers ('niosmtp') under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* niosmtp licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package me.normanmaurer.niosmtp.delivery;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocket;
+
+/**
+ * Very simple blocking SMTP Server which can be used to test SMTP extensions which are not supported by the
+ * James Protocols SMTP Server. It handles one connection after the other.
+ * 
+ * Sub-classes can override the <code>on*</code> methods to control the responses.
+ * 
+ * @author Norman Maurer
+ *
+ */
+public class SimpleSMTPServer implements Runnable {
+
+    private final ServerSocket serverSocket;
+    private final String[] extensions;
+    private final List<String> commands = Collections.synchronizedList(new ArrayList<String>());
+    private final List<byte[]> messages = Collections.synchronizedList(new ArrayList<byte[]>());
+    private final AtomicInteger connections = new AtomicInteger();
+    private final List<Boolean> pipelinedAfterMessage = Collections.synchronizedList(new ArrayList<Boolean>());
+    private volatile long messageResponseDelay;
+    private volatile long rcptResponseDelay;
+    private volatile int maxBufferedAfterRcpt;
+    private volatile SSLContext sslContext;
+    private volatile boolean running = true;
+    private final Thread thread;
+    
+    public SimpleSMTPServer(int port, String... extensions) throws IOException {
+        this.extensions = extensions;
+        this.serverSocket = new ServerSocket();
+        serverSocket.setReuseAddress(true);
+        serverSocket.bind(new InetSocketAddress(port));
+        thread = new Thread(this, "SimpleSMTPServer-" + port);
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    /**
+     * Return all received commands
+     * 
+     * @return commands
+     */
+    public List<String> getCommands() {
+        synchronized (commands) {
+            return new ArrayList<String>(commands);
+        }
+    }
+    
+    /**
+     * Return the content of all received messages
+     * 
+     * @return messages
+     */
+    public List<byte[]> getMessages() {
+        synchronized (messages) {
+            return new ArrayList<byte[]>(messages);
+        }
+    }
+    
+    /**
+     * Return the count of accepted connections
+     * 
+     * @return connections
+     */
+    public int getConnectionCount() {
+        return connections.get();
+    }
+    
+    /**
+     * Delay the response to every received message by the given milliseconds. This gives the client the chance to pipeline 
+     * its next commands, which will be recorded in {@link #getPipelinedAfterMessage()}
+     * 
+     * @param messageResponseDelay
+     */
+    public void setMessageResponseDelay(long messageResponseDelay) {
+        this.messageResponseDelay = messageResponseDelay;
+    }
+    
+    /**
+     * Return for every received message if the next command was already received before the response to the message was written. 
+     * This is only recorded if a delay was set via {@link #setMessageResponseDelay(long)}
+     * 
+     * @return pipelined
+     */
+    public List<Boolean> getPipelinedAfterMessage() {
+        synchronized (pipelinedAfterMessage) {
+            return new ArrayList<Boolean>(pipelinedAfterMessage);
+        }
+    }
+    
+    /**
+     * Delay the response to every received <code>RCPT</code> by the given milliseconds. This gives the client the chance to pipeline 
+     * more commands, which are recorded in {@link #getMaxBufferedAfterRcpt()}
+     * 
+     * @param rcptResponseDelay
+     */
+    public void setRcptResponseDelay(long rcptResponseDelay) {
+        this.rcptResponseDelay = rcptResponseDelay;
+    }
+    
+    /**
+     * Return the maximal count of bytes which were already received but not processed yet when a <code>RCPT</code> was responded. This is 
+     * only recorded if a delay was set via {@link #setRcptResponseDelay(long)}
+     * 
+     * @return buffered
+     */
+    public int getMaxBufferedAfterRcpt() {
+        return maxBufferedAfterRcpt;
+    }
+    
+    /**
+     * Negotiate TLS with the given {@link SSLContext} if <code>STARTTLS</code> is received and {@link #onStartTls()} returns a response 
+     * which starts with <code>220</code>
+     * 
+     * @param sslContext
+     */
+    public void setSslContext(SSLContext sslContext) {
+        this.sslContext = sslContext;
+    }
+    
+    public void stop() throws IOException {
+        running = false;
+        serverSocket.close();
+    }
+    
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                connections.incrementAndGet();
+                try {
+                    handle(socket);
+                } finally {
+                    socket.close();
+                }
+            } catch (IOException e) {
+                // closed
+            }
+        }
+    }
+    
+    /**
+     * Return the response to <code>EHLO</code> if the connection is encrypted. By default this is the same as before <code>STARTTLS</code>
+     * 
+     * @param argument
+     * @return response
+     */
+    protected String onEncryptedEhlo(String argument) {
+        return onEhlo(argument);
+    }
+    
+    protected String onEhlo(String argument) {
+        StringBuilder sb = new StringBuilder("250");
+        sb.append(extensions.length == 0 ? " " : "-").append("localhost");
+        for (int i = 0; i < extensions.length; i++) {
+            sb.append("\r\n250").append(i == extensions.length - 1 ? " " : "-").append(extensions[i]);
+        }
+        return sb.toString();
+    }
+    
+    /**
+     * Return the response to <code>AUTH</code>. Only a single response is supported, so the credentials must be sent as initial-response
+     * 
+     * @param argument
+     * @return response
+     */
+    protected String onAuth(String argument) {
+        return "502 Command not implemented";
+    }
+    
+    /**
+     * Return the response to a line which was sent by the client after a <code>334</code> response to <code>AUTH</code>
+     * 
+     * @param line
+     * @return response
+     */
+    protected String onAuthContinuation(String line) {
+        return "535 Authentication failed";
+    }
+    
+    /**
+     * Return the response to <code>STARTTLS</code>. Unless a {@link SSLContext} was set via {@link #setSslContext(SSLContext)} TLS is not supported, 
+     * so it should not start with <code>220</code> then
+     * 
+     * @return response
+     */
+    protected String onStartTls() {
+        return "454 TLS not available";
+    }
+    
+    protected String onMail(String argument) {
+        return "250 OK";
+    }
+    
+    protected String onRcpt(String argument) {
+        return "250 OK";
+    }
+    
+    /**
+     * Return the response to <code>DATA</code> if there are valid recipients. If it does not start with <code>354</code> no message is read. 
+     * If <code>null</code> is returned the connection is closed.
+     * 
+     * @return response
+     */
+    protected String onData() {
+        return "354 Start mail input";
+    }
+    
+    protected String onMessage(byte[] message) {
+        return "250 Message accepted";
+    }
+    
+    private void handle(Socket socket) throws IOException {
+        InputStream in = new BufferedInputStream(socket.getInputStream());
+        OutputStream out = socket.getOutputStream();
+        boolean encrypted = false;
+        // like strict servers EHLO must be sent again once TLS was negotiated
+        boolean hello = true;
+        write(out, "220 localhost ESMTP");
+        ByteArrayOutputStream bdat = null;
+        int recipients = 0;
+        boolean mail = false;
+        String line;
+        while ((line = readLine(in)) != null) {
+            commands.add(line);
+            String upper = line.toUpperCase(Locale.US);
+            String argument = line.length() > 5 ? line.substring(5) : null;
+            if (upper.startsWith("EHLO")) {
+                hello = true;
+                write(out, encrypted ? onEncryptedEhlo(argument) : onEhlo(argument));
+            } else if (upper.startsWith("HELO")) {
+                hello = true;
+                write(out, "250 OK");
+            } else if (upper.startsWith("NOOP")) {
+                write(out, "250 OK");
+            } else if (!hello && (upper.startsWith("AUTH") || upper.startsWith("MAIL"))) {
+                write(out, "503 Send EHLO first");
+            } else if (upper.startsWith("RSET")) {
+                recipients = 0;
+                mail = false;
+                bdat = null;
+                write(out, "250 OK");
+            } else if (upper.startsWith("AUTH")) {
+                String response = onAuth(argument);
+                write(out, response);
+                while (response.startsWith("334")) {
+                    String continuation = readLine(in);
+                    if (continuation == null) {
+                        return;
+                    }
+                    commands.add(continuation);
+                    response = onAuthContinuation(continuation);
+                    write(out, response);
+                }
+            } else if (upper.startsWith("STARTTLS")) {
+                String response = onStartTls();
+                write(out, response);
+                if (sslContext != null && response.startsWith("220")) {
+                    SSLSocket sslSocket = (SSLSocket) sslContext.getSocketFactory().createSocket(socket, null, socket.getPort(), true);
+                    sslSocket.setUseClientMode(false);
+                    sslSocket.startHandshake();
+                    in = new BufferedInputStream(sslSocket.getInputStream());
+                    out = sslSocket.getOutputStream();
+                    encrypted = true;
+                    hello = false;
+                    recipients = 0;
+                    mail = false;
+                    bdat = null;
+                }
+            } else if (upper.startsWith("MAIL")) {
+                recipients = 0;
+                String response = onMail(line.substring(10));
+                mail = response.startsWith("2");
+                write(out, response);
+            } else if (upper.startsWith("RCPT")) {
+                if (!mail) {
+                    write(out, "503 Need MAIL command");
+                    continue;
+                }
+                String response = onRcpt(line.substring(8));
+                if (rcptResponseDelay > 0) {
+                    try {
+                        Thread.sleep(rcptResponseDelay);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    maxBufferedAfterRcpt = Math.max(maxBufferedAfterRcpt, in.available());
+                }
+                if (response.startsWith("2")) {
+                    recipients++;
+                }
+                write(out, response);
+            } else if (upper.startsWith("DATA")) {
+                if (recipients == 0) {
+                    write(out, "554 No valid recipients");
+                    continue;
+                }
+                String response = onData();
+                if (response == null) {
+                    return;
+                }
+                write(out, response);
+                if (!response.startsWith("354")) {
+                    continue;
+                }
+                ByteArrayOutputStream message = new ByteArrayOutputStream();
+                String data;
+                while (!".".equals(data = readLine(in))) {
+                    if (data == null) {
+                        return;
+                    }
+                    if (data.startsWith(".")) {
+                        data = data.substring(1);
+                    }
+                    message.write(data.getBytes("US-ASCII"));
+                    message.write(new byte[] {'\r', '\n'});
+                }
+                recipients = 0;
+                mail = false;
+                write(out, received(in, message.toByteArray()));
+            } else if (upper.startsWith("BDAT")) {
+                String[] parts = line.split(" ");
+                int size = Integer.parseInt(parts[1]);
+                boolean last = parts.length > 2 && "LAST".equalsIgnoreCase(parts[2]);
+                byte[] chunk = new byte[size];
+                int read = 0;
+                while (read < size) {
+                    int r = in.read(chunk, read, size - read);
+                    if (r == -1) {
+                        return;
+                    }
+                    read += r;
+                }
+                if (bdat == null) {
+                    bdat = new ByteArrayOutputStream();
+                }
+                bdat.write(chunk);
+                if (recipients == 0) {
+                    bdat = null;
+                    write(out, "554 No valid recipients");
+                } else if (last) {
+                    byte[] message = bdat.toByteArray();
+                    bdat = null;
+                    recipients = 0;
+                    mail = false;
+                    write(out, received(in, message));
+                } else {
+                    write(out, "250 " + size + " octets received");
+                }
+            } else if (upper.startsWith("QUIT")) {
+                write(out, "221 Bye");
+                return;
+            } else {
+                write(out, "500 Unknown command");
+            }
+        }
+    }
+    
+    private String received(InputStream in, byte[] message) throws IOException {
+        if (messageResponseDelay > 0) {
+            try {
+                Thread.sleep(messageResponseDelay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            pipelinedAfterMessage.add(in.available() > 0);
+        }
+        String response = onMessage(message);
+        if (response.startsWith("2")) {
+            messages.add(message);
+        }
+        return response;
+    }
+    
+    private static void write(OutputStream out, String response) throws IOException {
+        out.write((response + "\r\n").getBytes("US-ASCII"));
+        out.flush();
+    }
+    
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        int b;
+        while ((b = in.read()) != -1) {
+            if (b == '\n') {
+                int length = sb.length();
+                if (length > 0 && sb.charAt(length - 1) == '\r') {
+                    sb.setLength(length - 1);
+                }
+                return sb.toString();
+            }
+            sb.append((char) b);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,102 @@
+/**
+* Licensed to niosmtp developers ('niosmtp') under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* niosmtp licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package me.normanmaurer.niosmtp.delivery.impl;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import me.normanmaurer.niosmtp.SMTPClientFuture;
+import me.normanmaurer.niosmtp.core.SMTPClientFutureImpl;
+import me.normanmaurer.niosmtp.delivery.OAuthToken;
+import me.normanmaurer.niosmtp.delivery.OAuthTokenProvider;
+import me.normanmaurer.niosmtp.transport.FutureResult;
+import me.normanmaurer.niosmtp.transport.impl.FutureResultImpl;
+
+import org.junit.Test;
+
+/**
+ * 
+ * @author Norman Maurer
+ *
+ */
+public class CachingOAuthTokenProviderTest {
+
+    private final static long LIFETIME = 1000;
+    
+    /**
+     * {@link OAuthTokenProvider} which returns a new {@link OAuthToken} which expires after {@link #LIFETIME} milliseconds on every call
+     */
+    private static final class CountingOAuthTokenProvider implements OAuthTokenProvider {
+        private final AtomicInteger calls = new AtomicInteger();
+        
+        @Override
+        public SMTPClientFuture<FutureResult<OAuthToken>> getToken(String username) {
+            OAuthToken token = new OAuthTokenImpl("token" + calls.incrementAndGet(), System.currentTimeMillis() + LIFETIME);
+            SMTPClientFutureImpl<FutureResult<OAuthToken>> future = new SMTPClientFutureImpl<FutureResult<OAuthToken>>(false);
+            future.setResult(new FutureResultImpl<OAuthToken>(token));
+            return future;
+        }
+
+        @Override
+        public void invalidate(String username, OAuthToken token) {
+        }
+    }
+    
+    @Test
+    public void testRefreshBeforeExpiration() throws Exception {
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        CountingOAuthTokenProvider provider = new CountingOAuthTokenProvider();
+        CachingOAuthTokenProvider caching = new CachingOAuthTokenProvider(provider, LIFETIME - 200, executor);
+        try {
+            assertEquals("token1", caching.getToken("user").get().getResult().getAccessToken());
+            
+            // use the account, so the token gets refreshed 
+            assertEquals("token1", caching.getToken("user").get().getResult().getAccessToken());
+            assertEquals(1, provider.calls.get());
+            
+            for (int i = 0; i < 50 && provider.calls.get() < 2; i++) {
+                Thread.sleep(100);
+            }
+            assertEquals(2, provider.calls.get());
+            
+            // the refreshed token is returned without requesting a new one
+            assertEquals("token2", caching.getToken("user").get().getResult().getAccessToken());
+            assertEquals(2, provider.calls.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    
+    @Test
+    public void testUnusedNotRefreshed() throws Exception {
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        CountingOAuthTokenProvider provider = new CountingOAuthTokenProvider();
+        CachingOAuthTokenProvider caching = new CachingOAuthTokenProvider(provider, LIFETIME - 200, executor);
+        try {
+            assertEquals("token1", caching.getToken("user").get().getResult().getAccessToken());
+            
+            // the account was not used after the token was received, so it is not refreshed
+            Thread.sleep(LIFETIME);
+            assertEquals(1, provider.calls.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/**
+* Licensed to niosmtp developers ('niosmtp') under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* niosmtp licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package me.normanmaurer.niosmtp.delivery.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import me.normanmaurer.niosmtp.SMTPResponse;
+import me.normanmaurer.niosmtp.core.EncodedSMTPResponseImpl;
+import me.normanmaurer.niosmtp.delivery.DeliveryRecipientStatus;
+
+/**
+ * Measures the heap which is retained per recipient if the {@link DeliveryRecipientStatus}'s of a transaction are kept as a {@link List} 
+ * like they are received, compared with a {@link DeliveryRecipientStatusTable}. This is no unit test and so not run as part of the build, as 
+ * the measured heap depends on the garbage collector.
+ * 
+ * Usage: <code>DeliveryRecipientStatusTableBenchmark [recipients] [rounds]</code>
+ * 
+ * @author Norman Maurer
+ *
+ */
+public class DeliveryRecipientStatusTableBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        
+        // the addresses are referenced by both, so they are not measured
+        List<String> recipients = new ArrayList<String>(count);
+        for (int i = 0; i < count; i++) {
+            recipients.add("to" + i + "@example.com");
+        }
+        
+        for (int i = 0; i < rounds; i++) {
+            long base = usedMemory();
+            List<DeliveryRecipientStatus> statusList = createStatusList(recipients);
+            long list = usedMemory() - base;
+            
+            DeliveryRecipientStatusTable table = DeliveryRecipientStatusTable.create(statusList);
+            statusList = null;
+            long compact = usedMemory() - base;
+            
+            System.out.println(count + " recipients: list " + list / count + " bytes per recipient, table " + compact / count 
+                    + " bytes per recipient (" + table.getResponseCount() + " distinct responses)");
+        }
+    }
+    
+    /**
+     * Create the {@link DeliveryRecipientStatus}'s like they are received, so every recipient has its own {@link SMTPResponse}
+     */
+    private static List<DeliveryRecipientStatus> createStatusList(List<String> recipients) {
+        List<DeliveryRecipientStatus> statusList = new ArrayList<DeliveryRecipientStatus>(recipients.size());
+        for (int i = 0; i < recipients.size(); i++) {
+            SMTPResponse response;
+            if (i % 10 == 0) {
+                response = response(550, "5.1.1 User unknown");
+            } else {
+                response = response(250, "2.1.5 Ok");
+            }
+            statusList.add(new DeliveryRecipientStatusImpl(recipients.get(i), response));
+        }
+        return statusList;
+    }
+    
+    private static SMTPResponse response(int code, String line) {
+        byte[] text = line.getBytes();
+        return new EncodedSMTPResponseImpl(code, text, new int[] {text.length});
+    }
+    
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
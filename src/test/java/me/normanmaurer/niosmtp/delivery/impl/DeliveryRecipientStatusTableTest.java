@@ -0,0 +1,158 @@
+/**
+* Licensed to niosmtp developers ('niosmtp') under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* niosmtp licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package me.normanmaurer.niosmtp.delivery.impl;
+
+import static org.junit.Assert.*;
+
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import me.normanmaurer.niosmtp.SMTPResponse;
+import me.normanmaurer.niosmtp.core.EncodedSMTPResponseImpl;
+import me.normanmaurer.niosmtp.core.SMTPResponseImpl;
+import me.normanmaurer.niosmtp.delivery.DeliveryRecipientStatus;
+import me.normanmaurer.niosmtp.delivery.DeliveryRecipientStatus.DeliveryStatus;
+
+import org.junit.Test;
+
+/**
+ * 
+ * @author Norman Maurer
+ *
+ */
+public class DeliveryRecipientStatusTableTest {
+
+    private static SMTPResponse response(int code, String line) {
+        try {
+            byte[] text = line.getBytes("US-ASCII");
+            return new EncodedSMTPResponseImpl(code, text, new int[] {text.length});
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+    }
+    
+    /**
+     * Create the {@link DeliveryRecipientStatus}'s like they are received, so every recipient has its own {@link SMTPResponse}
+     * 
+     * @param recipients
+     * @return statusList
+     */
+    private static List<DeliveryRecipientStatus> createStatusList(List<String> recipients) {
+        List<DeliveryRecipientStatus> statusList = new ArrayList<DeliveryRecipientStatus>();
+        for (int i = 0; i < recipients.size(); i++) {
+            SMTPResponse response;
+            if (i % 10 == 0) {
+                response = response(550, "5.1.1 User unknown");
+            } else if (i % 10 == 1) {
+                response = response(451, "4.3.0 Try again later");
+            } else {
+                response = response(250, "2.1.5 Ok");
+            }
+            statusList.add(new DeliveryRecipientStatusImpl(recipients.get(i), response));
+        }
+        return statusList;
+    }
+    
+    private static List<String> createRecipients(int count) {
+        List<String> recipients = new ArrayList<String>();
+        for (int i = 0; i < count; i++) {
+            recipients.add("to" + i + "@example.com");
+        }
+        return recipients;
+    }
+    
+    @Test
+    public void testStatus() {
+        List<String> recipients = createRecipients(30);
+        List<DeliveryRecipientStatus> statusList = createStatusList(recipients);
+        DeliveryRecipientStatusTable table = DeliveryRecipientStatusTable.create(statusList);
+        
+        assertEquals(30, table.size());
+        assertEquals(3, table.getResponseCount());
+        
+        Iterator<DeliveryRecipientStatus> it = table.iterator();
+        for (int i = 0; i < statusList.size(); i++) {
+            DeliveryRecipientStatus expected = statusList.get(i);
+            DeliveryRecipientStatus status = it.next();
+            
+            // the address is not copied
+            assertSame(recipients.get(i), status.getAddress());
+            assertEquals(expected.getStatus(), status.getStatus());
+            assertEquals(expected.getResponse().getCode(), status.getResponse().getCode());
+            assertEquals(expected.getResponse().getLines(), status.getResponse().getLines());
+            assertEquals(expected.getResponse().getCode(), table.getCode(i));
+            assertSame(table.getResponse(i), status.getResponse());
+        }
+        assertFalse(it.hasNext());
+        
+        assertEquals(DeliveryStatus.PermanentError, table.get(0).getStatus());
+        assertEquals(DeliveryStatus.TemporaryError, table.get(1).getStatus());
+        assertEquals(DeliveryStatus.Ok, table.get(2).getStatus());
+    }
+    
+    @Test
+    public void testEmpty() {
+        DeliveryRecipientStatusTable table = DeliveryRecipientStatusTable.create(new ArrayList<DeliveryRecipientStatus>());
+        assertEquals(0, table.size());
+        assertFalse(table.iterator().hasNext());
+    }
+    
+    @Test
+    public void testIdenticalResponsesShareSlot() {
+        List<DeliveryRecipientStatus> statusList = createStatusList(createRecipients(30));
+        DeliveryRecipientStatusTable table = DeliveryRecipientStatusTable.create(statusList);
+        
+        assertNotSame(statusList.get(0).getResponse(), statusList.get(10).getResponse());
+        assertSame(table.getResponse(0), table.getResponse(10));
+        assertSame(table.getResponse(0), table.getResponse(20));
+        assertSame(table.getResponse(2), table.getResponse(29));
+        assertNotSame(table.getResponse(0), table.getResponse(1));
+    }
+    
+    @Test
+    public void testResponsesWithOtherCodeNotShared() {
+        List<DeliveryRecipientStatus> statusList = new ArrayList<DeliveryRecipientStatus>();
+        statusList.add(new DeliveryRecipientStatusImpl("to0@example.com", response(550, "Rejected")));
+        statusList.add(new DeliveryRecipientStatusImpl("to1@example.com", response(554, "Rejected")));
+        DeliveryRecipientStatusTable table = DeliveryRecipientStatusTable.create(statusList);
+        
+        assertEquals(2, table.getResponseCount());
+        assertEquals(550, table.getCode(0));
+        assertEquals(554, table.getCode(1));
+    }
+    
+    @Test
+    public void testSameInstanceShareSlot() {
+        SMTPResponseImpl ok = new SMTPResponseImpl(250);
+        ok.addLine("2.1.5 Ok");
+        SMTPResponseImpl otherOk = new SMTPResponseImpl(250);
+        otherOk.addLine("2.1.5 Ok");
+        
+        List<DeliveryRecipientStatus> statusList = new ArrayList<DeliveryRecipientStatus>();
+        statusList.add(new DeliveryRecipientStatusImpl("to0@example.com", ok));
+        statusList.add(new DeliveryRecipientStatusImpl("to1@example.com", otherOk));
+        statusList.add(new DeliveryRecipientStatusImpl("to2@example.com", ok));
+        DeliveryRecipientStatusTable table = DeliveryRecipientStatusTable.create(statusList);
+        
+        assertEquals(2, table.getResponseCount());
+        assertSame(ok, table.getResponse(0));
+        assertSame(otherOk, table.getResponse(1));
+        assertSame(ok, table.getResponse(2));
+    }
+}
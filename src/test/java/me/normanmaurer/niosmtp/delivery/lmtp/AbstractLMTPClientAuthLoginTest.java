@@ -36,6 +36,7 @@ import me.normanmaurer.niosmtp.delivery.impl.SMTPDeliveryAgentConfigImpl;
 import me.normanmaurer.niosmtp.delivery.impl.SMTPDeliveryEnvelopeImpl;
 import me.normanmaurer.niosmtp.delivery.lmtp.AbstractLMTPClientTest.RejectOneRecipientAfterDataAssertCheck;
 import me.normanmaurer.niosmtp.transport.FutureResult;
+import me.normanmaurer.niosmtp.transport.SMTPClientSessionPool;
 import me.normanmaurer.niosmtp.transport.SMTPClientTransport;
 import me.normanmaurer.niosmtp.util.TestUtils;
 
@@ -61,6 +62,11 @@ public abstract class AbstractLMTPClientAuthLoginTest extends AbstractSMTPClient
         return new LMTPDeliveryAgent(transport);
     }
     
+    @Override
+    protected SMTPDeliveryAgent createAgent(SMTPClientTransport transport, SMTPClientSessionPool pool) {
+        return new LMTPDeliveryAgent(transport, pool);
+    }
+    
     @Override
     protected NettyServer create(Hook hook) throws WiringException {
         if (hook instanceof SimpleHook) {
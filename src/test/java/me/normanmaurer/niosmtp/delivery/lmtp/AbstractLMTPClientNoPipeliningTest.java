@@ -51,6 +51,7 @@ import me.normanmaurer.niosmtp.delivery.impl.SMTPDeliveryAgentConfigImpl;
 import me.normanmaurer.niosmtp.delivery.impl.SMTPDeliveryEnvelopeImpl;
 import me.normanmaurer.niosmtp.delivery.lmtp.AbstractLMTPClientTest.RejectOneRecipientAfterDataAssertCheck;
 import me.normanmaurer.niosmtp.transport.FutureResult;
+import me.normanmaurer.niosmtp.transport.SMTPClientSessionPool;
 import me.normanmaurer.niosmtp.transport.SMTPClientTransport;
 import me.normanmaurer.niosmtp.util.TestUtils;
 
@@ -72,6 +73,11 @@ public abstract class AbstractLMTPClientNoPipeliningTest extends AbstractSMTPCli
         return new LMTPDeliveryAgent(transport);
     }
     
+    @Override
+    protected SMTPDeliveryAgent createAgent(SMTPClientTransport transport, SMTPClientSessionPool pool) {
+        return new LMTPDeliveryAgent(transport, pool);
+    }
+    
     
     @Test
     public void testRejectOneRecipientAfterData() throws Exception {
@@ -40,6 +40,7 @@ import me.normanmaurer.niosmtp.delivery.SMTPDeliveryEnvelope;
 import me.normanmaurer.niosmtp.delivery.impl.SMTPDeliveryAgentConfigImpl;
 import me.normanmaurer.niosmtp.delivery.impl.SMTPDeliveryEnvelopeImpl;
 import me.normanmaurer.niosmtp.transport.FutureResult;
+import me.normanmaurer.niosmtp.transport.SMTPClientSessionPool;
 import me.normanmaurer.niosmtp.transport.SMTPClientTransport;
 import me.normanmaurer.niosmtp.util.TestUtils;
 
@@ -75,6 +76,11 @@ public abstract class AbstractLMTPClientTest extends AbstractSMTPClientTest{
     protected SMTPDeliveryAgent createAgent(SMTPClientTransport transport) {
         return new LMTPDeliveryAgent(transport);
     }
+    
+    @Override
+    protected SMTPDeliveryAgent createAgent(SMTPClientTransport transport, SMTPClientSessionPool pool) {
+        return new LMTPDeliveryAgent(transport, pool);
+    }
 
     @Test
     public void testRejectOneRecipientAfterData() throws Exception {
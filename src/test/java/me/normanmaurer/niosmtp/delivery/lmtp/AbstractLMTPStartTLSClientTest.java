@@ -56,6 +56,7 @@ import me.normanmaurer.niosmtp.delivery.impl.SMTPDeliveryAgentConfigImpl;
 import me.normanmaurer.niosmtp.delivery.impl.SMTPDeliveryEnvelopeImpl;
 import me.normanmaurer.niosmtp.delivery.lmtp.AbstractLMTPClientTest.RejectOneRecipientAfterDataAssertCheck;
 import me.normanmaurer.niosmtp.transport.FutureResult;
+import me.normanmaurer.niosmtp.transport.SMTPClientSessionPool;
 import me.normanmaurer.niosmtp.transport.SMTPClientTransport;
 import me.normanmaurer.niosmtp.util.TestUtils;
 
@@ -65,6 +66,11 @@ public abstract class AbstractLMTPStartTLSClientTest extends AbstractSMTPStartTL
     protected SMTPDeliveryAgent createAgent(SMTPClientTransport transport) {
         return new LMTPDeliveryAgent(transport);
     }
+    
+    @Override
+    protected SMTPDeliveryAgent createAgent(SMTPClientTransport transport, SMTPClientSessionPool pool) {
+        return new LMTPDeliveryAgent(transport, pool);
+    }
 
     @Override
     protected NettyServer create(Hook hook) throws WiringException {
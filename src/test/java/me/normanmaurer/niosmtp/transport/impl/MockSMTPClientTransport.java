@@ -25,6 +25,8 @@ import me.normanmaurer.niosmtp.transport.SMTPClientConfig;
 import me.normanmaurer.niosmtp.transport.SMTPClientSession;
 import me.normanmaurer.niosmtp.transport.SMTPClientTransport;
 import me.normanmaurer.niosmtp.transport.SMTPDeliveryMode;
+import me.normanmaurer.niosmtp.transport.SMTPResponseCacheStatistics;
+import me.normanmaurer.niosmtp.transport.SSLSessionStatistics;
 
 public class MockSMTPClientTransport implements SMTPClientTransport {
     
@@ -39,6 +41,16 @@ public class MockSMTPClientTransport implements SMTPClientTransport {
         
     }
     
+    @Override
+    public SSLSessionStatistics getSSLSessionStatistics() {
+        return new SSLSessionStatisticsImpl();
+    }
+    
+    @Override
+    public SMTPResponseCacheStatistics getResponseCacheStatistics() {
+        return null;
+    }
+    
     @Override
     public SMTPClientFuture<FutureResult<SMTPResponse>> connect(InetSocketAddress remote, SMTPClientConfig config) {
         SMTPClientSession session = new MockSMTPClientSession(config);
@@ -0,0 +1,88 @@
+/**
+* Licensed to niosmtp developers ('niosmtp') under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* niosmtp licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package me.normanmaurer.niosmtp.transport.impl;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import me.normanmaurer.niosmtp.core.SMTPResponseImpl;
+import me.normanmaurer.niosmtp.transport.SMTPCapabilities;
+import me.normanmaurer.niosmtp.transport.SMTPClientConstants;
+
+import org.junit.Test;
+
+/**
+ * 
+ * @author Norman Maurer
+ *
+ */
+public class SMTPCapabilitiesImplTest implements SMTPClientConstants {
+
+    private static SMTPCapabilities parse(String... lines) {
+        SMTPResponseImpl response = new SMTPResponseImpl(250);
+        for (int i = 0; i < lines.length; i++) {
+            response.addLine(lines[i]);
+        }
+        return SMTPCapabilitiesImpl.parse(response);
+    }
+    
+    @Test
+    public void testParse() {
+        SMTPCapabilities capabilities = parse("mx.example.com Hello", "pipelining", "8BITMIME", "SIZE 10240000", "AUTH LOGIN plain", "X-CUSTOM a b");
+        assertTrue(capabilities.isSupported(PIPELINING_EXTENSION));
+        assertTrue(capabilities.isSupported(_8BITMIME_EXTENSION));
+        assertTrue(capabilities.isSupported(SIZE_EXTENSION));
+        assertTrue(capabilities.isSupported(AUTH_EXTENSION));
+        assertTrue(capabilities.isSupported("x-custom"));
+        assertFalse(capabilities.isSupported(STARTTLS_EXTENSION));
+        assertFalse(capabilities.isSupported(CHUNKING_EXTENSION));
+        assertFalse(capabilities.isSupported("MX.EXAMPLE.COM"));
+
+        assertEquals(10240000, capabilities.getMaxMessageSize());
+        assertEquals(new HashSet<String>(Arrays.asList("LOGIN", "PLAIN")), capabilities.getAuthMechanisms());
+        assertEquals("a b", capabilities.getParameters("X-CUSTOM"));
+        assertEquals("", capabilities.getParameters(PIPELINING_EXTENSION));
+        assertNull(capabilities.getParameters(STARTTLS_EXTENSION));
+        assertEquals(new HashSet<String>(Arrays.asList(PIPELINING_EXTENSION, _8BITMIME_EXTENSION, SIZE_EXTENSION, AUTH_EXTENSION, "X-CUSTOM")), capabilities.getExtensions());
+    }
+    
+    @Test
+    public void testParseLegacyAuth() {
+        SMTPCapabilities capabilities = parse("mx.example.com", "AUTH LOGIN", "AUTH=LOGIN CRAM-MD5");
+        assertTrue(capabilities.isSupported(AUTH_EXTENSION));
+        assertEquals("LOGIN", capabilities.getParameters(AUTH_EXTENSION));
+        assertEquals(new HashSet<String>(Arrays.asList("LOGIN", "CRAM-MD5")), capabilities.getAuthMechanisms());
+    }
+    
+    @Test
+    public void testParseSizeWithoutLimit() {
+        SMTPCapabilities capabilities = parse("mx.example.com", "SIZE");
+        assertTrue(capabilities.isSupported(SIZE_EXTENSION));
+        assertEquals(0, capabilities.getMaxMessageSize());
+    }
+    
+    @Test
+    public void testEmpty() {
+        SMTPCapabilities capabilities = parse("mx.example.com");
+        assertFalse(capabilities.isSupported(PIPELINING_EXTENSION));
+        assertTrue(capabilities.getExtensions().isEmpty());
+        assertTrue(capabilities.getAuthMechanisms().isEmpty());
+        assertFalse(SMTPCapabilitiesImpl.EMPTY.isSupported("X-CUSTOM"));
+    }
+}
@@ -0,0 +1,128 @@
+/**
+* Licensed to niosmtp developers ('niosmtp') under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* niosmtp licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package me.normanmaurer.niosmtp.transport.netty;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import me.normanmaurer.niosmtp.SMTPClientFuture;
+import me.normanmaurer.niosmtp.SMTPResponse;
+import me.normanmaurer.niosmtp.core.SMTPRequestImpl;
+import me.normanmaurer.niosmtp.transport.FutureResult;
+import me.normanmaurer.niosmtp.transport.SMTPClientSession;
+import me.normanmaurer.niosmtp.transport.SMTPClientTransport;
+import me.normanmaurer.niosmtp.transport.impl.SMTPClientConfigImpl;
+import me.normanmaurer.niosmtp.util.TestUtils;
+
+/**
+ * Measures how many commands per second a {@link SMTPClientSession} can send and dispatch the responses of. This is no unit test and so not run
+ * as part of the build. It only uses API which also exists in older revisions, so it can be copied there to compare the results.
+ * 
+ * Usage: <code>SMTPClientSessionBenchmark [commands] [rounds]</code>
+ * 
+ * @author Norman Maurer
+ *
+ */
+public class SMTPClientSessionBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int commands = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        
+        int port = TestUtils.getFreePort();
+        final ServerSocket server = new ServerSocket();
+        server.setReuseAddress(true);
+        server.bind(new InetSocketAddress(port));
+        Thread serverThread = new Thread(new Runnable() {
+            
+            @Override
+            public void run() {
+                try {
+                    Socket socket = server.accept();
+                    try {
+                        respond(new BufferedInputStream(socket.getInputStream()), socket.getOutputStream());
+                    } finally {
+                        socket.close();
+                    }
+                } catch (IOException e) {
+                    // closed
+                }
+            }
+        });
+        serverThread.setDaemon(true);
+        serverThread.start();
+        
+        SMTPClientTransport transport = NettySMTPClientTransportFactory.createNio().createPlain();
+        try {
+            SMTPClientFuture<FutureResult<SMTPResponse>> connect = transport.connect(new InetSocketAddress(port), new SMTPClientConfigImpl());
+            if (!connect.get().isSuccess()) {
+                throw new IllegalStateException("Unable to connect", connect.get().getException());
+            }
+            SMTPClientSession session = connect.getSession();
+            for (int i = 0; i < rounds; i++) {
+                long start = System.nanoTime();
+                for (int a = 0; a < commands; a++) {
+                    session.send(new SMTPRequestImpl("NOOP", null)).get();
+                }
+                report("sequential", commands, System.nanoTime() - start);
+                
+                start = System.nanoTime();
+                SMTPClientFuture<FutureResult<SMTPResponse>> last = null;
+                for (int a = 0; a < commands; a++) {
+                    last = session.send(new SMTPRequestImpl("NOOP", null));
+                }
+                last.get();
+                report("pipelined", commands, System.nanoTime() - start);
+            }
+            session.close().get();
+        } finally {
+            transport.destroy();
+            server.close();
+        }
+    }
+    
+    private static void report(String name, int commands, long nanos) {
+        System.out.println(name + ": " + (long) (commands / (nanos / 1000000000d)) + " commands/s");
+    }
+    
+    /**
+     * Write the greeting and answer every received line with <code>250 OK</code>. The responses are only flushed once no more input is 
+     * available, so pipelined commands are answered in batches.
+     */
+    private static void respond(InputStream in, OutputStream out) throws IOException {
+        out = new BufferedOutputStream(out);
+        byte[] greeting = "220 localhost ESMTP\r\n".getBytes("US-ASCII");
+        byte[] ok = "250 OK\r\n".getBytes("US-ASCII");
+        out.write(greeting);
+        out.flush();
+        int b;
+        while ((b = in.read()) != -1) {
+            if (b == '\n') {
+                out.write(ok);
+                if (in.available() == 0) {
+                    out.flush();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/**
+* Licensed to niosmtp developers ('niosmtp') under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* niosmtp licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package me.normanmaurer.niosmtp.transport.netty.internal;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import me.normanmaurer.niosmtp.core.DotStuffingIndex;
+import me.normanmaurer.niosmtp.transport.SMTPClientConstants;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.junit.Test;
+
+/**
+ * 
+ * @author Norman Maurer
+ *
+ */
+public class MappedFileChunkedInputTest implements SMTPClientConstants {
+
+    private static String read(String content, int chunkSize) throws Exception {
+        File file = File.createTempFile("niosmtp", ".eml");
+        try {
+            write(file, content);
+            DotStuffingIndex index = DotStuffingIndex.create(file);
+            assertEquals(content.length(), index.getLength());
+            
+            MappedFileChunkedInput input = new MappedFileChunkedInput(index, chunkSize);
+            try {
+                StringBuilder sb = new StringBuilder();
+                while (input.hasNextChunk()) {
+                    ChannelBuffer chunk = (ChannelBuffer) input.nextChunk();
+                    assertTrue(chunk.readableBytes() <= Math.max(chunkSize, 5));
+                    sb.append(chunk.toString(CHARSET));
+                }
+                assertTrue(input.isEndOfInput());
+                assertNull(input.nextChunk());
+                return sb.toString();
+            } finally {
+                input.close();
+            }
+        } finally {
+            file.delete();
+        }
+    }
+    
+    private static void write(File file, String content) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content.getBytes(CHARSET));
+        } finally {
+            out.close();
+        }
+    }
+    
+    @Test
+    public void testEmpty() throws Exception {
+        assertEquals("\r\n.\r\n", read("", 8192));
+    }
+    
+    @Test
+    public void testDotStuffing() throws Exception {
+        String msg = ".first\r\nline\r\n.\r\nline.\n.\r\nend";
+        String expected = "..first\r\nline\r\n..\r\nline.\n.\r\nend\r\n.\r\n";
+        assertEquals(expected, read(msg, 8192));
+        assertEquals(expected, read(msg, 3));
+        assertEquals(expected, read(msg, 1));
+    }
+    
+    @Test
+    public void testTerminated() throws Exception {
+        assertEquals("test\r\n.\r\n", read("test\r\n", 2));
+        assertEquals("test\r\n.\r\n", read("test\r", 2));
+    }
+}
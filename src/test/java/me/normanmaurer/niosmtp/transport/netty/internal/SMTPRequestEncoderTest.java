@@ -0,0 +1,81 @@
+/**
+* Licensed to niosmtp developers ('niosmtp') under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* niosmtp licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package me.normanmaurer.niosmtp.transport.netty.internal;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import me.normanmaurer.niosmtp.SMTPRequest;
+import me.normanmaurer.niosmtp.core.SMTPPipeliningRequestImpl;
+import me.normanmaurer.niosmtp.core.SMTPRequestImpl;
+import me.normanmaurer.niosmtp.transport.SMTPClientConstants;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.handler.codec.embedder.EncoderEmbedder;
+import org.junit.Test;
+
+/**
+ * 
+ * @author Norman Maurer
+ *
+ */
+public class SMTPRequestEncoderTest implements SMTPClientConstants {
+
+    private static String encode(Object request) {
+        EncoderEmbedder<ChannelBuffer> embedder = new EncoderEmbedder<ChannelBuffer>(new SMTPRequestEncoder(), new SMTPPipeliningRequestEncoder());
+        embedder.offer(request);
+        ChannelBuffer buffer = embedder.poll();
+        assertNull(embedder.poll());
+        return buffer.toString(CHARSET);
+    }
+    
+    @Test
+    public void testConstantRequest() {
+        assertEquals("QUIT\r\n", encode(SMTPRequestImpl.quit()));
+        assertEquals("AUTH PLAIN\r\n", encode(SMTPRequestImpl.authPlain()));
+        
+        // encoding must not modify the shared pre-encoded bytes
+        assertEquals("DATA\r\n", encode(SMTPRequestImpl.data()));
+        assertEquals("DATA\r\n", encode(SMTPRequestImpl.data()));
+    }
+    
+    @Test
+    public void testAddressRequest() {
+        SMTPRequest mail = SMTPRequestImpl.mail("from@example.com");
+        assertEquals("MAIL FROM:<from@example.com>\r\n", encode(mail));
+        assertEquals("<from@example.com>", mail.getArgument());
+        assertEquals("MAIL FROM:<>\r\n", encode(SMTPRequestImpl.mail(null)));
+        assertEquals("RCPT TO:<to@example.com>\r\n", encode(SMTPRequestImpl.rcpt("to@example.com")));
+        
+        SMTPRequest mailWithParameters = SMTPRequestImpl.mail("from@example.com", BODY_8BITMIME_PARAMETER);
+        assertEquals("MAIL FROM:<from@example.com> BODY=8BITMIME\r\n", encode(mailWithParameters));
+        assertEquals("<from@example.com> BODY=8BITMIME", mailWithParameters.getArgument());
+    }
+    
+    @Test
+    public void testRequest() {
+        assertEquals("EHLO localhost\r\n", encode(SMTPRequestImpl.ehlo("localhost")));
+        assertEquals("HELO l?calhost\r\n", encode(SMTPRequestImpl.helo("l\u00f6calhost")));
+    }
+    
+    @Test
+    public void testPipeliningRequest() {
+        SMTPPipeliningRequestImpl request = new SMTPPipeliningRequestImpl("from@example.com", Arrays.asList("to1@example.com", "to2@example.com").iterator());
+        assertEquals("MAIL FROM:<from@example.com>\r\nRCPT TO:<to1@example.com>\r\nRCPT TO:<to2@example.com>\r\nDATA\r\n", encode(request));
+    }
+}
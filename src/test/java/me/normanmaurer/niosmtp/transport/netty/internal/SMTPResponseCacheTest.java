@@ -0,0 +1,98 @@
+/**
+* Licensed to niosmtp developers ('niosmtp') under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* niosmtp licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package me.normanmaurer.niosmtp.transport.netty.internal;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import me.normanmaurer.niosmtp.SMTPResponse;
+import me.normanmaurer.niosmtp.transport.SMTPClientConstants;
+
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.handler.codec.embedder.DecoderEmbedder;
+import org.junit.Test;
+
+/**
+ * 
+ * @author Norman Maurer
+ *
+ */
+public class SMTPResponseCacheTest implements SMTPClientConstants {
+
+    private static DecoderEmbedder<SMTPResponse> createEmbedder(SMTPResponseCache cache) {
+        return new DecoderEmbedder<SMTPResponse>(new SMTPResponseDecoder(SMTPResponseDecoder.DEFAULT_MAX_LINE_LENGTH, cache));
+    }
+    
+    private static SMTPResponse decode(DecoderEmbedder<SMTPResponse> embedder, String data) {
+        embedder.offer(ChannelBuffers.copiedBuffer(data, CHARSET));
+        return embedder.poll();
+    }
+    
+    @Test
+    public void testSharedByDecoders() {
+        SMTPResponseCache cache = new SMTPResponseCache(16);
+        SMTPResponse response = decode(createEmbedder(cache), "250 OK\r\n");
+        assertEquals(250, response.getCode());
+        assertEquals(Arrays.asList("OK"), response.getLines());
+        assertEquals(0, cache.getHits());
+        assertEquals(1, cache.getMisses());
+
+        // a different connection gets the same instance
+        assertSame(response, decode(createEmbedder(cache), "250 OK\r\n"));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(0.5, cache.getHitRate(), 0.0);
+    }
+    
+    @Test
+    public void testDifferentResponses() {
+        SMTPResponseCache cache = new SMTPResponseCache(16);
+        DecoderEmbedder<SMTPResponse> embedder = createEmbedder(cache);
+        SMTPResponse ok = decode(embedder, "250 OK\r\n");
+        SMTPResponse rejected = decode(embedder, "550 OK\r\n");
+        SMTPResponse multiLine = decode(embedder, "250-O\r\n250 K\r\n");
+        assertNotSame(ok, rejected);
+        assertEquals(550, rejected.getCode());
+        assertNotSame(ok, multiLine);
+        assertEquals(Arrays.asList("O", "K"), multiLine.getLines());
+        assertEquals(0, cache.getHits());
+        assertEquals(3, cache.getMisses());
+        
+        assertSame(multiLine, decode(embedder, "250-O\r\n250 K\r\n"));
+    }
+    
+    @Test
+    public void testLongResponseNotCached() {
+        SMTPResponseCache cache = new SMTPResponseCache(16);
+        DecoderEmbedder<SMTPResponse> embedder = createEmbedder(cache);
+        char[] text = new char[SMTPResponseCache.MAX_TEXT_LENGTH + 1];
+        Arrays.fill(text, 'a');
+        String data = "250 " + new String(text) + "\r\n";
+        SMTPResponse response = decode(embedder, data);
+        assertEquals(new String(text), response.getLines().get(0));
+        assertNotSame(response, decode(embedder, data));
+        assertEquals(0, cache.getHits());
+        assertEquals(0, cache.getMisses());
+    }
+    
+    @Test
+    public void testSize() {
+        assertEquals(16, new SMTPResponseCache(10).getSize());
+        assertEquals(0, new SMTPResponseCache(10).getHitRate(), 0.0);
+    }
+}
@@ -0,0 +1,160 @@
+/**
+* Licensed to niosmtp developers ('niosmtp') under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* niosmtp licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package me.normanmaurer.niosmtp.transport.netty.internal;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import me.normanmaurer.niosmtp.SMTPException;
+import me.normanmaurer.niosmtp.SMTPResponse;
+import me.normanmaurer.niosmtp.transport.SMTPClientConstants;
+
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.handler.codec.embedder.CodecEmbedderException;
+import org.jboss.netty.handler.codec.embedder.DecoderEmbedder;
+import org.junit.Test;
+
+/**
+ * 
+ * @author Norman Maurer
+ *
+ */
+public class SMTPResponseDecoderTest implements SMTPClientConstants {
+
+    private static DecoderEmbedder<SMTPResponse> createEmbedder() {
+        return new DecoderEmbedder<SMTPResponse>(new SMTPResponseDecoder(64));
+    }
+    
+    private static void offer(DecoderEmbedder<SMTPResponse> embedder, String data) {
+        embedder.offer(ChannelBuffers.copiedBuffer(data, CHARSET));
+    }
+    
+    @Test
+    public void testSingleLine() {
+        DecoderEmbedder<SMTPResponse> embedder = createEmbedder();
+        offer(embedder, "250 OK\r\n");
+        SMTPResponse response = embedder.poll();
+        assertEquals(250, response.getCode());
+        assertEquals(Arrays.asList("OK"), response.getLines());
+        assertNull(embedder.poll());
+    }
+    
+    @Test
+    public void testNoText() {
+        DecoderEmbedder<SMTPResponse> embedder = createEmbedder();
+        offer(embedder, "354\r\n221 \r\n");
+        SMTPResponse response = embedder.poll();
+        assertEquals(354, response.getCode());
+        assertEquals(Collections.emptyList(), response.getLines());
+        
+        response = embedder.poll();
+        assertEquals(221, response.getCode());
+        assertEquals(Collections.emptyList(), response.getLines());
+    }
+    
+    @Test
+    public void testMultiLine() {
+        DecoderEmbedder<SMTPResponse> embedder = createEmbedder();
+        offer(embedder, "250-localhost\r\n250-PIPELINING\r\n250 STARTTLS\r\n");
+        SMTPResponse response = embedder.poll();
+        assertEquals(250, response.getCode());
+        assertEquals(Arrays.asList("localhost", "PIPELINING", "STARTTLS"), response.getLines());
+        assertEquals("250-localhost\r\n250-PIPELINING\r\n250 STARTTLS", response.toString());
+    }
+    
+    @Test
+    public void testFragmented() {
+        DecoderEmbedder<SMTPResponse> embedder = createEmbedder();
+        offer(embedder, "25");
+        offer(embedder, "0-first\r");
+        assertNull(embedder.peek());
+        offer(embedder, "\n250 sec");
+        assertNull(embedder.peek());
+        offer(embedder, "ond\n550 Rejected\r\n");
+
+        SMTPResponse response = embedder.poll();
+        assertEquals(250, response.getCode());
+        assertEquals(Arrays.asList("first", "second"), response.getLines());
+        
+        response = embedder.poll();
+        assertEquals(550, response.getCode());
+        assertEquals(Arrays.asList("Rejected"), response.getLines());
+    }
+    
+    @Test
+    public void testInvalidSeparator() {
+        DecoderEmbedder<SMTPResponse> embedder = createEmbedder();
+        try {
+            offer(embedder, "250_OK\r\n");
+            fail();
+        } catch (CodecEmbedderException e) {
+            assertTrue(e.getCause() instanceof SMTPException);
+        }
+        
+        // the decoder must be usable again after the invalid line
+        offer(embedder, "250 OK\r\n");
+        assertEquals(250, embedder.poll().getCode());
+    }
+    
+    @Test
+    public void testInvalidCode() {
+        DecoderEmbedder<SMTPResponse> embedder = createEmbedder();
+        try {
+            offer(embedder, "2x0 OK\r\n");
+            fail();
+        } catch (CodecEmbedderException e) {
+            assertTrue(e.getCause() instanceof SMTPException);
+        }
+    }
+    
+    @Test
+    public void testLineTooLong() {
+        DecoderEmbedder<SMTPResponse> embedder = createEmbedder();
+        char[] text = new char[65];
+        Arrays.fill(text, 'a');
+        try {
+            offer(embedder, "250 " + new String(text));
+            fail();
+        } catch (CodecEmbedderException e) {
+            assertTrue(e.getCause() instanceof SMTPException);
+        }
+    }
+    
+    @Test
+    public void testLineTooLongFragmented() {
+        DecoderEmbedder<SMTPResponse> embedder = createEmbedder();
+        char[] text = new char[65];
+        Arrays.fill(text, 'a');
+        try {
+            offer(embedder, "250 " + new String(text));
+            fail();
+        } catch (CodecEmbedderException e) {
+            assertTrue(e.getCause() instanceof SMTPException);
+        }
+        
+        // the rest of the too long line must be discarded and not parsed as a response
+        offer(embedder, "aaaa");
+        assertNull(embedder.peek());
+        offer(embedder, "554 not a response\r\n250 OK\r\n");
+        SMTPResponse response = embedder.poll();
+        assertEquals(250, response.getCode());
+        assertEquals(Arrays.asList("OK"), response.getLines());
+        assertNull(embedder.poll());
+    }
+}